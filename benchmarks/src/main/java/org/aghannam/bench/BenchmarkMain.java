@@ -0,0 +1,128 @@
+/*
+ * CS 575: Project #2
+ * File: BenchmarkMain.java
+ */
+package org.aghannam.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+
+/**
+ * Runs the benchmarks with allocation profiling enabled and prints a summary
+ * of the derived metrics.
+ * <p>
+ * All the usual JMH command-line options are accepted (e.g. a benchmark
+ * regex, or <code>-p document=wide</code> to restrict the corpus). For every
+ * benchmark and document the summary reports documents/sec, tokens/sec, MB/s
+ * of input and the number of bytes allocated per token. The last figure is
+ * derived from the GC profiler's bytes-per-operation, divided by the number of
+ * tokens each operation processed.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class BenchmarkMain {
+	private static final String ALLOCATION_NORM = "gc.alloc.rate.norm";
+
+	/**
+	 * Main method through which to run the benchmarks.
+	 * 
+	 * @param args
+	 *            JMH command-line options
+	 * @throws Exception
+	 *             if the options are malformed or a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		Collection<RunResult> results = new Runner(options(new CommandLineOptions(args))).run();
+		System.out.println();
+		System.out.println(String.format("%-40s %-12s %14s %14s %10s %10s", "Benchmark", "Document", "docs/s",
+				"tokens/s", "MB/s", "B/token"));
+		for (RunResult result : results) {
+			System.out.println(summarize(result));
+		}
+	}
+
+	/**
+	 * Adds the allocation profiler to the given options.
+	 */
+	static Options options(Options parent) {
+		return new OptionsBuilder().parent(parent).addProfiler(GCProfiler.class).build();
+	}
+
+	private static String summarize(RunResult result) {
+		double documents = result.getPrimaryResult().getScore();
+		double bytes = score(result.getSecondaryResults().get("bytes"));
+		String document = document(result);
+		return String.format("%-40s %-12s %14.1f %14.1f %10.2f %10.1f", benchmark(result),
+				document == null ? "-" : document, documents, tokensPerSecond(result), bytes / (1024 * 1024),
+				bytesPerToken(result));
+	}
+
+	/**
+	 * Returns the name of a result's benchmark method, relative to this
+	 * package (e.g. <code>LexerBenchmark.lex</code>).
+	 */
+	static String benchmark(RunResult result) {
+		return result.getParams().getBenchmark().substring(BenchmarkMain.class.getPackage().getName().length() + 1);
+	}
+
+	/**
+	 * Returns the name of the document a result was measured on, or
+	 * <code>null</code> if the benchmark has no documents.
+	 */
+	static String document(RunResult result) {
+		return result.getParams().getParam("document");
+	}
+
+	static double tokensPerSecond(RunResult result) {
+		return score(result.getSecondaryResults().get("tokens"));
+	}
+
+	/**
+	 * Returns the tokens/sec of a result's fastest fork.
+	 */
+	static double bestFork(RunResult result) {
+		double best = Double.NEGATIVE_INFINITY;
+		for (BenchmarkResult fork : result.getBenchmarkResults()) {
+			best = Math.max(best, score(fork.getSecondaryResults().get("tokens")));
+		}
+		return best == Double.NEGATIVE_INFINITY ? Double.NaN : best;
+	}
+
+	/**
+	 * Returns how far the tokens/sec of a result's forks range, as a fraction
+	 * of their mean, or 0 for a single fork.
+	 */
+	static double forkSpread(RunResult result) {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		int forks = 0;
+		for (BenchmarkResult fork : result.getBenchmarkResults()) {
+			double tokens = score(fork.getSecondaryResults().get("tokens"));
+			min = Math.min(min, tokens);
+			max = Math.max(max, tokens);
+			sum += tokens;
+			forks++;
+		}
+		return forks > 1 && sum > 0 ? (max - min) / (sum / forks) : 0;
+	}
+
+	static double bytesPerToken(RunResult result) {
+		double documents = result.getPrimaryResult().getScore();
+		double tokensPerDocument = documents > 0 ? tokensPerSecond(result) / documents : 0;
+		double allocated = score(result.getSecondaryResults().get(ALLOCATION_NORM));
+		return tokensPerDocument > 0 ? allocated / tokensPerDocument : Double.NaN;
+	}
+
+	private static double score(Result<?> r) {
+		return r == null ? Double.NaN : r.getScore();
+	}
+}
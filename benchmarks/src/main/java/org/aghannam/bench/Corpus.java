@@ -0,0 +1,137 @@
+/*
+ * CS 575: Project #2
+ * File: Corpus.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Token;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * This class supplies the XML-- documents measured by the benchmarks.
+ * <p>
+ * Documents are identified by name. The names <code>input0</code> through
+ * <code>input5</code> refer to the sample files bundled with the parser, while
+ * the remaining names refer to seeded {@link DocumentGenerator} documents of a
+ * particular shape: <code>deep</code> (nesting hundreds of levels deep),
+ * <code>wide</code> (a root with many shallow children),
+ * <code>attributes</code> (tags carrying many attributes each) and
+ * <code>data</code> (long, entity-laden runs of DATA).
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Corpus {
+	/**
+	 * Every document name known to the corpus, in reporting order.
+	 */
+	public static final String[] NAMES = { "input0", "input1", "input2", "input3", "input4", "input5", "deep",
+			"wide", "attributes", "data" };
+
+	/* Rough size, in bytes, of each synthetic document, and its seed. */
+	private static final int SYNTHETIC_SIZE = 64 * 1024;
+	private static final long SEED = 575;
+
+	private Corpus() {
+	}
+
+	/**
+	 * Returns the text of the named document.
+	 * 
+	 * @param name
+	 *            one of {@link #NAMES}
+	 * @return the document text
+	 * @throws IOException
+	 *             if a bundled sample file cannot be read
+	 */
+	public static String load(String name) throws IOException {
+		switch (name) {
+		case "deep":
+			return deep();
+		case "wide":
+			return wide();
+		case "attributes":
+			return attributes();
+		case "data":
+			return data();
+		default:
+			return bundled(name);
+		}
+	}
+
+	/**
+	 * Tokenizes the given document once, for benchmarks that start from a
+	 * pre-lexed token stream.
+	 * 
+	 * @param document
+	 *            the document text
+	 * @return the token stream produced by the lexer
+	 * @throws LexerException
+	 *             if the document cannot be scanned
+	 */
+	public static List<Token> tokens(String document) throws LexerException {
+		return new Lexer(document).getTokenStream();
+	}
+
+	/**
+	 * Returns the size of the given document in UTF-8 encoded bytes.
+	 * 
+	 * @param document
+	 *            the document text
+	 * @return the number of bytes the document occupies on disk
+	 */
+	public static int byteLength(String document) {
+		return document.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	/**
+	 * Replaces <code>System.out</code> with a stream that discards everything.
+	 * <p>
+	 * The parser prints its derivation as it goes; without this the
+	 * benchmarks would mostly be measuring the console.
+	 */
+	public static void silenceStandardOutput() {
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	private static String bundled(String name) throws IOException {
+		String resource = "/org/aghannam/files/" + name + ".xml";
+		try (InputStream in = Corpus.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				throw new IOException("No such document in the corpus: '" + name + "'.");
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			in.transferTo(out);
+			return out.toString(StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String deep() {
+		return synthetic().maxDepth(512).fanOut(3).maxAttributes(1).generateString();
+	}
+
+	private static String wide() {
+		return synthetic().maxDepth(1).fanOut(4).generateString();
+	}
+
+	private static String attributes() {
+		return synthetic().maxDepth(2).maxAttributes(32).dataWords(2).generateString();
+	}
+
+	private static String data() {
+		return synthetic().maxDepth(2).maxAttributes(0).dataWords(24).entityDensity(0.05).generateString();
+	}
+
+	private static DocumentGenerator synthetic() {
+		return new DocumentGenerator().seed(SEED).targetSize(SYNTHETIC_SIZE);
+	}
+}
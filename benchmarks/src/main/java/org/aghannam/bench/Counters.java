@@ -0,0 +1,44 @@
+/*
+ * CS 575: Project #2
+ * File: Counters.java
+ */
+package org.aghannam.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * This class accumulates the work done by a benchmark so that JMH can report
+ * it as a rate next to the primary documents-per-second score.
+ * <p>
+ * Each public field is reported as its own secondary result: <code>tokens</code>
+ * in tokens/sec and <code>bytes</code> in input bytes/sec.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Counters {
+	public long tokens;
+	public long bytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		tokens = 0;
+		bytes = 0;
+	}
+
+	/**
+	 * Records that one document has been processed.
+	 * 
+	 * @param doc
+	 *            the document that was processed
+	 */
+	public void count(DocumentState doc) {
+		tokens += doc.tokens.size();
+		bytes += doc.bytes;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentState.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.lex.Token;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * This class holds the document measured by a single benchmark run, both as
+ * text and as the token stream the lexer produces for it.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@State(Scope.Benchmark)
+public class DocumentState {
+	@Param({ "input0", "input1", "input2", "input3", "input4", "input5", "deep", "wide", "attributes", "data" })
+	public String document;
+
+	/**
+	 * The document text.
+	 */
+	public String text;
+
+	/**
+	 * The document, already tokenized.
+	 */
+	public List<Token> tokens;
+
+	/**
+	 * The size of the document in UTF-8 encoded bytes.
+	 */
+	public int bytes;
+
+	@Setup(Level.Trial)
+	public void load() throws Exception {
+		Corpus.silenceStandardOutput();
+		text = Corpus.load(document);
+		tokens = Corpus.tokens(text);
+		bytes = Corpus.byteLength(text);
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * CS 575: Project #2
+ * File: EndToEndBenchmark.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerException;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lexing and parsing together, the same way <code>Runner</code>
+ * processes a document, but without printing the derivation.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class EndToEndBenchmark {
+
+	@Benchmark
+	public void lexAndParse(DocumentState doc, Counters counters) throws LexerException, ParserException {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		parser.parse(new Lexer(doc.text).getTokenStream());
+		counters.count(doc);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * CS 575: Project #2
+ * File: EntityBenchmark.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.lex.Entities;
+import org.aghannam.lex.Lexer.TokenType;
+import org.aghannam.lex.Token;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures decoding the attribute values and DATA of a document, once with
+ * references in about a fifth of their characters (<code>dense</code>) and
+ * once with none (<code>free</code>).
+ * <p>
+ * <code>replace</code> decodes with a regular expression, as consumers did
+ * before the lexer offered decoded values; <code>decode</code> uses the
+ * table-driven {@link Entities#decode(String, int, int)} on every token; and
+ * <code>cached</code> calls {@link Token#getValue()}, which after the first
+ * call on a token only returns the kept value. One operation decodes every
+ * STRING and DATA token of the document.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class EntityBenchmark {
+	private static final Pattern REFERENCE = Pattern.compile("&(lt|gt|quot|apos|amp|#[0-9]+|#x[0-9a-fA-F]+);");
+
+	/**
+	 * The STRING and DATA tokens of the document.
+	 */
+	@State(Scope.Thread)
+	public static class Values {
+		@Param({ "dense", "free" })
+		public String content;
+
+		public List<Token> tokens;
+
+		@Setup(Level.Trial)
+		public void load() throws Exception {
+			String text = new DocumentGenerator().seed(575).targetSize(256 * 1024).maxDepth(4).maxAttributes(4)
+					.dataWords(12).entityDensity(content.equals("dense") ? 0.2 : 0).generateString();
+			tokens = new ArrayList<Token>();
+			for (Token token : Corpus.tokens(text)) {
+				if (token.getType() == TokenType.STRING || token.getType() == TokenType.DATA) {
+					tokens.add(token);
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void replace(Values values, Blackhole blackhole) {
+		for (Token token : values.tokens) {
+			String text = token.getLexeme();
+			if (token.getType() == TokenType.STRING) {
+				text = text.substring(1, text.length() - 1);
+			}
+			blackhole.consume(REFERENCE.matcher(text).replaceAll(EntityBenchmark::resolve));
+		}
+	}
+
+	@Benchmark
+	public void decode(Values values, Blackhole blackhole) {
+		for (Token token : values.tokens) {
+			String text = token.getLexeme();
+			if (token.getType() == TokenType.STRING) {
+				blackhole.consume(Entities.decode(text, 1, text.length() - 1));
+			} else {
+				blackhole.consume(Entities.decode(text));
+			}
+		}
+	}
+
+	@Benchmark
+	public void cached(Values values, Blackhole blackhole) {
+		for (Token token : values.tokens) {
+			blackhole.consume(token.getValue());
+		}
+	}
+
+	private static String resolve(MatchResult m) {
+		String reference = m.group(1);
+		switch (reference) {
+		case "lt":
+			return "<";
+		case "gt":
+			return ">";
+		case "quot":
+			return "\"";
+		case "apos":
+			return "'";
+		case "amp":
+			return "&";
+		default:
+			int codePoint = reference.charAt(1) == 'x' ? Integer.parseInt(reference.substring(2), 16)
+					: Integer.parseInt(reference.substring(1));
+			return Matcher.quoteReplacement(new String(Character.toChars(codePoint)));
+		}
+	}
+}
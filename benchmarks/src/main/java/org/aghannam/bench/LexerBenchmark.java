@@ -0,0 +1,38 @@
+/*
+ * CS 575: Project #2
+ * File: LexerBenchmark.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Token;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lexer on its own: document text in, token stream out.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class LexerBenchmark {
+
+	@Benchmark
+	public List<Token> lex(DocumentState doc, Counters counters) throws LexerException {
+		List<Token> tokens = new Lexer(doc.text).getTokenStream();
+		counters.count(doc);
+		return tokens;
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * CS 575: Project #2
+ * File: ParserBenchmark.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parser on its own, starting from a token stream that was
+ * produced once during setup. The derivation is not printed, so that only
+ * the parse is measured.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Benchmark
+	public void parse(DocumentState doc, Counters counters) throws ParserException {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		parser.parse(doc.tokens);
+		counters.count(doc);
+	}
+}
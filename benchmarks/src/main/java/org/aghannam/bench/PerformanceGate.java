@@ -0,0 +1,292 @@
+/*
+ * CS 575: Project #2
+ * File: PerformanceGate.java
+ */
+package org.aghannam.bench;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the lexer and parser from getting slower unnoticed, by comparing
+ * their benchmark results with a baseline kept in the repository.
+ * <p>
+ * <code>record</code> runs {@link LexerBenchmark} and {@link ParserBenchmark}
+ * over the whole corpus, with allocation profiling, and writes the baseline
+ * file: one line per benchmark and document with the throughput of its
+ * fastest fork in tokens/sec, and the bytes it allocates per token.
+ * <code>compare</code> runs them again, or reads the results of an earlier
+ * <code>record</code>, and prints every metric next to its baseline; it exits
+ * with status 1 if any throughput has dropped, or any allocation has grown,
+ * by more than the tolerance (20% by default). Allocation is also allowed
+ * {@value #ALLOCATION_SLACK} byte per token of measurement noise, so that a
+ * baseline of nothing allocated can be compared at all.
+ * <p>
+ * Unless the JMH options say otherwise, each benchmark is run in
+ * {@value #DEFAULT_FORKS} forks of {@value #DEFAULT_ITERATIONS} measurement
+ * iterations, and the fastest fork is compared with the fastest fork of the
+ * baseline. Noise from the rest of the machine, or from a fork the JIT
+ * compiled badly, only ever slows a fork down, so the best of several is
+ * steadier than their mean, while a change that makes the code slower slows
+ * every fork. The tolerance is the same for every benchmark, however noisy
+ * it is: <code>record</code> warns of any benchmark whose forks ranged by
+ * more than the tolerance, since the machine it ran on was too busy for the
+ * baseline to be trusted. Record it again on a quiet one.
+ * <p>
+ * Arguments: the command, then optionally <code>--baseline=file</code> (by
+ * default <code>{@value #DEFAULT_BASELINE}</code>),
+ * <code>--tolerance=percent</code> and <code>--results=file</code>, then any
+ * JMH options, e.g. <code>-p document=wide</code>. Throughput depends on the
+ * machine, so a baseline should be recorded and compared on the same one;
+ * the JVM and machine are noted at the top of the file.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class PerformanceGate {
+	private static final String DEFAULT_BASELINE = "benchmarks/baseline.tsv";
+	private static final double DEFAULT_TOLERANCE = 20;
+	private static final int DEFAULT_FORKS = 5;
+	private static final int DEFAULT_ITERATIONS = 10;
+	private static final double ALLOCATION_SLACK = 1;
+
+	/* The benchmarks measured unless the JMH options name others. */
+	private static final String BENCHMARKS = "\\.(LexerBenchmark|ParserBenchmark)\\.";
+
+	private static final String HEADER = "benchmark\tdocument\tbest fork tokens/s\tB/token";
+
+	/*
+	 * The metrics of a benchmark, in the order kept. The fork-to-fork range is
+	 * only measured, to warn of a noisy machine, and is not kept.
+	 */
+	private static final int TOKENS = 0;
+	private static final int BYTES = 1;
+	private static final int RANGE = 2;
+
+	private PerformanceGate() {
+	}
+
+	/**
+	 * Main method through which to record or check the baseline.
+	 *
+	 * @param args
+	 *            <code>record</code> or <code>compare</code>, the gate's
+	 *            options and JMH options
+	 * @throws Exception
+	 *             if the options are malformed, a file cannot be read or
+	 *             written, or a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0 || !args[0].equals("record") && !args[0].equals("compare")) {
+			usage();
+		}
+		Path baseline = Paths.get(DEFAULT_BASELINE);
+		Path results = null;
+		double tolerance = DEFAULT_TOLERANCE;
+		List<String> jmh = new ArrayList<String>();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].startsWith("--baseline=")) {
+				baseline = Paths.get(args[i].substring("--baseline=".length()));
+			} else if (args[i].startsWith("--results=")) {
+				results = Paths.get(args[i].substring("--results=".length()));
+			} else if (args[i].startsWith("--tolerance=")) {
+				tolerance = Double.parseDouble(args[i].substring("--tolerance=".length()).replace("%", ""));
+			} else {
+				jmh.add(args[i]);
+			}
+		}
+
+		if (args[0].equals("record")) {
+			Map<String, double[]> measured = run(jmh);
+			write(baseline, measured);
+			System.out.println("Recorded " + measured.size() + " results in " + baseline + ".");
+			warnOfNoise(measured, tolerance);
+		} else {
+			Map<String, double[]> expected = read(baseline);
+			Map<String, double[]> measured = results != null ? read(results) : run(jmh);
+			List<String> regressed = compare(expected, measured, tolerance / 100);
+			System.exit(regressed.isEmpty() ? 0 : 1);
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: PerformanceGate record|compare [--baseline=<file>] [--tolerance=<percent>] "
+				+ "[--results=<file>] [<JMH options>]");
+		System.exit(2);
+	}
+
+	/**
+	 * Runs the benchmarks and returns their metrics by benchmark and
+	 * document: tokens/sec of the fastest fork, bytes per token, then the
+	 * fork-to-fork range of tokens/sec in percent.
+	 */
+	private static Map<String, double[]> run(List<String> args) throws Exception {
+		CommandLineOptions given = new CommandLineOptions(args.toArray(new String[0]));
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(given);
+		if (given.getIncludes().isEmpty()) {
+			builder.include(BENCHMARKS);
+		}
+		if (!given.getForkCount().hasValue()) {
+			builder.forks(DEFAULT_FORKS);
+		}
+		if (!given.getMeasurementIterations().hasValue()) {
+			builder.measurementIterations(DEFAULT_ITERATIONS);
+		}
+		Options options = builder.build();
+		Collection<RunResult> results = new Runner(BenchmarkMain.options(options)).run();
+		Map<String, double[]> measured = new LinkedHashMap<String, double[]>();
+		for (RunResult result : results) {
+			String document = BenchmarkMain.document(result);
+			measured.put(key(BenchmarkMain.benchmark(result), document == null ? "-" : document), new double[] {
+					BenchmarkMain.bestFork(result), BenchmarkMain.bytesPerToken(result),
+					BenchmarkMain.forkSpread(result) * 100 });
+		}
+		return measured;
+	}
+
+	/**
+	 * Prints the benchmarks whose forks ranged by more than the tolerance.
+	 */
+	private static void warnOfNoise(Map<String, double[]> measured, double tolerance) {
+		List<String> noisy = new ArrayList<String>();
+		for (Map.Entry<String, double[]> entry : measured.entrySet()) {
+			if (entry.getValue()[RANGE] > tolerance) {
+				noisy.add(String.format(Locale.ROOT, "  %s: %.1f%%", entry.getKey().replace('\t', ' '),
+						entry.getValue()[RANGE]));
+			}
+		}
+		if (!noisy.isEmpty()) {
+			System.out.println(String.format(Locale.ROOT, "Warning: the forks of %d benchmark(s) ranged by more "
+					+ "than the %.0f%% tolerance, so this machine is too busy for the baseline to be trusted:",
+					noisy.size(), tolerance));
+			for (String line : noisy) {
+				System.out.println(line);
+			}
+		}
+	}
+
+	private static String key(String benchmark, String document) {
+		return benchmark + "\t" + document;
+	}
+
+	/**
+	 * Prints each measured metric next to its baseline.
+	 *
+	 * @return the metrics that have regressed beyond the tolerance, by
+	 *         benchmark, document and metric
+	 */
+	private static List<String> compare(Map<String, double[]> expected, Map<String, double[]> measured,
+			double tolerance) {
+		System.out.println();
+		System.out.println(String.format("%-24s %-12s %-9s %14s %14s %8s %9s  %s", "Benchmark", "Document",
+				"Metric", "Baseline", "Measured", "Change", "Tolerance", ""));
+		List<String> regressed = new ArrayList<String>();
+		for (Map.Entry<String, double[]> entry : measured.entrySet()) {
+			String[] names = entry.getKey().split("\t");
+			double[] now = entry.getValue();
+			double[] then = expected.get(entry.getKey());
+			if (then == null) {
+				System.out.println(String.format("%-24s %-12s %-9s %14s %14.1f %8s %9s  %s", names[0], names[1],
+						"tokens/s", "-", now[TOKENS], "", "", "not in baseline"));
+				continue;
+			}
+			boolean slower = now[TOKENS] < then[TOKENS] * (1 - tolerance);
+			boolean heavier = now[BYTES] > then[BYTES] * (1 + tolerance) + ALLOCATION_SLACK;
+			System.out.println(row(names, "tokens/s", then[TOKENS], now[TOKENS], tolerance, slower ? "REGRESSION" : ""));
+			System.out.println(row(names, "B/token", then[BYTES], now[BYTES], tolerance, heavier ? "REGRESSION" : ""));
+			if (slower) {
+				regressed.add(entry.getKey() + "\ttokens/s");
+			}
+			if (heavier) {
+				regressed.add(entry.getKey() + "\tB/token");
+			}
+		}
+		for (String key : expected.keySet()) {
+			if (!measured.containsKey(key)) {
+				String[] names = key.split("\t");
+				System.out.println(String.format("%-24s %-12s %-9s %14s %14s %8s %9s  %s", names[0], names[1], "",
+						"", "", "", "", "not measured"));
+			}
+		}
+		System.out.println();
+		if (!regressed.isEmpty()) {
+			System.out.println(regressed.size() + " metric(s) regressed by more than the tolerance.");
+		} else {
+			System.out.println("No regressions beyond the tolerance.");
+		}
+		return regressed;
+	}
+
+	private static String row(String[] names, String metric, double then, double now, double tolerance,
+			String verdict) {
+		String change = then > 0 ? String.format(Locale.ROOT, "%+.1f%%", (now - then) / then * 100) : "";
+		return String.format(Locale.ROOT, "%-24s %-12s %-9s %14.1f %14.1f %8s %8.0f%%  %s", names[0], names[1],
+				metric, then, now, change, tolerance * 100, verdict);
+	}
+
+	/**
+	 * Writes a baseline file, noting where it was recorded.
+	 */
+	private static void write(Path file, Map<String, double[]> measured) throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			out.println("# XML-- performance baseline, recorded by PerformanceGate on " + LocalDate.now());
+			out.println("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ", "
+					+ System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+					+ Runtime.getRuntime().availableProcessors() + " CPU(s)");
+			out.println(HEADER);
+			for (Map.Entry<String, double[]> entry : measured.entrySet()) {
+				double[] metrics = entry.getValue();
+				out.println(String.format(Locale.ROOT, "%s\t%.1f\t%.1f", entry.getKey(), metrics[TOKENS],
+						metrics[BYTES]));
+			}
+		}
+	}
+
+	/**
+	 * Reads a baseline file.
+	 *
+	 * @throws IOException
+	 *             if it cannot be read or a line is malformed
+	 */
+	private static Map<String, double[]> read(Path file) throws IOException {
+		Map<String, double[]> metrics = new LinkedHashMap<String, double[]>();
+		int number = 0;
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			number++;
+			if (line.isEmpty() || line.startsWith("#") || line.equals(HEADER)) {
+				continue;
+			}
+			String[] fields = line.split("\t");
+			try {
+				if (fields.length != 4) {
+					throw new NumberFormatException();
+				}
+				metrics.put(key(fields[0], fields[1]),
+						new double[] { Double.parseDouble(fields[2]), Double.parseDouble(fields[3]) });
+			} catch (NumberFormatException e) {
+				throw new IOException(file + ":" + number + ": Malformed baseline line '" + line + "'.");
+			}
+		}
+		return metrics;
+	}
+}
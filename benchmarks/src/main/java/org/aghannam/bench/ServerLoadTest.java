@@ -0,0 +1,120 @@
+/*
+ * CS 575: Project #2
+ * File: ServerLoadTest.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.lex.Limits;
+import org.aghannam.server.ValidationServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load-tests the validation server entirely on the local machine.
+ * <p>
+ * An in-process {@link ValidationServer} is started on a free loopback port
+ * and a number of concurrent clients POST every document of the benchmark
+ * corpus to it in turn, for a fixed number of requests. The harness then
+ * prints the number of requests per second, MB/s of documents sent and the
+ * median and 99th percentile latency per request. It also checks that every
+ * response was <code>200</code> or <code>422</code> as expected.
+ * <p>
+ * Arguments (all optional): the number of clients (default 16), the total
+ * number of requests (default 2000) and the names of the corpus documents
+ * to send (default all of them).
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class ServerLoadTest {
+	/**
+	 * Main method through which to run the load test.
+	 *
+	 * @param args
+	 *            clients, requests and document names
+	 * @throws Exception
+	 *             if the server cannot be started or a request fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		String[] names = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : Corpus.NAMES;
+
+		List<byte[]> documents = new ArrayList<byte[]>();
+		for (String name : names) {
+			documents.add(Corpus.load(name).getBytes(StandardCharsets.UTF_8));
+		}
+
+		ValidationServer server = new ValidationServer(0, Limits.DEFAULT);
+		server.start();
+		URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/validate");
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+		/* Warm up the server before measuring. */
+		for (int i = 0; i < Math.min(requests, 200); i++) {
+			send(client, uri, documents.get(i % documents.size()));
+		}
+
+		long[] latencies = new long[requests];
+		long[] bytes = new long[requests];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger unexpected = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int c = 0; c < clients; c++) {
+				workers.add(pool.submit(() -> {
+					int i;
+					while ((i = next.getAndIncrement()) < requests) {
+						byte[] document = documents.get(i % documents.size());
+						long begin = System.nanoTime();
+						int status = send(client, uri, document);
+						latencies[i] = System.nanoTime() - begin;
+						bytes[i] = document.length;
+						if (status != 200 && status != 422) {
+							unexpected.incrementAndGet();
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} finally {
+			pool.shutdown();
+			server.stop();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		double seconds = elapsed / 1e9;
+		long total = Arrays.stream(bytes).sum();
+		System.out.println(String.format("%d requests from %d clients in %.3f s", requests, clients, seconds));
+		System.out.println(String.format("%.1f requests/s, %.2f MB/s", requests / seconds,
+				total / (1024.0 * 1024.0) / seconds));
+		System.out.println(String.format("latency p50 %.3f ms, p99 %.3f ms", latencies[requests / 2] / 1e6,
+				latencies[Math.max(0, (int) Math.ceil(0.99 * requests) - 1)] / 1e6));
+		if (unexpected.get() > 0) {
+			System.out.println(unexpected.get() + " requests failed unexpectedly");
+			System.exit(1);
+		}
+	}
+
+	private static int send(HttpClient client, URI uri, byte[] document) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofByteArray(document))
+				.build();
+		return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+}
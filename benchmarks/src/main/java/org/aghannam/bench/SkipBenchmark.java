@@ -0,0 +1,193 @@
+/*
+ * CS 575: Project #2
+ * File: SkipBenchmark.java
+ */
+package org.aghannam.bench;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+import org.aghannam.parser.ParseListener;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures skipping over most of a document, as a pipeline does when it only
+ * needs the first few children of the root.
+ * <p>
+ * The document is a root with many nested children. The listener enters the
+ * root and the first <code>keep</code> percent of its children, and has the
+ * parser skip the rest, so that by default 90% of the content is skipped.
+ * <code>parse</code> runs the whole document through the LR automaton for
+ * comparison, <code>skip</code> skips by counting depth only, and
+ * <code>skipVerified</code> also matches the skipped tag names. The
+ * <code>...Streaming</code> variants lex the document as they go, and show
+ * how much of the saving survives once lexing is included.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class SkipBenchmark {
+
+	/**
+	 * The document, and the parsers used on it.
+	 */
+	@State(Scope.Thread)
+	public static class Document {
+		@Param({ "10" })
+		public int keep;
+
+		public String text;
+		public List<Token> tokens;
+		public int bytes;
+		public int children;
+
+		public Parser full;
+		public Parser skipping;
+		public Parser verifying;
+		public FirstChildren listener;
+
+		@Setup(Level.Trial)
+		public void load() throws Exception {
+			text = new DocumentGenerator().seed(575).targetSize(256 * 1024).maxDepth(6).fanOut(4).maxAttributes(2)
+					.generateString();
+			tokens = Corpus.tokens(text);
+			bytes = Corpus.byteLength(text);
+
+			full = newParser(null, false);
+			FirstChildren counter = new FirstChildren(Integer.MAX_VALUE);
+			newParser(counter, false).parse(tokens);
+			children = counter.seen;
+
+			listener = new FirstChildren(Math.max(1, children * keep / 100));
+			skipping = newParser(listener, false);
+			verifying = newParser(listener, true);
+		}
+
+		private static Parser newParser(ParseListener listener, boolean verify) {
+			Parser parser = new Parser();
+			parser.setOutput(null);
+			parser.setListener(listener);
+			parser.setVerifySkippedTags(verify);
+			return parser;
+		}
+	}
+
+	/**
+	 * The work done, reported as rates next to documents/sec.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+		public long tokens;
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			tokens = 0;
+			bytes = 0;
+		}
+
+		void count(Document doc) {
+			tokens += doc.tokens.size();
+			bytes += doc.bytes;
+		}
+	}
+
+	@Benchmark
+	public void parse(Document doc, Throughput throughput) throws ParserException {
+		doc.full.parse(doc.tokens);
+		throughput.count(doc);
+	}
+
+	@Benchmark
+	public void skip(Document doc, Throughput throughput) throws ParserException {
+		doc.skipping.parse(doc.tokens);
+		throughput.count(doc);
+	}
+
+	@Benchmark
+	public void skipVerified(Document doc, Throughput throughput) throws ParserException {
+		doc.verifying.parse(doc.tokens);
+		throughput.count(doc);
+	}
+
+	@Benchmark
+	public void parseStreaming(Document doc, Throughput throughput) throws LexerException, ParserException {
+		doc.full.parse(new StreamingLexer(new StringReader(doc.text)));
+		throughput.count(doc);
+	}
+
+	@Benchmark
+	public void skipStreaming(Document doc, Throughput throughput) throws LexerException, ParserException {
+		doc.skipping.parse(new StreamingLexer(new StringReader(doc.text)));
+		throughput.count(doc);
+	}
+
+	/**
+	 * Enters the root and its first few children, and skips the other
+	 * children.
+	 */
+	static class FirstChildren implements ParseListener {
+		private final int keep;
+		private int depth;
+		int seen;
+
+		FirstChildren(int keep) {
+			this.keep = keep;
+		}
+
+		@Override
+		public void startElement(String name) {
+			if (++depth == 1) {
+				seen = 0;
+			} else if (depth == 2) {
+				seen++;
+			}
+		}
+
+		@Override
+		public void attribute(String name, String value) {
+		}
+
+		@Override
+		public boolean enterContent() {
+			return depth != 2 || seen <= keep;
+		}
+
+		@Override
+		public void data(String data) {
+		}
+
+		@Override
+		public void endElement(String name) {
+			depth--;
+		}
+
+		@Override
+		public boolean isDone() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * CS 575: Project #2
+ * File: BatchValidatorTest.java
+ */
+package org.aghannam.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link BatchValidator} reports each file on its own, on worker
+ * threads and on virtual threads alike, although its parsers are reused from
+ * one file to the next.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class BatchValidatorTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void eachFileIsReportedAsIfValidatedAlone() throws Exception {
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 60; i++) {
+			Path file = directory.resolve(String.format("doc%02d.xml", i));
+			Files.writeString(file, i % 3 == 0 ? "<a><b>" + i + "</c><d></e></a>" : "<a><b>" + i + "</b></a>");
+			if (i % 3 == 0) {
+				expected.addAll(report("-j", "1", "--max-errors", "5", file.toString()));
+			}
+		}
+		Collections.sort(expected);
+		List<String> workers = report("-j", "4", "-q", "--max-errors", "5", directory.toString());
+		List<String> virtual = report("--virtual", "-q", "--max-errors", "5", directory.toString());
+		Collections.sort(workers);
+		Collections.sort(virtual);
+		assertEquals(expected, workers);
+		assertEquals(expected, virtual);
+	}
+
+	/**
+	 * Runs a batch and returns the lines it prints before its summary, after
+	 * checking that the summary counts the invalid files among them.
+	 */
+	private static List<String> report(String... args) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		boolean valid = new BatchValidator(new PrintStream(out, true, StandardCharsets.UTF_8)).run(args);
+		List<String> lines = out.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+		List<String> files = new ArrayList<String>(lines.subList(0, lines.indexOf("")));
+		long invalid = files.stream().filter(line -> line.startsWith("INVALID ")).count();
+		assertEquals(invalid == 0, valid);
+		assertTrue(lines.get(lines.indexOf("") + 1).endsWith(", " + invalid + " invalid"));
+		return files;
+	}
+}
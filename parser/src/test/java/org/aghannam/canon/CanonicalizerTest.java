@@ -0,0 +1,155 @@
+/*
+ * CS 575: Project #2
+ * File: CanonicalizerTest.java
+ */
+package org.aghannam.canon;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.lex.Lexer.TokenType;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+import org.aghannam.parser.ParserException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link Canonicalizer} writes the canonical form it describes,
+ * with the tokens of the original document, and that canonicalizing that
+ * form again changes nothing.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class CanonicalizerTest {
+	/* Whitespace and comments put between tokens. */
+	private static final String[] GAPS = { "", " ", "  ", "\n", "\t\n  ", "\r\n" };
+	private static final String[] COMMENTS = { " <!-- c --> ", "<!--x-->", "\n<!-- two words -->\n" };
+
+	@Test
+	public void whitespaceCommentsAndQuotesAreMadeCanonical() throws Exception {
+		assertEquals("<a x=\"say &quot;hi&quot;\" y=\"v\">one two<b/></a>",
+				canonicalize("<a  x = 'say \"hi\"' y=\"v\" >  one   two <!-- c --> <b/> </a>"));
+		assertEquals("<a>t</a>", canonicalize("< a\t>\n\tt\n</ a >"));
+		assertEquals("<a x=\"it&apos;s\"/>", canonicalize("<a x='it&apos;s'/>"));
+		assertEquals("<a>été € 😀</a>", canonicalize("<a>été  €\n😀</a>"));
+	}
+
+	@Test
+	public void canonicalizingTwiceChangesNothing() throws Exception {
+		Random random = new Random(3);
+		for (int seed = 0; seed < 30; seed++) {
+			String document = new DocumentGenerator().targetSize(2000 + seed * 500).seed(seed).generateString();
+			for (String variant : new String[] { document, scramble(document, random) }) {
+				String canonical = canonicalize(variant);
+				assertEquals(canonical, canonicalize(canonical));
+				assertSameTokens(variant, canonical);
+			}
+		}
+	}
+
+	@Test
+	public void largeDocumentsAreWrittenWhole() throws Exception {
+		// More slices than one write takes, and more new bytes than the scratch buffer holds
+		String document = new DocumentGenerator().targetSize(1 << 20).seed(11).generateString();
+		String scrambled = scramble(document, new Random(11));
+		String canonical = canonicalize(scrambled);
+		assertEquals(canonical, canonicalize(canonical));
+		assertEquals(canonicalize(document), canonical);
+		assertSameTokens(scrambled, canonical);
+	}
+
+	@Test
+	public void theNumberOfBytesWrittenIsReturned() throws Exception {
+		String document = "<a x='é'>  t  </a>";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long written = Canonicalizer.canonicalize(ByteBuffer.wrap(document.getBytes(StandardCharsets.UTF_8)),
+				Channels.newChannel(out), Limits.NONE);
+		assertEquals(out.size(), written);
+		assertEquals("<a x=\"é\">t</a>", out.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void anInvalidDocumentIsRejected() {
+		assertThrows(ParserException.class, () -> canonicalize("<a>one</b>"));
+		assertThrows(LexerException.class, () -> canonicalize("<a>a&b</a>"));
+	}
+
+	/**
+	 * Rewrites a document with random whitespace and comments between most of
+	 * its tokens, and each value without a single quote in single quotes half
+	 * of the time.
+	 */
+	private static String scramble(String document, Random random) throws LexerException {
+		StreamingLexer lexer = new StreamingLexer(new StringReader(document));
+		StringBuilder scrambled = new StringBuilder();
+		Token previous = null;
+		for (Token token = lexer.nextToken(); token != null; token = lexer.nextToken()) {
+			// The lexer takes "</ a></b>" for an end tag with two slashes, so no gap after "</"
+			if (previous != null && previous.getType() != TokenType.LTSL) {
+				String gap = GAPS[random.nextInt(GAPS.length)];
+				scrambled.append(gap.isEmpty() && isWord(previous) && isWord(token) ? " " : gap);
+				if (previous.getType() == TokenType.CLOSE && random.nextInt(4) == 0) {
+					scrambled.append(COMMENTS[random.nextInt(COMMENTS.length)]);
+				}
+			}
+			String lexeme = token.getLexeme();
+			if (token.getType() == TokenType.STRING && lexeme.indexOf('\'') < 0 && random.nextBoolean()) {
+				lexeme = "'" + lexeme.substring(1, lexeme.length() - 1) + "'";
+			}
+			scrambled.append(lexeme);
+			previous = token;
+		}
+		return scrambled.toString();
+	}
+
+	/**
+	 * Returns whether a token would run into another such token without
+	 * whitespace between them.
+	 */
+	private static boolean isWord(Token token) {
+		return token.getType() == TokenType.NAME || token.getType() == TokenType.DATA
+				|| token.getType() == TokenType.STRING;
+	}
+
+	/**
+	 * Checks that two documents have the same tokens, the values of
+	 * attributes being compared without their quotes.
+	 */
+	private static void assertSameTokens(String expected, String actual) throws LexerException {
+		assertEquals(tokens(expected), tokens(actual));
+	}
+
+	private static List<String> tokens(String document) throws LexerException {
+		StreamingLexer lexer = new StreamingLexer(new StringReader(document));
+		List<String> tokens = new ArrayList<String>();
+		for (Token token = lexer.nextToken(); token != null; token = lexer.nextToken()) {
+			String lexeme = token.getLexeme();
+			if (token.getType() == TokenType.STRING) {
+				lexeme = lexeme.substring(1, lexeme.length() - 1).replace("&quot;", "\"");
+			}
+			tokens.add(token.getType() + " " + lexeme);
+		}
+		return tokens;
+	}
+
+	private static String canonicalize(String document) throws LexerException, ParserException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Canonicalizer.canonicalize(ByteBuffer.wrap(document.getBytes(StandardCharsets.UTF_8)),
+				Channels.newChannel(out), Limits.NONE);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * CS 575: Project #2
+ * File: FlowParserTest.java
+ */
+package org.aghannam.flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.Limits;
+import org.aghannam.parser.ParseListener;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.Parser.Rule;
+import org.aghannam.parser.ParserException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link FlowParser} publishes a document's events in order, only
+ * as fast as they are requested, and stops and fails the way its
+ * subscription says.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class FlowParserTest {
+	private static final String DOCUMENT = "<r>" + "<e k=\"v\">some words</e>".repeat(20000) + "</r>";
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	@Test
+	public void aSlowSubscriberThrottlesTheParseAndThePublisher() {
+		assertTimeoutPreemptively(TIMEOUT, () -> {
+			SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+			FlowParser parser = processor(16);
+			Counter counter = new Counter(parser);
+			publisher.subscribe(counter);
+			Recorder recorder = new Recorder();
+			parser.subscribe(recorder);
+			List<ByteBuffer> buffers = split(DOCUMENT, 4096);
+			buffers.forEach(publisher::submit);
+			publisher.close();
+
+			recorder.subscription.request(1);
+			recorder.awaitBatches(1);
+			Thread.sleep(200);
+			assertEquals(1, recorder.batchCount());
+			assertTrue(counter.buffers.get() < buffers.size() / 2, "the publisher was read ahead of the subscriber");
+
+			recorder.subscription.request(2);
+			recorder.awaitBatches(3);
+			Thread.sleep(100);
+			assertEquals(3, recorder.batchCount());
+
+			recorder.subscription.request(Long.MAX_VALUE);
+			recorder.awaitEnd();
+			assertTrue(recorder.completed);
+			assertNull(recorder.error);
+			assertEquals(expected(DOCUMENT), recorder.events());
+			for (List<ParseEvent> batch : recorder.batches) {
+				assertTrue(batch.size() <= 16);
+			}
+		});
+	}
+
+	@Test
+	public void cancellingStopsTheParseAndCancelsUpstream() {
+		assertTimeoutPreemptively(TIMEOUT, () -> {
+			SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+			FlowParser parser = processor(16);
+			publisher.subscribe(parser);
+			Recorder recorder = new Recorder();
+			parser.subscribe(recorder);
+			split(DOCUMENT, 4096).forEach(publisher::submit);
+
+			recorder.subscription.request(1);
+			recorder.awaitBatches(1);
+			recorder.subscription.cancel();
+			while (publisher.hasSubscribers()) {
+				Thread.sleep(10);
+			}
+			recorder.subscription.request(10);
+			Thread.sleep(100);
+			assertEquals(1, recorder.batchCount());
+			assertFalse(recorder.completed);
+			assertNull(recorder.error);
+			publisher.close();
+		});
+	}
+
+	@Test
+	public void anInvalidDocumentFailsAfterTheEventsBeforeTheError() {
+		assertTimeoutPreemptively(TIMEOUT, () -> {
+			String invalid = "<r><e>a</e><e>b</f>" + "<e>c</e>".repeat(5000) + "</r>";
+			SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+			FlowParser parser = processor(4);
+			publisher.subscribe(parser);
+			Recorder recorder = new Recorder();
+			parser.subscribe(recorder);
+			recorder.subscription.request(Long.MAX_VALUE);
+			split(invalid, 64).forEach(publisher::submit);
+
+			recorder.awaitEnd();
+			assertInstanceOf(ParserException.class, recorder.error);
+			assertFalse(recorder.completed);
+			// everything up to the mismatched end tag
+			List<String> events = recorder.events();
+			assertEquals("</f", events.get(events.size() - 1));
+			assertEquals(expected("<r><e>a</e><e>b</e></r>").subList(0, events.size() - 1),
+					events.subList(0, events.size() - 1));
+			// the processor stops reading once the parse has failed
+			while (publisher.hasSubscribers()) {
+				Thread.sleep(10);
+			}
+			publisher.close();
+		});
+	}
+
+	@Test
+	public void anUpstreamErrorIsPassedOn() {
+		assertTimeoutPreemptively(TIMEOUT, () -> {
+			SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+			FlowParser parser = processor(4);
+			publisher.subscribe(parser);
+			Recorder recorder = new Recorder();
+			parser.subscribe(recorder);
+			recorder.subscription.request(Long.MAX_VALUE);
+			split("<r><e>a</e><e>b</e>", 8).forEach(publisher::submit);
+			IOException failure = new IOException("connection reset");
+			publisher.closeExceptionally(failure);
+
+			recorder.awaitEnd();
+			assertSame(failure, recorder.error);
+			assertFalse(recorder.completed);
+		});
+	}
+
+	@Test
+	public void aSecondSubscriberIsRefused() {
+		assertTimeoutPreemptively(TIMEOUT, () -> {
+			SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<ByteBuffer>();
+			FlowParser parser = processor(4);
+			publisher.subscribe(parser);
+			Recorder first = new Recorder();
+			parser.subscribe(first);
+			Recorder second = new Recorder();
+			parser.subscribe(second);
+			second.awaitEnd();
+			assertInstanceOf(IllegalStateException.class, second.error);
+
+			first.subscription.request(Long.MAX_VALUE);
+			split("<a>b</a>", 3).forEach(publisher::submit);
+			publisher.close();
+			first.awaitEnd();
+			assertTrue(first.completed);
+			assertEquals(expected("<a>b</a>"), first.events());
+		});
+	}
+
+	@Test
+	public void aPublisherMaySignalFromCancel() {
+		assertTimeoutPreemptively(TIMEOUT, () -> {
+			AtomicBoolean cancelled = new AtomicBoolean();
+			FlowParser parser = processor(1);
+			// Signals the processor from cancel, on another thread, and waits for it
+			Flow.Publisher<ByteBuffer> publisher = subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+					subscriber.onNext(ByteBuffer.wrap("<a>b c d e</a>".getBytes(StandardCharsets.UTF_8)));
+				}
+
+				@Override
+				public void cancel() {
+					cancelled.set(true);
+					Thread signal = new Thread(() -> subscriber.onError(new IllegalStateException("cancelled")));
+					signal.start();
+					try {
+						signal.join();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			publisher.subscribe(parser);
+			Recorder recorder = new Recorder();
+			parser.subscribe(recorder);
+			recorder.subscription.request(1);
+			recorder.awaitBatches(1);
+			recorder.subscription.cancel();
+			assertTrue(cancelled.get());
+			Thread.sleep(100);
+			assertEquals(1, recorder.batchCount());
+			assertFalse(recorder.completed);
+			assertNull(recorder.error);
+		});
+	}
+
+	private static FlowParser processor(int batchSize) {
+		return new FlowParser(Limits.NONE, batchSize, task -> {
+			Thread thread = new Thread(task, "flow-parser-test");
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	/**
+	 * Splits a document's UTF-8 bytes into buffers of the given size.
+	 */
+	private static List<ByteBuffer> split(String document, int size) {
+		byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		for (int i = 0; i < bytes.length; i += size) {
+			buffers.add(ByteBuffer.wrap(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + size))));
+		}
+		return buffers;
+	}
+
+	/**
+	 * Parses a well-formed document directly and returns its events as
+	 * strings.
+	 */
+	private static List<String> expected(String document) throws Exception {
+		List<String> events = new ArrayList<String>();
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		parser.setListener(new ParseListener() {
+			@Override
+			public void startElement(String name) {
+				events.add(ParseEvent.startElement(name).toString());
+			}
+
+			@Override
+			public void attribute(String name, String value) {
+				events.add(ParseEvent.attribute(name, value).toString());
+			}
+
+			@Override
+			public boolean enterContent() {
+				return true;
+			}
+
+			@Override
+			public void data(String data) {
+				events.add(ParseEvent.data(data).toString());
+			}
+
+			@Override
+			public void endElement(String name) {
+				events.add(ParseEvent.endElement(name).toString());
+			}
+
+			@Override
+			public void reduce(Rule rule) {
+				events.add(ParseEvent.rule(rule).toString());
+			}
+
+			@Override
+			public boolean isDone() {
+				return false;
+			}
+		});
+		parser.parse(new Lexer(document).getTokenStream());
+		return events;
+	}
+
+	/**
+	 * Passes buffers on to the processor, counting them.
+	 */
+	private static class Counter implements Flow.Subscriber<ByteBuffer> {
+		final AtomicInteger buffers = new AtomicInteger();
+		private final FlowParser parser;
+
+		Counter(FlowParser parser) {
+			this.parser = parser;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			parser.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(ByteBuffer buffer) {
+			buffers.incrementAndGet();
+			parser.onNext(buffer);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			parser.onError(error);
+		}
+
+		@Override
+		public void onComplete() {
+			parser.onComplete();
+		}
+	}
+
+	/**
+	 * Records what a subscriber is given, requesting nothing by itself.
+	 */
+	private static class Recorder implements Flow.Subscriber<List<ParseEvent>> {
+		final List<List<ParseEvent>> batches = new ArrayList<List<ParseEvent>>();
+		final CountDownLatch ended = new CountDownLatch(1);
+		volatile Flow.Subscription subscription;
+		volatile boolean completed;
+		volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public synchronized void onNext(List<ParseEvent> batch) {
+			batches.add(batch);
+			notifyAll();
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+			ended.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+			ended.countDown();
+		}
+
+		synchronized int batchCount() {
+			return batches.size();
+		}
+
+		synchronized void awaitBatches(int count) throws InterruptedException {
+			while (batches.size() < count) {
+				wait();
+			}
+		}
+
+		void awaitEnd() throws InterruptedException {
+			assertTrue(ended.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+		}
+
+		synchronized List<String> events() {
+			List<String> events = new ArrayList<String>();
+			for (List<ParseEvent> batch : batches) {
+				for (ParseEvent event : batch) {
+					events.add(event.toString());
+				}
+			}
+			return events;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentGeneratorTest.java
+ */
+package org.aghannam.gen;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.aghannam.gen.DocumentGenerator.Defect;
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerException;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that generated documents are well-formed unless a defect is
+ * requested, and that a requested defect is always planted.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class DocumentGeneratorTest {
+	private static final long[] SIZES = { 0, 50, 2000 };
+	private static final int SEEDS = 300;
+
+	@Test
+	public void documentsWithoutDefectsAreWellFormed() {
+		for (long size : SIZES) {
+			for (int seed = 0; seed < SEEDS; seed++) {
+				String document = new DocumentGenerator().targetSize(size).seed(seed).generateString();
+				assertDoesNotThrow(() -> parse(document), "size " + size + ", seed " + seed);
+			}
+		}
+	}
+
+	@Test
+	public void everyDefectIsPlanted() {
+		for (Defect defect : Defect.values()) {
+			for (long size : SIZES) {
+				for (int seed = 0; seed < SEEDS; seed++) {
+					String document = new DocumentGenerator().targetSize(size).seed(seed).defect(defect)
+							.generateString();
+					assertThrows(Exception.class, () -> parse(document),
+							defect + ", size " + size + ", seed " + seed);
+				}
+			}
+		}
+	}
+
+	private static void parse(String document) throws LexerException, ParserException {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		parser.parse(new Lexer(document).getTokenStream());
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * CS 575: Project #2
+ * File: BudgetTest.java
+ */
+package org.aghannam.lex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.lex.Budget.Reason;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserAbortedException;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a step budget, a deadline and a cancellation token each abort
+ * both lexers and the parser with their own exception, within
+ * {@link Budget#CHECK_INTERVAL} steps, and that an unlimited budget never
+ * does.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class BudgetTest {
+	/* 6006 tokens, each matched on its own. */
+	private static final String DOCUMENT = "<r>" + "<a/>".repeat(2000) + "</r>";
+
+	@Test
+	public void anExhaustedStepBudgetAbortsAtTheLimit() throws Exception {
+		Budget budget = Budget.UNLIMITED.withMaxSteps(100);
+		LexerAbortedException e = assertThrows(LexerAbortedException.class,
+				() -> new Lexer(DOCUMENT, Limits.NONE, budget).getTokenStream());
+		assertEquals(Reason.STEPS, e.getReason());
+		assertEquals("Scanner error: Document needs more than 100 steps.", e.getMessage());
+
+		StreamingLexer lexer = new StreamingLexer(new StringReader(DOCUMENT), Limits.NONE, budget);
+		e = assertThrows(LexerAbortedException.class, () -> count(lexer));
+		assertEquals(Reason.STEPS, e.getReason());
+
+		ParserAbortedException p = assertThrows(ParserAbortedException.class,
+				() -> parser().parse(new Lexer(DOCUMENT).getTokenStream(), budget));
+		assertEquals(Reason.STEPS, p.getReason());
+		assertEquals("Parser error: Document needs more than 100 steps.", p.getMessage());
+	}
+
+	@Test
+	public void theStreamingLexerHandsOutTokensUpToTheStepLimit() throws Exception {
+		StreamingLexer lexer = new StreamingLexer(new StringReader(DOCUMENT), Limits.NONE,
+				Budget.UNLIMITED.withMaxSteps(100));
+		for (int i = 0; i < 100; i++) {
+			lexer.nextToken();
+		}
+		assertThrows(LexerAbortedException.class, () -> lexer.nextToken());
+	}
+
+	@Test
+	public void aPassedDeadlineAborts() throws Exception {
+		Budget budget = Budget.UNLIMITED.withTimeout(Duration.ZERO);
+		Thread.sleep(2);
+		LexerAbortedException e = assertThrows(LexerAbortedException.class,
+				() -> new Lexer(DOCUMENT, Limits.NONE, budget).getTokenStream());
+		assertEquals(Reason.DEADLINE, e.getReason());
+
+		StreamingLexer lexer = new StreamingLexer(new StringReader(DOCUMENT), Limits.NONE, budget);
+		int[] handedOut = new int[1];
+		e = assertThrows(LexerAbortedException.class, () -> {
+			while (lexer.nextToken() != null) {
+				handedOut[0]++;
+			}
+		});
+		assertEquals(Reason.DEADLINE, e.getReason());
+		assertTrue(handedOut[0] < Budget.CHECK_INTERVAL, handedOut[0] + " tokens");
+
+		ParserAbortedException p = assertThrows(ParserAbortedException.class,
+				() -> parser().parse(new Lexer(DOCUMENT).getTokenStream(), budget));
+		assertEquals(Reason.DEADLINE, p.getReason());
+	}
+
+	@Test
+	public void aCancelledTokenAbortsWithinTheCheckInterval() throws Exception {
+		CancellationToken cancelled = new CancellationToken();
+		cancelled.cancel();
+		LexerAbortedException e = assertThrows(LexerAbortedException.class,
+				() -> new Lexer(DOCUMENT, Limits.NONE, Budget.UNLIMITED.withCancellation(cancelled)).getTokenStream());
+		assertEquals(Reason.CANCELLED, e.getReason());
+
+		// Cancelled part-way through, the streaming lexer stops within the check interval
+		CancellationToken token = new CancellationToken();
+		StreamingLexer lexer = new StreamingLexer(new StringReader(DOCUMENT), Limits.NONE,
+				Budget.UNLIMITED.withCancellation(token));
+		int[] afterCancel = new int[1];
+		e = assertThrows(LexerAbortedException.class, () -> {
+			for (int i = 0; lexer.nextToken() != null; i++) {
+				if (i == 50) {
+					token.cancel();
+				} else if (i > 50) {
+					afterCancel[0]++;
+				}
+			}
+		});
+		assertEquals(Reason.CANCELLED, e.getReason());
+		assertTrue(afterCancel[0] <= Budget.CHECK_INTERVAL, afterCancel[0] + " tokens");
+
+		// And so does the parser, pulling from a lexer that is not cancelled
+		CancellationToken parse = new CancellationToken();
+		List<Token> tokens = new Lexer(DOCUMENT).getTokenStream();
+		int[] pulled = new int[1];
+		ParserAbortedException p = assertThrows(ParserAbortedException.class,
+				() -> parser().parse(() -> {
+					if (++pulled[0] == 50) {
+						parse.cancel();
+					}
+					return pulled[0] <= tokens.size() ? tokens.get(pulled[0] - 1) : null;
+				}, Budget.UNLIMITED.withCancellation(parse)));
+		assertEquals(Reason.CANCELLED, p.getReason());
+		assertTrue(pulled[0] - 50 <= Budget.CHECK_INTERVAL, pulled[0] + " tokens pulled");
+	}
+
+	@Test
+	public void anUnlimitedBudgetNeverAborts() throws Exception {
+		assertNull(Budget.UNLIMITED.check(0));
+		assertNull(Budget.UNLIMITED.check(Long.MAX_VALUE - 1));
+		String document = "<r>" + "<a/>".repeat(200000) + "</r>";
+		List<Token> tokens = new Lexer(document, Limits.NONE, Budget.UNLIMITED).getTokenStream();
+		assertEquals(600006, tokens.size());
+		assertEquals(600006, count(new StreamingLexer(new StringReader(document), Limits.NONE, Budget.UNLIMITED)));
+		parser().parse(tokens, Budget.UNLIMITED);
+	}
+
+	private static int count(StreamingLexer lexer) throws LexerException {
+		int count = 0;
+		while (lexer.nextToken() != null) {
+			count++;
+		}
+		return count;
+	}
+
+	private static Parser parser() {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		return parser;
+	}
+}
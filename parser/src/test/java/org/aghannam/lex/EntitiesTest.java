@@ -0,0 +1,40 @@
+/*
+ * CS 575: Project #2
+ * File: EntitiesTest.java
+ */
+package org.aghannam.lex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks how {@link Entities} decodes references, and which it keeps as they
+ * are written.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class EntitiesTest {
+
+	@Test
+	public void referencesAreDecoded() {
+		assertEquals("<>\"'&", Entities.decode("&lt;&gt;&quot;&apos;&amp;"));
+		assertEquals("\u00a9\u00b0", Entities.decode("&#169;&#x00B0;"));
+		assertEquals("\t\n\r \ud7ff\ue000\ufffd\ud83d\ude00",
+				Entities.decode("&#9;&#xA;&#13;&#32;&#xD7FF;&#xE000;&#xFFFD;&#x1F600;"));
+	}
+
+	@Test
+	public void malformedReferencesAreKept() {
+		assertEquals("&nbsp; &#; &#x; &#12a; &#x110000;", Entities.decode("&nbsp; &#; &#x; &#12a; &#x110000;"));
+	}
+
+	@Test
+	public void referencesToNonCharactersAreKept() {
+		assertEquals("&#0;", Entities.decode("&#0;"));
+		assertEquals("a&#x1F;b", Entities.decode("a&#x1F;b"));
+		assertEquals("&#xD800;&#xDFFF;", Entities.decode("&#xD800;&#xDFFF;"));
+		assertEquals("&#xFFFE;&#65535;", Entities.decode("&#xFFFE;&#65535;"));
+		assertEquals("&#55357;&#56832;", Entities.decode("&#55357;&#56832;"));
+	}
+}
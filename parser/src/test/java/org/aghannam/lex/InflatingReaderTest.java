@@ -0,0 +1,145 @@
+/*
+ * CS 575: Project #2
+ * File: InflatingReaderTest.java
+ */
+package org.aghannam.lex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.lex.Limits.Limit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link InflatingReader} decompresses gzip and zlib input and
+ * reads anything else, including text that starts like a zlib header, as it
+ * is, and that it limits the bytes read before they are decompressed.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class InflatingReaderTest {
+	/* Spans several chunks, with characters of one to four bytes. */
+	private static final String LARGE = "<a>" + "été € 😀 word ".repeat(20000) + "</a>";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void gzipIsDecompressed() throws IOException {
+		assertEquals(LARGE, read(gzip(LARGE)));
+		assertEquals("<a/>", read(gzip("<a/>")));
+	}
+
+	@Test
+	public void zlibIsDecompressedAtEveryLevel() throws IOException {
+		for (int level : new int[] { 1, 2, 6, 9 }) {
+			assertEquals(LARGE, read(zlib(LARGE, level)));
+		}
+	}
+
+	@Test
+	public void textThatLooksLikeAZlibHeaderIsReadAsItIs() throws IOException {
+		// "x " and "x}" make a multiple of 31, as a zlib header does
+		for (String text : new String[] { "x <a/>", "x?", "x}", "x", "" }) {
+			assertEquals(text, read(text.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	@Test
+	public void truncatedInputIsAReadError() {
+		byte[] compressed = gzip(LARGE);
+		byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+		assertThrows(IOException.class, () -> read(truncated));
+	}
+
+	@Test
+	public void compressedFilesAreRecognized() throws IOException {
+		assertTrue(InflatingReader.isCompressed(write("a.xml.gz", gzip("<a/>"))));
+		assertTrue(InflatingReader.isCompressed(write("a.xml.z", zlib("<a/>", Deflater.DEFAULT_COMPRESSION))));
+		assertFalse(InflatingReader.isCompressed(write("a.xml", "<a/>".getBytes(StandardCharsets.UTF_8))));
+		assertFalse(InflatingReader.isCompressed(write("x.xml", "x <a/>".getBytes(StandardCharsets.UTF_8))));
+		assertFalse(InflatingReader.isCompressed(write("empty.xml", new byte[0])));
+	}
+
+	@Test
+	public void theBytesReadAreLimitedBeforeDecompression() throws IOException {
+		byte[] plain = LARGE.getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = gzip(LARGE);
+		assertEquals(Limit.INPUT_BYTES, lexFailure(plain, Limits.NONE.withMaxInputBytes(plain.length - 1)));
+		assertEquals(Limit.INPUT_BYTES, lexFailure(compressed, Limits.NONE.withMaxInputBytes(compressed.length - 1)));
+		// within the limit on bytes, compressed or not
+		assertNull(lexFailure(plain, Limits.NONE.withMaxInputBytes(plain.length)));
+		assertNull(lexFailure(compressed, Limits.NONE.withMaxInputBytes(compressed.length)));
+		// what the compressed bytes inflate to is limited in characters
+		assertEquals(Limit.INPUT_LENGTH, lexFailure(compressed,
+				Limits.NONE.withMaxInputBytes(compressed.length).withMaxInputLength(LARGE.length() / 2)));
+	}
+
+	/**
+	 * Lexes a document read with the given limits, and returns the limit it
+	 * exceeds, or <code>null</code> if it is within them.
+	 */
+	private static Limit lexFailure(byte[] input, Limits limits) throws IOException {
+		try (Reader in = InflatingReader.open(new ByteArrayInputStream(input), limits)) {
+			StreamingLexer lexer = new StreamingLexer(in, limits);
+			while (lexer.nextToken() != null) {
+				// scan on
+			}
+			return null;
+		} catch (LexerLimitException e) {
+			return e.getLimit();
+		} catch (LexerException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static String read(byte[] input) throws IOException {
+		StringWriter out = new StringWriter();
+		try (Reader in = InflatingReader.open(new ByteArrayInputStream(input))) {
+			in.transferTo(out);
+		}
+		return out.toString();
+	}
+
+	private static byte[] gzip(String text) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(text.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] zlib(String text, int level) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, new Deflater(level))) {
+			out.write(text.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private Path write(String name, byte[] content) throws IOException {
+		return Files.write(directory.resolve(name), content);
+	}
+}
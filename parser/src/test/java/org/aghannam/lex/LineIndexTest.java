@@ -0,0 +1,106 @@
+/*
+ * CS 575: Project #2
+ * File: LineIndexTest.java
+ */
+package org.aghannam.lex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link LineIndex} numbers lines and columns after every kind
+ * of line break, and that lexer and parser errors are located on the right
+ * line and column by both lexers.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class LineIndexTest {
+
+	@Test
+	public void eachKindOfLineBreakStartsALine() {
+		for (String lineBreak : new String[] { "\n", "\r", "\r\n" }) {
+			String text = "ab" + lineBreak + "c" + lineBreak + lineBreak + "d";
+			LineIndex index = LineIndex.of(text);
+			int c = text.indexOf('c');
+			int d = text.indexOf('d');
+			assertEquals("line 1, column 1", index.describe(0));
+			assertEquals("line 1, column 3", index.describe(2)); // the break itself ends its line
+			assertEquals("line 2, column 1", index.describe(c));
+			assertEquals("line 3, column 1", index.describe(c + 1 + lineBreak.length()));
+			assertEquals("line 4, column 1", index.describe(d));
+		}
+		// \r\n is a single break, its \n still on the line it ends
+		assertEquals("line 1, column 4", LineIndex.of("ab\r\nc").describe(3));
+	}
+
+	@Test
+	public void offsetsAtAndPastTheEndAreOnTheLastLine() {
+		LineIndex index = LineIndex.of("ab\ncd");
+		assertEquals("line 2, column 3", index.describe(5));
+		assertEquals("line 2, column 6", index.describe(8));
+		assertEquals("line 2, column 1", LineIndex.of("ab\r").describe(3)); // a break at the very end starts a line
+	}
+
+	@Test
+	public void anEmptyDocumentHasOneLine() {
+		LineIndex index = LineIndex.of("");
+		assertEquals(1, index.getLine(0));
+		assertEquals(1, index.getColumn(0));
+		assertEquals("end of document", index.describe(-1));
+	}
+
+	@Test
+	public void lexerErrorsAreLocated() {
+		String document = "<a>\r\n<b*c/></a>";
+		LexerException e = assertThrows(LexerException.class, () -> new Lexer(document).getTokenStream());
+		assertEquals(6, e.getOffset());
+		assertEquals("line 2, column 2", new Lexer(document).getLineIndex().describe(e.getOffset()));
+
+		StreamingLexer lexer = new StreamingLexer(new StringReader(document));
+		e = assertThrows(LexerException.class, () -> {
+			while (lexer.nextToken() != null) {
+				// scan up to the error
+			}
+		});
+		assertEquals("line 2, column 2", lexer.locate(e.getOffset()));
+	}
+
+	@Test
+	public void parserErrorsAreLocated() throws LexerException {
+		String document = "<a>\n<b>\n</c>\n</a>";
+		ParserException e = assertThrows(ParserException.class, () -> parser().parse(new Lexer(document).getTokenStream()));
+		assertEquals("line 3, column 3", new Lexer(document).getLineIndex().describe(e.getOffset()));
+
+		StreamingLexer lexer = new StreamingLexer(new StringReader(document));
+		e = assertThrows(ParserException.class, () -> parser().parse(lexer));
+		assertEquals("line 3, column 3", lexer.locate(e.getOffset()));
+	}
+
+	@Test
+	public void theStreamingLexerCountsTheLinesItHasDiscarded() throws LexerException {
+		String document = "<a>" + "w\r\n".repeat(100000) + "</b>";
+		StreamingLexer lexer = new StreamingLexer(new StringReader(document));
+		ParserException e = assertThrows(ParserException.class, () -> parser().parse(lexer));
+		assertEquals("line 100001, column 3", lexer.locate(e.getOffset()));
+		assertEquals("line 100001, column 3", LineIndex.of(document).describe(e.getOffset()));
+		assertNull(lexer.locate(0)); // long since discarded with the window
+
+		StreamingLexer resumed = new StreamingLexer(new StringReader("b/>"), Limits.NONE, Budget.UNLIMITED, 10, 2, "<a><");
+		resumed.nextToken();
+		assertNull(resumed.locate(10)); // the lines before it started are not known
+	}
+
+	private static Parser parser() {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		return parser;
+	}
+}
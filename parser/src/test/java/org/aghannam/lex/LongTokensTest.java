@@ -0,0 +1,147 @@
+/*
+ * CS 575: Project #2
+ * File: LongTokensTest.java
+ */
+package org.aghannam.lex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that long runs of DATA and long tokens are scanned without
+ * overflowing the stack or taking quadratic time, by both lexers, and that
+ * the DATA limit applies to each word.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class LongTokensTest {
+
+	@Test
+	public void dataLimitAppliesToEachWord() throws LexerException {
+		Limits limits = Limits.NONE.withMaxDataLength(4);
+		assertEquals(12, lexBoth("<a>aa bb cc dd ee ff</a>", limits).size());
+
+		LexerLimitException e = assertThrows(LexerLimitException.class,
+				() -> new Lexer("<a>aa bb ccccc</a>", limits).getTokenStream());
+		assertEquals(Limits.Limit.DATA_LENGTH, e.getLimit());
+		assertEquals(9, e.getOffset());
+	}
+
+	@Test
+	public void longTextIsWithinTheDefaultLimits() throws LexerException {
+		String document = "<a>" + "word ".repeat(20000) + "</a>";
+		assertEquals(20006, lexBoth(document, Limits.DEFAULT).size());
+	}
+
+	@Test
+	public void longTokensDoNotOverflowTheStack() throws LexerException {
+		assertEquals(20006, lexBoth("<a>" + "word ".repeat(20000) + "</a>", Limits.NONE).size());
+		assertEquals(20006, lexBoth("<a>" + "&amp; ".repeat(20000) + "</a>", Limits.NONE).size());
+		assertEquals(7, lexBoth("<a>" + "x".repeat(100000) + "</a>", Limits.NONE).size());
+		assertEquals(6, lexBoth("<a k='" + "x".repeat(100000) + "'/>", Limits.NONE).size());
+		assertEquals(6, lexBoth("<" + "n".repeat(100000) + "></" + "n".repeat(100000) + ">", Limits.NONE).size());
+	}
+
+	@Test
+	public void longRunsOfDataAreScannedInLinearTime() {
+		// Each word used to copy the whole run, which took minutes here
+		String document = "<a>" + "word ".repeat(200000) + "</a>";
+		assertTimeoutPreemptively(Duration.ofSeconds(20),
+				() -> assertEquals(200006, lexBoth(document, Limits.NONE).size()));
+	}
+
+	@Test
+	public void longRunsOfDataAreStreamedInLinearTime() {
+		// A run used to be matched again from its start each time the window was refilled
+		String document = "<a>" + "word ".repeat(3000000) + "</a>"; // 15 MB
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			StreamingLexer lexer = new StreamingLexer(new StringReader(document), Limits.DEFAULT);
+			long count = 0;
+			while (lexer.nextToken() != null) {
+				count++;
+			}
+			assertEquals(3000006, count);
+		});
+	}
+
+	@Test
+	public void runsLongerThanTheWindowAreSplitAsWhenReadWhole() throws LexerException {
+		String words = "a=b c= &amp; &#x41; x\ty\r\nz ";
+		String document = "<a>" + words.repeat(10000) + "x".repeat(70000) + " " + words.repeat(10000) + "=</a>";
+		assertEquals(140008, lexBoth(document, Limits.NONE).size());
+	}
+
+	@Test
+	public void aRunOfWordsStopsAtTheTokenLimit() {
+		LexerLimitException e = assertThrows(LexerLimitException.class,
+				() -> new Lexer("<a>" + "w ".repeat(1000) + "</a>", Limits.NONE.withMaxTokens(10)).getTokenStream());
+		assertEquals(Limits.Limit.TOKENS, e.getLimit());
+		assertEquals(17, e.getOffset()); // the eighth word, the eleventh token
+	}
+
+	@Test
+	public void endlessInputIsStoppedQuicklyUnderTheDefaultLimits() {
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			assertEquals(Limits.Limit.TOKENS, streamUntilStopped("w "));
+			assertEquals(Limits.Limit.DATA_LENGTH, streamUntilStopped("w"));
+			assertEquals(Limits.Limit.INPUT_LENGTH, streamUntilStopped(" "));
+		});
+	}
+
+	/**
+	 * Streams a document whose root element's content repeats the given text
+	 * without end, and returns the limit that stops it.
+	 */
+	private static Limits.Limit streamUntilStopped(String content) {
+		Reader endless = new Reader() {
+			private long read;
+
+			@Override
+			public int read(char[] buffer, int from, int length) {
+				for (int i = 0; i < length; i++, read++) {
+					buffer[from + i] = read < 3 ? "<a>".charAt((int) read)
+							: content.charAt((int) (read % content.length()));
+				}
+				return length;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		StreamingLexer lexer = new StreamingLexer(endless, Limits.DEFAULT);
+		return assertThrows(LexerLimitException.class, () -> {
+			while (lexer.nextToken() != null) {
+				// keep reading
+			}
+		}).getLimit();
+	}
+
+	/**
+	 * Scans a document with both lexers, checks that they agree, and returns
+	 * the tokens.
+	 */
+	private static List<Token> lexBoth(String document, Limits limits) throws LexerException {
+		List<Token> tokens = new Lexer(document, limits).getTokenStream();
+		List<Token> streamed = new ArrayList<Token>();
+		StreamingLexer lexer = new StreamingLexer(new StringReader(document), limits);
+		for (Token token = lexer.nextToken(); token != null; token = lexer.nextToken()) {
+			streamed.add(token);
+		}
+		assertEquals(tokens.size(), streamed.size());
+		for (int i = 0; i < tokens.size(); i++) {
+			assertEquals(tokens.get(i).getLexeme(), streamed.get(i).getLexeme());
+			assertEquals(tokens.get(i).getOffset(), streamed.get(i).getOffset());
+		}
+		return tokens;
+	}
+}
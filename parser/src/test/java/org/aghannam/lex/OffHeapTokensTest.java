@@ -0,0 +1,109 @@
+/*
+ * CS 575: Project #2
+ * File: OffHeapTokensTest.java
+ */
+package org.aghannam.lex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.gen.DocumentGenerator;
+
+import java.io.StringReader;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link OffHeapTokens} gives back the tokens it was given,
+ * including lexemes that span its chunks, and that closing it frees its
+ * memory.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class OffHeapTokensTest {
+	@Test
+	public void tokensAreReadBackAsTheyWereStored() throws LexerException {
+		// Several chunks of records and of characters
+		String document = new DocumentGenerator().targetSize(3 << 20).seed(5).generateString();
+		List<Token> expected = new Lexer(document).getTokenStream();
+		try (OffHeapTokens tokens = OffHeapTokens.load(new StreamingLexer(new StringReader(document)))) {
+			assertEquals(expected.size(), tokens.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertSameToken(expected.get(i), tokens.get(i));
+			}
+			// and again, through independent sources
+			TokenSource first = tokens.newSource();
+			TokenSource second = tokens.newSource();
+			for (Token token : expected) {
+				assertSameToken(token, first.nextToken());
+				assertSameToken(token, second.nextToken());
+			}
+			assertNull(first.nextToken());
+		}
+	}
+
+	@Test
+	public void lexemesLongerThanAChunkAreReadBackWhole() throws LexerException {
+		List<Token> expected = new ArrayList<Token>();
+		StringBuilder text = new StringBuilder();
+		for (int length : new int[] { 0, 1, 100_000, 300_000, 7, 600_000, 3 }) {
+			while (text.length() < length) {
+				text.append("é€😀x");
+			}
+			expected.add(new Token(Lexer.TokenType.DATA, text.substring(0, length), expected.size()));
+		}
+		try (OffHeapTokens tokens = OffHeapTokens.of(expected)) {
+			for (int i = 0; i < expected.size(); i++) {
+				assertSameToken(expected.get(i), tokens.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void closingFreesTheMemory() {
+		BufferPoolMXBean direct = directPool();
+		List<Token> list = new ArrayList<Token>();
+		for (int i = 0; i < 100_000; i++) {
+			list.add(new Token(Lexer.TokenType.NAME, "name" + i, i * 10L));
+		}
+		long before = direct.getMemoryUsed();
+		OffHeapTokens tokens = OffHeapTokens.of(list);
+		long used = tokens.getMemoryUsed();
+		assertTrue(used > 0);
+		assertTrue(direct.getMemoryUsed() - before >= used);
+		tokens.close();
+		assertEquals(0, tokens.getMemoryUsed());
+		assertTrue(direct.getMemoryUsed() - before < used, "freed " + (before + used - direct.getMemoryUsed()));
+		assertThrows(IllegalStateException.class, () -> tokens.get(0));
+		tokens.close(); // again, to no effect
+	}
+
+	@Test
+	public void indexesOutsideTheStoreAreRejected() {
+		try (OffHeapTokens tokens = OffHeapTokens.of(List.of(new Token(Lexer.TokenType.OPEN, "<", 0)))) {
+			assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(-1));
+			assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(1));
+		}
+	}
+
+	private static void assertSameToken(Token expected, Token actual) {
+		assertEquals(expected.getType(), actual.getType());
+		assertEquals(expected.getLexeme(), actual.getLexeme());
+		assertEquals(expected.getOffset(), actual.getOffset());
+	}
+
+	private static BufferPoolMXBean directPool() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				return pool;
+			}
+		}
+		throw new AssertionError("No direct buffer pool.");
+	}
+}
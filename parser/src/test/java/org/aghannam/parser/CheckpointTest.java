@@ -0,0 +1,124 @@
+/*
+ * CS 575: Project #2
+ * File: CheckpointTest.java
+ */
+package org.aghannam.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.schema.Schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a document that grows by children appended to its root can be
+ * parsed a part at a time from serialized checkpoints, with the same outcome
+ * and derivation as parsing it whole, and that checkpoints stay small.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class CheckpointTest {
+
+	@Test
+	public void aGrowingFeedParsesAsTheWholeDocumentWould() throws Exception {
+		StringBuilder document = new StringBuilder("<feed title='été'>");
+		ByteArrayOutputStream parts = new ByteArrayOutputStream();
+		Checkpoint checkpoint = null;
+		int size = -1;
+		for (int i = 0; i < 200; i++) {
+			int from = document.length();
+			document.append("<item n='").append(i).append("'>entry ").append(i).append(" — ").append("x".repeat(i % 7))
+					.append("</item>\n");
+			// the last item is cut short, and left for the next part
+			String available = document.toString() + (i % 3 == 0 ? "<item n='next" : "");
+			Parser parser = parser(parts);
+			String appended = available.substring(checkpoint == null ? 0 : (int) checkpoint.getOffset());
+			checkpoint = Checkpoint.fromBytes(parser.parseAvailable(new StringReader(appended), checkpoint).toBytes());
+			assertTrue(checkpoint.getOffset() >= from);
+			assertEquals(1, checkpoint.getDepth());
+			// the items before it are reduced away, so the checkpoint does not grow
+			assertTrue(size < 0 || size == checkpoint.toBytes().length, "item " + i);
+			size = checkpoint.toBytes().length;
+		}
+		document.append("</feed>");
+		parser(parts).finish(new StringReader(document.substring((int) checkpoint.getOffset())), checkpoint);
+
+		ByteArrayOutputStream whole = new ByteArrayOutputStream();
+		parser(whole).parse(new StreamingLexer(new StringReader(document.toString())));
+		assertEquals(whole.toString(StandardCharsets.UTF_8), parts.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void aCheckpointRecordsWhereAndHowDeepTheParseStopped() throws Exception {
+		String available = "<a x='€'><b>é</b><c>text<e";
+		Checkpoint checkpoint = parser(null).parseAvailable(new StringReader(available), null);
+		int end = available.indexOf("text");
+		assertEquals(end, checkpoint.getOffset());
+		assertEquals(available.substring(0, end).getBytes(StandardCharsets.UTF_8).length, checkpoint.getByteOffset());
+		assertEquals(2, checkpoint.getDepth());
+		// < a x = '€' > < b > é </ b > < c >
+		assertEquals(16, checkpoint.getTokenCount());
+	}
+
+	@Test
+	public void aSerializedCheckpointResumesAsTheOriginal() throws Exception {
+		String document = "<a><b>one</b><c k='v'><d/>two</c><e/></a>";
+		Checkpoint checkpoint = parser(null).parseAvailable(new StringReader(document.substring(0, 20)), null);
+		Checkpoint copy = Checkpoint.fromBytes(checkpoint.toBytes());
+		assertArrayEquals(checkpoint.toBytes(), copy.toBytes());
+		assertTrue(checkpoint.hasSameState(copy));
+		assertEquals(checkpoint.getOffset(), copy.getOffset());
+		assertEquals(checkpoint.getByteOffset(), copy.getByteOffset());
+		assertEquals(checkpoint.getTokenCount(), copy.getTokenCount());
+		parser(null).finish(new StringReader(document.substring((int) copy.getOffset())), copy);
+	}
+
+	@Test
+	public void errorsAfterACheckpointAreReportedAtTheirOffsetInTheDocument() throws Exception {
+		String document = "<a><b>one</b><c>two</d></a>";
+		Checkpoint checkpoint = parser(null).parseAvailable(new StringReader(document.substring(0, 16)), null);
+		ParserException e = assertThrows(ParserException.class,
+				() -> parser(null).finish(new StringReader(document.substring((int) checkpoint.getOffset())), checkpoint));
+		assertEquals("Syntax error: End tag name mismatch. Expected 'c' but found 'd'.", e.getMessage());
+		assertEquals(document.indexOf("d>"), e.getOffset());
+	}
+
+	@Test
+	public void anythingButACheckpointIsRejected() throws Exception {
+		byte[] bytes = parser(null).parseAvailable(new StringReader("<a><b/>"), null).toBytes();
+		assertThrows(IllegalArgumentException.class, () -> Checkpoint.fromBytes(new byte[0]));
+		assertThrows(IllegalArgumentException.class, () -> Checkpoint.fromBytes("<a><b/>".getBytes(StandardCharsets.UTF_8)));
+		for (int length = 0; length < bytes.length; length++) {
+			byte[] truncated = Arrays.copyOf(bytes, length);
+			assertThrows(IllegalArgumentException.class, () -> Checkpoint.fromBytes(truncated), length + " bytes");
+		}
+	}
+
+	@Test
+	public void checkpointsCannotBeUsedWithAListenerOrSchema() {
+		Parser parser = parser(null);
+		parser.setSchema(new Schema.Builder().element("a").root("a").build());
+		assertThrows(IllegalStateException.class, () -> parser.parseAvailable(new StringReader("<a>"), null));
+		assertThrows(IllegalStateException.class, () -> parser.finish(new StringReader("<a/>"), null));
+	}
+
+	/**
+	 * Returns a parser that prints its derivation to the given stream, or
+	 * nothing if it is <code>null</code>.
+	 */
+	private static Parser parser(ByteArrayOutputStream derivation) {
+		Parser parser = new Parser();
+		parser.setOutput(derivation == null ? null : new PrintStream(derivation, true, StandardCharsets.UTF_8));
+		return parser;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentStreamTest.java
+ */
+package org.aghannam.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.gen.DocumentGenerator.Defect;
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link Parser#parseDocuments(org.aghannam.lex.TokenSource, Budget, DocumentHandler)}
+ * finds where each of a stream of concatenated documents starts and ends,
+ * and reports each as a parse of it alone would.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class DocumentStreamTest {
+	private static final String UNEXPECTED = "Syntax error: An unexpected symbol has been encountered!";
+	private static final String UNDERFLOW = "Syntax error: A syntax error has caused a stack underflow.";
+
+	@Test
+	public void eachDocumentEndsWithItsRoot() throws Exception {
+		assertEquals(List.of("0", "4", "13", "30"),
+				documents("<a/><b>t</b>\n<c x=\"v\"><d/></c><e><e/></e>", Limits.NONE));
+	}
+
+	@Test
+	public void whitespaceAndCommentsBetweenDocumentsAreSkipped() throws Exception {
+		assertEquals(List.of("0", "16"), documents("<a/> <!-- c --> <b/>", Limits.NONE));
+		assertEquals(List.of("2"), documents("  <a>t</a>\n\n", Limits.NONE));
+	}
+
+	@Test
+	public void anInvalidDocumentIsSkippedToTheNextDocument() throws Exception {
+		assertEquals(List.of("0 Syntax error: End tag name mismatch. Expected 'b' but found 'c'. @8", "14"),
+				documents("<a><b></c></a><d/>", Limits.NONE));
+		// the rest of the invalid document is skipped up to a tag outside any element
+		assertEquals(List.of("0 " + UNEXPECTED + " @5", "17"), documents("<a><b<c/></b></a><d/>", Limits.NONE));
+		assertEquals(List.of("0", "4 " + UNEXPECTED + " @-1"), documents("<a/><b", Limits.NONE));
+	}
+
+	@Test
+	public void anythingElseBetweenDocumentsIsAnInvalidDocument() throws Exception {
+		assertEquals(List.of("0", "4 " + UNDERFLOW + " @4", "8"), documents("<a/>junk<b/>", Limits.NONE));
+		assertEquals(List.of("0", "4 " + UNDERFLOW + " @4", "8"), documents("<a/></x><b/>", Limits.NONE));
+	}
+
+	@Test
+	public void limitsApplyToEachDocument() throws Exception {
+		String stream = "<a><a><a/></a></a><b><b><b><b/></b></b></b><c/>";
+		assertEquals(List.of("0", "18 Parser error: Elements are nested more than 3 deep. @28", "43"),
+				documents(stream, Limits.NONE.withMaxDepth(3)));
+	}
+
+	@Test
+	public void theHandlerCanStopTheStream() throws Exception {
+		Parser parser = parser(Limits.NONE);
+		List<Long> seen = new ArrayList<Long>();
+		long count = parser.parseDocuments(new StreamingLexer(new StringReader("<a/><b/><c/>")), Budget.UNLIMITED,
+				(index, offset, error) -> {
+					seen.add(offset);
+					return index < 1;
+				});
+		assertEquals(2, count);
+		assertEquals(List.of(0L, 4L), seen);
+	}
+
+	@Test
+	public void aScanningErrorEndsTheStreamAfterTheDocumentsBeforeIt() {
+		List<String> seen = new ArrayList<String>();
+		Parser parser = parser(Limits.NONE);
+		assertThrows(LexerException.class,
+				() -> parser.parseDocuments(new StreamingLexer(new StringReader("<a/><b/><c>a&b</c><d/>")),
+						Budget.UNLIMITED, (index, offset, error) -> seen.add(String.valueOf(offset))));
+		assertEquals(List.of("0", "4"), seen);
+	}
+
+	@Test
+	public void aScanningErrorInTheSkippedRestOfADocumentEndsTheStream() {
+		List<String> seen = new ArrayList<String>();
+		Parser parser = parser(Limits.NONE);
+		assertThrows(LexerException.class,
+				() -> parser.parseDocuments(new StreamingLexer(new StringReader("<a/><b></c>a&b</b><d/>")),
+						Budget.UNLIMITED, (index, offset, error) -> seen.add(String.valueOf(offset))));
+		assertEquals(List.of("0", "4"), seen);
+	}
+
+	@Test
+	public void eachDocumentIsReportedAsAParseOfItAloneWould() throws Exception {
+		StringBuilder stream = new StringBuilder();
+		List<String> expected = new ArrayList<String>();
+		Defect[] defects = { null, Defect.MISMATCHED_END_TAG, Defect.DUPLICATE_ATTRIBUTE, null };
+		for (int seed = 0; seed < 40; seed++) {
+			DocumentGenerator generator = new DocumentGenerator().targetSize(1000).seed(seed);
+			Defect defect = defects[seed % defects.length];
+			String document = (defect == null ? generator : generator.defect(defect)).generateString();
+			expected.add(alone(document, stream.length()));
+			stream.append(document).append(seed % 3 == 0 ? "\n" : "");
+		}
+		assertEquals(expected, documents(stream.toString(), Limits.NONE));
+	}
+
+	@Test
+	public void aStreamOfDocumentsWithoutAttributesIsParsedWithoutAllocating() throws Exception {
+		List<Token> tokens = new Lexer("<a><b>t</b><c/></a>".repeat(10000)).getTokenStream();
+		Parser parser = parser(Limits.NONE);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long allocated = Long.MAX_VALUE;
+		for (int run = 0; run < 20; run++) { // the best of several, once compiled
+			Iterator<Token> source = tokens.iterator();
+			long before = threads.getCurrentThreadAllocatedBytes();
+			long count = parser.parseDocuments(() -> source.hasNext() ? source.next() : null, Budget.UNLIMITED,
+					(index, offset, error) -> error == null);
+			allocated = Math.min(allocated, threads.getCurrentThreadAllocatedBytes() - before);
+			assertEquals(10000, count);
+		}
+		assertTrue(allocated < 10000, allocated + " bytes for 10000 documents");
+	}
+
+	/**
+	 * Parses a document on its own, and describes the outcome as
+	 * {@link #documents(String, Limits)} would if it started at the given
+	 * offset in a stream.
+	 */
+	private static String alone(String document, int at) throws LexerException {
+		try {
+			parser(Limits.NONE).parse(new StreamingLexer(new StringReader(document)));
+			return String.valueOf(at);
+		} catch (ParserException e) {
+			return at + " " + e.getMessage() + " @" + (at + e.getOffset());
+		}
+	}
+
+	/**
+	 * Parses a stream of documents and returns, for each, the offset it
+	 * starts at followed by its error and the error's offset, if any.
+	 */
+	private static List<String> documents(String stream, Limits limits) throws Exception {
+		List<String> documents = new ArrayList<String>();
+		Parser parser = parser(limits);
+		long count = parser.parseDocuments(new StreamingLexer(new StringReader(stream)), Budget.UNLIMITED,
+				(index, offset, error) -> {
+					assertEquals(documents.size(), index);
+					documents.add(error == null ? String.valueOf(offset)
+							: offset + " " + error.getMessage() + " @" + error.getOffset());
+					return true;
+				});
+		assertEquals(documents.size(), count);
+		return documents;
+	}
+
+	private static Parser parser(Limits limits) {
+		Parser parser = new Parser(limits);
+		parser.setOutput(null);
+		return parser;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * CS 575: Project #2
+ * File: ErrorRecoveryTest.java
+ */
+package org.aghannam.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.gen.DocumentGenerator.Defect;
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a parser recovering from syntax errors reports each of them
+ * once, where it is, and that the first is the one a parse without recovery
+ * stops at.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class ErrorRecoveryTest {
+	private static final String DUPLICATE = "Syntax error: Duplicate attribute name 'x' within current tag.";
+	private static final String UNEXPECTED = "Syntax error: An unexpected symbol has been encountered!";
+	private static final String UNDERFLOW = "Syntax error: A syntax error has caused a stack underflow.";
+
+	@Test
+	public void everyPlantedErrorIsReported() throws LexerException {
+		String document = "<r><a x=\"1\" x=\"2\">t</a><b>u</c><d>v</d><e = ></e><f>w</f></r>";
+		assertEquals(List.of(DUPLICATE + " @12", mismatch("b", "c") + " @29", UNEXPECTED + " @42",
+				mismatch("b", "r") + " @59"), errors(document, 10));
+	}
+
+	@Test
+	public void aTokenThatFailsAgainIsReportedOnce() throws LexerException {
+		assertEquals(List.of(UNDERFLOW + " @0", mismatch("b", "r") + " @12"), errors("</a><r><b></r>", 10));
+		assertEquals(List.of(UNDERFLOW + " @0"), errors("/><r/>", 10));
+	}
+
+	@Test
+	public void recoveryStopsAtTheMaximum() throws LexerException {
+		String document = "<r><a></b><c></d><e></f></r>";
+		assertEquals(3, errors(document, 3).size());
+		assertEquals(List.of(mismatch("a", "b") + " @8"), errors(document, 1).subList(0, 1));
+	}
+
+	@Test
+	public void wellFormedDocumentsHaveNoErrors() throws LexerException {
+		assertEquals(List.of(), errors("<r><a x=\"1\">t</a><b/></r>", 10));
+	}
+
+	@Test
+	public void theFirstErrorIsTheOneFoundWithoutRecovery() throws LexerException {
+		List<String> documents = new ArrayList<String>(List.of("</a>", "/>", "<r></r>t", "<r></r><s/>", "<r"));
+		for (Defect defect : new Defect[] { Defect.MISMATCHED_END_TAG, Defect.DUPLICATE_ATTRIBUTE,
+				Defect.MISSING_END_TAG }) {
+			for (int seed = 0; seed < 50; seed++) {
+				documents.add(new DocumentGenerator().targetSize(2000).seed(seed).defect(defect).generateString());
+			}
+		}
+		for (String document : documents) {
+			Parser plain = parser(1);
+			ParserException expected = assertThrows(ParserException.class,
+					() -> plain.parse(new Lexer(document).getTokenStream()));
+			Parser recovering = parser(5);
+			ParserException first = assertThrows(ParserException.class,
+					() -> recovering.parse(new Lexer(document).getTokenStream()));
+			List<ParserException> errors = recovering.getErrors();
+			assertTrue(!errors.isEmpty() && errors.size() <= 5, document);
+			assertSame(errors.get(0), first);
+			assertEquals(expected.getMessage(), first.getMessage(), document);
+			assertEquals(expected.getOffset(), first.getOffset(), document);
+		}
+	}
+
+	private static String mismatch(String expected, String found) {
+		return "Syntax error: End tag name mismatch. Expected '" + expected + "' but found '" + found + "'.";
+	}
+
+	/**
+	 * Parses a document, collecting up to the given number of errors, and
+	 * returns each error's message and offset.
+	 */
+	private static List<String> errors(String document, int maxErrors) throws LexerException {
+		Parser parser = parser(maxErrors);
+		List<String> errors = new ArrayList<String>();
+		try {
+			parser.parse(new Lexer(document).getTokenStream());
+		} catch (ParserException e) {
+			if (maxErrors == 1) {
+				errors.add(e.getMessage() + " @" + e.getOffset());
+			}
+			for (ParserException error : parser.getErrors()) {
+				errors.add(error.getMessage() + " @" + error.getOffset());
+			}
+		}
+		return errors;
+	}
+
+	private static Parser parser(int maxErrors) {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		parser.setMaxErrors(maxErrors);
+		return parser;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * CS 575: Project #2
+ * File: IncrementalParserTest.java
+ */
+package org.aghannam.parser;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that re-parsing a document after each edit has the outcome of a
+ * full parse of the edited document, and that an edit re-parses only around
+ * itself.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class IncrementalParserTest {
+	/* Text inserted by random edits: tags, words, and pieces of tags. */
+	private static final String[] INSERTS = { "<a>", "</a>", "<b x=\"1\"/>", "word", " ", "<c>t</c>", "<", ">", "/>",
+			"=", "\"v\"", "</", "<!-- c -->", "&amp;" };
+
+	@Test
+	public void randomEditsParseAsAFullParseWould() throws Exception {
+		for (Limits limits : new Limits[] { Limits.NONE, Limits.DEFAULT, Limits.NONE.withMaxDepth(5) }) {
+			edit(limits, 1, 400);
+		}
+	}
+
+	@Test
+	public void editsNearTheLimitsParseAsAFullParseWould() throws Exception {
+		String document = new DocumentGenerator().targetSize(30000).seed(7).generateString();
+		int tokens = tokenCount(document);
+		Limits limits = Limits.NONE.withMaxTokens(tokens + 20).withMaxInputLength(document.length() + 100);
+		Set<String> outcomes = edit(limits, 7, 200);
+		assertTrue(outcomes.contains("LexerLimitException"), outcomes.toString());
+		assertTrue(outcomes.contains("valid"), outcomes.toString());
+	}
+
+	@Test
+	public void anEditReusesTheRestOfTheDocument() throws Exception {
+		for (Limits limits : new Limits[] { Limits.NONE, Limits.DEFAULT }) {
+			String document = "<r>" + "<e k=\"v\">some words here</e>".repeat(10000) + "</r>";
+			IncrementalParser parser = new IncrementalParser(limits);
+			parser.parse(document);
+			int middle = document.indexOf("some", document.length() / 2);
+			parser.edit(middle, 4, "other");
+			assertTrue(parser.getCharactersParsed() < 4 * IncrementalParser.INTERVAL,
+					"parsed " + parser.getCharactersParsed());
+			assertEquals("valid", outcome(parser.getDocument(), limits));
+		}
+	}
+
+	@Test
+	public void aLongRunOfDataIsParsed() {
+		String document = "<r>" + "word ".repeat(200000) + "</r>";
+		IncrementalParser parser = new IncrementalParser();
+		assertDoesNotThrow(() -> parser.parse(document));
+		assertDoesNotThrow(() -> parser.edit(3, 4, "text"));
+	}
+
+	/**
+	 * Applies random edits to a generated document, comparing the outcome of
+	 * each with that of a full parse, and returns the kinds of outcome seen.
+	 */
+	private static Set<String> edit(Limits limits, long seed, int edits) throws Exception {
+		Set<String> outcomes = new TreeSet<String>();
+		Random random = new Random(seed);
+		String document = new DocumentGenerator().targetSize(30000).seed(seed).generateString();
+		IncrementalParser parser = new IncrementalParser(limits);
+		assertEquals(outcome(document, limits), outcome(() -> parser.parse(document)));
+		for (int i = 0; i < edits; i++) {
+			String text = parser.getDocument();
+			int offset = random.nextInt(text.length() + 1);
+			int removed = random.nextInt(4) == 0 ? random.nextInt(Math.min(20, text.length() - offset) + 1) : 0;
+			String inserted = random.nextInt(4) == 0 ? "" : INSERTS[random.nextInt(INSERTS.length)];
+			String edited = text.substring(0, offset) + inserted + text.substring(offset + removed);
+			String expected = outcome(edited, limits);
+			assertEquals(expected, outcome(() -> parser.edit(offset, removed, inserted)), "edit " + i + " at " + offset);
+			assertEquals(edited, parser.getDocument());
+			outcomes.add(expected.split(":")[0]);
+		}
+		return outcomes;
+	}
+
+	private interface Parse {
+		void run() throws LexerException, ParserException;
+	}
+
+	/**
+	 * Returns "valid", or the class, message and offset of the exception.
+	 */
+	private static String outcome(Parse parse) {
+		try {
+			parse.run();
+			return "valid";
+		} catch (LexerException e) {
+			return e.getClass().getSimpleName() + ": " + e.getMessage() + " @" + e.getOffset();
+		} catch (ParserException e) {
+			return e.getClass().getSimpleName() + ": " + e.getMessage() + " @" + e.getOffset();
+		}
+	}
+
+	private static String outcome(String document, Limits limits) {
+		return outcome(() -> {
+			Parser parser = new Parser(limits);
+			parser.setOutput(null);
+			parser.parse(new StreamingLexer(new StringReader(document), limits));
+		});
+	}
+
+	private static int tokenCount(String document) throws LexerException {
+		StreamingLexer lexer = new StreamingLexer(new StringReader(document));
+		int count = 0;
+		while (lexer.nextToken() != null) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * CS 575: Project #2
+ * File: PartialInputTest.java
+ */
+package org.aghannam.parser;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.aghannam.lex.LexerException;
+
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a document can be parsed in two parts, cut at any offset, with
+ * {@link Parser#parseAvailable(java.io.Reader, Checkpoint)} then
+ * {@link Parser#finish(java.io.Reader, Checkpoint)}.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class PartialInputTest {
+
+	@Test
+	public void wellFormedDocumentsParseWhereverCut() {
+		cutEverywhere("<r><a>x</a><b k='v'>y z</b><c/></r>");
+		cutEverywhere("<r><a>x</a><!-- p > q --><b k='v'>y</b></r>");
+		cutEverywhere("<r><!----><a>x</a><!-- a -- > b ---><!-- >> --><b k='v'/>y</r>");
+	}
+
+	@Test
+	public void errorsAreReportedWhereverCut() {
+		String document = "<r><a>x</a><!-- p > q --><b k='v'>y</c></r>";
+		for (int i = 0; i <= document.length(); i++) {
+			int cut = i;
+			assertThrows(ParserException.class, () -> parse(document, cut), "cut at " + cut);
+		}
+	}
+
+	private static void cutEverywhere(String document) {
+		for (int i = 0; i <= document.length(); i++) {
+			int cut = i;
+			assertDoesNotThrow(() -> parse(document, cut), "cut at " + cut);
+		}
+	}
+
+	private static void parse(String document, int cut) throws LexerException, ParserException {
+		Parser first = new Parser();
+		first.setOutput(null);
+		Checkpoint checkpoint = first.parseAvailable(new StringReader(document.substring(0, cut)), null);
+		Parser rest = new Parser();
+		rest.setOutput(null);
+		rest.finish(new StringReader(document.substring((int) checkpoint.getOffset())), checkpoint);
+	}
+}
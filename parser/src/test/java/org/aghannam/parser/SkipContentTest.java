@@ -0,0 +1,102 @@
+/*
+ * CS 575: Project #2
+ * File: SkipContentTest.java
+ */
+package org.aghannam.parser;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks content skipped at a {@link ParseListener}'s request, with and
+ * without its tag names being verified.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class SkipContentTest {
+
+	@Test
+	public void skippedContentIsLimitedToTheMaximumDepth() {
+		String document = "<a><b><c><d></d></c></b></a>";
+		for (boolean verify : new boolean[] { false, true }) {
+			assertDoesNotThrow(() -> parse(document, Limits.NONE.withMaxDepth(4), verify, null, "b"));
+			ParserException e = assertThrows(ParserException.class,
+					() -> parse(document, Limits.NONE.withMaxDepth(3), verify, null, "b"));
+			assertEquals("Parser error: Elements are nested more than 3 deep.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void skippedTagNamesAreMatchedWhenVerifying() {
+		String document = "<a><b><c></d></b></a>";
+		assertDoesNotThrow(() -> parse(document, Limits.NONE, false, null, "b"));
+		assertThrows(ParserException.class, () -> parse(document, Limits.NONE, true, null, "b"));
+	}
+
+	@Test
+	public void skippedContentIsNotCheckedAgainstTheSchema() {
+		Schema schema = new Schema.Builder().element("r").children("a").element("a").root("r").build();
+		String document = "<r><a><x><y/></x><z>t</z></a><a>u</a></r>";
+		for (boolean verify : new boolean[] { false, true }) {
+			List<String> ends = assertDoesNotThrow(() -> parse(document, Limits.NONE, verify, schema, "a"));
+			assertEquals(List.of("a", "a", "r"), ends);
+		}
+	}
+
+	/**
+	 * Parses a document, skipping the content of the elements with the given
+	 * name, and returns the names of the end tags the listener was given.
+	 */
+	private static List<String> parse(String document, Limits limits, boolean verify, Schema schema, String skipped)
+			throws LexerException, ParserException {
+		List<String> ends = new ArrayList<String>();
+		Parser parser = new Parser(limits);
+		parser.setOutput(null);
+		parser.setVerifySkippedTags(verify);
+		parser.setSchema(schema);
+		parser.setListener(new ParseListener() {
+			private String current;
+
+			@Override
+			public void startElement(String name) {
+				current = name;
+			}
+
+			@Override
+			public void attribute(String name, String value) {
+			}
+
+			@Override
+			public boolean enterContent() {
+				return !current.equals(skipped);
+			}
+
+			@Override
+			public void data(String data) {
+			}
+
+			@Override
+			public void endElement(String name) {
+				ends.add(name);
+			}
+
+			@Override
+			public boolean isDone() {
+				return false;
+			}
+		});
+		parser.parse(new Lexer(document).getTokenStream());
+		return ends;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * CS 575: Project #2
+ * File: QueryEngineTest.java
+ */
+package org.aghannam.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+import org.aghannam.lex.TokenSource;
+import org.aghannam.parser.ParserException;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks what {@link PathQuery}s select when a {@link QueryEngine} runs them,
+ * and that the engine skips and stops where nothing more can be selected.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class QueryEngineTest {
+	private static final String PAGE = "<html><head><title>A page</title></head><body>"
+			+ "<p id=\"1\">one <b>bold</b> two</p><div><p id=\"2\">three</p></div><p/></body></html>";
+
+	@Test
+	public void childAndDescendantStepsSelectWhatTheySay() throws Exception {
+		assertEquals(List.of("1"), matches(PAGE, "/html/body/p/@id"));
+		assertEquals(List.of("1", "2"), matches(PAGE, "//p/@id"));
+		assertEquals(List.of("2"), matches(PAGE, "/html/*/*/p/@id"));
+		assertEquals(List.of("A page"), matches(PAGE, "//title"));
+		assertEquals(List.of(), matches(PAGE, "/body//p/@id"));
+	}
+
+	@Test
+	public void anElementSelectsItsOwnTextJoined() throws Exception {
+		assertEquals(List.of("one two", "three", ""), matches(PAGE, "//p"));
+		assertEquals(List.of("bold"), matches(PAGE, "//p/b"));
+	}
+
+	@Test
+	public void textSelectsEachRunOfTextOnItsOwn() throws Exception {
+		assertEquals(List.of("one", "two", "three"), matches(PAGE, "//p/text()"));
+		assertEquals(List.of("a b", "c", "d"), matches("<p>a b<i/>c<i>x</i><i>y</i>d</p>", "/p/text()"));
+		assertEquals(List.of("one"), matches(PAGE, "//p/text()", true));
+	}
+
+	@Test
+	public void nestedMatchesAreEachReported() throws Exception {
+		assertEquals(List.of("c", "a b"), matches("<e>a<e>c</e>b</e>", "//e"));
+		assertEquals(List.of("a", "c", "b"), matches("<e>a<e>c</e>b</e>", "//e/text()"));
+	}
+
+	@Test
+	public void firstReportsOneMatchAndStopsReading() throws Exception {
+		String document = "<r>" + "<e k=\"v\">w</e>".repeat(1000) + "</r>";
+		assertEquals(List.of("v"), matches(document, "/r/e/@k", true));
+		CountingSource source = new CountingSource(document);
+		List<String> values = new ArrayList<String>();
+		new QueryEngine((query, value) -> values.add(value), PathQuery.compile("/r/e").first()).evaluate(source);
+		assertEquals(List.of("w"), values);
+		assertTrue(source.count < 20, "read " + source.count + " tokens");
+	}
+
+	@Test
+	public void contentWithoutMatchesIsSkippedUnvalidated() throws Exception {
+		// The mismatched tags are inside an element no query can match in
+		String document = "<r><skip><a></b></skip><p id=\"1\"/></r>";
+		assertEquals(List.of("1"), matches(document, "/r/p/@id"));
+		assertThrows(ParserException.class, () -> matches(document, "//a"));
+		// but they are found when their tag names are verified
+		QueryEngine engine = new QueryEngine((query, value) -> {
+		}, PathQuery.compile("/r/p/@id"));
+		engine.setVerifySkippedTags(true);
+		assertThrows(ParserException.class, () -> engine.evaluate(new StreamingLexer(new StringReader(document))));
+	}
+
+	@Test
+	public void unreadContentIsNotValidated() throws Exception {
+		assertEquals(List.of("1"), matches("<r><p id=\"1\"/><q></x></r>", "/r/p/@id", true));
+		assertThrows(ParserException.class, () -> matches("<r><p id=\"1\"/><q></x></r>", "/r/p/@id"));
+	}
+
+	@Test
+	public void malformedPathsAreRejected() {
+		for (String path : new String[] { "", "p", "/", "//", "/a//", "/a/@", "/@id", "/a/@id/b", "/a/text()/b",
+				"//text()", "/a//text()", "/a b" }) {
+			assertThrows(IllegalArgumentException.class, () -> PathQuery.compile(path), path);
+		}
+	}
+
+	private static List<String> matches(String document, String path) throws LexerException, ParserException {
+		return matches(document, path, false);
+	}
+
+	/**
+	 * Runs a single query over a document and returns the values it selects.
+	 */
+	private static List<String> matches(String document, String path, boolean first)
+			throws LexerException, ParserException {
+		List<String> values = new ArrayList<String>();
+		PathQuery query = PathQuery.compile(path);
+		new QueryEngine((q, value) -> values.add(value), first ? query.first() : query)
+				.evaluate(new StreamingLexer(new StringReader(document)));
+		return values;
+	}
+
+	/**
+	 * Counts the tokens the engine reads.
+	 */
+	private static class CountingSource implements TokenSource {
+		private final StreamingLexer lexer;
+		int count;
+
+		CountingSource(String document) {
+			this.lexer = new StreamingLexer(new StringReader(document));
+		}
+
+		@Override
+		public Token nextToken() throws LexerException {
+			count++;
+			return lexer.nextToken();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * CS 575: Project #2
+ * File: SchemaTest.java
+ */
+package org.aghannam.schema;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.aghannam.lex.Lexer;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+import org.aghannam.parser.SchemaException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a document that breaks its schema is rejected with the rule it
+ * breaks, at the tag or attribute that breaks it.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class SchemaTest {
+	private static final Schema RECIPE = new Schema.Builder()
+			.element("recipe").children("title", "ingredient", "section").required("name")
+			.element("section").children("ingredient")
+			.element("title").maxOccurs(1)
+			.element("ingredient").required("amount").attributes("unit")
+			.root("recipe").build();
+
+	@Test
+	public void conformingDocumentsAreValid() {
+		assertDoesNotThrow(() -> parse("<recipe name=\"a\"/>"));
+		assertDoesNotThrow(() -> parse("<recipe name=\"a\"><title>t</title><ingredient amount=\"1\" unit=\"g\"/>"
+				+ "<section><ingredient amount=\"2\">salt</ingredient></section></recipe>"));
+	}
+
+	@Test
+	public void anUndeclaredElementIsReportedAtItsName() {
+		assertError("<recipe name=\"a\"><title>t</title><step/></recipe>", "step/>",
+				"Element 'step' is not declared.");
+	}
+
+	@Test
+	public void aMisplacedElementIsReportedAtItsName() {
+		assertError("<recipe name=\"a\"><title><title/></title></recipe>", "title/>",
+				"Element 'title' is not allowed in 'title'.");
+		assertError("<recipe name=\"a\"><section><title/></section></recipe>", "title/>",
+				"Element 'title' is not allowed in 'section'.");
+		assertError("<title>t</title>", "title>", "Element 'title' may not be the root.");
+	}
+
+	@Test
+	public void anElementAppearingTooOftenIsReportedAtItsName() {
+		assertError("<recipe name=\"a\"><title>t</title><title>u</title></recipe>", "title>u",
+				"Element 'title' appears more than 1 times in 'recipe'.");
+	}
+
+	@Test
+	public void aDisallowedAttributeIsReportedAtItsName() {
+		assertError("<recipe name=\"a\"><ingredient amount=\"1\" size=\"2\"/></recipe>", "size=",
+				"Attribute 'size' is not allowed on 'ingredient'.");
+		assertError("<recipe name=\"a\"><section id=\"1\"/></recipe>", "id=",
+				"Attribute 'id' is not allowed on 'section'.");
+	}
+
+	@Test
+	public void aMissingAttributeIsReportedWhereTheStartTagCloses() {
+		assertError("<recipe><title>t</title></recipe>", "><title>",
+				"Element 'recipe' is missing required attribute 'name'.");
+		assertError("<recipe name=\"a\"><ingredient unit=\"g\"/></recipe>", "/></recipe>",
+				"Element 'ingredient' is missing required attribute 'amount'.");
+		assertError("<recipe name=\"a\"><section><ingredient unit=\"g\">x</ingredient></section></recipe>",
+				">x<", "Element 'ingredient' is missing required attribute 'amount'.");
+	}
+
+	@Test
+	public void undeclaredNamesInTheSchemaAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new Schema.Builder().element("a").children("b").build());
+		assertThrows(IllegalArgumentException.class, () -> new Schema.Builder().element("a").root("b").build());
+		assertThrows(IllegalStateException.class, () -> new Schema.Builder().children("b"));
+	}
+
+	/**
+	 * Checks that a document is rejected with the given schema error, found
+	 * where the given text first occurs in it.
+	 */
+	private static void assertError(String document, String at, String error) {
+		ParserException e = assertThrows(ParserException.class, () -> parse(document), document);
+		assertInstanceOf(SchemaException.class, e);
+		assertEquals("Schema error: " + error, e.getMessage());
+		assertEquals(document.indexOf(at), e.getOffset(), document);
+	}
+
+	private static void parse(String document) throws Exception {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		parser.setSchema(RECIPE);
+		parser.parse(new Lexer(document).getTokenStream());
+	}
+}
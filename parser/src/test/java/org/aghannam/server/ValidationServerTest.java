@@ -0,0 +1,65 @@
+/*
+ * CS 575: Project #2
+ * File: ValidationServerTest.java
+ */
+package org.aghannam.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.lex.Limits;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link ValidationServer} only returns the derivation when the
+ * <code>derivation</code> parameter is exactly <code>true</code>.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class ValidationServerTest {
+
+	@Test
+	public void onlyTheDerivationParameterItselfIsMatched() {
+		assertTrue(ValidationServer.hasParameter("derivation=true", "derivation", "true"));
+		assertTrue(ValidationServer.hasParameter("a=1&derivation=true&b", "derivation", "true"));
+		assertTrue(ValidationServer.hasParameter("deriv%61tion=tru%65", "derivation", "true"));
+		assertFalse(ValidationServer.hasParameter(null, "derivation", "true"));
+		assertFalse(ValidationServer.hasParameter("", "derivation", "true"));
+		assertFalse(ValidationServer.hasParameter("noderivation=true", "derivation", "true"));
+		assertFalse(ValidationServer.hasParameter("derivation=trueish", "derivation", "true"));
+		assertFalse(ValidationServer.hasParameter("derivation=false&x=derivation=true", "derivation", "true"));
+		assertFalse(ValidationServer.hasParameter("x=a%26derivation%3Dtrue", "derivation", "true"));
+		assertFalse(ValidationServer.hasParameter("derivation", "derivation", "true"));
+	}
+
+	@Test
+	public void theDerivationIsReturnedOnlyWhenAskedFor() throws Exception {
+		ValidationServer server = new ValidationServer(0, Limits.DEFAULT);
+		server.start();
+		try {
+			HttpClient client = HttpClient.newHttpClient();
+			assertEquals("VALID\n", validate(client, server, ""));
+			assertEquals("VALID\n", validate(client, server, "?noderivation=true"));
+			assertEquals("VALID\n", validate(client, server, "?derivation=trueish"));
+			String derivation = validate(client, server, "?x=1&derivation=true");
+			assertTrue(derivation.startsWith("VALID\n") && derivation.contains("document ::= element"), derivation);
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static String validate(HttpClient client, ValidationServer server, String query) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/validate" + query))
+				.POST(HttpRequest.BodyPublishers.ofString("<a>t</a>")).build();
+		HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, response.statusCode());
+		return response.body();
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * CS 575: Project #2
+ * File: FlightRecorderEventsTest.java
+ */
+package org.aghannam.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.aghannam.lex.Lexer;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the lexer and parser emit their Flight Recorder events, once
+ * per document, with the document's size, token count and error, and that
+ * only slow documents are recorded by default.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class FlightRecorderEventsTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void validDocumentIsLexedAndParsed() throws Exception {
+		String document = "<a x='1'><b/>text</a>";
+		List<RecordedEvent> events = record(document);
+
+		RecordedEvent lexed = only(events, "org.aghannam.DocumentLexed");
+		assertEquals(document.length(), lexed.getLong("documentSize"));
+		assertEquals(13, lexed.getInt("tokenCount"));
+
+		RecordedEvent parsed = only(events, "org.aghannam.DocumentParsed");
+		assertEquals(document.length(), parsed.getLong("documentSize"));
+		assertEquals(13, parsed.getLong("tokenCount"));
+		assertEquals(2, parsed.getInt("maxDepth"));
+		assertEquals(0, count(events, "org.aghannam.ParseFailed"));
+	}
+
+	@Test
+	public void mismatchedEndTagIsRecordedOnce() throws Exception {
+		List<RecordedEvent> events = record("<a></b>");
+		ParserException thrown = failure("<a></b>");
+
+		RecordedEvent failed = only(events, "org.aghannam.ParseFailed");
+		assertEquals(thrown.getMessage(), failed.getString("message"));
+		assertEquals(thrown.getOffset(), failed.getLong("errorOffset"));
+		assertEquals(6, failed.getLong("tokenCount"));
+		assertEquals(7, failed.getLong("documentSize"));
+		assertEquals(0, count(events, "org.aghannam.DocumentParsed"));
+	}
+
+	@Test
+	public void duplicateAttributeIsRecordedOnce() throws Exception {
+		List<RecordedEvent> events = record("<a x='1' x='2'/>");
+		ParserException thrown = failure("<a x='1' x='2'/>");
+
+		RecordedEvent failed = only(events, "org.aghannam.ParseFailed");
+		assertEquals(thrown.getMessage(), failed.getString("message"));
+		assertEquals(thrown.getOffset(), failed.getLong("errorOffset"));
+	}
+
+	@Test
+	public void fastDocumentsAreOnlyRecordedWhenTheyFail() throws Exception {
+		parse("<a x='1'><b/>text</a>"); // loads the classes, which is slow the first time
+		List<RecordedEvent> events = record("<a x='1'><b/>text</a>", false);
+		assertEquals(0, events.size());
+
+		events = record("<a></b>", false);
+		assertEquals(0, count(events, "org.aghannam.DocumentParsed"));
+		only(events, "org.aghannam.ParseFailed");
+	}
+
+	/**
+	 * Parses a document while recording, with every threshold at zero, and
+	 * returns the lexer's and parser's events.
+	 */
+	private List<RecordedEvent> record(String document) throws Exception {
+		return record(document, true);
+	}
+
+	/**
+	 * Parses a document while recording, with every threshold at zero or at
+	 * the events' own defaults, and returns the lexer's and parser's events.
+	 */
+	private List<RecordedEvent> record(String document, boolean everyDocument) throws Exception {
+		Path file = directory.resolve("events.jfr");
+		try (Recording recording = new Recording()) {
+			if (everyDocument) {
+				recording.enable("org.aghannam.DocumentLexed").withThreshold(Duration.ZERO);
+				recording.enable("org.aghannam.DocumentParsed").withThreshold(Duration.ZERO);
+				recording.enable("org.aghannam.ParseFailed").withThreshold(Duration.ZERO);
+			} else {
+				recording.enable("org.aghannam.DocumentLexed");
+				recording.enable("org.aghannam.DocumentParsed");
+				recording.enable("org.aghannam.ParseFailed");
+			}
+			recording.start();
+			try {
+				parse(document);
+			} catch (ParserException e) {
+				// recorded
+			}
+			recording.stop();
+			recording.dump(file);
+		}
+		List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+			if (event.getEventType().getName().startsWith("org.aghannam.")) {
+				events.add(event);
+			}
+		}
+		Files.delete(file);
+		return events;
+	}
+
+	private static void parse(String document) throws Exception {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		parser.parse(new Lexer(document).getTokenStream());
+	}
+
+	private static ParserException failure(String document) {
+		return assertThrows(ParserException.class, () -> parse(document));
+	}
+
+	private static RecordedEvent only(List<RecordedEvent> events, String name) {
+		assertEquals(1, count(events, name), name);
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				return event;
+			}
+		}
+		throw new AssertionError(name);
+	}
+
+	private static int count(List<RecordedEvent> events, String name) {
+		int n = 0;
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				n++;
+			}
+		}
+		return n;
+	}
+}
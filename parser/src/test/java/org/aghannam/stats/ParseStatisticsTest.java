@@ -0,0 +1,166 @@
+/*
+ * CS 575: Project #2
+ * File: ParseStatisticsTest.java
+ */
+package org.aghannam.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.Parser.Rule;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link ParseStatistics} counts the work of the lexer and the
+ * parser, that it is published through JMX, and that lexing is not also
+ * counted as parsing when the parser pulls tokens from a lexer as it goes.
+ * <p>
+ * Statistics are switched on for the whole JVM, so this test is run in a JVM
+ * of its own, started with <code>-Dorg.aghannam.stats=true</code>.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class ParseStatisticsTest {
+	private static final String DOCUMENT = "<a x=\"v\"><b/>t</a>";
+
+	/* How long the slow reader and the slow token source wait for each step. */
+	private static final long PAUSE_MILLIS = 4;
+
+	private final ParseStatistics stats = ParseStatistics.get();
+
+	@BeforeEach
+	public void reset() {
+		assertTrue(ParseStatistics.ENABLED, "run with -Dorg.aghannam.stats=true");
+		stats.reset();
+	}
+
+	@Test
+	public void theLexerAndTheParserAreCounted() throws Exception {
+		List<Token> tokens = new Lexer(DOCUMENT).getTokenStream();
+		parser().parse(tokens);
+
+		assertEquals(1, stats.getDocumentsLexed());
+		assertEquals(1, stats.getDocumentsParsed());
+		assertEquals(tokens.size(), stats.getShifts());
+		Map<String, Long> counts = stats.getTokenCounts();
+		assertEquals(2, counts.get("OPEN"));
+		assertEquals(1, counts.get("LTSL"));
+		assertEquals(4, counts.get("NAME"));
+		assertEquals(1, counts.get("STRING"));
+		assertEquals(1, counts.get("DATA"));
+		assertEquals(1, counts.get("SLGT"));
+		assertEquals(0, counts.get("COMMENT"));
+
+		Map<String, Long> reductions = stats.getReductionCounts();
+		assertEquals(1, reductions.get(Rule.DOCUMENT.production));
+		assertEquals(2, reductions.get(Rule.ELEMENT.production));
+		assertEquals(1, reductions.get(Rule.ATTRIBUTE.production));
+		assertEquals(2, reductions.get(Rule.ATTRIBUTE_EPSILON.production));
+		assertEquals(1, reductions.get(Rule.EMPTY_ELEMENT_SUFFIX.production));
+		assertEquals(1, reductions.get(Rule.END_TAG.production));
+
+		assertEquals(2, stats.getMaxTagNameDepth());
+		assertTrue(stats.getMaxParseStackDepth() > 2);
+		long visits = 0;
+		for (long count : stats.getStateVisits()) {
+			visits += count;
+		}
+		assertTrue(visits > tokens.size());
+		assertTrue(stats.getLexNanos() > 0);
+		assertTrue(stats.getParseNanos() > 0);
+
+		stats.reset();
+		assertEquals(0, stats.getDocumentsParsed());
+		assertEquals(0, stats.getShifts());
+		assertEquals(0, stats.getMaxTagNameDepth());
+	}
+
+	@Test
+	public void theCountersArePublishedThroughJmx() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(ParseStatistics.OBJECT_NAME);
+		assertTrue(server.isRegistered(name));
+
+		parser().parse(new StreamingLexer(new StringReader(DOCUMENT)));
+		ParseStatisticsMXBean bean = JMX.newMXBeanProxy(server, name, ParseStatisticsMXBean.class);
+		assertEquals(1, bean.getDocumentsLexed());
+		assertEquals(1L, server.getAttribute(name, "DocumentsParsed"));
+		assertEquals(stats.getShifts(), bean.getShifts());
+		assertEquals(4, bean.getTokenCounts().get("NAME"));
+
+		bean.reset();
+		assertEquals(0, stats.getDocumentsLexed());
+	}
+
+	@Test
+	public void scanningAsTheParserPullsIsCountedAsLexingOnly() throws Exception {
+		long paused = TimeUnit.MILLISECONDS.toNanos(PAUSE_MILLIS * DOCUMENT.length());
+		parser().parse(new StreamingLexer(new SlowReader(DOCUMENT)));
+		assertTrue(stats.getLexNanos() >= paused, stats.getLexNanos() + " ns lexing");
+		assertTrue(stats.getParseNanos() < paused / 2, stats.getParseNanos() + " ns parsing");
+
+		// Nor is any other source's time counted as parsing
+		stats.reset();
+		Iterator<Token> tokens = new Lexer(DOCUMENT).getTokenStream().iterator();
+		parser().parse(() -> {
+			pause();
+			return tokens.hasNext() ? tokens.next() : null;
+		});
+		assertTrue(stats.getParseNanos() < paused / 2, stats.getParseNanos() + " ns parsing");
+	}
+
+	private static Parser parser() {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		return parser;
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(PAUSE_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Hands out one character at a time, pausing before each.
+	 */
+	private static class SlowReader extends Reader {
+		private final Reader in;
+
+		SlowReader(String text) {
+			in = new StringReader(text);
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			pause();
+			return in.read(buffer, offset, Math.min(length, 1));
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * CS 575: Project #2
+ * File: InternTableTest.java
+ */
+package org.aghannam.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.aghannam.gen.DocumentGenerator;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.parser.Parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that trees built with an {@link InternTable} keep one copy of each
+ * distinct subtree, so that interned elements are equal exactly when they
+ * are the same object, across documents and threads.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class InternTableTest {
+	private static final String CATALOG = "<catalog>" + "<product id=\"1\"><title>Pen</title><price>2</price></product>"
+			+ "<product id=\"2\"><title>Ink</title><price>2</price></product>"
+			+ "<product id=\"1\"><title>Pen</title><price>2</price></product></catalog>";
+
+	@Test
+	public void identicalSubtreesAreTheSameObject() throws Exception {
+		Element catalog = build(CATALOG, new InternTable());
+		Element first = (Element) catalog.getContent(0);
+		Element second = (Element) catalog.getContent(1);
+		assertSame(first, catalog.getContent(2));
+		assertNotSame(first, second);
+		// <price>2</price> is shared between different products
+		assertSame(first.getContent(1), second.getContent(1));
+		assertEquals(CATALOG, catalog.toString());
+	}
+
+	@Test
+	public void withoutATableIdenticalSubtreesAreEqualCopies() throws Exception {
+		Element catalog = build(CATALOG, null);
+		assertEquals(catalog.getContent(0), catalog.getContent(2));
+		assertNotSame(catalog.getContent(0), catalog.getContent(2));
+		assertEquals(catalog, build(CATALOG, null));
+	}
+
+	@Test
+	public void internedElementsAreEqualExactlyWhenTheyAreTheSame() throws Exception {
+		InternTable table = new InternTable();
+		List<Element> elements = new ArrayList<Element>();
+		for (int seed = 0; seed < 5; seed++) {
+			String document = new DocumentGenerator().targetSize(20000).seed(seed % 3).generateString();
+			collect(build(document, table), elements);
+		}
+		Map<Element, Element> distinct = new IdentityHashMap<Element, Element>();
+		for (Element element : elements) {
+			distinct.put(element, element);
+		}
+		List<Element> unique = new ArrayList<Element>(distinct.keySet());
+		for (int i = 0; i < unique.size(); i += 7) {
+			for (int j = 0; j < unique.size(); j += 5) {
+				Element a = unique.get(i);
+				Element b = unique.get(j);
+				assertEquals(a == b, a.equals(b), a + " and " + b);
+			}
+		}
+	}
+
+	@Test
+	public void theSameDocumentBuiltAgainIsTheSameTree() throws Exception {
+		InternTable table = new InternTable();
+		Element root = build(CATALOG, table);
+		int size = table.size();
+		assertSame(root, build(CATALOG, table));
+		assertEquals(size, table.size());
+		// catalog, two products, two titles and a price; five names and Pen, Ink, 1 and 2
+		assertEquals(6 + 9, size);
+	}
+
+	@Test
+	public void clearingStopsSharingWithEarlierTrees() throws Exception {
+		InternTable table = new InternTable();
+		Element root = build(CATALOG, table);
+		table.clear();
+		assertEquals(0, table.size());
+		Element again = build(CATALOG, table);
+		assertEquals(root, again);
+		assertNotSame(root, again);
+	}
+
+	@Test
+	public void buildersOnSeveralThreadsShareOneTable() throws Exception {
+		InternTable table = new InternTable();
+		String document = new DocumentGenerator().targetSize(50000).seed(9).generateString();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Element>> roots = new ArrayList<Future<Element>>();
+			for (int i = 0; i < 8; i++) {
+				roots.add(executor.submit(() -> build(document, table)));
+			}
+			Element first = roots.get(0).get();
+			for (Future<Element> root : roots) {
+				assertSame(first, root.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void theDigestDependsOnEveryPartInOrder() throws Exception {
+		InternTable table = new InternTable();
+		assertEquals(build("<a x=\"1\"><b/>t</a>", table).getDigest(), build("<a x=\"1\"><b/>t</a>", null).getDigest());
+		long digest = build("<a x=\"1\" y=\"2\"><b/>t</a>", table).getDigest();
+		for (String other : new String[] { "<a y=\"2\" x=\"1\"><b/>t</a>", "<a x=\"1\" y=\"2\">t<b/></a>",
+				"<a x=\"1\" y=\"3\"><b/>t</a>", "<a x=\"1\" y=\"2\"><c/>t</a>", "<c x=\"1\" y=\"2\"><b/>t</c>",
+				"<a x=\"1\" y=\"2\"><b/>t t</a>" }) {
+			assertNotEquals(digest, build(other, table).getDigest(), other);
+		}
+	}
+
+	/**
+	 * Adds an element and all the elements within it to the list.
+	 */
+	private static void collect(Element element, List<Element> elements) {
+		elements.add(element);
+		for (int i = 0; i < element.getContentSize(); i++) {
+			if (element.getContent(i) instanceof Element) {
+				collect((Element) element.getContent(i), elements);
+			}
+		}
+	}
+
+	private static Element build(String document, InternTable table) throws Exception {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		return new TreeBuilder(table).build(parser, new StreamingLexer(new StringReader(document)));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * CS 575: Project #2
+ * File: TreeDiffTest.java
+ */
+package org.aghannam.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.parser.Parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the changes {@link TreeDiff} finds between two versions of a
+ * document, and the order it lists them in.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class TreeDiffTest {
+	@Test
+	public void identicalVersionsHaveNoChanges() throws Exception {
+		assertEquals(List.of(), diff("<r><a k=\"v\">1</a><b/></r>", "<r><a k=\"v\">1</a><b/></r>"));
+	}
+
+	@Test
+	public void anInsertedElementIsAdded() throws Exception {
+		assertEquals(List.of("+ /r/n[1]: <n/>"), diff("<r><a>1</a><b>2</b></r>", "<r><a>1</a><n/><b>2</b></r>"));
+		assertEquals(List.of("+ /r/a[2]: <a>3</a>"),
+				diff("<r><a>1</a><a>2</a></r>", "<r><a>1</a><a>3</a><a>2</a></r>"));
+	}
+
+	@Test
+	public void aDeletedElementIsRemoved() throws Exception {
+		assertEquals(List.of("- /r/b[1]: <b>2</b>"), diff("<r><a>1</a><b>2</b><c/></r>", "<r><a>1</a><c/></r>"));
+	}
+
+	@Test
+	public void attributesAndTextAreComparedWithinAnElement() throws Exception {
+		assertEquals(List.of("- /r/@x: 1", "~ /r/@y: 2 -> 3", "+ /r/@z: 4", "~ /r: a b -> a c"),
+				diff("<r x=\"1\" y=\"2\">a b</r>", "<r y=\"3\" z=\"4\">a c</r>"));
+	}
+
+	@Test
+	public void aRenamedElementIsRemovedAndAdded() throws Exception {
+		assertEquals(List.of("- /r/b[1]: <b k=\"1\">2</b>", "+ /r/d[1]: <d k=\"1\">2</d>"),
+				diff("<r><b k=\"1\">2</b><c/></r>", "<r><d k=\"1\">2</d><c/></r>"));
+		assertEquals(List.of("- /r: <r/>", "+ /s: <s/>"), diff("<r/>", "<s/>"));
+	}
+
+	@Test
+	public void aMovedElementIsFoundWithinTheLookahead() throws Exception {
+		String before = "<r><e k=\"1\"><c/>a</e>" + "<e k=\"x\"><d/></e>".repeat(3) + "</r>";
+		// moved to the end, and its text changed
+		String after = "<r>" + "<e k=\"x\"><d/></e>".repeat(3) + "<e k=\"1\"><c/>b</e></r>";
+		assertEquals(List.of("~ /r/e[4]: a -> b"), diff(before, after));
+		// moved, unchanged
+		assertEquals(List.of(), diff(before, after.replace(">b<", ">a<")));
+	}
+
+	@Test
+	public void aMovedElementBeyondTheLookaheadIsRemovedAndAdded() throws Exception {
+		String inserted = "<e k=\"n\"><d/></e>";
+		String before = "<r><e k=\"1\"><c/>a</e></r>";
+		// within the lookahead, the new elements of the same name are passed over
+		assertEquals(expectedAdded(inserted, 7, "~ /r/e[8]: a -> b"),
+				diff(before, "<r>" + inserted.repeat(7) + "<e k=\"1\"><c/>b</e></r>"));
+		List<String> beyond = expectedAdded(inserted, 9, "+ /r/e[10]: <e k=\"1\"><c/>b</e>");
+		beyond.add(0, "- /r/e[1]: <e k=\"1\"><c/>a</e>");
+		assertEquals(beyond, diff(before, "<r>" + inserted.repeat(9) + "<e k=\"1\"><c/>b</e></r>"));
+	}
+
+	@Test
+	public void changesAreInDocumentOrder() throws Exception {
+		// removals come where they were, not before every addition
+		assertEquals(List.of("- /r/x[1]: <x/>", "+ /r/n[1]: <n/>", "- /r/b[1]: <b k=\"v\">2</b>", "+ /r/m[1]: <m/>"),
+				diff("<r><x/><a>1</a><b k=\"v\">2</b><y/></r>", "<r><n/><a>1</a><m/><y/></r>"));
+		assertEquals(List.of("~ /r/a[1]: 1 -> 2", "+ /r/n[1]: <n/>", "- /r/c[1]: <c/>", "~ /r/d[1]: 3 -> 4"),
+				diff("<r><a k=\"1\">1</a><b/><c/><d k=\"1\">3</d></r>",
+						"<r><a k=\"1\">2</a><n/><b/><d k=\"1\">4</d></r>"));
+	}
+
+	/**
+	 * Returns the additions of the given number of elements at the start of
+	 * the root, followed by the given change.
+	 */
+	private static List<String> expectedAdded(String element, int count, String last) {
+		List<String> changes = new ArrayList<String>();
+		for (int i = 1; i <= count; i++) {
+			changes.add("+ /r/e[" + i + "]: " + element);
+		}
+		changes.add(last);
+		return changes;
+	}
+
+	/**
+	 * Parses both versions and returns their differences as strings.
+	 */
+	private static List<String> diff(String before, String after) throws Exception {
+		List<String> changes = new ArrayList<String>();
+		for (Change change : TreeDiff.diff(tree(before), tree(after))) {
+			changes.add(change.toString());
+		}
+		return changes;
+	}
+
+	private static Element tree(String document) throws Exception {
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		return new TreeBuilder().build(parser, new StreamingLexer(new StringReader(document)));
+	}
+}
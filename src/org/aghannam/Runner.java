@@ -4,6 +4,7 @@
  */
 package org.aghannam.main;
 
+import org.aghannam.batch.BatchValidator;
 import org.aghannam.lex.Lexer;
 import org.aghannam.lex.Token;
 import org.aghannam.parser.Parser;
@@ -29,12 +30,22 @@ public class Runner {
 
 	/**
 	 * Main method through which to run the parser.
+	 * <p>
+	 * Without arguments, the user is prompted for a single file to parse. Any
+	 * arguments switch to batch mode, which validates every file, directory or
+	 * glob given on the command line without printing derivations (see
+	 * {@link BatchValidator}).
 	 * 
 	 * @param args
+	 *            the files to validate in batch mode, if any
 	 * @throws Exception
 	 *             if any error is encountered, syntax or otherwise
 	 */
 	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			boolean valid = new BatchValidator(System.out).run(args);
+			System.exit(valid ? 0 : 1);
+		}
 		instructions();
 		String document = document();
 		System.out.print("\n");
@@ -0,0 +1,423 @@
+/*
+ * CS 575: Project #2
+ * File: BatchValidator.java
+ */
+package org.aghannam.batch;
+
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.InflatingReader;
+import org.aghannam.lex.Lexer;
+import org.aghannam.lex.LexerAbortedException;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+import org.aghannam.lex.TokenSource;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserAbortedException;
+import org.aghannam.parser.ParserException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class validates many XML-- documents in one non-interactive run.
+ * <p>
+ * Documents may be named directly, found by walking directories (every file
+ * ending in .xml), matched by glob patterns such as
+ * <code>data/**&#47;*.xml</code>, or read as a list of paths from standard
+ * input (one per line) when <code>-</code> is given. Files are validated
+ * concurrently on a fixed pool of worker threads or, with
+ * <code>--virtual</code> and on a JVM that supports them, each on its own
+ * virtual thread. Either way, no more files than <code>-j</code> gives (one
+ * per processor by default) are validated at once, and each with an idle
+ * parser taken from a shared pool and returned to it afterwards, so that
+ * however many files there are, no more of them are read into memory, and no
+ * more parsers are created, than that.
+ * <p>
+ * A line is printed per file as soon as it has been validated, followed by a
+ * summary with the number of valid and invalid files, files/sec, MB/s and the
+ * median and 99th percentile latency per file. The derivations themselves are
+ * not printed. With <code>--timeout</code>, a file that cannot be validated
+ * in the given number of milliseconds is abandoned and reported as invalid.
+ * With <code>--max-errors</code>, the parser recovers from syntax errors and
+ * up to that many are reported per file, one per line.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class BatchValidator {
+	private static final String USAGE = "Usage: Runner [-j threads] [--virtual] [--limits] [--timeout ms] [--max-errors n] [-q] "
+			+ "(file | directory | glob | -)...";
+
+	/* Settings. */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean virtual;
+	private boolean quiet;
+	private Limits limits = Limits.NONE;
+	private Duration timeout;
+	private int maxErrors = 1;
+	private final PrintStream out;
+
+	/**
+	 * The parsers not validating a file at the moment. A parser kept per
+	 * thread would be created afresh for every file on virtual threads, which
+	 * are never reused.
+	 */
+	private final Queue<Parser> idleParsers = new ConcurrentLinkedQueue<Parser>();
+
+	/**
+	 * Constructs a validator that reports to the given stream.
+	 *
+	 * @param out
+	 *            where to print per-file results and the summary
+	 */
+	public BatchValidator(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Runs a batch validation with the given command-line arguments.
+	 *
+	 * @param args
+	 *            options, followed by the files, directories or globs to
+	 *            validate
+	 * @return <code>true</code> if every file was valid
+	 * @throws IOException
+	 *             if a directory cannot be walked or standard input cannot be
+	 *             read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public boolean run(String[] args) throws IOException, InterruptedException {
+		List<String> operands = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-j":
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException(USAGE);
+				}
+				threads = Math.max(1, Integer.parseInt(args[++i]));
+				break;
+			case "--virtual":
+				virtual = true;
+				break;
+			case "--limits":
+				limits = Limits.DEFAULT;
+				break;
+			case "--timeout":
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException(USAGE);
+				}
+				timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+				break;
+			case "--max-errors":
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException(USAGE);
+				}
+				maxErrors = Math.max(1, Integer.parseInt(args[++i]));
+				break;
+			case "-q":
+				quiet = true;
+				break;
+			default:
+				operands.add(args[i]);
+			}
+		}
+		if (operands.isEmpty()) {
+			throw new IllegalArgumentException(USAGE);
+		}
+		return validate(collect(operands));
+	}
+
+	/**
+	 * Expands the command-line operands into the list of files to validate.
+	 */
+	private List<Path> collect(List<String> operands) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		for (String operand : operands) {
+			if (operand.equals("-")) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (!line.isBlank()) {
+						files.add(Paths.get(line.strip()));
+					}
+				}
+			} else if (isGlob(operand)) {
+				files.addAll(glob(operand));
+			} else {
+				Path path = Paths.get(operand);
+				if (Files.isDirectory(path)) {
+					files.addAll(walk(path, p -> p.toString().endsWith(".xml") || p.toString().endsWith(".xml.gz")));
+				} else {
+					files.add(path);
+				}
+			}
+		}
+		return files;
+	}
+
+	private boolean validate(List<Path> files) throws InterruptedException {
+		ExecutorService executor = executor();
+		long[] latencies = new long[files.size()];
+		long totalBytes = 0;
+		int invalid = 0;
+
+		long start = System.nanoTime();
+		try {
+			// At most -j files are read and validated at once, on virtual threads too
+			Semaphore running = new Semaphore(threads);
+			List<Future<Result>> results = new ArrayList<Future<Result>>(files.size());
+			for (Path file : files) {
+				running.acquire();
+				results.add(executor.submit(() -> {
+					try {
+						return validate(file);
+					} finally {
+						running.release();
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				Result result;
+				try {
+					result = results.get(i).get();
+				} catch (ExecutionException e) {
+					result = new Result(files.get(i), 0, 0, 0, String.valueOf(e.getCause()));
+					report(result);
+				}
+				latencies[i] = result.nanos;
+				totalBytes += result.bytes;
+				if (result.error != null) {
+					invalid++;
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		summarize(files.size(), invalid, totalBytes, elapsed, latencies);
+		return invalid == 0;
+	}
+
+	/**
+	 * Validates a single file with an idle parser and reports the outcome.
+	 */
+	private Result validate(Path file) {
+		Parser parser = idleParsers.poll();
+		if (parser == null) {
+			parser = newParser();
+		}
+		try {
+			return validate(file, parser);
+		} finally {
+			idleParsers.offer(parser);
+		}
+	}
+
+	private Result validate(Path file, Parser parser) {
+		long start = System.nanoTime();
+		long bytes = 0;
+		int tokenCount = 0;
+		String error = null;
+		Budget budget = timeout == null ? Budget.UNLIMITED : Budget.UNLIMITED.withTimeout(timeout);
+		Lexer lexer = null;
+		StreamingLexer streaming = null;
+		try {
+			bytes = Files.size(file);
+			limits.checkInputBytes(bytes);
+			if (InflatingReader.isCompressed(file)) {
+				// Decompressed as it is lexed, rather than read into a string
+				try (Reader in = InflatingReader.open(Files.newInputStream(file))) {
+					streaming = new StreamingLexer(in, limits, budget);
+					CountingSource tokens = new CountingSource(streaming);
+					parser.parse(tokens, budget);
+					tokenCount = tokens.count;
+				}
+			} else {
+				byte[] content = Files.readAllBytes(file);
+				bytes = content.length;
+				String document = new String(content, StandardCharsets.UTF_8);
+				lexer = new Lexer(document, limits, budget);
+				List<Token> tokens = lexer.getTokenStream();
+				tokenCount = tokens.size();
+				parser.parse(tokens, budget);
+			}
+		} catch (IOException e) {
+			error = "I/O error: " + e.getMessage();
+		} catch (LexerAbortedException | ParserAbortedException e) {
+			error = "Aborted: " + e.getMessage();
+		} catch (LexerException e) {
+			error = e.getMessage() + where(lexer, streaming, e.getOffset());
+		} catch (ParserException e) {
+			error = e.getMessage() + where(lexer, streaming, e.getOffset());
+			List<ParserException> errors = parser.getErrors();
+			for (ParserException other : errors.subList(Math.min(1, errors.size()), errors.size())) {
+				error += "\n        " + other.getMessage() + where(lexer, streaming, other.getOffset());
+			}
+		}
+		Result result = new Result(file, bytes, tokenCount, System.nanoTime() - start, error);
+		report(result);
+		return result;
+	}
+
+	/**
+	 * Formats the location of an error for appending to its message, if
+	 * either lexer can tell where it is. Neither exists if the file was too
+	 * large to be read.
+	 */
+	private static String where(Lexer lexer, StreamingLexer streaming, long offset) {
+		if (lexer == null && streaming == null) {
+			return "";
+		}
+		String location = lexer != null ? lexer.getLineIndex().describe(offset) : streaming.locate(offset);
+		return location == null ? "" : " (" + location + ")";
+	}
+
+	private void report(Result result) {
+		if (result.error != null) {
+			out.println("INVALID " + result.file + ": " + result.error);
+		} else if (!quiet) {
+			out.println(String.format("VALID   %s (%d tokens, %.3f ms)", result.file, result.tokens,
+					result.nanos / 1e6));
+		}
+	}
+
+	private void summarize(int files, int invalid, long bytes, long elapsed, long[] latencies) {
+		Arrays.sort(latencies);
+		double seconds = elapsed / 1e9;
+		out.println();
+		out.println(String.format("%d files: %d valid, %d invalid", files, files - invalid, invalid));
+		out.println(String.format("%.3f s, %.1f files/s, %.2f MB/s", seconds, files / seconds,
+				bytes / (1024.0 * 1024.0) / seconds));
+		out.println(String.format("latency p50 %.3f ms, p99 %.3f ms", percentile(latencies, 0.50) / 1e6,
+				percentile(latencies, 0.99) / 1e6));
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private Parser newParser() {
+		Parser parser = new Parser(limits);
+		parser.setOutput(null);
+		parser.setMaxErrors(maxErrors);
+		return parser;
+	}
+
+	/**
+	 * Returns a virtual-thread-per-task executor if one was requested and the
+	 * running JVM provides it, or a fixed pool of worker threads otherwise.
+	 */
+	private ExecutorService executor() {
+		if (virtual) {
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				System.err.println("Virtual threads are not available; using " + threads + " worker threads.");
+			}
+		}
+		return Executors.newFixedThreadPool(threads);
+	}
+
+	private static boolean isGlob(String operand) {
+		return operand.indexOf('*') >= 0 || operand.indexOf('?') >= 0 || operand.indexOf('[') >= 0
+				|| operand.indexOf('{') >= 0;
+	}
+
+	/**
+	 * Expands a glob, walking from the longest leading part of the pattern
+	 * that contains no wildcards.
+	 */
+	private static List<Path> glob(String pattern) throws IOException {
+		String normalized = pattern.replace('\\', '/');
+		int wildcard = normalized.length();
+		for (char c : new char[] { '*', '?', '[', '{' }) {
+			int i = normalized.indexOf(c);
+			if (i >= 0 && i < wildcard) {
+				wildcard = i;
+			}
+		}
+		int slash = normalized.lastIndexOf('/', wildcard);
+		Path base = slash < 0 ? Paths.get(".") : Paths.get(normalized.substring(0, slash + 1));
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+		return walk(base, p -> matcher.matches(slash < 0 ? base.relativize(p) : p));
+	}
+
+	private static List<Path> walk(Path directory, Predicate<Path> filter) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return new ArrayList<Path>();
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			return paths.filter(Files::isRegularFile).filter(filter).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Counts the tokens pulled from a streaming lexer.
+	 */
+	private static class CountingSource implements TokenSource {
+		private final TokenSource source;
+		int count;
+
+		CountingSource(TokenSource source) {
+			this.source = source;
+		}
+
+		@Override
+		public Token nextToken() throws LexerException {
+			Token token = source.nextToken();
+			if (token != null) {
+				count++;
+			}
+			return token;
+		}
+	}
+
+	/**
+	 * The outcome of validating a single file.
+	 */
+	private static class Result {
+		final Path file;
+		final long bytes;
+		final int tokens;
+		final long nanos;
+		final String error;
+
+		Result(Path file, long bytes, int tokens, long nanos, String error) {
+			this.file = file;
+			this.bytes = bytes;
+			this.tokens = tokens;
+			this.nanos = nanos;
+			this.error = error;
+		}
+	}
+}
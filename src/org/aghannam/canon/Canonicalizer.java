@@ -0,0 +1,316 @@
+/*
+ * CS 575: Project #2
+ * File: Canonicalizer.java
+ */
+package org.aghannam.canon;
+
+import org.aghannam.lex.Lexer.TokenType;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+import org.aghannam.lex.TokenSource;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class writes out the canonical form of an XML-- document while the
+ * parser checks it.
+ * <p>
+ * The canonical form has no comments, and no whitespace except a single space
+ * before each attribute and between consecutive DATA words; attribute values
+ * are in double quotes, a <code>"</code> in a value formerly in single quotes
+ * becoming <code>&amp;quot;</code>. It has the same tokens as the original
+ * document, so it parses the same way, and canonicalizing it again changes
+ * nothing.
+ * <p>
+ * The document is read from a buffer of UTF-8 bytes, typically a mapped file,
+ * and the tokens are seen as the parser pulls them from the lexer. Most of
+ * the output is the same as the input: every token but a re-quoted value, and
+ * every space already where a space belongs. Such stretches are not copied
+ * but written straight from the input buffer, as slices of it, and bytes are
+ * only made anew where the canonical form differs, that is for re-quoted
+ * values and for whitespace that is replaced by a single space. The slices
+ * are handed to the channel up to {@value #GATHER} at a time, in one gathering
+ * write if the channel supports it, so a document that is mostly canonical
+ * already is written in a few large writes, and the writer adds little to the
+ * time the lexer and parser take.
+ * <p>
+ * Output is written as the document is parsed, so if the document turns out
+ * to be invalid, what has been written is only the canonical form of the part
+ * before the error.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class Canonicalizer implements TokenSource {
+	/* How many buffers to hand to the channel in one write. */
+	private static final int GATHER = 256;
+
+	/* Room for the bytes made anew between two writes. */
+	private static final int SCRATCH_SIZE = 64 * 1024;
+
+	private static final byte[] SPACE = { ' ' };
+
+	private final ByteBuffer source;
+	private final TokenSource tokens;
+	private final WritableByteChannel out;
+
+	/* The buffers waiting to be written, and the room for new bytes among them. */
+	private final ByteBuffer[] pending = new ByteBuffer[GATHER];
+	private int count;
+	private final ByteBuffer scratch = ByteBuffer.allocate(SCRATCH_SIZE);
+	private long written;
+
+	/* How far the source has been read, in characters and in bytes. */
+	private long chars;
+	private int bytes;
+
+	/* Where the output runs the same as the source, up to where it has been read, or -1. */
+	private int copyFrom = -1;
+
+	private Token previous;
+
+	private Canonicalizer(ByteBuffer source, TokenSource tokens, WritableByteChannel out) {
+		this.source = source;
+		this.tokens = tokens;
+		this.out = out;
+	}
+
+	/**
+	 * Parses a document and writes out its canonical form.
+	 *
+	 * @param source
+	 *            the document, in UTF-8, from its position to its limit
+	 * @param out
+	 *            the channel to write the canonical form to
+	 * @param limits
+	 *            the limits to enforce
+	 * @return the number of bytes written
+	 * @throws LexerException
+	 *             if the document cannot be scanned
+	 * @throws ParserException
+	 *             if any syntax errors are encountered
+	 * @throws IOException
+	 *             if the channel cannot be written to
+	 */
+	public static long canonicalize(ByteBuffer source, WritableByteChannel out, Limits limits)
+			throws LexerException, ParserException, IOException {
+		ByteBuffer document = source.slice();
+		limits.checkInputBytes(document.remaining());
+		InputStreamReader in = new InputStreamReader(new BufferInputStream(document.duplicate()),
+				StandardCharsets.UTF_8);
+		Canonicalizer writer = new Canonicalizer(document, new StreamingLexer(in, limits), out);
+		Parser parser = new Parser(limits);
+		parser.setOutput(null);
+		try {
+			parser.parse(writer);
+			writer.finish();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return writer.written;
+	}
+
+	@Override
+	public Token nextToken() throws LexerException {
+		Token token = tokens.nextToken();
+		if (token == null) {
+			return null;
+		}
+		try {
+			write(token);
+		} catch (IOException e) {
+			// Only lexing errors can pass through the parser; unwrapped by canonicalize
+			throw new UncheckedIOException(e);
+		}
+		previous = token;
+		return token;
+	}
+
+	@Override
+	public String locate(long offset) {
+		return tokens.locate(offset);
+	}
+
+	/**
+	 * Writes out the whitespace and comments before a token, then the token,
+	 * either of which is left to be copied from the source if it is already
+	 * canonical.
+	 */
+	private void write(Token token) throws IOException {
+		int gapStart = bytes;
+		advance(token.getOffset());
+		int start = bytes;
+		String lexeme = token.getLexeme();
+		advance(token.getOffset() + lexeme.length());
+
+		boolean space = previous != null && (token.getType() == TokenType.NAME
+				&& (previous.getType() == TokenType.NAME || previous.getType() == TokenType.STRING)
+				|| token.getType() == TokenType.DATA && previous.getType() == TokenType.DATA && start > gapStart);
+		if (start - gapStart == (space ? 1 : 0) && (!space || source.get(gapStart) == ' ')) {
+			if (copyFrom < 0) {
+				copyFrom = gapStart;
+			}
+		} else {
+			copy(gapStart);
+			if (space) {
+				add(SPACE);
+			}
+		}
+
+		if (token.getType() == TokenType.STRING && lexeme.charAt(0) == '\'') {
+			copy(start);
+			add(("\"" + lexeme.substring(1, lexeme.length() - 1).replace("\"", "&quot;") + "\"")
+					.getBytes(StandardCharsets.UTF_8));
+		} else if (copyFrom < 0) {
+			copyFrom = start;
+		}
+	}
+
+	/**
+	 * Reads the source up to the given character offset.
+	 */
+	private void advance(long offset) {
+		while (chars < offset) {
+			int b = source.get(bytes);
+			int length = b >= 0 ? 1 : b < (byte) 0xe0 ? 2 : b < (byte) 0xf0 ? 3 : 4;
+			bytes += length;
+			chars += length == 4 ? 2 : 1; // a surrogate pair
+		}
+	}
+
+	/**
+	 * Ends the stretch of output copied from the source at the given byte
+	 * offset.
+	 */
+	private void copy(int end) throws IOException {
+		if (copyFrom >= 0 && end > copyFrom) {
+			queue(source.slice(copyFrom, end - copyFrom));
+		}
+		copyFrom = -1;
+	}
+
+	/**
+	 * Adds bytes that are not in the source to the output.
+	 */
+	private void add(byte[] b) throws IOException {
+		if (b.length > scratch.capacity()) {
+			queue(ByteBuffer.wrap(b));
+			return;
+		} else if (b.length > scratch.remaining()) {
+			drain();
+		}
+		int at = scratch.position();
+		scratch.put(b);
+		queue(scratch.slice(at, b.length));
+	}
+
+	private void queue(ByteBuffer buffer) throws IOException {
+		pending[count++] = buffer;
+		if (count == pending.length) {
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		if (out instanceof GatheringByteChannel) {
+			GatheringByteChannel channel = (GatheringByteChannel) out;
+			int first = 0;
+			while (first < count) {
+				written += channel.write(pending, first, count - first);
+				while (first < count && !pending[first].hasRemaining()) {
+					first++;
+				}
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				while (pending[i].hasRemaining()) {
+					written += out.write(pending[i]);
+				}
+			}
+		}
+		Arrays.fill(pending, 0, count, null);
+		count = 0;
+		scratch.clear();
+	}
+
+	/**
+	 * Writes out what is left once the parser is done, leaving out anything
+	 * after the last token.
+	 */
+	private void finish() throws IOException {
+		copy(bytes);
+		drain();
+	}
+
+	/**
+	 * Reads a buffer as a stream, for the lexer.
+	 */
+	private static class BufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			} else if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(length, buffer.remaining());
+			buffer.get(b, offset, n);
+			return n;
+		}
+	}
+
+	/**
+	 * Writes out the canonical form of an XML-- file, to another file or to
+	 * standard output.
+	 *
+	 * @param args
+	 *            the file to canonicalize, and optionally the file to write
+	 * @throws Exception
+	 *             if either file cannot be read or written, or the document is
+	 *             invalid
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1 && args.length != 2) {
+			System.err.println("Usage: Canonicalizer <in.xml> [<out.xml>]");
+			System.exit(2);
+		}
+		try (FileChannel in = FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ)) {
+			ByteBuffer document = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+			if (args.length == 2) {
+				try (FileChannel out = FileChannel.open(Paths.get(args[1]), StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+					canonicalize(document, out, Limits.NONE);
+				}
+			} else {
+				canonicalize(document, Channels.newChannel(System.out), Limits.NONE);
+				System.out.flush();
+			}
+		}
+	}
+}
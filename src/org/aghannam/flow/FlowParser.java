@@ -0,0 +1,462 @@
+/*
+ * CS 575: Project #2
+ * File: FlowParser.java
+ */
+package org.aghannam.flow;
+
+import org.aghannam.lex.InflatingReader;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.parser.ParseListener;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.Parser.Rule;
+import org.aghannam.parser.ParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * This class parses a document arriving as a <code>Flow</code> of byte
+ * buffers, and publishes what it finds in batches of {@link ParseEvent}s.
+ * <p>
+ * The processor subscribes to a publisher of the document's bytes, in UTF-8
+ * or gzip- or zlib-compressed (see {@link InflatingReader}), and publishes to
+ * a single subscriber. Once both are there, the document is lexed and parsed
+ * on a thread of its own, the events being collected into batches of up to
+ * the batch size, each an unmodifiable list, in document order: the start of
+ * each element, then its attributes, DATA words and children, then its end,
+ * with the reductions by grammar rule in between as the parser makes them.
+ * <p>
+ * The parse goes only as fast as the subscriber asks for batches: once a
+ * batch is full, the parse waits until the subscriber has requested it, and a
+ * buffer is only requested from upstream when the lexer has read the last
+ * one. A slow subscriber thus throttles the lexer and, through it, the
+ * publisher, and what is held at any time is one batch, the buffer being
+ * read and one more, and the lexer's own window. Compressed input adds the
+ * decompressed characters read ahead by the inflater: the processor opens it
+ * with a depth of {@value #INFLATER_DEPTH}, so at most that many chunks of
+ * {@value InflatingReader#CHUNK_SIZE} characters. Buffers are read after
+ * <code>onNext</code> returns, from their position to their limit, so the
+ * publisher must not reuse them.
+ * <p>
+ * After the last batch, the subscriber gets <code>onComplete</code> if the
+ * document is well-formed and <code>onError</code> otherwise, with the
+ * <code>LexerException</code> or <code>ParserException</code> that made it
+ * fail, or the error the publisher signalled. The events up to the error are
+ * published first. Cancelling the subscription stops the parse and cancels
+ * the subscription upstream.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class FlowParser implements Flow.Processor<ByteBuffer, List<ParseEvent>> {
+	/**
+	 * How many events to publish at a time unless told otherwise.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/*
+	 * How many chunks compressed input is inflated into: the one being lexed
+	 * and the next, so that inflating keeps up without reading far ahead of a
+	 * slow subscriber.
+	 */
+	private static final int INFLATER_DEPTH = 2;
+
+	private final Limits limits;
+	private final int batchSize;
+	private final Executor executor;
+
+	/* Guards everything below, and is waited on by the parsing thread. */
+	private final Object lock = new Object();
+
+	/* The publisher's side: a buffer received and not yet read, and how it ends. */
+	private Flow.Subscription upstream;
+	private ByteBuffer received;
+	private boolean requested;
+	private boolean ended;
+	private Throwable upstreamError;
+
+	/* The subscriber's side. */
+	private Flow.Subscriber<? super List<ParseEvent>> subscriber;
+	private boolean subscribed;
+	private long demand;
+	private volatile boolean cancelled;
+	private Throwable failure;
+
+	/**
+	 * Constructs a processor that does not limit the documents it parses,
+	 * publishes {@value #DEFAULT_BATCH_SIZE} events at a time and parses on a
+	 * daemon thread of its own.
+	 */
+	public FlowParser() {
+		this(Limits.NONE, DEFAULT_BATCH_SIZE, task -> {
+			Thread thread = new Thread(task, "flow-parser");
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	/**
+	 * Constructs a processor.
+	 *
+	 * @param limits
+	 *            the limits to enforce
+	 * @param batchSize
+	 *            the most events to publish at a time
+	 * @param executor
+	 *            runs the parse, which blocks while it waits for input or
+	 *            demand, so it should not be a small shared pool
+	 * @throws IllegalArgumentException
+	 *             if the batch size is less than 1
+	 */
+	public FlowParser(Limits limits, int batchSize, Executor executor) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be at least 1, got " + batchSize + ".");
+		}
+		this.limits = limits;
+		this.batchSize = batchSize;
+		this.executor = executor;
+	}
+
+	/*
+	 * The publisher's side.
+	 */
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		Objects.requireNonNull(subscription);
+		boolean refuse;
+		synchronized (lock) {
+			refuse = upstream != null || cancelled;
+			if (upstream == null) {
+				upstream = subscription;
+				lock.notifyAll();
+			}
+		}
+		if (refuse) {
+			subscription.cancel();
+		}
+	}
+
+	@Override
+	public void onNext(ByteBuffer buffer) {
+		Objects.requireNonNull(buffer);
+		Flow.Subscription cancel = null;
+		synchronized (lock) {
+			if (received != null || !requested) {
+				cancel = stop(new IllegalStateException("The publisher sent a buffer that was not requested."));
+			} else {
+				received = buffer;
+				requested = false;
+				lock.notifyAll();
+			}
+		}
+		if (cancel != null) {
+			cancel.cancel();
+		}
+	}
+
+	@Override
+	public void onError(Throwable error) {
+		Objects.requireNonNull(error);
+		synchronized (lock) {
+			upstreamError = error;
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void onComplete() {
+		synchronized (lock) {
+			ended = true;
+			lock.notifyAll();
+		}
+	}
+
+	/*
+	 * The subscriber's side.
+	 */
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super List<ParseEvent>> subscriber) {
+		Objects.requireNonNull(subscriber);
+		boolean refuse;
+		synchronized (lock) {
+			refuse = subscribed;
+			if (!subscribed) {
+				this.subscriber = subscriber;
+				subscribed = true;
+			}
+		}
+		if (refuse) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("A FlowParser publishes to a single subscriber."));
+			return;
+		}
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				Flow.Subscription cancel = null;
+				synchronized (lock) {
+					if (n <= 0) {
+						cancel = stop(new IllegalArgumentException("Requested " + n + " batches; requests must be positive."));
+					} else {
+						demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+						lock.notifyAll();
+					}
+				}
+				if (cancel != null) {
+					cancel.cancel();
+				}
+			}
+
+			@Override
+			public void cancel() {
+				Flow.Subscription cancel;
+				synchronized (lock) {
+					cancel = stop(null);
+				}
+				if (cancel != null) {
+					cancel.cancel();
+				}
+			}
+		});
+		executor.execute(this::run);
+	}
+
+	/**
+	 * Stops the parse, reporting the given error to the subscriber unless it
+	 * is <code>null</code>. Called while holding the lock.
+	 *
+	 * @return the subscription to cancel upstream once the lock has been
+	 *         released, as the publisher may signal back into this processor
+	 *         from <code>cancel</code>, or <code>null</code> if there is none
+	 *         or the parse had already stopped
+	 */
+	private Flow.Subscription stop(Throwable error) {
+		if (cancelled) {
+			return null;
+		}
+		cancelled = true;
+		failure = error;
+		lock.notifyAll();
+		return upstream;
+	}
+
+	/*
+	 * The parse.
+	 */
+
+	private void run() {
+		Flow.Subscriber<? super List<ParseEvent>> target;
+		synchronized (lock) {
+			target = subscriber;
+		}
+		Events events = new Events(target);
+		Parser parser = new Parser(limits);
+		parser.setOutput(null);
+		parser.setListener(events);
+		Throwable error = null;
+		try (Reader in = InflatingReader.open(new Chunks(), INFLATER_DEPTH, limits)) {
+			parser.parse(new StreamingLexer(in, limits));
+		} catch (LexerException | ParserException | IOException | RuntimeException e) {
+			error = e;
+		}
+
+		Flow.Subscription cancel = null;
+		synchronized (lock) {
+			if (upstreamError != null) {
+				error = upstreamError;
+			} else if (!ended && !cancelled) {
+				// the parse failed before the end of the input
+				cancel = upstream;
+			}
+		}
+		if (cancel != null) {
+			cancel.cancel();
+		}
+		boolean open = events.flush();
+		Throwable stopped = null;
+		synchronized (lock) {
+			if (cancelled) {
+				open = false;
+				stopped = failure;
+			}
+			// Nothing more is signalled, whatever the subscriber does now
+			cancelled = true;
+			subscriber = null;
+		}
+		if (open) {
+			if (error != null) {
+				target.onError(error);
+			} else {
+				target.onComplete();
+			}
+		} else if (stopped != null) {
+			target.onError(stopped);
+		}
+	}
+
+	/**
+	 * Collects the parser's events into batches, and publishes each once the
+	 * subscriber has asked for it.
+	 */
+	private class Events implements ParseListener {
+		private final Flow.Subscriber<? super List<ParseEvent>> target;
+		private List<ParseEvent> batch;
+
+		Events(Flow.Subscriber<? super List<ParseEvent>> target) {
+			this.target = target;
+			this.batch = new ArrayList<ParseEvent>(batchSize);
+		}
+
+		private void add(ParseEvent event) {
+			batch.add(event);
+			if (batch.size() == batchSize) {
+				flush();
+			}
+		}
+
+		/**
+		 * Publishes the events collected so far, waiting for demand.
+		 *
+		 * @return <code>false</code> if the subscription has been cancelled
+		 */
+		boolean flush() {
+			Flow.Subscription cancel = null;
+			boolean open;
+			synchronized (lock) {
+				while (demand == 0 && !cancelled && !batch.isEmpty()) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						cancel = stop(e);
+					}
+				}
+				open = !cancelled;
+				if (open && !batch.isEmpty() && demand != Long.MAX_VALUE) {
+					demand--;
+				}
+			}
+			if (cancel != null) {
+				cancel.cancel();
+			}
+			if (!open) {
+				return false;
+			} else if (batch.isEmpty()) {
+				return true;
+			}
+			List<ParseEvent> full = Collections.unmodifiableList(batch);
+			batch = new ArrayList<ParseEvent>(batchSize);
+			target.onNext(full);
+			return true;
+		}
+
+		@Override
+		public void startElement(String name) {
+			add(ParseEvent.startElement(name));
+		}
+
+		@Override
+		public void attribute(String name, String value) {
+			add(ParseEvent.attribute(name, value));
+		}
+
+		@Override
+		public boolean enterContent() {
+			return true;
+		}
+
+		@Override
+		public void data(String data) {
+			add(ParseEvent.data(data));
+		}
+
+		@Override
+		public void endElement(String name) {
+			add(ParseEvent.endElement(name));
+		}
+
+		@Override
+		public void reduce(Rule rule) {
+			add(ParseEvent.rule(rule));
+		}
+
+		@Override
+		public boolean isDone() {
+			return cancelled;
+		}
+	}
+
+	/**
+	 * Reads the buffers received from upstream, requesting the next one only
+	 * once the last has been read.
+	 */
+	private class Chunks extends InputStream {
+		private ByteBuffer current;
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			while (current == null || !current.hasRemaining()) {
+				Flow.Subscription request = null;
+				synchronized (lock) {
+					if (cancelled) {
+						throw new InterruptedIOException("The subscription has been cancelled.");
+					} else if (received != null) {
+						current = received;
+						received = null;
+						continue;
+					} else if (upstreamError != null) {
+						throw new IOException("The publisher failed: " + upstreamError, upstreamError);
+					} else if (ended) {
+						return -1;
+					} else if (!requested && upstream != null) {
+						requested = true;
+						request = upstream;
+					} else {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new InterruptedIOException("Interrupted while waiting for the document.");
+						}
+					}
+				}
+				if (request != null) {
+					// outside the lock, as the publisher may answer on another thread
+					request.request(1);
+				}
+			}
+			int n = Math.min(length, current.remaining());
+			current.get(b, offset, n);
+			return n;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * CS 575: Project #2
+ * File: ParseEvent.java
+ */
+package org.aghannam.flow;
+
+import org.aghannam.parser.Parser.Rule;
+
+/**
+ * This class represents one step of a parse published by a
+ * {@link FlowParser}: the start or end of an element, an attribute, a DATA
+ * word, or a reduction by one of the grammar's rules.
+ * <p>
+ * Events are immutable. Names and values are given as the
+ * {@link org.aghannam.parser.ParseListener} receives them, that is with
+ * references decoded and without quotes.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class ParseEvent {
+
+	public static enum Kind {
+		START_ELEMENT, ATTRIBUTE, DATA, END_ELEMENT, RULE;
+	}
+
+	private final Kind kind;
+	private final String name;
+	private final String value;
+	private final Rule rule;
+
+	private ParseEvent(Kind kind, String name, String value, Rule rule) {
+		this.kind = kind;
+		this.name = name;
+		this.value = value;
+		this.rule = rule;
+	}
+
+	static ParseEvent startElement(String name) {
+		return new ParseEvent(Kind.START_ELEMENT, name, null, null);
+	}
+
+	static ParseEvent attribute(String name, String value) {
+		return new ParseEvent(Kind.ATTRIBUTE, name, value, null);
+	}
+
+	static ParseEvent data(String data) {
+		return new ParseEvent(Kind.DATA, null, data, null);
+	}
+
+	static ParseEvent endElement(String name) {
+		return new ParseEvent(Kind.END_ELEMENT, name, null, null);
+	}
+
+	static ParseEvent rule(Rule rule) {
+		return new ParseEvent(Kind.RULE, null, null, rule);
+	}
+
+	/**
+	 * Returns what kind of event this is.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the name of the element or attribute, or <code>null</code> for
+	 * DATA and rules.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the value of the attribute or the text of the DATA word, or
+	 * <code>null</code> for other events.
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the rule reduced by, or <code>null</code> for other events. Its
+	 * ordinal identifies it compactly.
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case START_ELEMENT:
+			return "<" + name;
+		case ATTRIBUTE:
+			return name + "=\"" + value + "\"";
+		case DATA:
+			return value;
+		case END_ELEMENT:
+			return "</" + name;
+		default:
+			return rule.production;
+		}
+	}
+}
@@ -0,0 +1,468 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentGenerator.java
+ */
+package org.aghannam.gen;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * This class generates synthetic XML-- documents for benchmarks and soak
+ * tests.
+ * <p>
+ * Every document is produced from a seed, so the same settings and seed always
+ * yield the same bytes. The shape of the document is controlled by the maximum
+ * nesting depth, the maximum number of children per element (fan-out), the
+ * maximum number of attributes per tag, the length of element and attribute
+ * names, the number of words in each DATA run, and the probability with which
+ * any character of DATA or of an attribute value is written as an entity or
+ * character reference instead. Once the requested total size has been
+ * written, every element still open is closed and generation stops, so the
+ * size is a close upper bound rather than an exact figure.
+ * <p>
+ * The document is written straight to a <code>Writer</code> as it is
+ * generated; only the chain of currently open elements is held in memory, so
+ * documents of several gigabytes can be produced. All output is ASCII, so the
+ * number of characters written is also the size in bytes.
+ * <p>
+ * By default every generated document can be derived from the grammar. A
+ * single {@link Defect} may be requested instead, in which case exactly one
+ * construct of that kind is planted in the document and everything else stays
+ * well-formed.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class DocumentGenerator {
+
+	/**
+	 * The kinds of error that can be planted in a generated document.
+	 */
+	public static enum Defect {
+		/** An end tag whose name differs from its start tag. */
+		MISMATCHED_END_TAG,
+		/** A tag that declares the same attribute name twice. */
+		DUPLICATE_ATTRIBUTE,
+		/** A NAME containing a character the lexer rejects. */
+		ILLEGAL_NAME_CHARACTER,
+		/** A document whose root element is never closed. */
+		MISSING_END_TAG;
+	}
+
+	/* Characters that may start a NAME, and those that may follow. */
+	private static final String NAME_INITIAL = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_";
+	private static final String NAME_OTHER = NAME_INITIAL + "0123456789-.";
+	private static final String WORD_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789";
+	private static final String[] ENTITIES = { "&lt;", "&gt;", "&quot;", "&apos;", "&amp;", "&#169;", "&#x00B0;" };
+
+	/* How many distinct element and attribute names a document draws from. */
+	private static final int NAME_POOL_SIZE = 64;
+
+	private long seed = 0;
+	private int maxDepth = 6;
+	private int fanOut = 8;
+	private int maxAttributes = 3;
+	private int nameLength = 8;
+	private int dataWords = 6;
+	private double entityDensity = 0.0;
+	private long targetSize = 64 * 1024;
+	private Defect defect;
+
+	/* Per-run state. */
+	private Random random;
+	private String[] elementNames;
+	private String[] attributeNames;
+	private Writer out;
+	private long written;
+	private long elementCount;
+	private long defectAt;
+	private boolean pending;
+
+	/**
+	 * Sets the seed from which the document is generated.
+	 */
+	public DocumentGenerator seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum nesting depth below the root element.
+	 */
+	public DocumentGenerator maxDepth(int maxDepth) {
+		this.maxDepth = Math.max(0, maxDepth);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of children (elements or DATA runs) per element.
+	 */
+	public DocumentGenerator fanOut(int fanOut) {
+		this.fanOut = Math.max(1, fanOut);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of attributes per tag.
+	 */
+	public DocumentGenerator maxAttributes(int maxAttributes) {
+		this.maxAttributes = Math.max(0, maxAttributes);
+		return this;
+	}
+
+	/**
+	 * Sets the length of every element and attribute name.
+	 */
+	public DocumentGenerator nameLength(int nameLength) {
+		this.nameLength = Math.max(1, nameLength);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of words in a single DATA run.
+	 */
+	public DocumentGenerator dataWords(int dataWords) {
+		this.dataWords = Math.max(1, dataWords);
+		return this;
+	}
+
+	/**
+	 * Sets the probability, between 0 and 1, that a character of DATA or of an
+	 * attribute value is written as a reference instead.
+	 */
+	public DocumentGenerator entityDensity(double entityDensity) {
+		this.entityDensity = Math.min(1.0, Math.max(0.0, entityDensity));
+		return this;
+	}
+
+	/**
+	 * Sets the approximate size of the document, in bytes.
+	 */
+	public DocumentGenerator targetSize(long targetSize) {
+		this.targetSize = Math.max(0, targetSize);
+		return this;
+	}
+
+	/**
+	 * Plants a single error of the given kind in the document, or none if
+	 * <code>null</code>.
+	 */
+	public DocumentGenerator defect(Defect defect) {
+		this.defect = defect;
+		return this;
+	}
+
+	/**
+	 * Generates a document and returns it as a string.
+	 * <p>
+	 * Only suitable for documents that comfortably fit in memory; use
+	 * {@link #generate(Path)} or {@link #generate(Writer)} otherwise.
+	 *
+	 * @return the generated document
+	 */
+	public String generateString() {
+		StringWriter sw = new StringWriter();
+		try {
+			generate(sw);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // cannot happen with a StringWriter
+		}
+		return sw.toString();
+	}
+
+	/**
+	 * Generates a document into the given file, replacing it if it exists.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public long generate(Path file) throws IOException {
+		try (Writer w = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.US_ASCII), 1 << 16)) {
+			return generate(w);
+		}
+	}
+
+	/**
+	 * Generates a document into the given writer. The writer is not closed.
+	 *
+	 * @param out
+	 *            the destination of the document
+	 * @return the number of characters (equivalently, bytes) written
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public long generate(Writer out) throws IOException {
+		this.out = out;
+		this.random = new Random(seed);
+		this.written = 0;
+		this.elementCount = 0;
+		this.elementNames = namePool();
+		this.attributeNames = namePool();
+		// The defect lands on an element somewhere in the first stretch of the
+		// document, so that it is present even in small documents. If that
+		// element cannot carry it (an empty tag cannot have a mismatched end
+		// tag), the next one that can does, and failing that a last one is
+		// added to the root just before it is closed.
+		this.defectAt = defect == null ? -1 : 1 + random.nextInt(8);
+		this.pending = defect != null && defect != Defect.MISSING_END_TAG;
+
+		Deque<Frame> open = new ArrayDeque<Frame>();
+		open.push(startTag(0, Integer.MAX_VALUE));
+
+		while (!open.isEmpty()) {
+			Frame top = open.peek();
+			if (written >= targetSize) {
+				top.remaining = 0; // size reached: unwind and close everything
+			}
+			if (top.remaining == 0 && pending && open.size() == 1) {
+				if (defect == Defect.MISMATCHED_END_TAG) {
+					top.mismatched = true;
+					pending = false;
+				} else {
+					defectAt = elementCount;
+					startTag(1, 0);
+				}
+			}
+			if (top.remaining == 0) {
+				open.pop();
+				endTag(top, open.isEmpty());
+				continue;
+			}
+			top.remaining--;
+			int depth = open.size();
+			if (depth > maxDepth || random.nextInt(4) == 0) {
+				data();
+			} else {
+				Frame child = startTag(depth, random.nextInt(fanOut + 1));
+				if (child != null) {
+					open.push(child);
+				}
+			}
+		}
+		write("\n");
+		out.flush();
+		return written;
+	}
+
+	/**
+	 * Writes a start tag (or an empty tag) and returns the frame to push for
+	 * it, or <code>null</code> if it was an empty tag.
+	 */
+	private Frame startTag(int depth, int children) throws IOException {
+		long index = elementCount++;
+		boolean planted = pending && index >= defectAt;
+		String name = elementNames[random.nextInt(elementNames.length)];
+
+		write("<");
+		if (planted && defect == Defect.ILLEGAL_NAME_CHARACTER) {
+			write(name + "*");
+		} else {
+			write(name);
+		}
+		attributes(planted && defect == Defect.DUPLICATE_ATTRIBUTE);
+
+		if (depth > 0 && children == 0) {
+			write("/>\n");
+			if (planted && defect != Defect.MISMATCHED_END_TAG) {
+				pending = false;
+			}
+			return null;
+		}
+		write(">");
+		if (planted) {
+			pending = false;
+		}
+		Frame frame = new Frame(name, children);
+		frame.mismatched = planted && defect == Defect.MISMATCHED_END_TAG;
+		return frame;
+	}
+
+	private void endTag(Frame frame, boolean root) throws IOException {
+		if (root && defect == Defect.MISSING_END_TAG) {
+			return;
+		}
+		write("</");
+		write(frame.mismatched ? frame.name + "x" : frame.name);
+		write(">\n");
+	}
+
+	private void attributes(boolean duplicate) throws IOException {
+		int count = maxAttributes == 0 ? 0 : random.nextInt(maxAttributes + 1);
+		if (duplicate && count == 0) {
+			count = 1;
+		}
+		// Attribute names within a tag must be distinct, so walk the pool from
+		// a random starting point instead of drawing independently.
+		int first = random.nextInt(attributeNames.length);
+		for (int i = 0; i < count; i++) {
+			attribute(attributeNames[(first + i) % attributeNames.length]);
+		}
+		if (duplicate) {
+			attribute(attributeNames[first]);
+		}
+	}
+
+	private void attribute(String name) throws IOException {
+		char quote = random.nextBoolean() ? '"' : '\'';
+		write(" ");
+		write(name);
+		write("=");
+		write(String.valueOf(quote));
+		characters(1 + random.nextInt(nameLength * 2));
+		write(String.valueOf(quote));
+	}
+
+	private void data() throws IOException {
+		int words = 1 + random.nextInt(dataWords);
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				write(" ");
+			}
+			characters(1 + random.nextInt(8));
+		}
+	}
+
+	private void characters(int length) throws IOException {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			if (entityDensity > 0 && random.nextDouble() < entityDensity) {
+				sb.append(ENTITIES[random.nextInt(ENTITIES.length)]);
+			} else {
+				sb.append(WORD_CHARS.charAt(random.nextInt(WORD_CHARS.length())));
+			}
+		}
+		write(sb.toString());
+	}
+
+	private String[] namePool() {
+		String[] pool = new String[Math.max(NAME_POOL_SIZE, maxAttributes + 1)];
+		for (int i = 0; i < pool.length; i++) {
+			StringBuilder sb = new StringBuilder(nameLength);
+			sb.append(NAME_INITIAL.charAt(random.nextInt(NAME_INITIAL.length())));
+			while (sb.length() < nameLength - 1) {
+				sb.append(NAME_OTHER.charAt(random.nextInt(NAME_OTHER.length())));
+			}
+			// The lexer takes "->" for the end of a comment, so a name must not
+			// end with '-' (nor, for symmetry, with '.').
+			if (sb.length() < nameLength) {
+				sb.append(WORD_CHARS.charAt(random.nextInt(WORD_CHARS.length())));
+			}
+			pool[i] = sb.toString();
+		}
+		return pool;
+	}
+
+	private void write(String s) throws IOException {
+		out.write(s);
+		written += s.length();
+	}
+
+	/**
+	 * An element whose start tag has been written but whose end tag has not.
+	 */
+	private static class Frame {
+		final String name;
+		int remaining;
+		boolean mismatched;
+
+		Frame(String name, int remaining) {
+			this.name = name;
+			this.remaining = remaining;
+		}
+	}
+
+	/**
+	 * Writes a generated document to a file.
+	 * <p>
+	 * Usage: <code>DocumentGenerator [key=value ...] output.xml</code>, where
+	 * the keys are <code>seed</code>, <code>size</code> (with an optional
+	 * <code>k</code>, <code>m</code> or <code>g</code> suffix),
+	 * <code>depth</code>, <code>fanout</code>, <code>attributes</code>,
+	 * <code>name</code>, <code>words</code>, <code>entities</code> and
+	 * <code>defect</code>.
+	 *
+	 * @param args
+	 *            the settings, followed by the output file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: DocumentGenerator [seed=N] [size=N[k|m|g]] [depth=N] [fanout=N] "
+					+ "[attributes=N] [name=N] [words=N] [entities=P] [defect=KIND] output.xml");
+			return;
+		}
+		DocumentGenerator generator = new DocumentGenerator();
+		for (int i = 0; i < args.length - 1; i++) {
+			String[] setting = args[i].split("=", 2);
+			if (setting.length != 2) {
+				throw new IllegalArgumentException("Malformed setting '" + args[i] + "'.");
+			}
+			String value = setting[1];
+			switch (setting[0]) {
+			case "seed":
+				generator.seed(Long.parseLong(value));
+				break;
+			case "size":
+				generator.targetSize(parseSize(value));
+				break;
+			case "depth":
+				generator.maxDepth(Integer.parseInt(value));
+				break;
+			case "fanout":
+				generator.fanOut(Integer.parseInt(value));
+				break;
+			case "attributes":
+				generator.maxAttributes(Integer.parseInt(value));
+				break;
+			case "name":
+				generator.nameLength(Integer.parseInt(value));
+				break;
+			case "words":
+				generator.dataWords(Integer.parseInt(value));
+				break;
+			case "entities":
+				generator.entityDensity(Double.parseDouble(value));
+				break;
+			case "defect":
+				generator.defect(Defect.valueOf(value.toUpperCase()));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown setting '" + setting[0] + "'.");
+			}
+		}
+		long bytes = generator.generate(Paths.get(args[args.length - 1]));
+		System.out.println("Wrote " + bytes + " bytes to " + args[args.length - 1]);
+	}
+
+	private static long parseSize(String value) {
+		String v = value.toLowerCase();
+		long unit = 1;
+		switch (v.charAt(v.length() - 1)) {
+		case 'k':
+			unit = 1024L;
+			break;
+		case 'm':
+			unit = 1024L * 1024;
+			break;
+		case 'g':
+			unit = 1024L * 1024 * 1024;
+			break;
+		default:
+			return Long.parseLong(v);
+		}
+		return Long.parseLong(v.substring(0, v.length() - 1)) * unit;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * CS 575: Project #2
+ * File: Budget.java
+ */
+package org.aghannam.lex;
+
+import java.time.Duration;
+
+/**
+ * This class holds the budget the lexer and the parser may spend on a single
+ * document: a wall-clock deadline, a maximum number of steps, and a
+ * {@link CancellationToken}.
+ * <p>
+ * Unlike {@link Limits}, which bound the size and shape of a document, a
+ * budget bounds the work done on it, so that a worker can be reclaimed from a
+ * stuck or enormous document without killing its thread. A step is one match
+ * of the lexer's pattern, or one action of the parser. The loops only consult
+ * the clock and the cancellation token every {@link #CHECK_INTERVAL} steps,
+ * which keeps the check off the per-token cost, so a deadline or cancellation
+ * takes effect within that many steps. The step limit itself is exact. The
+ * lexer and parser each count their own steps.
+ * <p>
+ * Instances are immutable. Start from {@link #UNLIMITED} and add constraints
+ * with the <code>with...()</code> methods. Note that {@link #withTimeout}
+ * fixes the deadline when it is called, so a budget with a timeout is meant
+ * to be created per request.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Budget {
+
+	/**
+	 * The reasons for which a document may be abandoned.
+	 */
+	public static enum Reason {
+		CANCELLED, DEADLINE, STEPS;
+	}
+
+	/**
+	 * How many steps may pass between two checks of the clock and the
+	 * cancellation token.
+	 */
+	public static final int CHECK_INTERVAL = 1024;
+
+	/**
+	 * No budget at all. This is what the lexer and parser use unless told
+	 * otherwise.
+	 */
+	public static final Budget UNLIMITED = new Budget(null, false, 0, Long.MAX_VALUE);
+
+	private final CancellationToken cancellation;
+	private final boolean hasDeadline;
+	private final long deadline;
+	private final long maxSteps;
+
+	private Budget(CancellationToken cancellation, boolean hasDeadline, long deadline, long maxSteps) {
+		this.cancellation = cancellation;
+		this.hasDeadline = hasDeadline;
+		this.deadline = deadline;
+		this.maxSteps = maxSteps;
+	}
+
+	/**
+	 * Returns a budget that is abandoned once the given token is cancelled.
+	 */
+	public Budget withCancellation(CancellationToken cancellation) {
+		return new Budget(cancellation, hasDeadline, deadline, maxSteps);
+	}
+
+	/**
+	 * Returns a budget whose deadline is the given amount of time from now.
+	 */
+	public Budget withTimeout(Duration timeout) {
+		return new Budget(cancellation, true, System.nanoTime() + timeout.toNanos(), maxSteps);
+	}
+
+	/**
+	 * Returns a budget that allows the given number of steps.
+	 */
+	public Budget withMaxSteps(long maxSteps) {
+		if (maxSteps <= 0) {
+			throw new IllegalArgumentException("The step budget must be positive, got " + maxSteps + ".");
+		}
+		return new Budget(cancellation, hasDeadline, deadline, maxSteps);
+	}
+
+	/**
+	 * Returns the maximum number of steps.
+	 */
+	public long getMaxSteps() {
+		return maxSteps;
+	}
+
+	/**
+	 * Returns the step count at which a loop that has taken the given number
+	 * of steps should next call {@link #check(long)}.
+	 * 
+	 * @param steps
+	 *            the steps taken so far
+	 * @return the step count of the next check
+	 */
+	public long nextCheck(long steps) {
+		return maxSteps - steps < CHECK_INTERVAL ? maxSteps + 1 : steps + CHECK_INTERVAL;
+	}
+
+	/**
+	 * Checks whether the budget has run out.
+	 * 
+	 * @param steps
+	 *            the steps taken so far
+	 * @return the reason the document must be abandoned, or <code>null</code>
+	 *         if it may go on
+	 */
+	public Reason check(long steps) {
+		if (cancellation != null && cancellation.isCancelled()) {
+			return Reason.CANCELLED;
+		} else if (hasDeadline && System.nanoTime() - deadline > 0) {
+			return Reason.DEADLINE;
+		} else if (steps > maxSteps) {
+			return Reason.STEPS;
+		}
+		return null;
+	}
+
+	/**
+	 * Describes why a document was abandoned, for use in error messages.
+	 * 
+	 * @param reason
+	 *            the reason returned by {@link #check(long)}
+	 * @param steps
+	 *            the steps taken so far
+	 * @return a sentence describing the reason
+	 */
+	public String describe(Reason reason, long steps) {
+		switch (reason) {
+		case CANCELLED:
+			return "Processing was cancelled after " + steps + " steps.";
+		case DEADLINE:
+			return "Deadline exceeded after " + steps + " steps.";
+		default:
+			return "Document needs more than " + maxSteps + " steps.";
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Budget[cancellable=%b, deadline=%s, steps=%d]", cancellation != null,
+				hasDeadline ? Duration.ofNanos(deadline - System.nanoTime()) : "none", maxSteps);
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * CS 575: Project #2
+ * File: CancellationToken.java
+ */
+package org.aghannam.lex;
+
+/**
+ * This class lets one thread ask the lexer and parser running on another
+ * thread to give up on a document.
+ * <p>
+ * Cancellation is cooperative: the lexing and parsing loops poll the token
+ * every so many steps (see {@link Budget}) and, once it has been cancelled,
+ * abort the document with a {@link LexerAbortedException} or a
+ * <code>ParserAbortedException</code>. A token stays cancelled and may be
+ * shared by every document of a request.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class CancellationToken {
+	private volatile boolean cancelled;
+
+	/**
+	 * Requests that every document using this token be abandoned.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns whether {@link #cancel()} has been called.
+	 * 
+	 * @return <code>true</code> once cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * CS 575: Project #2
+ * File: Entities.java
+ */
+package org.aghannam.lex;
+
+import java.util.Arrays;
+
+/**
+ * This class decodes the entity and character references that the lexer
+ * accepts in STRING and DATA tokens: <code>&amp;lt;</code>,
+ * <code>&amp;gt;</code>, <code>&amp;quot;</code>, <code>&amp;apos;</code>,
+ * <code>&amp;amp;</code>, <code>&amp;#NN;</code> and <code>&amp;#xHH;</code>.
+ * <p>
+ * Text without an <code>&amp;</code> is returned as it is, without copying.
+ * Otherwise the text is decoded in a single pass: the characters between
+ * references are copied in bulk, and each reference is resolved through two
+ * small tables, one mapping the first letter of a name to the entities that
+ * start with it and one mapping characters to digit values. A reference that
+ * is malformed, names an unknown entity, or stands for a code point that is
+ * not an XML character (such as NUL or a lone surrogate) is kept as it is.
+ * <p>
+ * Most callers want {@link Token#getValue()}, which decodes a token once and
+ * keeps the result.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Entities {
+	/* The named entities and the characters they stand for. */
+	private static final String[] NAMES = { "lt", "gt", "quot", "apos", "amp" };
+	private static final char[] CHARACTERS = { '<', '>', '"', '\'', '&' };
+
+	/* For each ASCII letter, a bit set of the entries in NAMES that start with it. */
+	private static final int[] FIRST = new int[128];
+
+	/* The value of each ASCII hexadecimal digit, or -1. */
+	private static final int[] DIGITS = new int[128];
+
+	static {
+		for (int i = 0; i < NAMES.length; i++) {
+			FIRST[NAMES[i].charAt(0)] |= 1 << i;
+		}
+		Arrays.fill(DIGITS, -1);
+		for (char c = '0'; c <= '9'; c++) {
+			DIGITS[c] = c - '0';
+		}
+		for (char c = 'a'; c <= 'f'; c++) {
+			DIGITS[c] = c - 'a' + 10;
+			DIGITS[Character.toUpperCase(c)] = c - 'a' + 10;
+		}
+	}
+
+	private Entities() {
+	}
+
+	/**
+	 * Decodes the references in the given text.
+	 *
+	 * @param text
+	 *            the text, e.g. the lexeme of a DATA token
+	 * @return the decoded text, or <code>text</code> itself if it contains no
+	 *         references
+	 */
+	public static String decode(String text) {
+		return decode(text, 0, text.length());
+	}
+
+	/**
+	 * Decodes the references in part of the given text, e.g. an attribute
+	 * value without its quotes.
+	 *
+	 * @param text
+	 *            the text
+	 * @param start
+	 *            the index of the first character to decode
+	 * @param end
+	 *            the index after the last character to decode
+	 * @return the decoded part, which is <code>text</code> itself if that is
+	 *         the whole of it and it contains no references
+	 */
+	public static String decode(String text, int start, int end) {
+		int amp = text.indexOf('&', start);
+		if (amp < 0 || amp >= end) {
+			return start == 0 && end == text.length() ? text : text.substring(start, end);
+		}
+		StringBuilder out = new StringBuilder(end - start);
+		int from = start;
+		while (amp >= 0 && amp < end) {
+			out.append(text, from, amp);
+			int semicolon = text.indexOf(';', amp + 1);
+			if (semicolon > 0 && semicolon < end && reference(text, amp + 1, semicolon, out)) {
+				from = semicolon + 1;
+			} else {
+				out.append('&');
+				from = amp + 1;
+			}
+			amp = text.indexOf('&', from);
+		}
+		out.append(text, from, end);
+		return out.toString();
+	}
+
+	/**
+	 * Appends the character a reference stands for, given the text between
+	 * its <code>&amp;</code> and <code>;</code>, and returns whether it could
+	 * be resolved.
+	 */
+	private static boolean reference(String text, int start, int end, StringBuilder out) {
+		if (start == end) {
+			return false;
+		}
+		char first = text.charAt(start);
+		if (first == '#') {
+			return characterReference(text, start + 1, end, out);
+		}
+		int candidates = first < 128 ? FIRST[first] : 0;
+		while (candidates != 0) {
+			int i = Integer.numberOfTrailingZeros(candidates);
+			String name = NAMES[i];
+			if (name.length() == end - start && text.regionMatches(start, name, 0, name.length())) {
+				out.append(CHARACTERS[i]);
+				return true;
+			}
+			candidates &= candidates - 1;
+		}
+		return false;
+	}
+
+	private static boolean characterReference(String text, int start, int end, StringBuilder out) {
+		int radix = 10;
+		if (start < end && text.charAt(start) == 'x') {
+			radix = 16;
+			start++;
+		}
+		if (start == end) {
+			return false;
+		}
+		int codePoint = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			int digit = c < 128 ? DIGITS[c] : -1;
+			if (digit < 0 || digit >= radix) {
+				return false;
+			}
+			codePoint = codePoint * radix + digit;
+			if (codePoint > Character.MAX_CODE_POINT) {
+				return false;
+			}
+		}
+		if (!isXmlCharacter(codePoint)) {
+			return false;
+		}
+		out.appendCodePoint(codePoint);
+		return true;
+	}
+
+	/**
+	 * Returns whether a code point is a character XML allows: a tab, line
+	 * feed, carriage return, or one of U+0020 to U+D7FF, U+E000 to U+FFFD
+	 * and U+10000 to U+10FFFF, which leaves out the other controls, the
+	 * surrogates and U+FFFE and U+FFFF.
+	 */
+	private static boolean isXmlCharacter(int codePoint) {
+		if (codePoint < 0x20) {
+			return codePoint == 0x9 || codePoint == 0xA || codePoint == 0xD;
+		}
+		return codePoint <= 0xD7FF || codePoint >= 0xE000 && codePoint != 0xFFFE && codePoint != 0xFFFF;
+	}
+}
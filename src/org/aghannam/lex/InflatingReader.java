@@ -0,0 +1,397 @@
+/*
+ * CS 575: Project #2
+ * File: InflatingReader.java
+ */
+package org.aghannam.lex;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class reads a gzip- or zlib-compressed document, decompressing it on a
+ * separate thread while the lexer scans what has already been decompressed.
+ * <p>
+ * {@link #open(InputStream)} looks at the first two bytes of the input: the
+ * gzip magic number (<code>1f 8b</code>) or a zlib header for deflate with
+ * the usual 32K window and no preset dictionary (<code>78</code> followed by
+ * <code>01</code>, <code>5e</code>, <code>9c</code> or <code>da</code>) make it
+ * return an inflating reader, and anything else is read as plain UTF-8.
+ * The inflating reader starts a daemon thread that inflates and decodes the
+ * input into chunks of {@value #CHUNK_SIZE} characters, and hands them over
+ * through a queue of {@value #DEPTH} unless told otherwise; the chunks are
+ * handed back once read and filled again, so the whole document is never
+ * held, compressed or not, and no memory is allocated per chunk. Pass it to a {@link StreamingLexer}:
+ *
+ * <pre>
+ * try (Reader in = InflatingReader.open(Files.newInputStream(path))) {
+ * 	parser.parse(new StreamingLexer(in));
+ * }
+ * </pre>
+ * <p>
+ * Given {@link Limits}, the reader counts the bytes read from the input,
+ * before they are decompressed, and fails the read that goes over
+ * {@link Limits#getMaxInputBytes()}. A {@link StreamingLexer} reports that
+ * as the {@link LexerLimitException} it carries.
+ * <p>
+ * Closing the reader stops the thread and closes the input. An error while
+ * inflating, such as a corrupt or truncated stream, is thrown by the read
+ * that reaches it, after everything decompressed before it has been read.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class InflatingReader extends Reader {
+	/**
+	 * How many characters are handed over at a time.
+	 */
+	public static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * How many chunks there are unless told otherwise.
+	 */
+	public static final int DEPTH = 4;
+
+	/* How many compressed bytes to read at a time. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/* Marks the end of the input in the queue of filled chunks. */
+	private static final Chunk END = new Chunk(0);
+
+	private final InputStream in;
+	private final Thread inflater;
+
+	/* Chunks decompressed and waiting to be read, and chunks free to be filled. */
+	private final ArrayBlockingQueue<Chunk> filled;
+	private final ArrayBlockingQueue<Chunk> free;
+	private volatile IOException error;
+	private volatile boolean closed;
+
+	/* The chunk being read. */
+	private Chunk chunk;
+	private int position;
+	private boolean ended;
+
+	private InflatingReader(InputStream in, int depth, String name) {
+		this.in = in;
+		this.filled = new ArrayBlockingQueue<Chunk>(depth + 1);
+		this.free = new ArrayBlockingQueue<Chunk>(depth);
+		for (int i = 0; i < depth; i++) {
+			free.add(new Chunk(CHUNK_SIZE));
+		}
+		this.inflater = new Thread(this::inflate, name);
+		this.inflater.setDaemon(true);
+		this.inflater.start();
+	}
+
+	/**
+	 * Opens a document for reading, decompressing it if it is compressed.
+	 *
+	 * @param in
+	 *            the document, possibly compressed
+	 * @return an inflating reader if the input starts with a gzip or zlib
+	 *         header, or a reader decoding it as UTF-8 otherwise
+	 * @throws IOException
+	 *             if the start of the input cannot be read, or is a gzip
+	 *             header that is not valid
+	 */
+	public static Reader open(InputStream in) throws IOException {
+		return open(in, DEPTH, Limits.NONE);
+	}
+
+	/**
+	 * Opens a document for reading, decompressing it if it is compressed, and
+	 * fails once more bytes than the limits allow have been read.
+	 *
+	 * @param in
+	 *            the document, possibly compressed
+	 * @param limits
+	 *            the limits whose number of bytes to enforce
+	 * @return an inflating reader if the input starts with a gzip or zlib
+	 *         header, or a reader decoding it as UTF-8 otherwise
+	 * @throws IOException
+	 *             if the start of the input cannot be read, or is a gzip
+	 *             header that is not valid
+	 */
+	public static Reader open(InputStream in, Limits limits) throws IOException {
+		return open(in, DEPTH, limits);
+	}
+
+	/**
+	 * Opens a document for reading, decompressing it if it is compressed
+	 * into at most the given number of chunks, which bounds how far the
+	 * inflater reads ahead of the reader.
+	 *
+	 * @param in
+	 *            the document, possibly compressed
+	 * @param depth
+	 *            how many chunks of {@value #CHUNK_SIZE} characters the
+	 *            inflater may fill, counting the one being read
+	 * @return an inflating reader if the input starts with a gzip or zlib
+	 *         header, or a reader decoding it as UTF-8 otherwise
+	 * @throws IOException
+	 *             if the start of the input cannot be read, or is a gzip
+	 *             header that is not valid
+	 * @throws IllegalArgumentException
+	 *             if the depth is less than 1
+	 */
+	public static Reader open(InputStream in, int depth) throws IOException {
+		return open(in, depth, Limits.NONE);
+	}
+
+	/**
+	 * Opens a document for reading as {@link #open(InputStream, int)} does,
+	 * failing once more bytes than the limits allow have been read.
+	 *
+	 * @param in
+	 *            the document, possibly compressed
+	 * @param depth
+	 *            how many chunks of {@value #CHUNK_SIZE} characters the
+	 *            inflater may fill, counting the one being read
+	 * @param limits
+	 *            the limits whose number of bytes to enforce
+	 * @return an inflating reader if the input starts with a gzip or zlib
+	 *         header, or a reader decoding it as UTF-8 otherwise
+	 * @throws IOException
+	 *             if the start of the input cannot be read, or is a gzip
+	 *             header that is not valid
+	 * @throws IllegalArgumentException
+	 *             if the depth is less than 1
+	 */
+	public static Reader open(InputStream in, int depth, Limits limits) throws IOException {
+		if (depth < 1) {
+			throw new IllegalArgumentException("The depth must be at least 1, got " + depth + ".");
+		}
+		if (!Limits.isUnlimited(limits.getMaxInputBytes())) {
+			in = new Counted(in, limits);
+		}
+		BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+		buffered.mark(2);
+		int first = buffered.read();
+		int second = buffered.read();
+		buffered.reset();
+		if (first == 0x1f && second == 0x8b) {
+			GZIPInputStream gzip;
+			try {
+				gzip = new GZIPInputStream(buffered, BUFFER_SIZE);
+			} catch (EOFException e) {
+				throw new IOException("Compressed document is corrupt or truncated.", e);
+			}
+			return new InflatingReader(gzip, depth, "gzip-inflater");
+		} else if (isZlib(first, second)) {
+			return new InflatingReader(new InflaterInputStream(buffered, new Inflater(), BUFFER_SIZE), depth,
+					"zlib-inflater");
+		}
+		return new InputStreamReader(buffered, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns whether a file starts with a gzip or zlib header.
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>true</code> if it is compressed
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static boolean isCompressed(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			int first = in.read();
+			int second = in.read();
+			return first == 0x1f && second == 0x8b || isZlib(first, second);
+		}
+	}
+
+	/**
+	 * A zlib header with the usual 32K window and no preset dictionary, at one
+	 * of the four compression levels. Other pairs that pass the header check,
+	 * such as "x " or "x}", are far more likely to be the start of a plain
+	 * document.
+	 */
+	private static boolean isZlib(int first, int second) {
+		return first == 0x78 && (second == 0x01 || second == 0x5e || second == 0x9c || second == 0xda);
+	}
+
+	/**
+	 * Inflates and decodes the input into free chunks, on the inflater
+	 * thread, until it ends, fails or the reader is closed.
+	 */
+	private void inflate() {
+		Reader decoded = new InputStreamReader(in, StandardCharsets.UTF_8);
+		try {
+			boolean more = true;
+			while (more) {
+				Chunk next = free.take();
+				next.length = 0;
+				try {
+					more = next.fill(decoded);
+				} catch (IOException | RuntimeException e) {
+					// A closed inflater may fail either way
+					if (!closed) {
+						error = e instanceof IOException && e.getMessage() != null ? (IOException) e
+								: new IOException("Compressed document is corrupt or truncated.", e);
+					}
+					more = false;
+				}
+				if (next.length > 0) {
+					filled.put(next);
+				} else {
+					free.put(next);
+				}
+			}
+			filled.put(END);
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	@Override
+	public int read(char[] buffer, int offset, int count) throws IOException {
+		if (count == 0) {
+			return 0;
+		}
+		while (chunk == null || position == chunk.length) {
+			if (ended) {
+				return -1;
+			} else if (!next()) {
+				ended = true;
+				if (error != null) {
+					throw error;
+				}
+				return -1;
+			}
+		}
+		int n = Math.min(count, chunk.length - position);
+		System.arraycopy(chunk.chars, position, buffer, offset, n);
+		position += n;
+		return n;
+	}
+
+	/**
+	 * Hands the chunk that has been read back to the inflater and waits for
+	 * the next one.
+	 *
+	 * @return <code>false</code> if there are no more
+	 */
+	private boolean next() throws IOException {
+		try {
+			if (chunk != null) {
+				free.put(chunk);
+				chunk = null;
+			}
+			Chunk next = filled.take();
+			if (next == END) {
+				return false;
+			}
+			chunk = next;
+			position = 0;
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the document to be decompressed.");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		inflater.interrupt();
+		in.close();
+	}
+
+	/**
+	 * An input that fails once more bytes than the limits allow are read from
+	 * it. Reads stop at the limit, so that reading ahead, as a buffer does,
+	 * fails only where there is more to read. The failure is an IOException,
+	 * as the readers above it expect, carrying the
+	 * {@link LexerLimitException}.
+	 */
+	private static class Counted extends FilterInputStream {
+		private final Limits limits;
+		private final long max;
+		private long count;
+
+		Counted(InputStream in, Limits limits) {
+			super(in);
+			this.limits = limits;
+			this.max = limits.getMaxInputBytes();
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			int n = super.read(buffer, offset, (int) Math.max(1, Math.min(length, max - count)));
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.max(0, Math.min(n, max - count)));
+			count(skipped);
+			return skipped;
+		}
+
+		private void count(long n) throws IOException {
+			count += n;
+			try {
+				limits.checkInputBytes(count);
+			} catch (LexerLimitException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * A buffer of decompressed characters, of which the first length are
+	 * used.
+	 */
+	private static class Chunk {
+		final char[] chars;
+		int length;
+
+		Chunk(int size) {
+			this.chars = new char[size];
+		}
+
+		/**
+		 * Reads into this chunk until it is full or the input ends.
+		 *
+		 * @return <code>false</code> if the input has ended
+		 */
+		boolean fill(Reader in) throws IOException {
+			while (length < chars.length) {
+				int n = in.read(chars, length, chars.length - length);
+				if (n < 0) {
+					return false;
+				}
+				length += n;
+			}
+			return true;
+		}
+	}
+}
@@ -4,11 +4,16 @@
  */
 package org.aghannam.lex;
 
+import org.aghannam.stats.DocumentLexedEvent;
+import org.aghannam.stats.ParseStatistics;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
+import jdk.jfr.FlightRecorder;
+
 /**
  * This class implements a regex-based lexical analyzer for XML--.
  * <p>
@@ -44,16 +49,24 @@ public class Lexer {
 	/* Auxiliary regex definitions constituting some of the tokens. */
 	private static final String INITIAL = "[a-zA-Z]|_|:";
 	private static final String INVALID = "\\*|\\+|\\[|\\]|\\(|\\)|\\{|\\}|\\$|@|#|;|\\?|,|!|%|\\^|`|\\||~";
-	private static final String OTHER = "(" + INITIAL + "|[0-9]|-|\\.|" + INVALID + ")+";
+	private static final String OTHER = "(?:" + INITIAL + "|[0-9]|-|\\.|" + INVALID + ")";
 	private static final String ORDINARY = "[^<>\"'&]";
 	private static final String SPECIAL = "&lt;|&gt;|&quot;|&apos;|&amp;";
-	private static final String REFERENCE = "&#[0-9]+;|&#x([0-9]|[a-fA-F])+;";
+	private static final String REFERENCE = "&#[0-9]++;|&#x[0-9a-fA-F]++;";
 	private static final String CHAR = ORDINARY + "|" + SPECIAL + "|" + REFERENCE;
+	private static final String DATA_CHAR = "[^<>\"'&=]|" + SPECIAL + "|" + REFERENCE;
 
-	/* The actual tokens. */
-	private static final String NAME_PATTERN = "(?<!>)(" + OTHER + ")+";
-	private static final String STRING_PATTERN = "(\"(" + CHAR + "|')*\")|'(" + CHAR + "|\")*'";
-	private static final String DATA_PATTERN = "(?<=>)(" + CHAR + ")+(?<!=)";
+	/*
+	 * The actual tokens. Repetitions are possessive: they never need to give
+	 * characters back, and a possessive repetition of a group is matched in a
+	 * loop rather than by recursion, so a long token cannot overflow the stack.
+	 * A run of DATA is matched whole, whitespace included, and split into
+	 * words afterwards; it may not end with '='.
+	 */
+	private static final String NAME_PATTERN = "(?<!>)" + OTHER + "++";
+	private static final String STRING_PATTERN = "(\"(?:" + CHAR + "|')*+\")|'(?:" + CHAR + "|\")*+'";
+	private static final String DATA_PATTERN = "(?<=>)(?:[^<>\"'&=]++|" + SPECIAL + "|" + REFERENCE + "|=++(?="
+			+ DATA_CHAR + "))++";
 	private static final String OPEN_PATTERN = "</?(?!!)"; 
 	private static final String CLOSE_PATTERN = "/?(?<!-)>"; 
 	private static final String ASSIGN_PATTERN = "(?<!=)=(?!=)?(?=['\"(\\s)*])";
@@ -62,7 +75,7 @@ public class Lexer {
 	private static final String EOF_PATTERN = "&\\$"; //
 	private static final String AMPERSAND_PATTERN = "(&)+(?=.*?)"; 
 	private static final String TEMP_ASSIGN_PATTERN = "(=)+"; 
-	private static final String FORWARD_SLASHES_OPEN_PATTERN = "(?<=</)(.?)*[/]+";
+	private static final String FORWARD_SLASHES_OPEN_PATTERN = "(?<=</).*[/]+";
 	private static final String FORWARD_SLASHES_CLOSE_PATTERN = "[/]+(?=(.*?)/>)";
 
 	public static enum TokenType {
@@ -78,9 +91,29 @@ public class Lexer {
 		}
 	}
 
+	/* Named group that catches a quoted string too long for the STRING pattern. */
+	private static final String OVERLONG_STRING = "OVERLONG";
+
+	/* Compiled once, for checking every match. */
+	private static final Pattern COMMENT = Pattern.compile(COMMENT_PATTERN);
+	private static final Pattern WHITESPACE = Pattern.compile(WHITESPACE_PATTERN);
+	private static final Pattern DATA_SEPARATOR = Pattern.compile("\\s+");
+
+	/* The rest of a run of DATA, once its start is known to follow a '>' (see StreamingLexer). */
+	static final Pattern DATA_RUN = Pattern.compile(DATA_PATTERN.substring("(?<=>)".length()));
+
 	// The XML-- document to tokenize shall be stored in this string
 	private String document;
 
+	// The resource limits to enforce while tokenizing
+	private final Limits limits;
+
+	// The work the lexer may spend on the document
+	private final Budget budget;
+
+	// Turns offsets into lines and columns, created when first needed
+	private LineIndex lineIndex;
+
 	/**
 	 * Constructs a new lexer, given the input document.
 	 * 
@@ -88,7 +121,37 @@ public class Lexer {
 	 *            the XML-- document to parse
 	 */
 	public Lexer(String document) {
+		this(document, Limits.NONE);
+	}
+
+	/**
+	 * Constructs a new lexer that enforces the given limits while tokenizing
+	 * the input document.
+	 * 
+	 * @param document
+	 *            the XML-- document to parse
+	 * @param limits
+	 *            the limits to enforce
+	 */
+	public Lexer(String document, Limits limits) {
+		this(document, limits, Budget.UNLIMITED);
+	}
+
+	/**
+	 * Constructs a new lexer that enforces the given limits and budget while
+	 * tokenizing the input document.
+	 * 
+	 * @param document
+	 *            the XML-- document to parse
+	 * @param limits
+	 *            the limits to enforce
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 */
+	public Lexer(String document, Limits limits, Budget budget) {
 		this.document = document;
+		this.limits = limits;
+		this.budget = budget;
 	}
 
 	/**
@@ -98,100 +161,321 @@ public class Lexer {
 	 * @return a list of recognized tokens
 	 * @throws LexerException
 	 *             if a scanning error occurs
+	 * @throws LexerLimitException
+	 *             if the document exceeds one of the lexer's limits
+	 * @throws LexerAbortedException
+	 *             if the lexer's budget runs out
 	 */
 	public List<Token> getTokenStream() throws LexerException {
+		long start = ParseStatistics.ENABLED ? System.nanoTime() : 0;
+		// Only once Flight Recorder has been started; see Parser
+		DocumentLexedEvent event = FlightRecorder.isInitialized() ? new DocumentLexedEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+
 		// Verify that we have a valid document
 		if (document.isEmpty()) {
 			throw new LexerException("Failed to scan the specified XML-- file. It may be empty or nonexistent.");
 		}
+		if (document.length() > limits.getMaxInputLength()) {
+			throw new LexerLimitException(Limits.Limit.INPUT_LENGTH, "Scanner error: Document is longer than "
+					+ limits.getMaxInputLength() + " characters.");
+		}
 
 		// Represents the stream of tokens to return to the parser
 		List<Token> tokens = new ArrayList<Token>();
 
 		// Lexer logic begins here
+		Matcher m = compile(limits).matcher(document);
+
+		// Begin matching tokens, keeping an eye on the budget
+		long steps = 0;
+		long nextCheck = checkBudget(budget, 0);
+		while (m.find()) {
+			if (++steps == nextCheck) {
+				nextCheck = checkBudget(budget, steps);
+			}
+			if (tokens.size() > limits.getMaxTokens()) {
+				throw tooManyTokens(limits);
+			}
+			if (!scan(m, tokens, limits, 0)) {
+				break;
+			}
+		}
+		if (tokens.size() > limits.getMaxTokens()) {
+			throw tooManyTokens(limits);
+		}
+
+		if (ParseStatistics.ENABLED) {
+			ParseStatistics stats = ParseStatistics.get();
+			for (Token token : tokens) {
+				stats.token(token.getType());
+			}
+			stats.lexed(System.nanoTime() - start);
+		}
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.documentSize = document.length();
+				event.tokenCount = tokens.size();
+				event.commit();
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Returns the pattern that recognizes every kind of token, as one
+	 * alternation of named groups (one per token type).
+	 * <p>
+	 * The pattern is compiled at most once per JVM when STRING is unbounded,
+	 * whatever the limits, and otherwise once per <code>Limits</code> object,
+	 * so a lexer costs no more to create than a matcher.
+	 * 
+	 * @param limits
+	 *            the limits the pattern must help enforce
+	 * @return the compiled pattern
+	 */
+	static Pattern compile(Limits limits) {
+		Pattern pattern = limits.tokenPattern;
+		if (pattern == null) {
+			if (Limits.isUnlimited(limits.getMaxStringLength())) {
+				pattern = Unbounded.PATTERN;
+			} else {
+				pattern = build(limits);
+			}
+			limits.tokenPattern = pattern;
+		}
+		return pattern;
+	}
+
+	/**
+	 * Holds the pattern for unbounded STRING tokens.
+	 */
+	private static class Unbounded {
+		static final Pattern PATTERN = build(Limits.NONE);
+	}
+
+	private static Pattern build(Limits limits) {
 		StringBuilder tokenPatternBuffer = new StringBuilder();
 
 		for (TokenType type : TokenType.values()) {
-			tokenPatternBuffer.append(String.format("|(?<%s>%s)", type.name(), type.pattern));
+			tokenPatternBuffer.append(String.format("|(?<%s>%s)", type.name(), patternFor(type, limits)));
+		}
+		if (!Limits.isUnlimited(limits.getMaxStringLength())) {
+			// Only reached when a quote does not start a STRING short enough
+			// for the bounded pattern
+			tokenPatternBuffer.append(String.format("|(?<%s>[\"'](?:%s|[\"']){%d}+)", OVERLONG_STRING, CHAR,
+					limits.getMaxStringLength() + 1));
 		}
 
-		Pattern p = Pattern.compile(new String(tokenPatternBuffer.substring(1)));
-		Matcher m = p.matcher(document);
+		return Pattern.compile(new String(tokenPatternBuffer.substring(1)));
+	}
 
-		// Begin matching tokens
-		while (m.find()) {
-			if (m.group().matches(COMMENT_PATTERN) || m.group().matches(WHITESPACE_PATTERN)) {
-				continue;
-			} else if (m.group(TokenType.NAME.name()) != null) {
-				if (m.group().contains("*") || m.group().contains("+") || m.group().contains("[")
-						|| m.group().contains("]") || m.group().contains("(") || m.group().contains(")")
-						|| m.group().contains("{") || m.group().contains("}") || m.group().contains("$")
-						|| m.group().contains("@") || m.group().contains("#") || m.group().contains(";")
-						|| m.group().contains("?") || m.group().contains(",") || m.group().contains("!")
-						|| m.group().contains("%") || m.group().contains("^") || m.group().contains("|")
-						|| m.group().contains("`") || m.group().contains("~")) {
-					throw new LexerException("Scanner error: Illegal character in token '" + 
-								 m.group() + "'.");
-				} else {
-					tokens.add(new Token(TokenType.NAME, m.group(TokenType.NAME.name())));
-					continue;
-				}
-			} else if (m.group(TokenType.STRING.name()) != null) {
-				tokens.add(new Token(TokenType.STRING, m.group(TokenType.STRING.name())));
-				continue;
-			} else if (m.group(TokenType.DATA.name()) != null) {
-				if (m.group().contains(" ") || m.group().contains("\t") || m.group().contains("\n")
-						|| m.group().contains("\r")) {
-					/*
-					 * Since DATA may contain whitespace, split as necessary to
-					 * remove any whitespace and keep the individual DATA
-					 * tokens.
-					 */
-					String[] dataParts = m.group().split("\\s+");
-					for (int i = 0; i < dataParts.length; i++) {
-						if (dataParts[i].isEmpty()) {
-							continue;
-						} else {
-							tokens.add(new Token(TokenType.DATA, dataParts[i]));
-						}
-					}
-					continue;
-				} else {
-					tokens.add(new Token(TokenType.DATA, m.group(TokenType.DATA.name())));
-					continue;
-				}
-			} else if (m.group(TokenType.OPEN.name()) != null) {
-				if (m.group().equals("</")) {
-					tokens.add(new Token(TokenType.LTSL, m.group(TokenType.OPEN.name())));
-					continue;
-				} else {
-					tokens.add(new Token(TokenType.OPEN, m.group(TokenType.OPEN.name())));
-					continue;
-				}
-			} else if (m.group(TokenType.CLOSE.name()) != null) {
-				if (m.group().equals("/>")) {
-					tokens.add(new Token(TokenType.SLGT, m.group(TokenType.CLOSE.name())));
-					continue;
-				} else {
-					tokens.add(new Token(TokenType.CLOSE, m.group(TokenType.CLOSE.name())));
-					continue;
-				}
-			} else if (m.group(TokenType.ASSIGN.name()) != null) {
-				tokens.add(new Token(TokenType.ASSIGN, m.group(TokenType.ASSIGN.name())));
-				continue;
-			} else if (m.group(TokenType.AMPERSAND.name()) != null) {
-				throw new LexerException("Scanner error: Cannot scan illegal usage of special symbol '&'.");
-			} else if (m.group(TokenType.FWOSLASHES.name()) != null) {
-				throw new LexerException("Scanner error: Too many forward slashes in end tag.");
-			} else if (m.group(TokenType.FWCSLASHES.name()) != null) {
-				throw new LexerException("Scanner error: Too many forward slashes in empty tag.");
-			} else if (m.group(TokenType.TEMP.name()) != null) {
-				tokens.add(new Token(TokenType.DATA, m.group(TokenType.TEMP.name())));
-				continue;
+	/**
+	 * Classifies the current match of a matcher created from
+	 * {@link #compile(Limits)} and appends the resulting tokens (if any) to
+	 * the given list.
+	 * 
+	 * @param m
+	 *            a matcher positioned on a match
+	 * @param tokens
+	 *            the list to which to append recognized tokens
+	 * @param limits
+	 *            the limits to enforce
+	 * @param base
+	 *            the offset in the document of the matcher's input
+	 * @return <code>false</code> if scanning should stop here,
+	 *         <code>true</code> otherwise
+	 * @throws LexerException
+	 *             if the match is not a legal token
+	 */
+	static boolean scan(Matcher m, List<Token> tokens, Limits limits, long base) throws LexerException {
+		try {
+			return classify(m, tokens, limits, base);
+		} catch (LexerException e) {
+			e.locate(base + m.start());
+			throw e;
+		}
+	}
+
+	private static boolean classify(Matcher m, List<Token> tokens, Limits limits, long base) throws LexerException {
+		String group = m.group(); // a copy each time it is called
+		if (COMMENT.matcher(group).matches() || WHITESPACE.matcher(group).matches()) {
+			return true;
+		} else if (!Limits.isUnlimited(limits.getMaxStringLength()) && m.group(OVERLONG_STRING) != null) {
+			throw tooLong(Limits.Limit.STRING_LENGTH, "STRING", limits.getMaxStringLength());
+		} else if (m.group(TokenType.NAME.name()) != null) {
+			if (group.contains("*") || group.contains("+") || group.contains("[")
+					|| group.contains("]") || group.contains("(") || group.contains(")")
+					|| group.contains("{") || group.contains("}") || group.contains("$")
+					|| group.contains("@") || group.contains("#") || group.contains(";")
+					|| group.contains("?") || group.contains(",") || group.contains("!")
+					|| group.contains("%") || group.contains("^") || group.contains("|")
+					|| group.contains("`") || group.contains("~")) {
+				throw new LexerException("Scanner error: Illegal character in token '" + 
+							 group + "'.");
+			} else if (group.length() > limits.getMaxNameLength()) {
+				throw tooLong(Limits.Limit.NAME_LENGTH, "NAME", limits.getMaxNameLength());
 			} else {
-				break;
+				tokens.add(new Token(TokenType.NAME, m.group(TokenType.NAME.name()), base + m.start()));
+				return true;
 			}
+		} else if (m.group(TokenType.STRING.name()) != null) {
+			if (group.length() - 2 > limits.getMaxStringLength()) {
+				throw tooLong(Limits.Limit.STRING_LENGTH, "STRING", limits.getMaxStringLength());
+			}
+			tokens.add(new Token(TokenType.STRING, m.group(TokenType.STRING.name()), base + m.start()));
+			return true;
+		} else if (m.group(TokenType.DATA.name()) != null) {
+			data(group, tokens, limits, base + m.start());
+			return true;
+		} else if (m.group(TokenType.OPEN.name()) != null) {
+			if (group.equals("</")) {
+				tokens.add(new Token(TokenType.LTSL, m.group(TokenType.OPEN.name()), base + m.start()));
+				return true;
+			} else {
+				tokens.add(new Token(TokenType.OPEN, m.group(TokenType.OPEN.name()), base + m.start()));
+				return true;
+			}
+		} else if (m.group(TokenType.CLOSE.name()) != null) {
+			if (group.equals("/>")) {
+				tokens.add(new Token(TokenType.SLGT, m.group(TokenType.CLOSE.name()), base + m.start()));
+				return true;
+			} else {
+				tokens.add(new Token(TokenType.CLOSE, m.group(TokenType.CLOSE.name()), base + m.start()));
+				return true;
+			}
+		} else if (m.group(TokenType.ASSIGN.name()) != null) {
+			tokens.add(new Token(TokenType.ASSIGN, m.group(TokenType.ASSIGN.name()), base + m.start()));
+			return true;
+		} else if (m.group(TokenType.AMPERSAND.name()) != null) {
+			throw new LexerException("Scanner error: Cannot scan illegal usage of special symbol '&'.");
+		} else if (m.group(TokenType.FWOSLASHES.name()) != null) {
+			throw new LexerException("Scanner error: Too many forward slashes in end tag.");
+		} else if (m.group(TokenType.FWCSLASHES.name()) != null) {
+			throw new LexerException("Scanner error: Too many forward slashes in empty tag.");
+		} else if (m.group(TokenType.TEMP.name()) != null) {
+			tokens.add(new Token(TokenType.DATA, m.group(TokenType.TEMP.name()), base + m.start()));
+			return true;
+		} else {
+			return false;
 		}
-		return tokens;
+	}
+
+	/**
+	 * Appends the DATA tokens in a run of DATA to the given list.
+	 * 
+	 * @param run
+	 *            the run, which may hold whitespace
+	 * @param tokens
+	 *            the list to which to append its words
+	 * @param limits
+	 *            the limits to enforce
+	 * @param base
+	 *            the offset in the document of the run
+	 * @throws LexerLimitException
+	 *             if a word is too long, or the run takes the list past the
+	 *             limit on tokens
+	 */
+	static void data(String run, List<Token> tokens, Limits limits, long base) throws LexerLimitException {
+		if (!(run.contains(" ") || run.contains("\t") || run.contains("\n") || run.contains("\r"))) {
+			if (run.length() > limits.getMaxDataLength()) {
+				LexerLimitException e = tooLong(Limits.Limit.DATA_LENGTH, "DATA", limits.getMaxDataLength());
+				e.locate(base);
+				throw e;
+			}
+			tokens.add(new Token(TokenType.DATA, run, base));
+			return;
+		}
+
+		/*
+		 * Since DATA may contain whitespace, split as necessary to remove any
+		 * whitespace and keep the individual DATA tokens. A run may hold any
+		 * number of words, so the limit on tokens is checked as they are kept.
+		 */
+		String[] dataParts = DATA_SEPARATOR.split(run);
+		int from = 0;
+		for (int i = 0; i < dataParts.length; i++) {
+			if (dataParts[i].isEmpty()) {
+				continue;
+			}
+			from = run.indexOf(dataParts[i], from);
+			if (dataParts[i].length() > limits.getMaxDataLength()) {
+				LexerLimitException e = tooLong(Limits.Limit.DATA_LENGTH, "DATA", limits.getMaxDataLength());
+				e.locate(base + from);
+				throw e;
+			}
+			if (tokens.size() >= limits.getMaxTokens()) {
+				LexerLimitException e = tooManyTokens(limits);
+				e.locate(base + from);
+				throw e;
+			}
+			tokens.add(new Token(TokenType.DATA, dataParts[i], base + from));
+			from += dataParts[i].length();
+		}
+	}
+
+	/**
+	 * Returns the regular expression used to match the given token type.
+	 * <p>
+	 * The STRING pattern is unbounded by default. When a limit is set for it,
+	 * its repetition is bounded to the limit, so an overly long STRING is
+	 * caught after at most that many characters instead of being matched in
+	 * its entirety. DATA is matched a run at a time, and its limit applies to
+	 * each word, so it is checked once the run is split.
+	 * 
+	 * @param type
+	 *            the token type
+	 * @param limits
+	 *            the limits in effect
+	 * @return the pattern for that type
+	 */
+	private static String patternFor(TokenType type, Limits limits) {
+		if (type == TokenType.STRING && !Limits.isUnlimited(limits.getMaxStringLength())) {
+			int max = limits.getMaxStringLength();
+			return "(\"(?:" + CHAR + "|'){0," + max + "}+\")|'(?:" + CHAR + "|\"){0," + max + "}+'";
+		}
+		return type.pattern;
+	}
+
+	private static LexerLimitException tooLong(Limits.Limit limit, String what, int max) {
+		return new LexerLimitException(limit, "Scanner error: " + what + " token longer than " + max
+				+ " characters.");
+	}
+
+	/**
+	 * Returns the index that turns the offsets of this lexer's tokens and
+	 * errors into lines and columns. The index is only built when it is first
+	 * used.
+	 * 
+	 * @return the document's line index
+	 */
+	public LineIndex getLineIndex() {
+		if (lineIndex == null) {
+			lineIndex = LineIndex.of(document);
+		}
+		return lineIndex;
+	}
+
+	/**
+	 * Checks the budget after the given number of steps, and returns when it
+	 * must next be checked.
+	 * 
+	 * @throws LexerAbortedException
+	 *             if the budget has run out
+	 */
+	static long checkBudget(Budget budget, long steps) throws LexerAbortedException {
+		Budget.Reason reason = budget.check(steps);
+		if (reason != null) {
+			throw new LexerAbortedException(reason, "Scanner error: " + budget.describe(reason, steps));
+		}
+		return budget.nextCheck(steps);
+	}
+
+	static LexerLimitException tooManyTokens(Limits limits) {
+		return new LexerLimitException(Limits.Limit.TOKENS, "Scanner error: Document has more than "
+				+ limits.getMaxTokens() + " tokens.");
 	}
 }
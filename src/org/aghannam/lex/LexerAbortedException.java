@@ -0,0 +1,32 @@
+/*
+ * CS 575: Project #2
+ * File: LexerAbortedException.java
+ */
+package org.aghannam.lex;
+
+import org.aghannam.lex.Budget.Reason;
+
+/**
+ * This class represents the exception thrown by the lexer when it abandons a document because its {@link Budget}
+ * ran out. The document was not found to be invalid; it was not scanned to the end.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@SuppressWarnings("serial")
+public class LexerAbortedException extends LexerException {
+	private final Reason reason;
+
+	public LexerAbortedException(Reason reason, String msg) {
+		super(msg);
+		this.reason = reason;
+	}
+
+	/**
+	 * Returns why the document was abandoned.
+	 * 
+	 * @return the reason
+	 */
+	public Reason getReason() {
+		return this.reason;
+	}
+}
@@ -11,7 +11,28 @@ package org.aghannam.lex;
  */
 @SuppressWarnings("serial")
 public class LexerException extends Exception {
+	private long offset = -1;
+
 	public LexerException(String msg) {
 		super(msg); 
 	}
+
+	/**
+	 * Returns the offset in the document at which the error was found, or -1 if it is not known. 
+	 * 
+	 * @return the offset of the error, in characters
+	 * @see org.aghannam.lex.LineIndex
+	 */
+	public long getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * Records where the error was found, unless that is already known. 
+	 */
+	void locate(long offset) {
+		if (this.offset < 0) {
+			this.offset = offset;
+		}
+	}
 }
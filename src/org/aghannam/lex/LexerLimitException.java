@@ -0,0 +1,31 @@
+/*
+ * CS 575: Project #2
+ * File: LexerLimitException.java
+ */
+package org.aghannam.lex;
+
+import org.aghannam.lex.Limits.Limit;
+
+/**
+ * This class represents the exception thrown by the lexer when a document exceeds one of its {@link Limits}.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@SuppressWarnings("serial")
+public class LexerLimitException extends LexerException {
+	private final Limit limit;
+
+	public LexerLimitException(Limit limit, String msg) {
+		super(msg);
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns the limit that was exceeded.
+	 * 
+	 * @return the exceeded limit
+	 */
+	public Limit getLimit() {
+		return this.limit;
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * CS 575: Project #2
+ * File: Limits.java
+ */
+package org.aghannam.lex;
+
+import java.util.regex.Pattern;
+
+/**
+ * This class holds the resource limits enforced by the lexer and the parser
+ * while processing a single document.
+ * <p>
+ * Limits protect against hostile input: a document that is too large, nested
+ * too deeply, or made of overly long tokens is rejected as soon as the
+ * offending construct is reached, so the memory and time spent on any one
+ * document stay bounded. The lexer enforces the input length, the token count
+ * and the length of NAME, STRING and DATA; the parser enforces the nesting
+ * depth and the number of attributes per tag. The DATA limit applies to each
+ * word, not to a run of words: a run is bounded by the input length and by the
+ * token count, which is checked as the run is split into words. Both lexers
+ * scan a run in time linear in its length, and the streaming lexer holds no
+ * more of it than its window. The number of bytes is enforced where a
+ * document is read as bytes, before it is decompressed or decoded (see
+ * {@link InflatingReader#open(java.io.InputStream, Limits)}); the input length
+ * in characters then bounds what a compressed document inflates to.
+ * <p>
+ * Instances are immutable and may be shared between threads. Start from
+ * {@link #NONE} or {@link #DEFAULT} and adjust individual limits with the
+ * <code>with...()</code> methods, each of which returns a new instance.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Limits {
+
+	/**
+	 * The individual limits, as reported when one of them is exceeded.
+	 */
+	public static enum Limit {
+		INPUT_BYTES, INPUT_LENGTH, TOKENS, NAME_LENGTH, STRING_LENGTH, DATA_LENGTH, DEPTH, ATTRIBUTES;
+	}
+
+	/**
+	 * No limits at all. This is what the lexer and parser use unless told
+	 * otherwise.
+	 */
+	public static final Limits NONE = new Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+			Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+	/**
+	 * Limits suitable for documents received from untrusted sources.
+	 */
+	public static final Limits DEFAULT = new Limits(64 * 1024 * 1024, 64 * 1024 * 1024, 4 * 1024 * 1024, 256, 1024, 1024, 256, 256);
+
+	private final int maxInputBytes;
+	private final int maxInputLength;
+	private final int maxTokens;
+	private final int maxNameLength;
+	private final int maxStringLength;
+	private final int maxDataLength;
+	private final int maxDepth;
+	private final int maxAttributes;
+
+	/* The lexer's pattern for these limits, compiled when first needed (see Lexer#compile). */
+	volatile Pattern tokenPattern;
+
+	private Limits(int maxInputBytes, int maxInputLength, int maxTokens, int maxNameLength, int maxStringLength,
+			int maxDataLength, int maxDepth, int maxAttributes) {
+		this.maxInputBytes = maxInputBytes;
+		this.maxInputLength = maxInputLength;
+		this.maxTokens = maxTokens;
+		this.maxNameLength = maxNameLength;
+		this.maxStringLength = maxStringLength;
+		this.maxDataLength = maxDataLength;
+		this.maxDepth = maxDepth;
+		this.maxAttributes = maxAttributes;
+	}
+
+	/**
+	 * Returns the maximum size of a document as read, in bytes, before it is
+	 * decompressed or decoded.
+	 */
+	public int getMaxInputBytes() {
+		return maxInputBytes;
+	}
+
+	/**
+	 * Returns the maximum length of a document, in characters, after it is
+	 * decompressed and decoded.
+	 */
+	public int getMaxInputLength() {
+		return maxInputLength;
+	}
+
+	/**
+	 * Returns the maximum number of tokens in a document.
+	 */
+	public int getMaxTokens() {
+		return maxTokens;
+	}
+
+	/**
+	 * Returns the maximum length of a NAME, in characters.
+	 */
+	public int getMaxNameLength() {
+		return maxNameLength;
+	}
+
+	/**
+	 * Returns the maximum length of a STRING, in characters, excluding the
+	 * quotes.
+	 */
+	public int getMaxStringLength() {
+		return maxStringLength;
+	}
+
+	/**
+	 * Returns the maximum length of a DATA token, that is of a single word of
+	 * text, in characters. It does not bound a run of words, which only the
+	 * input length and token count do.
+	 */
+	public int getMaxDataLength() {
+		return maxDataLength;
+	}
+
+	/**
+	 * Returns the maximum nesting depth of elements, the root being at depth
+	 * 1.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the maximum number of attributes in a single tag.
+	 */
+	public int getMaxAttributes() {
+		return maxAttributes;
+	}
+
+	public Limits withMaxInputBytes(int maxInputBytes) {
+		return new Limits(positive(maxInputBytes), maxInputLength, maxTokens, maxNameLength, maxStringLength,
+				maxDataLength, maxDepth, maxAttributes);
+	}
+
+	public Limits withMaxInputLength(int maxInputLength) {
+		return new Limits(maxInputBytes, positive(maxInputLength), maxTokens, maxNameLength, maxStringLength,
+				maxDataLength, maxDepth, maxAttributes);
+	}
+
+	public Limits withMaxTokens(int maxTokens) {
+		return new Limits(maxInputBytes, maxInputLength, positive(maxTokens), maxNameLength, maxStringLength,
+				maxDataLength, maxDepth, maxAttributes);
+	}
+
+	public Limits withMaxNameLength(int maxNameLength) {
+		return new Limits(maxInputBytes, maxInputLength, maxTokens, positive(maxNameLength), maxStringLength,
+				maxDataLength, maxDepth, maxAttributes);
+	}
+
+	public Limits withMaxStringLength(int maxStringLength) {
+		return new Limits(maxInputBytes, maxInputLength, maxTokens, maxNameLength, positive(maxStringLength),
+				maxDataLength, maxDepth, maxAttributes);
+	}
+
+	public Limits withMaxDataLength(int maxDataLength) {
+		return new Limits(maxInputBytes, maxInputLength, maxTokens, maxNameLength, maxStringLength,
+				positive(maxDataLength), maxDepth, maxAttributes);
+	}
+
+	public Limits withMaxDepth(int maxDepth) {
+		return new Limits(maxInputBytes, maxInputLength, maxTokens, maxNameLength, maxStringLength, maxDataLength,
+				positive(maxDepth), maxAttributes);
+	}
+
+	public Limits withMaxAttributes(int maxAttributes) {
+		return new Limits(maxInputBytes, maxInputLength, maxTokens, maxNameLength, maxStringLength, maxDataLength,
+				maxDepth, positive(maxAttributes));
+	}
+
+	/**
+	 * Checks the size of a document, in bytes, against the limit.
+	 * 
+	 * @param bytes
+	 *            the number of bytes read so far, or the size of the whole
+	 *            document
+	 * @throws LexerLimitException
+	 *             if it is over the limit
+	 */
+	public void checkInputBytes(long bytes) throws LexerLimitException {
+		if (bytes > maxInputBytes) {
+			throw new LexerLimitException(Limit.INPUT_BYTES,
+					"Scanner error: Document is larger than " + maxInputBytes + " bytes.");
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the given limit is unbounded.
+	 * 
+	 * @param value
+	 *            the value of a limit
+	 * @return whether the value means "no limit"
+	 */
+	static boolean isUnlimited(int value) {
+		return value == Integer.MAX_VALUE;
+	}
+
+	private static int positive(int value) {
+		if (value <= 0) {
+			throw new IllegalArgumentException("Limits must be positive, got " + value + ".");
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"Limits[bytes=%d, input=%d, tokens=%d, name=%d, string=%d, data=%d, depth=%d, attributes=%d]",
+				maxInputBytes, maxInputLength, maxTokens, maxNameLength, maxStringLength, maxDataLength, maxDepth,
+				maxAttributes);
+	}
+}
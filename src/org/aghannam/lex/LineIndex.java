@@ -0,0 +1,104 @@
+/*
+ * CS 575: Project #2
+ * File: LineIndex.java
+ */
+package org.aghannam.lex;
+
+import java.util.Arrays;
+
+/**
+ * This class turns character offsets in a document into line and column
+ * numbers.
+ * <p>
+ * Tokens and errors only carry an offset, so that lexing a document that
+ * parses successfully never pays for line counting. The index of line starts
+ * is built the first time a line or column is asked for, with a single scan
+ * for line breaks, and each lookup after that is a binary search. A line
+ * break is <code>\n</code>, <code>\r\n</code> or a lone <code>\r</code>.
+ * Lines and columns are numbered from 1.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class LineIndex {
+	private final CharSequence text;
+
+	/* The offset at which each line starts, built on demand. */
+	private int[] starts;
+	private int lines;
+
+	private LineIndex(CharSequence text) {
+		this.text = text;
+	}
+
+	/**
+	 * Returns an index over the given text. Nothing is computed until the
+	 * index is first used.
+	 *
+	 * @param text
+	 *            the document
+	 * @return the index
+	 */
+	public static LineIndex of(CharSequence text) {
+		return new LineIndex(text);
+	}
+
+	/**
+	 * Returns the line on which the given offset lies.
+	 *
+	 * @param offset
+	 *            an offset in the document
+	 * @return the line number, from 1
+	 */
+	public int getLine(long offset) {
+		build();
+		int i = Arrays.binarySearch(starts, 0, lines, (int) Math.min(offset, Integer.MAX_VALUE));
+		return i >= 0 ? i + 1 : -i - 1;
+	}
+
+	/**
+	 * Returns the column at which the given offset lies.
+	 *
+	 * @param offset
+	 *            an offset in the document
+	 * @return the column number, from 1
+	 */
+	public int getColumn(long offset) {
+		return (int) (offset - starts[getLine(offset) - 1]) + 1;
+	}
+
+	/**
+	 * Describes the given offset for use in error messages.
+	 *
+	 * @param offset
+	 *            an offset in the document, or -1 if it is not known
+	 * @return e.g. <code>line 3, column 14</code>, or <code>end of
+	 *         document</code> for an unknown offset
+	 */
+	public String describe(long offset) {
+		if (offset < 0) {
+			return "end of document";
+		}
+		return "line " + getLine(offset) + ", column " + getColumn(offset);
+	}
+
+	private void build() {
+		if (starts != null) {
+			return;
+		}
+		int[] found = new int[64];
+		int count = 0;
+		found[count++] = 0;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || (c == '\r' && (i + 1 == length || text.charAt(i + 1) != '\n'))) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+				}
+				found[count++] = i + 1;
+			}
+		}
+		lines = count;
+		starts = found;
+	}
+}
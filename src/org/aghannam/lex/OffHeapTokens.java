@@ -0,0 +1,263 @@
+/*
+ * CS 575: Project #2
+ * File: OffHeapTokens.java
+ */
+package org.aghannam.lex;
+
+import org.aghannam.lex.Lexer.TokenType;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps the token stream of a document outside the Java heap, so
+ * that very large documents can be lexed once and parsed or queried any
+ * number of times without the heap growing with the document.
+ * <p>
+ * Each token is stored as a fixed-size record of its type, lexeme length,
+ * offset and the position of its lexeme, in chunks of direct
+ * <code>ByteBuffer</code>s; the lexemes themselves are stored as UTF-16 in a
+ * second set of chunks. A {@link Token} object is only created when a token is
+ * read back, and is garbage as soon as the parser has moved past it, so the
+ * heap holds little more than the parser's stacks.
+ * <p>
+ * The memory is released when the store is closed: the store lets go of its
+ * buffers, for the garbage collector to free, and where the JVM allows it
+ * they are freed at once instead. A store must not be used after it is
+ * closed. It may be read by several threads at once, but must not be closed
+ * while it is being read.
+ *
+ * <pre>
+ * try (OffHeapTokens tokens = OffHeapTokens.load(new StreamingLexer(reader))) {
+ * 	parser.parse(tokens.newSource());
+ * }
+ * </pre>
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class OffHeapTokens implements AutoCloseable {
+	/* The layout of a token record. */
+	private static final int TYPE = 0;
+	private static final int LENGTH = 4;
+	private static final int OFFSET = 8;
+	private static final int LEXEME = 16;
+	private static final int RECORD_SIZE = 24;
+
+	/* Records and characters per chunk; both are powers of two. */
+	private static final int RECORDS_PER_CHUNK = 1 << 14;
+	private static final int CHARS_PER_CHUNK = 1 << 18;
+
+	private static final TokenType[] TYPES = TokenType.values();
+
+	private final List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+	private final List<ByteBuffer> chars = new ArrayList<ByteBuffer>();
+
+	/* The chunks of characters as such, to copy lexemes in and out in bulk. */
+	private final List<CharBuffer> charViews = new ArrayList<CharBuffer>();
+	private long size;
+	private long charCount;
+	private boolean closed;
+
+	private OffHeapTokens() {
+	}
+
+	/**
+	 * Reads every token from the given source into a new store.
+	 *
+	 * @param source
+	 *            the tokens, e.g. a {@link StreamingLexer}
+	 * @return the store, which the caller must close
+	 * @throws LexerException
+	 *             if the source fails to scan the document; the memory used
+	 *             so far is released
+	 */
+	public static OffHeapTokens load(TokenSource source) throws LexerException {
+		OffHeapTokens tokens = new OffHeapTokens();
+		try {
+			for (Token token = source.nextToken(); token != null; token = source.nextToken()) {
+				tokens.add(token);
+			}
+		} catch (LexerException | RuntimeException e) {
+			tokens.close();
+			throw e;
+		}
+		return tokens;
+	}
+
+	/**
+	 * Reads a token stream already on the heap into a new store.
+	 *
+	 * @param tokens
+	 *            the tokens
+	 * @return the store, which the caller must close
+	 */
+	public static OffHeapTokens of(List<Token> tokens) {
+		OffHeapTokens store = new OffHeapTokens();
+		for (Token token : tokens) {
+			store.add(token);
+		}
+		return store;
+	}
+
+	private void add(Token token) {
+		String lexeme = token.getLexeme();
+		int slot = (int) (size & (RECORDS_PER_CHUNK - 1));
+		if (slot == 0) {
+			records.add(ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE));
+		}
+		ByteBuffer record = records.get(records.size() - 1);
+		int at = slot * RECORD_SIZE;
+		record.putInt(at + TYPE, token.getType().ordinal());
+		record.putInt(at + LENGTH, lexeme.length());
+		record.putLong(at + OFFSET, token.getOffset());
+		record.putLong(at + LEXEME, charCount);
+		for (int i = 0; i < lexeme.length();) {
+			int c = (int) (charCount & (CHARS_PER_CHUNK - 1));
+			if (c == 0) {
+				ByteBuffer chunk = ByteBuffer.allocateDirect(CHARS_PER_CHUNK * 2);
+				chars.add(chunk);
+				charViews.add(chunk.asCharBuffer());
+			}
+			int n = Math.min(lexeme.length() - i, CHARS_PER_CHUNK - c);
+			// Relative, as only reads are absolute; the store is not read while it is filled
+			charViews.get(charViews.size() - 1).position(c).put(lexeme, i, i + n);
+			i += n;
+			charCount += n;
+		}
+		size++;
+	}
+
+	/**
+	 * Returns the number of tokens in this store.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes this store has allocated outside the heap.
+	 */
+	public long getMemoryUsed() {
+		return (long) records.size() * RECORDS_PER_CHUNK * RECORD_SIZE + (long) chars.size() * CHARS_PER_CHUNK * 2;
+	}
+
+	/**
+	 * Returns the token at the given index, as a new {@link Token}.
+	 *
+	 * @param index
+	 *            the index of the token, from 0
+	 * @return the token
+	 */
+	public Token get(long index) {
+		if (closed) {
+			throw new IllegalStateException("The token store has been closed.");
+		} else if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Token " + index + " of " + size + ".");
+		}
+		ByteBuffer record = records.get((int) (index / RECORDS_PER_CHUNK));
+		int at = (int) (index & (RECORDS_PER_CHUNK - 1)) * RECORD_SIZE;
+		int length = record.getInt(at + LENGTH);
+		long start = record.getLong(at + LEXEME);
+		char[] lexeme = new char[length];
+		for (int i = 0; i < length;) {
+			long c = start + i;
+			int from = (int) (c & (CHARS_PER_CHUNK - 1));
+			int n = Math.min(length - i, CHARS_PER_CHUNK - from);
+			charViews.get((int) (c / CHARS_PER_CHUNK)).get(from, lexeme, i, n);
+			i += n;
+		}
+		return new Token(TYPES[record.getInt(at + TYPE)], new String(lexeme), record.getLong(at + OFFSET));
+	}
+
+	/**
+	 * Returns a source that reads the tokens of this store from the first.
+	 * Each call returns a new, independent source.
+	 *
+	 * @return the tokens, for {@link org.aghannam.parser.Parser#parse(TokenSource)}
+	 */
+	public TokenSource newSource() {
+		return new TokenSource() {
+			private long next;
+
+			@Override
+			public Token nextToken() {
+				return next < size ? get(next++) : null;
+			}
+		};
+	}
+
+	/**
+	 * Releases the memory of this store.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		charViews.clear();
+		free(records);
+		free(chars);
+	}
+
+	/**
+	 * Lets go of the given buffers, freeing them at once if the JVM allows
+	 * it.
+	 */
+	private static void free(List<ByteBuffer> buffers) {
+		for (ByteBuffer buffer : buffers) {
+			if (!Cleaner.free(buffer)) {
+				break;
+			}
+		}
+		buffers.clear();
+	}
+
+	/**
+	 * Frees direct buffers at once through <code>sun.misc.Unsafe</code>,
+	 * which is looked up the first time a store is closed. This is only a
+	 * shortcut: where the JVM does not allow it, a buffer the store has let go
+	 * of is freed by the garbage collector instead.
+	 */
+	private static final class Cleaner {
+		private static final Object UNSAFE;
+		private static final Method INVOKE_CLEANER;
+
+		static {
+			Object unsafe = null;
+			Method invokeCleaner = null;
+			try {
+				Class<?> type = Class.forName("sun.misc.Unsafe");
+				Field field = type.getDeclaredField("theUnsafe");
+				field.setAccessible(true);
+				unsafe = field.get(null);
+				invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// Leave the buffers to the garbage collector.
+			}
+			UNSAFE = unsafe;
+			INVOKE_CLEANER = invokeCleaner;
+		}
+
+		/**
+		 * Frees a direct buffer, which must not be used again.
+		 *
+		 * @return <code>false</code> if it is left to the garbage collector
+		 */
+		static boolean free(ByteBuffer buffer) {
+			if (INVOKE_CLEANER == null) {
+				return false;
+			}
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+				return true;
+			} catch (ReflectiveOperationException e) {
+				return false;
+			}
+		}
+	}
+}
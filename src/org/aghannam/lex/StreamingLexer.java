@@ -0,0 +1,398 @@
+/*
+ * CS 575: Project #2
+ * File: StreamingLexer.java
+ */
+package org.aghannam.lex;
+
+import org.aghannam.stats.ParseStatistics;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * This class implements a lexical analyzer for XML-- that reads its document
+ * incrementally from a <code>Reader</code>.
+ * <p>
+ * It recognizes exactly the same tokens as {@link Lexer}, using the same
+ * regular expressions, but only ever holds a window of the document in memory.
+ * The window starts with a single chunk and is refilled whenever a match runs
+ * into its end (as reported by <code>Matcher.hitEnd()</code>): since more
+ * input could change such a match, it is retried once more input is
+ * available. Characters before the current token are discarded as the window
+ * slides forward, except for a few kept so that the patterns' lookbehinds
+ * still see them.
+ * <p>
+ * A run of DATA can be as long as the document, so it is not retried from its
+ * start: the words up to the last whitespace in the window are handed out
+ * once the run reaches the window's end, and only the unfinished word is
+ * carried into the next fill, where the rest of the run is matched on its
+ * own. A single token that reaches the end of the window more than once is
+ * given a fill as long as it is so far, so however long it is, it is matched
+ * no more than about twice over.
+ * <p>
+ * Tokens are handed out one at a time through {@link #nextToken()}, so the
+ * parser can consume a document while it is still being read.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class StreamingLexer implements TokenSource {
+	/* How many characters to read at a time. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/* How many already-scanned characters to keep for the lookbehinds. */
+	private static final int HISTORY = 16;
+
+	private final Reader in;
+	private final Limits limits;
+	private final Budget budget;
+	private final Matcher m;
+
+	/* Matches the rest of a run of DATA, once part of it has been handed out. */
+	private final Matcher run;
+	private boolean inData;
+
+	/**
+	 * The current window of the document.
+	 */
+	private final StringBuilder window = new StringBuilder(CHUNK_SIZE);
+
+	/**
+	 * Where in the window to resume matching.
+	 */
+	private int position;
+
+	/**
+	 * The offset in the document of the first character in the window.
+	 */
+	private long offset;
+
+	/**
+	 * Tokens recognized but not yet handed out (a DATA run may yield several).
+	 */
+	private final ArrayDeque<Token> pending = new ArrayDeque<Token>();
+	private final List<Token> scanned = new ArrayList<Token>();
+
+	private final char[] chunk = new char[CHUNK_SIZE];
+	private boolean endOfInput;
+	private boolean done;
+	private long tokenCount;
+	private long steps;
+	private long nextCheck;
+
+	/* The time spent scanning, reading included, when statistics are kept. */
+	private long lexNanos;
+	private boolean lexReported;
+
+	/* The line breaks discarded with the window, and where the last line began. */
+	private long linesDiscarded;
+	private long lineStart;
+	private boolean linesKnown = true;
+
+	/**
+	 * Constructs a new streaming lexer over the given input.
+	 * 
+	 * @param in
+	 *            the XML-- document to tokenize
+	 */
+	public StreamingLexer(Reader in) {
+		this(in, Limits.NONE);
+	}
+
+	/**
+	 * Constructs a new streaming lexer that enforces the given limits.
+	 * 
+	 * @param in
+	 *            the XML-- document to tokenize
+	 * @param limits
+	 *            the limits to enforce
+	 */
+	public StreamingLexer(Reader in, Limits limits) {
+		this(in, limits, Budget.UNLIMITED);
+	}
+
+	/**
+	 * Constructs a new streaming lexer that enforces the given limits and
+	 * budget.
+	 * 
+	 * @param in
+	 *            the XML-- document to tokenize
+	 * @param limits
+	 *            the limits to enforce
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 */
+	public StreamingLexer(Reader in, Limits limits, Budget budget) {
+		this.in = in;
+		this.limits = limits;
+		this.budget = budget;
+		this.nextCheck = budget.nextCheck(0);
+		this.m = Lexer.compile(limits).matcher(window);
+		this.m.useTransparentBounds(true);
+		this.m.useAnchoringBounds(false);
+		this.run = Lexer.DATA_RUN.matcher(window);
+		this.run.useTransparentBounds(true);
+		this.run.useAnchoringBounds(false);
+	}
+
+	/**
+	 * Constructs a streaming lexer that picks up a document part-way through,
+	 * e.g. from a parser checkpoint. The tokens it returns have offsets
+	 * counted from the start of the whole document.
+	 * 
+	 * @param in
+	 *            the rest of the XML-- document
+	 * @param limits
+	 *            the limits to enforce
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 * @param offset
+	 *            the offset in the document of the first character of
+	 *            <code>in</code>
+	 * @param tokens
+	 *            the number of tokens before <code>offset</code>, which count
+	 *            towards the limit on tokens
+	 * @param context
+	 *            the last few characters before <code>offset</code>, which
+	 *            decide how the first token is scanned (DATA, for instance,
+	 *            only follows a <code>&gt;</code>)
+	 */
+	public StreamingLexer(Reader in, Limits limits, Budget budget, long offset, long tokens, String context) {
+		this(in, limits, budget);
+		this.tokenCount = tokens;
+		this.window.append(context);
+		this.position = context.length();
+		this.offset = offset - context.length();
+		this.linesKnown = false;
+	}
+
+	/**
+	 * Returns the next token in the document.
+	 * 
+	 * @return the next token, or <code>null</code> at the end of the document
+	 * @throws LexerException
+	 *             if a scanning error occurs or the input cannot be read
+	 * @throws LexerLimitException
+	 *             if the document exceeds one of the lexer's limits
+	 * @throws LexerAbortedException
+	 *             if the lexer's budget runs out
+	 */
+	@Override
+	public Token nextToken() throws LexerException {
+		while (pending.isEmpty()) {
+			if (done) {
+				if (ParseStatistics.ENABLED && !lexReported) {
+					ParseStatistics.get().lexed(lexNanos);
+					lexReported = true;
+				}
+				return null;
+			}
+			if (ParseStatistics.ENABLED) {
+				long start = System.nanoTime();
+				advance();
+				lexNanos += System.nanoTime() - start;
+			} else {
+				advance();
+			}
+		}
+		if (++tokenCount > limits.getMaxTokens()) {
+			throw Lexer.tooManyTokens(limits);
+		}
+		Token token = pending.poll();
+		if (ParseStatistics.ENABLED) {
+			ParseStatistics.get().token(token.getType());
+		}
+		return token;
+	}
+
+	/**
+	 * Returns the number of characters of the document read so far.
+	 * 
+	 * @return the number of characters read
+	 */
+	public long getCharactersRead() {
+		return offset + window.length();
+	}
+
+	/**
+	 * Describes where the given offset lies. Since only the current window of
+	 * the document is kept, offsets before it cannot be located; those of the
+	 * current token always can.
+	 * 
+	 * @param offset
+	 *            the offset of a token or error
+	 * @return e.g. <code>line 3, column 14</code>, or <code>null</code> if the
+	 *         offset has been discarded or the lexer started part-way through
+	 *         the document
+	 */
+	@Override
+	public String locate(long offset) {
+		if (offset < 0) {
+			return "end of document";
+		} else if (offset < this.offset || offset > getCharactersRead() || !linesKnown) {
+			return null; // discarded, or the lines before the lexer started are not known
+		}
+		long line = linesDiscarded + 1;
+		long start = lineStart;
+		int end = (int) (offset - this.offset);
+		for (int i = 0; i < end; i++) {
+			if (isLineBreak(i)) {
+				line++;
+				start = this.offset + i + 1;
+			}
+		}
+		return "line " + line + ", column " + (offset - start + 1);
+	}
+
+	/**
+	 * Returns whether the window has a line break at the given index, counting
+	 * <code>\r\n</code> as one.
+	 */
+	private boolean isLineBreak(int i) {
+		char c = window.charAt(i);
+		return c == '\n' || (c == '\r' && (i + 1 == window.length() || window.charAt(i + 1) != '\n'));
+	}
+
+	/**
+	 * Finds the next match in the window, reading more input first if the
+	 * match depends on characters that have not been read yet.
+	 */
+	private void advance() throws LexerException {
+		if (window.length() == 0 && !endOfInput) {
+			fill();
+		}
+		while (true) {
+			if (++steps == nextCheck) {
+				nextCheck = Lexer.checkBudget(budget, steps);
+			}
+			if (inData) {
+				run.region(position, window.length());
+				boolean found = run.lookingAt();
+				if (run.hitEnd() && !endOfInput) {
+					if (found && handOutWords()) {
+						return;
+					}
+					fill();
+					continue;
+				}
+				inData = false;
+				if (found) {
+					scanData(position, run.end());
+					return;
+				}
+				continue; // the run ended where it was cut; match whatever follows
+			}
+			m.region(position, window.length());
+			boolean found = m.find();
+			if (m.hitEnd() && !endOfInput) {
+				/*
+				 * Nothing before the match can start another token, and DATA
+				 * starting right at the position only follows a '>', so the
+				 * words of a run that reached the end are final.
+				 */
+				if (found && m.start() == position && m.group(Lexer.TokenType.DATA.name()) != null) {
+					inData = true;
+					continue;
+				}
+				fill();
+				continue;
+			}
+			if (!found) {
+				done = true;
+				return;
+			}
+			position = m.end();
+			scanned.clear();
+			if (!Lexer.scan(m, scanned, limits, offset)) {
+				done = true;
+			}
+			pending.addAll(scanned);
+			return;
+		}
+	}
+
+	/**
+	 * Hands out the words of the run of DATA matched at the position, up to
+	 * the last whitespace in the window, and moves the position there.
+	 * 
+	 * @return <code>false</code> if there is no whitespace in it, which leaves
+	 *         a single word that may go on
+	 * @throws LexerLimitException
+	 *             if that word is already too long, which is reported at once
+	 *             rather than once the word has been read to its end
+	 */
+	private boolean handOutWords() throws LexerException {
+		int cut = run.end();
+		while (cut > position && " \t\n\r".indexOf(window.charAt(cut - 1)) < 0) {
+			cut--;
+		}
+		if (cut == position) {
+			if (run.end() - position > limits.getMaxDataLength()) {
+				scanData(position, run.end());
+			}
+			return false;
+		}
+		scanData(position, cut);
+		return true;
+	}
+
+	/**
+	 * Splits the DATA in the window between the given indexes into tokens,
+	 * and moves the position past it.
+	 */
+	private void scanData(int start, int end) throws LexerException {
+		scanned.clear();
+		Lexer.data(window.substring(start, end), scanned, limits, offset + start);
+		pending.addAll(scanned);
+		position = end;
+	}
+
+	/**
+	 * Slides the window past the characters already scanned and appends the
+	 * next chunk of input, or as much input as is left unscanned in the
+	 * window if that is more.
+	 */
+	private void fill() throws LexerException {
+		int discard = position - HISTORY;
+		if (discard > CHUNK_SIZE) {
+			for (int i = 0; i < discard; i++) {
+				if (isLineBreak(i)) {
+					linesDiscarded++;
+					lineStart = offset + i + 1;
+				}
+			}
+			window.delete(0, discard);
+			offset += discard;
+			position -= discard;
+		}
+		try {
+			int unscanned = window.length() - position;
+			int wanted = window.length() + unscanned;
+			do {
+				int read = in.read(chunk);
+				if (read < 0) {
+					endOfInput = true;
+				} else {
+					window.append(chunk, 0, read);
+				}
+			} while (!endOfInput && unscanned > CHUNK_SIZE && window.length() < wanted);
+		} catch (IOException e) {
+			if (e.getCause() instanceof LexerLimitException) {
+				// too many bytes (see InflatingReader)
+				throw (LexerLimitException) e.getCause();
+			}
+			throw new LexerException("Failed to read the XML-- document: " + e.getMessage());
+		}
+		if (getCharactersRead() > limits.getMaxInputLength()) {
+			throw new LexerLimitException(Limits.Limit.INPUT_LENGTH, "Scanner error: Document is longer than "
+					+ limits.getMaxInputLength() + " characters.");
+		}
+		if (endOfInput && getCharactersRead() == 0) {
+			throw new LexerException("Failed to scan the specified XML-- file. It may be empty or nonexistent.");
+		}
+		m.reset(window);
+	}
+}
@@ -18,10 +18,17 @@ import org.aghannam.lex.Lexer.TokenType;
 public class Token {
 	private final TokenType type; 
 	private final String lexeme; 
+	private final long offset;
+	private String value;
 	
 	public Token(TokenType type, String lexeme) {
+		this(type, lexeme, -1);
+	}
+
+	public Token(TokenType type, String lexeme, long offset) {
 		this.type = type;
 		this.lexeme = lexeme; 
+		this.offset = offset;
 	}
 	
 	/**
@@ -49,6 +56,42 @@ public class Token {
 		return this.lexeme; 
 	}
 
+	/**
+	 * Returns the value of this token with its entity and character references decoded. 
+	 * <p>
+	 * For a STRING this is the attribute value without its quotes, and for DATA the lexeme itself; other tokens 
+	 * return their lexeme. A DATA lexeme without an '&amp;' is returned as it is, without copying. The value is 
+	 * worked out on the first call and kept, so consumers do not decode the same token twice (see {@link Entities}). 
+	 * 
+	 * @return the decoded value of this token
+	 */
+	public String getValue() {
+		String decoded = this.value;
+		if (decoded == null) {
+			if (this.type == TokenType.STRING) {
+				decoded = Entities.decode(this.lexeme, 1, this.lexeme.length() - 1);
+			} else if (this.type == TokenType.DATA) {
+				decoded = Entities.decode(this.lexeme);
+			} else {
+				decoded = this.lexeme;
+			}
+			this.value = decoded;
+		}
+		return decoded;
+	}
+
+	/**
+	 * Returns the offset of this token's first character in the document, or -1 if it is not known. 
+	 * <p>
+	 * Only the offset is tracked while lexing, so that it costs nothing more than reading the matcher's start; 
+	 * the line and column are worked out from it when needed (see {@link LineIndex}). 
+	 * 
+	 * @return the offset of this token, in characters
+	 */
+	public long getOffset() {
+		return this.offset;
+	}
+
 	/**
 	 * Returns a string representation of this token, which is its type followed by its lexical instance. 
 	 */
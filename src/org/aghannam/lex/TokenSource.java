@@ -0,0 +1,39 @@
+/*
+ * CS 575: Project #2
+ * File: TokenSource.java
+ */
+package org.aghannam.lex;
+
+/**
+ * This interface represents a supplier of tokens that the parser pulls from
+ * one at a time.
+ * <p>
+ * Unlike the list returned by {@link Lexer#getTokenStream()}, a token source
+ * need not know all of its tokens up front, which allows documents to be
+ * lexed and parsed as they are read.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public interface TokenSource {
+	/**
+	 * Returns the next token.
+	 * 
+	 * @return the next token, or <code>null</code> once there are no more
+	 * @throws LexerException
+	 *             if a scanning error occurs
+	 */
+	Token nextToken() throws LexerException;
+
+	/**
+	 * Describes where in the document the given offset lies, for use in error
+	 * messages.
+	 * 
+	 * @param offset
+	 *            the offset of a token or error, or -1 if it is not known
+	 * @return e.g. <code>line 3, column 14</code>, or <code>null</code> if the
+	 *         source cannot tell
+	 */
+	default String locate(long offset) {
+		return null;
+	}
+}
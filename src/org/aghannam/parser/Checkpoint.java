@@ -0,0 +1,211 @@
+/*
+ * CS 575: Project #2
+ * File: Checkpoint.java
+ */
+package org.aghannam.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * This class holds the state of a parse that has been paused at the end of
+ * the input available so far, so that it can be resumed once more of the
+ * document has been appended.
+ * <p>
+ * A checkpoint is always taken just after a tag's closing <code>&gt;</code>
+ * or <code>/&gt;</code>, the last one that could be scanned completely, and
+ * records the LR state and symbol stacks, the names of the open elements, the
+ * number of tokens consumed, and where the document is to be resumed, both in
+ * characters and in UTF-8 bytes, along with the lexer's mode there: since a
+ * checkpoint is taken after a <code>&gt;</code>, the lexer is resumed as if
+ * it had just scanned one, so that DATA is recognized. For a
+ * document that grows by children appended to its root, the stacks stay a few
+ * entries deep, so checkpoints are small however large the document becomes.
+ * <p>
+ * {@link #toBytes()} and {@link #fromBytes(byte[])} turn a checkpoint into a
+ * compact byte array and back, so that it can be kept with the document.
+ * Checkpoints are immutable.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Checkpoint {
+	/* Identifies the serialized form, and its version. */
+	private static final int MAGIC = 0x584d4c43;
+	private static final int VERSION = 1;
+
+	/* What the lexer has seen before a checkpoint after a tag. */
+	static final String AFTER_TAG = ">";
+
+	final long offset;
+	final long byteOffset;
+	final long tokens;
+	final int maxDepth;
+	final int[] states;
+	final String[] symbols;
+	final String[] tagNames;
+	final String context;
+
+	Checkpoint(long offset, long byteOffset, long tokens, int maxDepth, int[] states, String[] symbols,
+			String[] tagNames, String context) {
+		this.offset = offset;
+		this.byteOffset = byteOffset;
+		this.tokens = tokens;
+		this.maxDepth = maxDepth;
+		this.states = states;
+		this.symbols = symbols;
+		this.tagNames = tagNames;
+		this.context = context;
+	}
+
+	/**
+	 * Returns the offset, in characters, at which the document is to be
+	 * resumed.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the offset, in UTF-8 bytes, at which the document is to be
+	 * resumed; the input passed to the parser on resuming starts here.
+	 */
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	/**
+	 * Returns the number of elements still open at this checkpoint.
+	 */
+	public int getDepth() {
+		return tagNames.length;
+	}
+
+	/**
+	 * Returns the number of tokens consumed before this checkpoint.
+	 */
+	public long getTokenCount() {
+		return tokens;
+	}
+
+	/**
+	 * Returns whether the parser is in the same state at the other
+	 * checkpoint, so that the same input would be parsed the same way from
+	 * either.
+	 */
+	boolean hasSameState(Checkpoint other) {
+		return Arrays.equals(states, other.states) && Arrays.equals(symbols, other.symbols)
+				&& Arrays.equals(tagNames, other.tagNames) && context.equals(other.context);
+	}
+
+	/**
+	 * Returns this checkpoint moved by the given numbers of characters, bytes
+	 * and tokens, as when the text before it has been edited.
+	 */
+	Checkpoint shift(long chars, long bytes, long tokenCount, int depth) {
+		return new Checkpoint(offset + chars, byteOffset + bytes, tokens + tokenCount, Math.max(maxDepth, depth),
+				states, symbols, tagNames, context);
+	}
+
+	/**
+	 * Serializes this checkpoint.
+	 *
+	 * @return the checkpoint as a byte array
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(offset);
+			out.writeLong(byteOffset);
+			out.writeLong(tokens);
+			out.writeInt(maxDepth);
+			out.writeInt(states.length);
+			for (int state : states) {
+				out.writeByte(state);
+			}
+			writeStrings(out, symbols);
+			writeStrings(out, tagNames);
+			writeStrings(out, new String[] { context });
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // not thrown by a byte array
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a checkpoint serialized by {@link #toBytes()}.
+	 *
+	 * @param bytes
+	 *            the serialized checkpoint
+	 * @return the checkpoint
+	 * @throws IllegalArgumentException
+	 *             if the bytes are not a checkpoint
+	 */
+	public static Checkpoint fromBytes(byte[] bytes) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IllegalArgumentException("Not a parser checkpoint.");
+			}
+			long offset = in.readLong();
+			long byteOffset = in.readLong();
+			long tokens = in.readLong();
+			int maxDepth = in.readInt();
+			int[] states = new int[length(in)];
+			for (int i = 0; i < states.length; i++) {
+				states[i] = in.readUnsignedByte();
+			}
+			String[] symbols = readStrings(in);
+			String[] tagNames = readStrings(in);
+			String[] context = readStrings(in);
+			if (context.length != 1) {
+				throw new IllegalArgumentException("Corrupt parser checkpoint.");
+			}
+			return new Checkpoint(offset, byteOffset, tokens, maxDepth, states, symbols, tagNames, context[0]);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Truncated parser checkpoint.", e);
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+		out.writeInt(strings.length);
+		for (String s : strings) {
+			out.writeInt(s.length());
+			out.writeChars(s);
+		}
+	}
+
+	private static String[] readStrings(DataInputStream in) throws IOException {
+		String[] strings = new String[length(in)];
+		for (int i = 0; i < strings.length; i++) {
+			char[] chars = new char[length(in)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = in.readChar();
+			}
+			strings[i] = new String(chars);
+		}
+		return strings;
+	}
+
+	/**
+	 * Reads the length of an array, which cannot be longer than the rest of
+	 * the checkpoint.
+	 */
+	private static int length(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > in.available()) {
+			throw new IllegalArgumentException("Corrupt parser checkpoint.");
+		}
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return "Checkpoint[offset=" + offset + ", bytes=" + byteOffset + ", depth=" + tagNames.length + "]";
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentHandler.java
+ */
+package org.aghannam.parser;
+
+/**
+ * This interface receives the outcome of each document in a stream of
+ * documents parsed by {@link Parser#parseDocuments(org.aghannam.lex.TokenSource,
+ * org.aghannam.lex.Budget, DocumentHandler)}, as soon as the document has been
+ * parsed.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public interface DocumentHandler {
+
+	/**
+	 * Called for every document in the stream, in order.
+	 *
+	 * @param index
+	 *            the document's number in the stream, counting from 0
+	 * @param offset
+	 *            the offset of the document's first token in the stream, or
+	 *            -1 if it is not known
+	 * @param error
+	 *            <code>null</code> if the document is well-formed, or the
+	 *            error that made it fail otherwise
+	 * @return whether to go on with the next document
+	 */
+	boolean document(long index, long offset, ParserException error);
+}
@@ -0,0 +1,159 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentStream.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Token;
+import org.aghannam.lex.TokenSource;
+import org.aghannam.stats.ParseStatistics;
+
+/**
+ * This class parses a stream of documents that follow one another in the
+ * same token source (see
+ * {@link Parser#parseDocuments(TokenSource, Budget, DocumentHandler)}).
+ * <p>
+ * It stands between the source and the parser, following how deeply the
+ * tokens it passes on nest. Once it has passed on the end tag or empty tag
+ * that closes a root element, it ends the input there, so that the parser
+ * reduces the document and accepts it as it would at the end of a single
+ * document; the token read after that starts the next document. The parser
+ * itself knows nothing of the stream but that its stacks are cleared between
+ * documents.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+final class DocumentStream implements TokenSource {
+	private final Parser parser;
+	private final TokenSource source;
+
+	/*
+	 * How deeply the tokens read so far nest, and whether they end inside a
+	 * tag, and which kind.
+	 */
+	private int depth;
+	private boolean inTag;
+	private boolean inEndTag;
+
+	/*
+	 * Whether the last token read started a new document, whether it ended
+	 * one, so that the next read ends the input, and whether the source has
+	 * no more tokens.
+	 */
+	private boolean documentStart;
+	private boolean boundary;
+	private boolean exhausted;
+
+	/**
+	 * Constructs a stream of the documents in the given source.
+	 *
+	 * @param parser
+	 *            the parser to parse each document with
+	 * @param source
+	 *            the supplier of the stream's tokens
+	 */
+	DocumentStream(Parser parser, TokenSource source) {
+		this.parser = parser;
+		this.source = source;
+	}
+
+	/**
+	 * Returns the next token of the current document, or <code>null</code>
+	 * at its end.
+	 */
+	@Override
+	public Token nextToken() throws LexerException {
+		documentStart = false;
+		if (boundary) {
+			boundary = false;
+			return null;
+		}
+		Token token = source.nextToken();
+		if (token == null) {
+			exhausted = true;
+		} else {
+			track(token);
+		}
+		return token;
+	}
+
+	/**
+	 * Follows how deeply the tokens nest, and notes where a document starts
+	 * or ends.
+	 */
+	private void track(Token token) {
+		switch (token.getType()) {
+		case OPEN:
+			documentStart = depth == 0 && !inTag;
+			inTag = true;
+			inEndTag = false;
+			break;
+		case LTSL:
+			inTag = true;
+			inEndTag = true;
+			break;
+		case CLOSE:
+			if (inTag) {
+				inTag = false;
+				depth += inEndTag ? -1 : 1;
+				if (depth <= 0) {
+					depth = 0; // a stray end tag ends whatever was there
+					boundary = true;
+				}
+			}
+			break;
+		case SLGT:
+			if (inTag) {
+				inTag = false;
+				boundary = depth == 0;
+			}
+			break;
+		default:
+		}
+	}
+
+	/**
+	 * Parses every document in the stream, and reports each to the handler.
+	 *
+	 * @return the number of documents parsed
+	 */
+	long parse(Budget budget, DocumentHandler handler) throws LexerException, ParserAbortedException {
+		long start = ParseStatistics.ENABLED ? System.nanoTime() : 0;
+		parser.begin(this, budget, false);
+		long count = 0;
+		try {
+			parser.readLookahead();
+			parser.checkBudget(0);
+			while (!exhausted) {
+				long offset = parser.lookahead.getOffset();
+				parser.startDocument();
+				ParserException failure = parser.parseDocument();
+				if (failure instanceof ParserAbortedException) {
+					throw (ParserAbortedException) failure;
+				}
+				if (!handler.document(count++, offset, failure)) {
+					break;
+				}
+
+				// Move on to the start of the next document, with the stacks cleared in place
+				parser.reset();
+				do {
+					parser.tick();
+					parser.readLookahead();
+				} while (failure != null && !documentStart && !exhausted && parser.isValid);
+				if (parser.lexerError != null) {
+					throw parser.lexerError;
+				} else if (parser.error instanceof ParserAbortedException) {
+					throw (ParserAbortedException) parser.error;
+				}
+			}
+			return count;
+		} finally {
+			if (ParseStatistics.ENABLED) {
+				ParseStatistics.get().parsed(System.nanoTime() - start - parser.sourceNanos);
+			}
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * CS 575: Project #2
+ * File: ErrorRecovery.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.Lexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
+
+/**
+ * This class drives a {@link Parser} through a document a step at a time,
+ * recovering from syntax errors in panic mode so that all of them are
+ * reported in one pass (see {@link Parser#setMaxErrors(int)}).
+ * <p>
+ * After an error, tokens are discarded up to a point where the parse can
+ * resume, and the parser's stacks are rebuilt as they are in the content of
+ * the elements still open there. Beyond the stacks, all it needs to know is
+ * whether the root element has started and which names the last mismatched
+ * end tag held, which the parser tells it as it goes.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+final class ErrorRecovery {
+	private final Parser parser;
+	private final int maxErrors;
+
+	/* The errors collected so far, in document order. */
+	private final List<ParserException> errors = new ArrayList<ParserException>();
+
+	/* Set once the root element's name has been shifted. */
+	private boolean rootStarted;
+
+	/* The names in the last end tag that did not match its start tag. */
+	private String mismatchedName;
+	private String mismatchedOpen;
+
+	/*
+	 * The position of the token at which the parse last resumed after an
+	 * error, and of the token at which the last error was found, or -1.
+	 */
+	private long lastRecovery = -1;
+	private long lastError = -1;
+
+	/**
+	 * Constructs the recovery for one document.
+	 *
+	 * @param parser
+	 *            the parser to drive, ready to parse the document
+	 * @param maxErrors
+	 *            how many errors to collect before giving up
+	 */
+	ErrorRecovery(Parser parser, int maxErrors) {
+		this.parser = parser;
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Returns the errors collected so far, in document order.
+	 */
+	List<ParserException> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Notes that the root element's name has been shifted.
+	 */
+	void rootStarted() {
+		rootStarted = true;
+	}
+
+	/**
+	 * Notes that an end tag did not match the innermost open element.
+	 *
+	 * @param open
+	 *            the name of the innermost open element
+	 * @param name
+	 *            the name in the end tag
+	 */
+	void mismatched(String open, String name) {
+		mismatchedOpen = open;
+		mismatchedName = name;
+	}
+
+	/**
+	 * Takes a parse step, and recovers if it finds an error.
+	 */
+	void step() throws ParserException {
+		try {
+			parser.parse();
+		} catch (EmptyStackException e) {
+			parser.fail(new ParserException(Parser.UNDERFLOW));
+		}
+		if (!parser.isValid && !parser.stopped) {
+			recover();
+		}
+	}
+
+	/**
+	 * Records the error just found and resumes the parse after it, or leaves
+	 * the parser stopped if it cannot or should not go on.
+	 */
+	private void recover() {
+		ParserException e = parser.error;
+		if (e == null) {
+			e = new ParserException(Parser.UNEXPECTED);
+			e.locate(parser.lookahead.getOffset());
+		}
+		if (parser.position != lastRecovery || parser.position != lastError) {
+			errors.add(e);
+		} // else the token that failed last time has failed again, and is skipped below
+		lastError = parser.position;
+		if (errors.size() >= maxErrors || e.getClass() != ParserException.class || parser.lexerError != null
+				|| parser.lookahead.getType() == TokenType.EOF) {
+			return;
+		}
+		parser.error = null;
+		parser.isValid = true;
+		if (parser.position == lastRecovery) {
+			parser.nextToken(); // the token the parse resumed at cannot be parsed either
+		}
+
+		// Work out which elements are open, and what kind of token to resume at
+		int state = parser.states.isEmpty() ? -1 : parser.states.peek();
+		List<String> open = new ArrayList<String>(parser.tagNames);
+		String started = null;
+		boolean inTag;
+		switch (state) {
+		case 6:
+		case 7:
+		case 10:
+		case 13:
+		case 14:
+		case 22:
+		case 23:
+			started = open.remove(open.size() - 1); // opened if its start tag is closed
+			inTag = true;
+			break;
+		case 4:
+		case 17:
+		case 19:
+		case 30:
+			inTag = true;
+			break;
+		case 20:
+		case 31:
+			if (mismatchedName != null) {
+				open.add(mismatchedOpen);
+				int named = open.lastIndexOf(mismatchedName);
+				if (named >= 0) {
+					open.subList(named, open.size()).clear();
+				}
+			}
+			inTag = true;
+			break;
+		case 9:
+		case 26:
+			if (!open.isEmpty()) {
+				open.remove(open.size() - 1); // ended with />
+			}
+			inTag = false;
+			break;
+		default:
+			inTag = false;
+		}
+		mismatchedName = null;
+		mismatchedOpen = null;
+
+		if (open.isEmpty() && started == null && rootStarted) {
+			// The root element has ended; whatever follows it is in error
+			skip(TokenType.EOF);
+			parser.isValid = false;
+		} else if (open.isEmpty() && started == null) {
+			skip(TokenType.OPEN); // no root element yet
+		} else if (inTag) {
+			skip(TokenType.CLOSE);
+			TokenType type = parser.lookahead.getType();
+			if (type == TokenType.CLOSE || type == TokenType.SLGT) {
+				if (started != null && type == TokenType.CLOSE) {
+					open.add(started);
+				}
+				parser.nextToken();
+				skip(TokenType.DATA);
+			}
+		} else {
+			skip(TokenType.DATA);
+		}
+
+		if (!parser.isValid) {
+			if (parser.error != null) {
+				errors.add(parser.error); // such as a limit, found while skipping
+			}
+			return;
+		}
+		rebuild(open);
+		lastRecovery = parser.position;
+	}
+
+	/**
+	 * Discards tokens up to the next <code>&lt;</code>, <code>&lt;/</code>
+	 * or end of input, or the next token of the given type: DATA in content,
+	 * or the <code>&gt;</code> or <code>/&gt;</code> that ends a tag (for
+	 * CLOSE).
+	 */
+	private void skip(TokenType until) {
+		while (parser.isValid) {
+			TokenType type = parser.lookahead.getType();
+			if (type == TokenType.EOF || until != TokenType.EOF && (type == TokenType.OPEN
+					|| type == TokenType.LTSL || type == until
+					|| until == TokenType.CLOSE && type == TokenType.SLGT)) {
+				return;
+			}
+			parser.tick();
+			parser.nextToken();
+		}
+	}
+
+	/**
+	 * Sets up the parser's stacks as they are in the content of the given
+	 * elements, the root first, or at the start of the document if there are
+	 * none.
+	 */
+	private void rebuild(List<String> open) {
+		parser.states.clear();
+		parser.symbols.clear();
+		parser.tagNames.clear();
+		parser.attributeNames.clear();
+		parser.states.push(0);
+		for (int i = 0; i < open.size(); i++) {
+			boolean root = i == 0;
+			push(TokenType.OPEN.name(), root ? 4 : 17);
+			push(TokenType.NAME.name(), root ? 6 : 22);
+			push(Parser.ATTR, root ? 7 : 23);
+			push(TokenType.CLOSE.name(), root ? 11 : 27);
+			push(Parser.EOD, root ? 12 : 28);
+			parser.tagNames.push(open.get(i));
+		}
+	}
+
+	private void push(String symbol, int state) {
+		parser.symbols.push(symbol);
+		parser.states.push(state);
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * CS 575: Project #2
+ * File: IncrementalParser.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps a document being edited parsed, re-parsing only around
+ * each edit rather than the whole document.
+ * <p>
+ * As a document is parsed, a {@link Checkpoint} of the parser's state is kept
+ * about every {@value #INTERVAL} characters, at the end of a tag. An edit is
+ * re-parsed from the last checkpoint before it, which is also where the lexer
+ * starts scanning again, so only the tokens from there on are scanned anew.
+ * Once the parse has passed the edited text, each checkpoint it reaches is
+ * compared with the one taken at the same place (moved by the edit) the last
+ * time: if the parser is in the same state there, the rest of the document
+ * would parse exactly as before, so it is not parsed again and its
+ * checkpoints are kept. An edit within an element's content, for instance,
+ * usually only re-parses that element's surroundings, and the elements after
+ * it are reused as they are. The time an edit takes thus depends on the size
+ * of the edit and of the elements around it, not on the size of the document.
+ * <p>
+ * Outcomes are always those of a full parse of the edited document: each
+ * method throws the exception a full parse would, or returns normally if the
+ * document is well-formed. The rest of a document is only skipped when the
+ * last parse succeeded and the edited document stays within the limit on its
+ * number of tokens, which depends on the whole document; otherwise it is
+ * parsed to the end, to fail where a full parse would. A document longer than
+ * the input length limit is parsed in full, since where the lexer notices
+ * depends on how much of the document it has read at a time.
+ * <p>
+ * Where no tag ends for a while, as in a long run of DATA, the span parsed
+ * up to is doubled each time, so the text after the last checkpoint is
+ * scanned again only a bounded number of times over.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class IncrementalParser {
+	/* How many characters to parse between checkpoints. */
+	static final int INTERVAL = 4096;
+
+	private final Parser parser;
+	private final Limits limits;
+	private final StringBuilder document = new StringBuilder();
+
+	/* The checkpoints of the last parse, in document order, and its number of tokens if it succeeded. */
+	private List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+	private boolean valid;
+	private long tokens;
+
+	/* The number of characters parsed by the last parse or edit. */
+	private long parsed;
+
+	/**
+	 * Constructs an incremental parser that does not limit the size or shape
+	 * of the document.
+	 */
+	public IncrementalParser() {
+		this(Limits.NONE);
+	}
+
+	/**
+	 * Constructs an incremental parser that enforces the given limits.
+	 *
+	 * @param limits
+	 *            the limits to enforce
+	 */
+	public IncrementalParser(Limits limits) {
+		this.parser = new Parser(limits);
+		this.parser.setOutput(null);
+		this.limits = limits;
+	}
+
+	/**
+	 * Parses a new document from the start.
+	 *
+	 * @param text
+	 *            the document
+	 * @throws LexerException
+	 *             if the document cannot be scanned
+	 * @throws ParserException
+	 *             if any syntax errors are encountered
+	 */
+	public void parse(String text) throws LexerException, ParserException {
+		document.setLength(0);
+		document.append(text);
+		reparse(null, new ArrayList<Checkpoint>(), new ArrayList<Checkpoint>());
+	}
+
+	/**
+	 * Replaces part of the document and parses it again.
+	 *
+	 * @param offset
+	 *            where the edit starts
+	 * @param removedLength
+	 *            how many characters the edit removes
+	 * @param insertedText
+	 *            the text the edit inserts in their place
+	 * @throws LexerException
+	 *             if the edited document cannot be scanned
+	 * @throws ParserException
+	 *             if any syntax errors are encountered in the edited document
+	 */
+	public void edit(int offset, int removedLength, String insertedText) throws LexerException, ParserException {
+		if (offset < 0 || removedLength < 0 || offset + removedLength > document.length()) {
+			throw new IndexOutOfBoundsException(
+					"Edit of " + removedLength + " characters at " + offset + " in " + document.length() + ".");
+		}
+		int end = offset + removedLength;
+		long chars = insertedText.length() - removedLength;
+		long bytes = utf8Length(insertedText) - utf8Length(document.substring(offset, end));
+		document.replace(offset, end, insertedText);
+
+		// Keep the checkpoints before the edit, and those after it as candidates to rejoin.
+		List<Checkpoint> before = new ArrayList<Checkpoint>();
+		List<Checkpoint> after = new ArrayList<Checkpoint>();
+		for (Checkpoint checkpoint : checkpoints) {
+			if (checkpoint.offset <= offset) {
+				before.add(checkpoint);
+			} else if (checkpoint.offset >= end && valid) {
+				after.add(checkpoint.shift(chars, bytes, 0, 0));
+			}
+		}
+		Checkpoint from = before.isEmpty() ? null : before.get(before.size() - 1);
+		reparse(from, before, after);
+	}
+
+	/**
+	 * Returns the current text of the document.
+	 */
+	public String getDocument() {
+		return document.toString();
+	}
+
+	/**
+	 * Returns the number of characters the last parse or edit went through,
+	 * which for an edit is usually far fewer than the document has.
+	 */
+	public long getCharactersParsed() {
+		return parsed;
+	}
+
+	/**
+	 * Parses the document from the given checkpoint, taking new checkpoints
+	 * as it goes, until it reaches the end or rejoins the last parse at one of
+	 * the candidate checkpoints, all of which lie past the edited text.
+	 */
+	private void reparse(Checkpoint from, List<Checkpoint> kept, List<Checkpoint> candidates)
+			throws LexerException, ParserException {
+		checkpoints = kept;
+		valid = false;
+		long length = document.length();
+		if (length > limits.getMaxInputLength()) {
+			// fails as a full parse does
+			checkpoints.clear();
+			parsed = length;
+			parser.finish(slice(0, length), null);
+			return;
+		}
+		long start = from == null ? 0 : from.offset;
+		long cut = start;
+		long span = INTERVAL;
+		int next = 0;
+		Checkpoint current = from;
+		while (true) {
+			while (next < candidates.size() && candidates.get(next).offset <= cut) {
+				next++;
+			}
+			cut = Math.min(cut + span, next < candidates.size() ? candidates.get(next).offset : length);
+			long offset = current == null ? 0 : current.offset;
+			parsed = cut - start;
+			if (cut >= length) {
+				parser.finish(slice(offset, length), current);
+				tokens = parser.getTokenCount();
+				valid = true;
+				return;
+			}
+			Checkpoint reached = parser.parseAvailable(slice(offset, cut), current);
+			if (reached.offset == offset) {
+				span *= 2; // no complete tag yet
+				continue;
+			}
+			span = INTERVAL;
+			checkpoints.add(reached);
+			current = reached;
+			if (next < candidates.size()) {
+				Checkpoint old = candidates.get(next);
+				long added = reached.tokens - old.tokens;
+				if (old.offset == reached.offset && old.hasSameState(reached)
+						&& tokens + added <= limits.getMaxTokens()) {
+					// The rest parses as it did before, only with a different number of tokens.
+					for (int i = next + 1; i < candidates.size(); i++) {
+						checkpoints.add(candidates.get(i).shift(0, 0, added, reached.maxDepth));
+					}
+					tokens += added;
+					valid = true;
+					return;
+				}
+			}
+		}
+	}
+
+
+	private StringReader slice(long start, long end) {
+		return new StringReader(document.substring((int) start, (int) end));
+	}
+
+	private static long utf8Length(String text) {
+		return text.getBytes(StandardCharsets.UTF_8).length;
+	}
+}
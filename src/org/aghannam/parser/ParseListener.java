@@ -0,0 +1,92 @@
+/*
+ * CS 575: Project #2
+ * File: ParseListener.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.Token;
+
+/**
+ * This interface receives the structure of a document from the parser as the
+ * parse goes.
+ * <p>
+ * The callbacks are made in document order while the corresponding tokens are
+ * shifted, so a listener sees an element before the parser has confirmed the
+ * rest of the document. A listener may also steer the parser: returning
+ * <code>false</code> from {@link #enterContent()} makes it skip over the
+ * element's content, and returning <code>true</code> from {@link #isDone()}
+ * makes it stop parsing altogether.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public interface ParseListener {
+
+	/**
+	 * Called when the name of a start tag is shifted.
+	 *
+	 * @param name
+	 *            the element's name
+	 */
+	void startElement(String name);
+
+	/**
+	 * Called for every attribute of the current start tag.
+	 *
+	 * @param name
+	 *            the attribute's name
+	 * @param value
+	 *            the attribute's value, without the quotes and with its
+	 *            references decoded (see {@link Token#getValue()})
+	 */
+	void attribute(String name, String value);
+
+	/**
+	 * Called when a start tag is closed with <code>&gt;</code>, before any of
+	 * the element's content.
+	 * <p>
+	 * If this returns <code>false</code>, the parser skips to the element's
+	 * end tag by counting the nesting depth of the tokens in between, rather
+	 * than running them through the LR automaton. Nothing is reported for the
+	 * skipped content and, apart from its nesting (and its tag names, see
+	 * {@link Parser#setVerifySkippedTags(boolean)}), it is not checked.
+	 *
+	 * @return whether the parser should parse the element's content
+	 */
+	boolean enterContent();
+
+	/**
+	 * Called for every DATA token in the content of the current element.
+	 *
+	 * @param data
+	 *            the DATA token's text, with its references decoded
+	 */
+	void data(String data);
+
+	/**
+	 * Called when an element ends, either with its end tag or with
+	 * <code>/&gt;</code>.
+	 *
+	 * @param name
+	 *            the element's name
+	 */
+	void endElement(String name);
+
+	/**
+	 * Called for every reduction, with the grammar rule applied, i.e. for
+	 * every line of the rightmost derivation in the order the parser prints
+	 * it. Does nothing unless overridden.
+	 *
+	 * @param rule
+	 *            the rule by which the parser has reduced
+	 */
+	default void reduce(Parser.Rule rule) {
+	}
+
+	/**
+	 * Called after every other callback. Once this returns <code>true</code>
+	 * the parser stops without reading the rest of the document.
+	 *
+	 * @return whether the listener needs no more of the document
+	 */
+	boolean isDone();
+}
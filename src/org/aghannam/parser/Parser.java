@@ -4,15 +4,28 @@
  */
 package org.aghannam.parser;
 
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
 import org.aghannam.lex.Token;
+import org.aghannam.lex.TokenSource;
 import org.aghannam.lex.Lexer.TokenType;
-
+import org.aghannam.schema.Schema;
+import org.aghannam.schema.SchemaValidator;
+import org.aghannam.stats.DocumentParsedEvent;
+import org.aghannam.stats.ParseFailedEvent;
+import org.aghannam.stats.ParseStatistics;
+
+import java.io.PrintStream;
+import java.io.Reader;
 import java.util.Stack;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.EmptyStackException;
+import java.util.Iterator;
 import java.util.HashSet;
-import java.util.HashMap;
+
+import jdk.jfr.FlightRecorder;
 
 /**
  * This class implements a bottom-up, shift-reduce parser for XML--, a fictional
@@ -60,45 +73,183 @@ public class Parser {
 	private static final String ELEMENT = "element";
 	private static final String PREFIX = "elementPrefix";
 	private static final String SUFFIX = "elementSuffix";
-	private static final String EOD = "elementOrData";
-	private static final String ATTR = "attribute";
+	static final String EOD = "elementOrData";
+	static final String ATTR = "attribute";
 	private static final String ET = "endTag";
 
+	/**
+	 * The grammar rules applied by the parser (excluding the augmented start
+	 * rule), each paired with the line it contributes to the derivation.
+	 */
+	public static enum Rule {
+		DOCUMENT("document ::= element"),
+		ELEMENT("element ::= < elementPrefix"),
+		ELEMENT_PREFIX("elementPrefix ::= NAME attribute elementSuffix"),
+		ATTRIBUTE("attribute ::= attribute NAME = STRING"),
+		ATTRIBUTE_EPSILON("attribute ::= EPSILON"),
+		ELEMENT_SUFFIX("elementSuffix ::= > elementOrData endTag"),
+		EMPTY_ELEMENT_SUFFIX("elementSuffix ::= />"),
+		ELEMENT_OR_DATA_ELEMENT("elementOrData ::= elementOrData element"),
+		ELEMENT_OR_DATA_DATA("elementOrData ::= elementOrData DATA"),
+		ELEMENT_OR_DATA_EPSILON("elementOrData ::= EPSILON"),
+		END_TAG("endTag ::= </ NAME >");
+
+		public final String production;
+
+		private Rule(String production) {
+			this.production = production;
+		}
+	}
+
+	/* The messages of errors found without a more specific cause. */
+	static final String UNEXPECTED = "Syntax error: An unexpected symbol has been encountered!";
+	static final String UNDERFLOW = "Syntax error: A syntax error has caused a stack underflow.";
+	private static final String FATAL = "Parser error: Fatal error while parsing.";
+
 	/* Table and grammar-based constants. */
 	private static final int MAXIMUM_RHS_LENGTH = 4;
 	private static final int MAXIMUM_GOTO_ROWS = 28;
+	private static final int NONTERMINAL_COLUMNS = 8;
+
+	/* An empty entry of the GOTO table. */
+	private static final int N = -2;
+
+	/**
+	 * The GOTO portion of the parse table, according to the grammar: one row
+	 * per state, starting with the state's number, and one column per
+	 * nonterminal (see {@link #columnOf(String)}). It is a constant, so no
+	 * parser builds it anew.
+	 */
+	private static final int[][] GOTO_TABLE = { { 0, 3, 2, N, N, N, 1, N, N }, { 1, N, N, N, N, N, N, N, N },
+			{ 2, N, N, N, N, N, N, N, N }, { 3, N, N, N, N, N, N, N, N }, { 4, N, N, 5, N, N, N, N, N },
+			{ 5, N, N, N, N, N, N, N, N }, { 6, N, N, N, 7, N, N, N, N }, { 7, N, N, N, N, 8, N, N, N },
+			{ 8, N, N, N, N, N, N, N, N }, { 9, N, N, N, N, N, N, N, N }, { 10, N, N, N, N, N, N, N, N },
+			{ 11, N, N, N, N, N, N, 12, N }, { 12, N, N, N, N, N, 16, N, 15 }, { 13, N, N, N, N, N, N, N, N },
+			{ 14, N, N, N, N, N, N, N, N }, { 15, N, N, N, N, N, N, N, N }, { 16, N, N, N, N, N, N, N, N },
+			{ 17, N, N, 21, N, N, N, N, N }, { 18, N, N, N, N, N, N, N, N }, { 19, N, N, N, N, N, N, N, N },
+			{ 20, N, N, N, N, N, N, N, N }, { 21, N, N, N, N, N, N, N, N }, { 22, N, N, N, 23, N, N, N, N },
+			{ 23, N, N, N, N, 25, N, N, N }, { 24, N, N, N, N, N, N, N, N }, { 25, N, N, N, N, N, N, N, N },
+			{ 26, N, N, N, N, N, N, N, N }, { 27, N, N, N, N, N, N, 28, N }, { 28, N, N, N, N, N, 16, N, 29 },
+			{ 29, N, N, N, N, N, N, N, N }, { 30, N, N, N, N, N, N, N, N }, { 31, N, N, N, N, N, N, N, N },
+			{ 32, N, N, N, N, N, N, N, N } };
+
+	/* The lookahead once every token has been consumed. */
+	private static final Token END_OF_INPUT = new Token(TokenType.EOF, "&$");
 
 	/* General variable declaration. */
 
 	/**
 	 * Holds grammar symbols (terminals and nonterminals).
 	 */
-	private Stack<String> symbols;
+	Stack<String> symbols;
 
 	/**
 	 * Holds the parse states.
 	 */
-	private Stack<Integer> states;
+	Stack<Integer> states;
 
 	/**
 	 * Used to ensure that corresponding tag names match where necessary.
 	 */
-	private Stack<String> tagNames;
+	Stack<String> tagNames;
+
+	/**
+	 * Supplies the token stream produced by the lexical analyzer.
+	 */
+	private TokenSource source;
+
+	/**
+	 * The index of the lookahead within the token stream.
+	 */
+	int position;
+
+	/*
+	 * How many tokens of the current document have been read, lookahead
+	 * included, and the offsets of its first token and of the end of the last
+	 * one read, for the Flight Recorder events.
+	 */
+	long tokensRead;
+	private long documentFrom;
+	private long documentEnd;
+
+	/**
+	 * Set when the token source fails to scan the next token.
+	 */
+	LexerException lexerError;
+
+	/**
+	 * The time spent waiting on the token source since the parse began, kept
+	 * only when statistics are collected so that lexing is not also counted
+	 * as parsing.
+	 */
+	long sourceNanos;
+
+	/**
+	 * The work the parser may spend on the current document.
+	 */
+	private Budget budget = Budget.UNLIMITED;
+
+	/**
+	 * The number of steps taken so far, and the step count at which to check
+	 * the budget next.
+	 */
+	private long steps;
+	private long nextCheck;
+
+	/**
+	 * Receives the structure of the document as it is parsed, if set.
+	 */
+	ParseListener listener;
+
+	/**
+	 * The name of the attribute whose value is about to be shifted.
+	 */
+	private String attributeName;
+
+	/**
+	 * Set when the listener needs no more of the document.
+	 */
+	boolean stopped;
+
+	/**
+	 * Whether the token source may end before the document does, and set
+	 * when it has, so that the parse can be resumed later.
+	 */
+	private boolean partial;
+	private boolean paused;
+
+	/**
+	 * How many errors to collect in a document before giving up on it. With
+	 * more than one, the parser recovers from syntax errors (see
+	 * {@link #setMaxErrors(int)}).
+	 */
+	private int maxErrors = 1;
+
+	/**
+	 * Recovers from the syntax errors in the current document, if the parser
+	 * is to.
+	 */
+	private ErrorRecovery recovery;
+
+	/**
+	 * Whether the names of tags in skipped content are matched.
+	 */
+	private boolean verifySkippedTags;
 
 	/**
-	 * Holds the token stream returned by the lexical analyzer.
+	 * Checks each document against a schema, if set.
 	 */
-	private ArrayList<Token> tokens;
+	SchemaValidator schema;
 
 	/**
 	 * Used to ensure no duplicate attribute names within a tag.
 	 */
-	private HashSet<String> attributeNames;
+	HashSet<String> attributeNames;
 
 	/**
 	 * The current lookahead token.
 	 */
-	private Token lookahead;
+	Token lookahead;
 
 	/**
 	 * The current parse state to which to advance the parser.
@@ -108,7 +259,7 @@ public class Parser {
 	/**
 	 * Whether or not the input is a well-formed XML-- document.
 	 */
-	private boolean isValid;
+	boolean isValid;
 
 	/**
 	 * Used to trigger a successful parse of a legal document.
@@ -116,14 +267,154 @@ public class Parser {
 	private boolean complete;
 
 	/**
-	 * Represents the rows of the GOTO table.
+	 * The deepest nesting of elements seen so far in the current document.
+	 */
+	int maxDepth;
+
+	/**
+	 * Flight Recorder events for the current document, begun when parsing
+	 * starts. Exactly one of them is committed when parsing ends.
+	 */
+	private DocumentParsedEvent parsedEvent;
+	private ParseFailedEvent failedEvent;
+
+	/**
+	 * The resource limits to enforce while parsing.
+	 */
+	final Limits limits;
+
+	/**
+	 * Set when a specific error (such as a tag name mismatch or an exceeded
+	 * limit) has been detected; reported once the main parsing loop stops.
 	 */
-	private String gotoTable[][];
+	ParserException error;
 
 	/**
-	 * Represents the nonterminal columns of the GOTO table.
+	 * Where the derivation is printed, or <code>null</code> not to print it.
 	 */
-	private HashMap<String, Integer> nonterminalColumns;
+	private PrintStream out = System.out;
+
+	/**
+	 * Constructs a new parser that does not limit the size or shape of the
+	 * documents it parses.
+	 */
+	public Parser() {
+		this(Limits.NONE);
+	}
+
+	/**
+	 * Constructs a new parser that enforces the nesting depth and
+	 * attributes-per-tag limits of the given <code>Limits</code>, as well as
+	 * the maximum number of tokens per document.
+	 * 
+	 * @param limits
+	 *            the limits to enforce
+	 */
+	public Parser(Limits limits) {
+		this.limits = limits;
+	}
+
+	/**
+	 * Sets where the derivation (and the final success message) is printed.
+	 * By default it is printed to <code>System.out</code>.
+	 * 
+	 * @param out
+	 *            the stream to print to, or <code>null</code> to parse silently
+	 */
+	public void setOutput(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Sets the listener that receives the structure of each document as it
+	 * is parsed, and that may have parts of it skipped.
+	 * 
+	 * @param listener
+	 *            the listener, or <code>null</code> for none
+	 */
+	public void setListener(ParseListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets whether the names of the tags in content skipped at the listener's
+	 * request are still matched against each other. This is off by default,
+	 * in which case skipped content is only checked for its nesting.
+	 * 
+	 * @param verify
+	 *            whether to match skipped tag names
+	 */
+	public void setVerifySkippedTags(boolean verify) {
+		this.verifySkippedTags = verify;
+	}
+
+	/**
+	 * Sets the schema that each document must conform to, in addition to the
+	 * grammar. The schema is checked during the parse, as tag and attribute
+	 * names are shifted, so no second pass is needed; a document that does not
+	 * conform is rejected with a {@link SchemaException}. Content skipped at a
+	 * listener's request is not checked against the schema.
+	 * 
+	 * @param schema
+	 *            the schema, or <code>null</code> for none
+	 */
+	public void setSchema(Schema schema) {
+		this.schema = schema == null ? null : schema.newValidator();
+	}
+
+	/**
+	 * Sets how many errors to collect in a document before giving up on it.
+	 * By default the parser stops at the first error.
+	 * <p>
+	 * With a maximum above one, the parser recovers from syntax errors in
+	 * panic mode, so that a broken document has all its errors reported in
+	 * one pass. After an error, tokens are discarded up to the next
+	 * <code>&lt;</code>, <code>&lt;/</code> or, within a tag, the
+	 * <code>&gt;</code> or <code>/&gt;</code> that ends it, and the parse
+	 * resumes in the content of the elements still open: a start tag with an
+	 * error still opens its element if it is closed with <code>&gt;</code>,
+	 * and an end tag that does not match the innermost open element closes
+	 * the enclosing one it names, if any, along with those inside it, or is
+	 * otherwise ignored. Since every position in content corresponds to a
+	 * fixed configuration of the LR stacks for the elements open there, the
+	 * stacks are rebuilt from the names of those elements. A document is
+	 * given up on when the maximum is reached, at the end of the input, after
+	 * its root element has ended, and on anything but a syntax error, such as
+	 * an exceeded limit. The first error is thrown as usual once the parse
+	 * ends, and all of them are available from {@link #getErrors()}.
+	 * <p>
+	 * Recovery does not apply with a schema set, to streams of documents or to
+	 * checkpoints, which stop at the first error regardless.
+	 * 
+	 * @param maxErrors
+	 *            the number of errors to collect, at least 1
+	 */
+	public void setMaxErrors(int maxErrors) {
+		if (maxErrors < 1) {
+			throw new IllegalArgumentException("At least one error must be reported.");
+		}
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Returns the errors found in the last document parsed with recovery
+	 * enabled (see {@link #setMaxErrors(int)}), in document order.
+	 * 
+	 * @return the errors, or an empty list if the document was well-formed or
+	 *         recovery was not enabled
+	 */
+	public List<ParserException> getErrors() {
+		return recovery == null ? new ArrayList<ParserException>()
+				: new ArrayList<ParserException>(recovery.getErrors());
+	}
+
+	/**
+	 * Returns how many tokens of the last document have been shifted, which
+	 * once it has been accepted is all of them.
+	 */
+	long getTokenCount() {
+		return position;
+	}
 
 	/**
 	 * Initializes the necessary variables and data structures in preparation
@@ -134,45 +425,34 @@ public class Parser {
 		states = new Stack<Integer>();
 		tagNames = new Stack<String>();
 		attributeNames = new HashSet<String>();
+		reset();
+	}
+
+	/**
+	 * Clears the state left by the previous document in place, so that the
+	 * next one in a stream is parsed from the start without allocating.
+	 */
+	void reset() {
+		symbols.clear();
+		states.clear();
+		tagNames.clear();
+		attributeNames.clear();
 		currentState = -1;
 		isValid = true;
 		complete = false;
-		initializeGotoTable();
-	}
-
-	/**
-	 * Populates the GOTO portion of the parse table according to the grammar.
-	 */
-	private void initializeGotoTable() {
-		/* Set each nonterminal and its corresponding column number. */
-		nonterminalColumns = new HashMap<String, Integer>();
-		nonterminalColumns.put(START, 1);
-		nonterminalColumns.put(DOCUMENT, 2);
-		nonterminalColumns.put(PREFIX, 3);
-		nonterminalColumns.put(ATTR, 4);
-		nonterminalColumns.put(SUFFIX, 5);
-		nonterminalColumns.put(ELEMENT, 6);
-		nonterminalColumns.put(EOD, 7);
-		nonterminalColumns.put(ET, 8);
-
-		/* The actual GOTO table. */
-		gotoTable = new String[][] { { "0", "3", "2", "", "", "", "1", "", "" },
-				{ "1", "", "", "", "", "", "", "", "" }, { "2", "", "", "", "", "", "", "", "" },
-				{ "3", "", "", "", "", "", "", "", "" }, { "4", "", "", "5", "", "", "", "", "" },
-				{ "5", "", "", "", "", "", "", "", "" }, { "6", "", "", "", "7", "", "", "", "" },
-				{ "7", "", "", "", "", "8", "", "", "" }, { "8", "", "", "", "", "", "", "", "" },
-				{ "9", "", "", "", "", "", "", "", "" }, { "10", "", "", "", "", "", "", "", "" },
-				{ "11", "", "", "", "", "", "", "12", "" }, { "12", "", "", "", "", "", "16", "", "15" },
-				{ "13", "", "", "", "", "", "", "", "" }, { "14", "", "", "", "", "", "", "", "" },
-				{ "15", "", "", "", "", "", "", "", "" }, { "16", "", "", "", "", "", "", "", "" },
-				{ "17", "", "", "21", "", "", "", "", "" }, { "18", "", "", "", "", "", "", "", "" },
-				{ "19", "", "", "", "", "", "", "", "" }, { "20", "", "", "", "", "", "", "", "" },
-				{ "21", "", "", "", "", "", "", "", "" }, { "22", "", "", "", "23", "", "", "", "" },
-				{ "23", "", "", "", "", "25", "", "", "" }, { "24", "", "", "", "", "", "", "", "" },
-				{ "25", "", "", "", "", "", "", "", "" }, { "26", "", "", "", "", "", "", "", "" },
-				{ "27", "", "", "", "", "", "", "28", "" }, { "28", "", "", "", "", "", "16", "", "29" },
-				{ "29", "", "", "", "", "", "", "", "" }, { "30", "", "", "", "", "", "", "", "" },
-				{ "31", "", "", "", "", "", "", "", "" }, { "32", "", "", "", "", "", "", "", "" }, };
+		maxDepth = 0;
+		position = 0;
+		tokensRead = 0;
+		documentFrom = 0;
+		documentEnd = 0;
+		error = null;
+		lexerError = null;
+		stopped = false;
+		paused = false;
+		recovery = null;
+		if (schema != null) {
+			schema.reset();
+		}
 	}
 
 	/**
@@ -185,34 +465,384 @@ public class Parser {
 	 * @throws ParserException
 	 *             if any syntax errors are encountered during the parsing
 	 *             process
+	 * @throws ParserLimitException
+	 *             if the document exceeds one of the parser's limits
 	 */
 	public void parse(List<Token> tokens) throws ParserException {
+		parse(tokens, Budget.UNLIMITED);
+	}
+
+	/**
+	 * Parses an XML-- document using shift-reduce, within the given budget,
+	 * and prints out a rightmost derivation.
+	 * 
+	 * @param tokens
+	 *            the token stream returned by the lexical analyzer
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 * @throws ParserException
+	 *             if any syntax errors are encountered during the parsing
+	 *             process
+	 * @throws ParserLimitException
+	 *             if the document exceeds one of the parser's limits
+	 * @throws ParserAbortedException
+	 *             if the budget runs out
+	 */
+	public void parse(List<Token> tokens, Budget budget) throws ParserException {
+		Iterator<Token> it = tokens.iterator();
 		try {
-			init();
+			parse(() -> it.hasNext() ? it.next() : null, budget);
+		} catch (LexerException e) {
+			throw new IllegalStateException(e); // a list of tokens has already been scanned
+		}
+	}
 
-			states.push(0); // initial state on stack
+	/**
+	 * Parses an XML-- document using shift-reduce, pulling tokens from the
+	 * given source only as the parser needs them, and prints out a rightmost
+	 * derivation.
+	 * <p>
+	 * Used with a {@link org.aghannam.lex.StreamingLexer}, this lexes and
+	 * parses a document as it is being read.
+	 * 
+	 * @param source
+	 *            the supplier of the document's tokens
+	 * @throws LexerException
+	 *             if the source fails to scan the document
+	 * @throws ParserException
+	 *             if any syntax errors are encountered during the parsing
+	 *             process
+	 * @throws ParserLimitException
+	 *             if the document exceeds one of the parser's limits
+	 */
+	public void parse(TokenSource source) throws LexerException, ParserException {
+		parse(source, Budget.UNLIMITED);
+	}
+
+	/**
+	 * Parses an XML-- document using shift-reduce, pulling tokens from the
+	 * given source within the given budget, and prints out a rightmost
+	 * derivation.
+	 * <p>
+	 * The budget is checked as the parser goes, so a document that takes too
+	 * long, needs too many steps or is cancelled is abandoned with a
+	 * {@link ParserAbortedException} rather than occupying the thread until it
+	 * is done. The source is expected to honor its own budget.
+	 * 
+	 * @param source
+	 *            the supplier of the document's tokens
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 * @throws LexerException
+	 *             if the source fails to scan the document
+	 * @throws ParserException
+	 *             if any syntax errors are encountered during the parsing
+	 *             process
+	 * @throws ParserLimitException
+	 *             if the document exceeds one of the parser's limits
+	 * @throws ParserAbortedException
+	 *             if the budget runs out
+	 */
+	public void parse(TokenSource source, Budget budget) throws LexerException, ParserException {
+		begin(source, budget, false);
+		states.push(0); // initial state on stack
+		recoverErrors();
+		run();
+	}
+
+	/**
+	 * Parses as much of a growing document as is available, and returns a
+	 * checkpoint from which to resume once more has been appended.
+	 * <p>
+	 * The input is parsed up to the end of the last tag in it that is
+	 * complete; whatever follows is left for the next call, which is given the
+	 * input from the checkpoint's {@link Checkpoint#getByteOffset()} onward.
+	 * Syntax errors in the part that has been parsed are reported as usual.
+	 * Once the whole document is available, {@link #finish(Reader, Checkpoint)}
+	 * parses the rest and completes the document, with the same outcome (and
+	 * derivation, in parts) as parsing the whole document at once. Resuming
+	 * from a checkpoint takes time in proportion to the input appended since,
+	 * not to the whole document.
+	 * <p>
+	 * Checkpoints cover only the parser's own state, so they cannot be used
+	 * while a listener or a schema is set.
+	 * 
+	 * @param in
+	 *            the document, from the checkpoint onward
+	 * @param from
+	 *            the checkpoint to resume from, or <code>null</code> to start
+	 *            at the beginning of the document
+	 * @return the checkpoint at the end of the last complete tag
+	 * @throws LexerException
+	 *             if the complete part of the input cannot be scanned
+	 * @throws ParserException
+	 *             if any syntax errors are encountered in the part of the
+	 *             document parsed
+	 */
+	public Checkpoint parseAvailable(Reader in, Checkpoint from) throws LexerException, ParserException {
+		return new PartialParse(this).parseAvailable(in, from);
+	}
 
-			this.tokens = new ArrayList<Token>(tokens);
-			this.tokens.add(new Token(TokenType.EOF, "&$"));
-			lookahead = this.tokens.get(0);
+	/**
+	 * Parses the rest of a document from a checkpoint taken by
+	 * {@link #parseAvailable(Reader, Checkpoint)}, up to its end.
+	 * 
+	 * @param in
+	 *            the document, from the checkpoint onward
+	 * @param from
+	 *            the checkpoint to resume from, or <code>null</code> to parse
+	 *            the whole document
+	 * @throws LexerException
+	 *             if the input cannot be scanned
+	 * @throws ParserException
+	 *             if any syntax errors are encountered
+	 */
+	public void finish(Reader in, Checkpoint from) throws LexerException, ParserException {
+		new PartialParse(this).finish(in, from);
+	}
 
-			/* The main parsing algorithm is triggered within this loop. */
-			while (!complete && isValid) {
-				parse();
+	/**
+	 * Parses a stream of documents that follow one another in the same token
+	 * source, such as concatenated documents in a file or on a socket, and
+	 * reports the outcome of each to the given handler.
+	 * <p>
+	 * A document ends where its root element does. To find out where that
+	 * is, the tokens are counted as they are read: once the end tag or empty
+	 * tag that closes the root has been read, the parser is handed the
+	 * end-of-input marker, so it reduces the document and accepts it in state 3
+	 * as it would at the end of a single document. Only then are its stacks
+	 * cleared, in place, and the next document parsed, so a stream of many
+	 * small documents is parsed without allocating anything per document or
+	 * per token, unless it is invalid, beyond an entry for each attribute in
+	 * the set that finds duplicates. A document with a syntax error, or that exceeds
+	 * the parser's limits, is reported and skipped: the tokens after the error
+	 * are discarded up to the next <code>&lt;</code> outside any element, where
+	 * the next document is taken to start. Anything between documents other
+	 * than whitespace and comments is reported as an invalid document of its
+	 * own.
+	 * <p>
+	 * The limits apply to each document, the budget to the whole stream.
+	 * Errors that leave the stream unreadable end it: a scanning error is
+	 * thrown once the documents before it have been reported, and so is a
+	 * {@link ParserAbortedException} once the budget runs out. The derivation
+	 * of each valid document is printed, if output is set, and a listener or
+	 * schema applies to every document.
+	 * 
+	 * @param source
+	 *            the supplier of the stream's tokens
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 * @param handler
+	 *            receives the outcome of each document, and may stop the
+	 *            stream
+	 * @return the number of documents parsed
+	 * @throws LexerException
+	 *             if the source fails to scan the stream
+	 * @throws ParserAbortedException
+	 *             if the budget runs out
+	 */
+	public long parseDocuments(TokenSource source, Budget budget, DocumentHandler handler)
+			throws LexerException, ParserAbortedException {
+		return new DocumentStream(this, source).parse(budget, handler);
+	}
+
+	/**
+	 * Prepares to parse from the given source within the given budget, with
+	 * the stacks empty.
+	 * 
+	 * @param source
+	 *            the supplier of the tokens
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 * @param partial
+	 *            whether the source may end before the document does, in
+	 *            which case the parse pauses there
+	 */
+	void begin(TokenSource source, Budget budget, boolean partial) {
+		createEvents();
+		init();
+		this.source = source;
+		this.budget = budget;
+		this.partial = partial;
+		steps = 0;
+		nextCheck = budget.nextCheck(0);
+		sourceNanos = 0;
+	}
+
+	/**
+	 * Recovers from the syntax errors in the document about to be parsed,
+	 * if the parser is to collect more than one and has no schema.
+	 */
+	void recoverErrors() {
+		if (maxErrors > 1 && schema == null) {
+			recovery = new ErrorRecovery(this, maxErrors);
+		}
+	}
+
+	/**
+	 * Parses a document, or the rest of one, from the stacks as they are.
+	 * 
+	 * @throws LexerException
+	 *             if the source fails to scan the document
+	 * @throws ParserException
+	 *             if the document is rejected
+	 */
+	void run() throws LexerException, ParserException {
+		long start = ParseStatistics.ENABLED ? System.nanoTime() : 0;
+		beginEvents();
+		try {
+			lookahead = read();
+			checkBudget(0);
+			ParserException failure = parseDocument();
+			if (failure != null) {
+				throw failure;
 			}
+		} finally {
+			if (ParseStatistics.ENABLED) {
+				ParseStatistics.get().parsed(System.nanoTime() - start - sourceNanos);
+			}
+		}
+	}
 
-			if (isValid) {
-				System.out.println("\nDocument parsed successfully!");
-			} else {
-				throw new ParserException("Syntax error: An unexpected symbol has been encountered!");
+	/**
+	 * Starts a document of a stream at the lookahead, with the stacks
+	 * cleared.
+	 */
+	void startDocument() {
+		long offset = lookahead.getOffset();
+		// The lookahead, read before the stacks were cleared, is the document's first token
+		tokensRead = 1;
+		documentFrom = Math.max(offset, 0);
+		documentEnd = offset < 0 ? 0 : offset + lookahead.getLexeme().length();
+		beginEvents();
+		states.push(0);
+	}
+
+	/**
+	 * Reads the next token into the lookahead, without shifting the last.
+	 */
+	void readLookahead() {
+		lookahead = read();
+	}
+
+	/**
+	 * Parses from the lookahead until the document has been accepted or
+	 * rejected, or the parse stops or pauses, and records the outcome.
+	 * <p>
+	 * The main parsing algorithm is triggered within the loop, which checks
+	 * the budget every so often.
+	 * 
+	 * @return the error the document was rejected with, or <code>null</code>
+	 * @throws LexerException
+	 *             if the source fails to scan the document
+	 */
+	ParserException parseDocument() throws LexerException {
+		try {
+			while (!complete && isValid && !stopped && !paused) {
+				tick();
+				if (recovery != null) {
+					recovery.step();
+				} else {
+					parse();
+				}
 			}
 		} catch (EmptyStackException e) {
-			System.err.println("A syntax error has caused a stack underflow. Parsing terminated...");
+			fail(new ParserException(UNDERFLOW));
 		} catch (IndexOutOfBoundsException e) {
-			System.err.println("Fatal error while parsing...");
+			fail(new ParserException(FATAL));
+		} catch (ParserException e) {
+			fail(e);
 		}
+
+		ParserException failure;
+		if (lexerError != null) {
+			recordFailure(lexerError.getMessage(), lexerError.getOffset());
+			throw lexerError;
+		} else if (recovery != null && !recovery.getErrors().isEmpty()) {
+			failure = recovery.getErrors().get(0); // the parse recovered from these, or gave up after them
+		} else if (isValid) {
+			if (paused) {
+				return null; // the rest of the document is yet to come
+			}
+			if (out != null && complete && !stopped) {
+				out.println("\nDocument parsed successfully!");
+			} // else the listener needs no more; the rest of the document is left unread
+			recordSuccess();
+			return null;
+		} else if (error != null) {
+			failure = error;
+		} else {
+			failure = new ParserException(UNEXPECTED);
+			failure.locate(lookahead.getOffset());
+		}
+		recordFailure(failure.getMessage(), failure.getOffset());
+		return failure;
 	}
-	
+
+	/**
+	 * Creates the Flight Recorder events for this parse, if Flight Recorder has
+	 * been started. Until then the event classes are never loaded: the first
+	 * one to be loaded sets up Flight Recorder's metadata, which takes far
+	 * longer than parsing a small document.
+	 */
+	private void createEvents() {
+		if (FlightRecorder.isInitialized()) {
+			parsedEvent = new DocumentParsedEvent();
+			failedEvent = new ParseFailedEvent();
+		} else {
+			parsedEvent = null;
+			failedEvent = null;
+		}
+	}
+
+	private void beginEvents() {
+		if (parsedEvent != null) {
+			parsedEvent.begin();
+			failedEvent.begin();
+		}
+	}
+
+	/**
+	 * Commits the Flight Recorder event for a successful parse, provided the
+	 * parse took long enough to be of interest to the current recording.
+	 */
+	private void recordSuccess() {
+		if (parsedEvent == null) {
+			return;
+		}
+		parsedEvent.end();
+		if (parsedEvent.shouldCommit()) {
+			parsedEvent.documentSize = documentEnd - documentFrom;
+			parsedEvent.tokenCount = tokensRead;
+			parsedEvent.maxDepth = maxDepth;
+			parsedEvent.commit();
+		}
+	}
+
+	/**
+	 * Commits the Flight Recorder event for a failed parse.
+	 * 
+	 * @param message
+	 *            a short description of the error
+	 * @param offset
+	 *            the offset of the token at which the error was detected, or
+	 *            -1 if it is not known
+	 */
+	private void recordFailure(String message, long offset) {
+		if (failedEvent == null) {
+			return;
+		}
+		failedEvent.end();
+		if (failedEvent.shouldCommit()) {
+			failedEvent.documentSize = documentEnd - documentFrom;
+			failedEvent.tokenCount = tokensRead;
+			failedEvent.maxDepth = maxDepth;
+			failedEvent.errorOffset = offset;
+			failedEvent.message = message;
+			failedEvent.commit();
+		}
+	}
+
 	/**
 	 * Pushes the given token into the parse stack and goes to the specified
 	 * state.
@@ -222,18 +852,46 @@ public class Parser {
 	 * method updates both the symbol stack and the state stack, which
 	 * collectively represent the parse stack. In addition, whenever it is
 	 * called, the lookahead is set to the next token returned by the scanner.
+	 * <p>
+	 * The terminal is pushed as the name of its token type, a constant, so
+	 * that shifting allocates nothing. Its lexeme is not needed once shifted:
+	 * tag names are kept on their own stack.
 	 * 
-	 * @param token
-	 *            the terminal to push into the parse stack
+	 * @param type
+	 *            the type of the terminal to push into the parse stack
 	 * @param state
 	 *            the next state to which to advance the parser
 	 */
-	private void shift(String token, int state) {
-		symbols.push(token);
+	private void shift(TokenType type, int state) {
+		symbols.push(type.name());
 		states.push(state);
+		if (ParseStatistics.ENABLED) {
+			ParseStatistics.get().shift();
+			ParseStatistics.get().parseStackDepth(states.size());
+		}
 		nextToken();
 	}
 
+	/**
+	 * Prints the given grammar rule as the next line of the derivation, and
+	 * reports it to the listener.
+	 * 
+	 * @param rule
+	 *            the rule by which the parser is reducing
+	 */
+	private void derive(Rule rule) {
+		if (out != null) {
+			out.println(rule.production);
+		}
+		if (ParseStatistics.ENABLED) {
+			ParseStatistics.get().reduction(rule);
+		}
+		if (listener != null) {
+			listener.reduce(rule);
+			stopped = listener.isDone();
+		}
+	}
+
 	/**
 	 * Advances by one token and sets the lookahead to be the next token in the
 	 * input token stream.
@@ -241,16 +899,246 @@ public class Parser {
 	 * This method is called frequently by <code>shift()</code>, whenever a
 	 * terminal has been pushed into the parse stack.
 	 */
-	private void nextToken() {
-		tokens.remove(0);
+	void nextToken() {
+		position++;
+		if (position > limits.getMaxTokens()) {
+			exceed(Limits.Limit.TOKENS, "Document has more than " + limits.getMaxTokens() + " tokens.");
+		}
+		lookahead = read();
+	}
 
-		if (tokens.isEmpty()) {
-			lookahead = new Token(TokenType.EOF, "&$");
-		} else {
-			lookahead = tokens.get(0);
+	/**
+	 * Pulls the next token from the token source.
+	 * <p>
+	 * Should the source fail, the failure is kept to be reported once the main
+	 * parsing loop stops, and end of input is returned so that the loop stops
+	 * at once.
+	 * <p>
+	 * When statistics are collected, the time the source takes is added to
+	 * {@link #sourceNanos}, to be left out of the parse time.
+	 * 
+	 * @return the next token, or the end-of-input marker
+	 */
+	private Token read() {
+		try {
+			Token token;
+			if (ParseStatistics.ENABLED) {
+				long start = System.nanoTime();
+				try {
+					token = source.nextToken();
+				} finally {
+					sourceNanos += System.nanoTime() - start;
+				}
+			} else {
+				token = source.nextToken();
+			}
+			if (token == null) {
+				if (partial) {
+					paused = true;
+				}
+				return END_OF_INPUT;
+			}
+			tokensRead++;
+			if (token.getOffset() >= 0) {
+				documentEnd = token.getOffset() + token.getLexeme().length();
+			}
+			return token;
+		} catch (LexerException e) {
+			lexerError = e;
+			isValid = false;
+			return END_OF_INPUT;
+		}
+	}
+
+	/*
+	 * The following methods report the structure of the document to the
+	 * listener, if there is one, and stop the parse as soon as the listener
+	 * needs no more.
+	 */
+
+	private void startElement(Token name) {
+		if (listener != null) {
+			listener.startElement(name.getLexeme());
+			stopped = listener.isDone();
+		}
+	}
+
+	private void attribute(Token value) {
+		if (listener != null) {
+			listener.attribute(attributeName, value.getValue());
+			stopped = listener.isDone();
+		}
+	}
+
+	private void enterContent() {
+		if (listener != null) {
+			boolean enter = listener.enterContent();
+			stopped = listener.isDone();
+			if (!enter && !stopped) {
+				skipContent();
+			}
+		}
+	}
+
+	private void data(Token data) {
+		if (listener != null) {
+			listener.data(data.getValue());
+			stopped = listener.isDone();
+		}
+	}
+
+	private void endElement(String name) {
+		if (listener != null) {
+			listener.endElement(name);
+			stopped = listener.isDone();
+		}
+	}
+
+	/**
+	 * Skips the content of the current element, leaving its end tag as the
+	 * lookahead.
+	 * <p>
+	 * Rather than running the skipped tokens through the LR automaton, this
+	 * only counts how deeply they nest: <, /> and &lt;/ are all it looks at.
+	 * Once back in the state that shifted the start tag's >, the parser takes
+	 * the end tag's &lt;/ as the end of an empty content, so the end tag is
+	 * still matched against the start tag as usual. If
+	 * {@link #setVerifySkippedTags(boolean)} is on, the names of the tags in
+	 * between are also pushed onto the tag name stack and matched, so that a
+	 * mismatched end tag is reported even in skipped content; the schema, if
+	 * any, is not told about them either way.
+	 */
+	private void skipContent() {
+		int open = tagNames.size();
+		int depth = 0;
+		TokenType previous = null;
+		while (isValid) {
+			tick();
+			TokenType type = lookahead.getType();
+			switch (type) {
+			case OPEN:
+				depth++;
+				if (open + depth > limits.getMaxDepth()) {
+					exceed(Limits.Limit.DEPTH, "Elements are nested more than " + limits.getMaxDepth() + " deep.");
+				}
+				break;
+			case LTSL:
+				if (depth == 0) {
+					return;
+				}
+				depth--;
+				break;
+			case SLGT:
+				if (--depth < 0) {
+					isValid = false;
+				} else if (verifySkippedTags) {
+					tagNames.pop();
+				}
+				break;
+			case NAME:
+				if (verifySkippedTags && previous == TokenType.OPEN) {
+					tagNames.push(lookahead.getLexeme());
+				} else if (verifySkippedTags && previous == TokenType.LTSL) {
+					popTagName(lookahead);
+				}
+				break;
+			case EOF:
+				isValid = false;
+				break;
+			default:
+				if (verifySkippedTags && (previous == TokenType.OPEN || previous == TokenType.LTSL)) {
+					isValid = false; // a tag without a name
+				}
+			}
+			previous = type;
+			if (isValid) {
+				nextToken();
+			}
 		}
 	}
 
+	/**
+	 * Checks that the element whose start tag is being closed has all the
+	 * attributes the schema requires, if there is a schema.
+	 * 
+	 * @param empty
+	 *            whether the tag is closed with />, which also ends the
+	 *            element
+	 */
+	private void endStartTag(boolean empty) {
+		if (schema != null) {
+			checkSchema(schema.endStartTag());
+			if (empty) {
+				schema.endElement();
+			}
+		}
+	}
+
+	/**
+	 * Rejects the document if the schema validator has found an error.
+	 * 
+	 * @param error
+	 *            the error message, or <code>null</code> if there is none
+	 */
+	private void checkSchema(String error) {
+		if (error != null) {
+			fail(new SchemaException(error));
+		}
+	}
+
+	/**
+	 * Counts a step, and checks the budget when it is due.
+	 */
+	void tick() {
+		if (++steps == nextCheck) {
+			nextCheck = checkBudget(steps);
+		}
+	}
+
+	/**
+	 * Checks the budget after the given number of steps, failing the parse
+	 * if it has run out.
+	 * 
+	 * @param steps
+	 *            the steps taken so far
+	 * @return the step count at which to check again
+	 */
+	long checkBudget(long steps) {
+		Budget.Reason reason = budget.check(steps);
+		if (reason != null) {
+			fail(new ParserAbortedException(reason, "Parser error: " + budget.describe(reason, steps)));
+		}
+		return budget.nextCheck(steps);
+	}
+
+	/**
+	 * Records that the document has exceeded one of the parser's limits and
+	 * stops the parse.
+	 * 
+	 * @param limit
+	 *            the limit that was exceeded
+	 * @param message
+	 *            a description of the violation
+	 */
+	private void exceed(Limits.Limit limit, String message) {
+		fail(new ParserLimitException(limit, "Parser error: " + message));
+	}
+
+	/**
+	 * Records a specific error and stops the parse. The error is thrown once
+	 * the main parsing loop has stopped.
+	 * 
+	 * @param e
+	 *            the error to report
+	 */
+	void fail(ParserException e) {
+		if (error == null) {
+			e.locate(lookahead.getOffset());
+			error = e;
+		}
+		isValid = false;
+	}
+
 	/**
 	 * Applies a completed grammar rule by popping the specified number of
 	 * symbols and pushing the corresponding left-hand side nonterminal into the
@@ -270,23 +1158,23 @@ public class Parser {
 	 *            which to reduce
 	 */
 	private void reduce(String lhs, int symbolsToPop) {
-		try {
-			boolean isValidNonterminal = nonterminalColumns.containsKey(lhs);
-			if (isValidNonterminal && symbolsToPop > 0 && symbolsToPop <= MAXIMUM_RHS_LENGTH) {
-				int popped = 0;
-				do {
-					symbols.pop();
-					states.pop();
-					popped++;
-				} while (popped < symbolsToPop);
-				symbols.push(lhs);
-				states.push(lookupStateAt(states.peek(), nonterminalColumns.get(lhs)));
+		int column = columnOf(lhs);
+		if (column > 0 && symbolsToPop > 0 && symbolsToPop <= MAXIMUM_RHS_LENGTH) {
+			int popped = 0;
+			do {
+				symbols.pop();
+				states.pop();
+				popped++;
+			} while (popped < symbolsToPop);
+			symbols.push(lhs);
+			int next = lookupStateAt(states.peek(), column);
+			if (next == N) {
+				fail(new ParserException("Reduction error: No such state found for '" + lhs + "'!"));
 			} else {
-				throw new IllegalArgumentException("Reduction error: No such grammar rule for '" + lhs + "'!");
+				states.push(next);
 			}
-		} catch (NumberFormatException e) {
-			System.err.println("Reduction error: No such state found for '" + lhs + "'!");
-			System.exit(1);
+		} else {
+			throw new IllegalArgumentException("Reduction error: No such grammar rule for '" + lhs + "'!");
 		}
 	}
 
@@ -308,14 +1196,45 @@ public class Parser {
 	 * @param column
 	 *            the nonterminal column number at which to lookup the next
 	 *            state
-	 * @return the next state to which to advance after a successful reduction
+	 * @return the next state to which to advance after a successful reduction,
+	 *         or <code>N</code> if the table has no entry there
 	 */
 	private int lookupStateAt(int row, int column) {
-		if (row <= MAXIMUM_GOTO_ROWS && column > 0 && column <= nonterminalColumns.size())
-			return Integer.parseInt(gotoTable[row][column]);
+		if (row <= MAXIMUM_GOTO_ROWS && column > 0 && column <= NONTERMINAL_COLUMNS)
+			return GOTO_TABLE[row][column];
 		return -1;
 	}
 
+	/**
+	 * Returns the column of the GOTO table for the given nonterminal.
+	 * 
+	 * @param nonterminal
+	 *            the left-hand side of a grammar rule
+	 * @return its column, or 0 if it is not a nonterminal of the grammar
+	 */
+	private static int columnOf(String nonterminal) {
+		switch (nonterminal) {
+		case START:
+			return 1;
+		case DOCUMENT:
+			return 2;
+		case PREFIX:
+			return 3;
+		case ATTR:
+			return 4;
+		case SUFFIX:
+			return 5;
+		case ELEMENT:
+			return 6;
+		case EOD:
+			return 7;
+		case ET:
+			return 8;
+		default:
+			return 0;
+		}
+	}
+
 	/**
 	 * Advances the parser to the specified state without changing the lookahead
 	 * value.
@@ -329,6 +1248,9 @@ public class Parser {
 	 */
 	private void goToState(int state) {
 		states.push(state);
+		if (ParseStatistics.ENABLED) {
+			ParseStatistics.get().parseStackDepth(states.size());
+		}
 	}
 
 	/**
@@ -370,7 +1292,22 @@ public class Parser {
 	 *            the token representing the name at the beginning of this tag
 	 */
 	private void cacheTagName(Token openName) {
+		if (tagNames.isEmpty() && recovery != null) {
+			recovery.rootStarted();
+		}
 		tagNames.push(openName.getLexeme());
+		if (tagNames.size() > maxDepth) {
+			maxDepth = tagNames.size();
+			if (maxDepth > limits.getMaxDepth()) {
+				exceed(Limits.Limit.DEPTH, "Elements are nested more than " + limits.getMaxDepth() + " deep.");
+			}
+		}
+		if (ParseStatistics.ENABLED) {
+			ParseStatistics.get().tagNameDepth(tagNames.size());
+		}
+		if (schema != null) {
+			checkSchema(schema.startElement(openName.getLexeme()));
+		}
 	}
 
 	/**
@@ -379,21 +1316,38 @@ public class Parser {
 	 * <p>
 	 * This method uses the name previously cached by
 	 * <code>cacheTagName()</code> to do the matching. Should a mismatch be
-	 * detected, the parser immediately terminates and does not continue parsing
-	 * the rest of the document. Case sensitivity counts.
+	 * detected, the parser stops and does not continue parsing the rest of the
+	 * document; the mismatch is reported as a <code>ParserException</code>.
+	 * Case sensitivity counts.
 	 * 
 	 * @param endName
 	 *            the token representing the name at the end of the current tag
 	 */
 	private void matchTagName(Token endName) {
+		if (schema != null) {
+			schema.endElement();
+		}
+		popTagName(endName);
+	}
+
+	/**
+	 * Pops the name of the innermost open element and matches it against an
+	 * end tag's, without telling the schema: this is all that is done for the
+	 * end tags of skipped content.
+	 * 
+	 * @param endName
+	 *            the token representing the name at the end of the current tag
+	 */
+	private void popTagName(Token endName) {
 		String openName = tagNames.pop();
 		// Here, the use of equals() in the condition automatically handles the
 		// case sensitivity requirement
 		if (!openName.equals(endName.getLexeme())) {
-			System.out.println("Error - End tag name mismatch. Expected '" + openName + "' but found '"
-					+ endName.getLexeme() + "'.");
-			System.out.println("Parsing terminated...");
-			System.exit(2);
+			if (recovery != null) {
+				recovery.mismatched(openName, endName.getLexeme());
+			}
+			fail(new ParserException("Syntax error: End tag name mismatch. Expected '" + openName + "' but found '"
+					+ endName.getLexeme() + "'."));
 		}
 	}
 
@@ -403,8 +1357,9 @@ public class Parser {
 	 * By design, attributes may have the same name as long as they are in
 	 * different tags. However, attributes within the same tag must each have a
 	 * unique name. This method serves to enforce this rule. Should a duplicate
-	 * name be detected for a given tag's attributes, the parser immediately
-	 * terminates and does not continue parsing the rest of the document.
+	 * name be detected for a given tag's attributes, the parser stops and does
+	 * not continue parsing the rest of the document; the duplicate is reported
+	 * as a <code>ParserException</code>.
 	 * 
 	 * @param attributeName
 	 *            the token representing the attribute name to check
@@ -413,9 +1368,14 @@ public class Parser {
 		// A HashSet automatically returns true if an item is unique, in which
 		// case it can safely be added
 		if (!attributeNames.add(attributeName.getLexeme())) {
-			System.out.println("Error - Detected duplicate attribute name within current tag!");
-			System.out.println("Parsing terminated...");
-			System.exit(3);
+			fail(new ParserException("Syntax error: Duplicate attribute name '" + attributeName.getLexeme()
+					+ "' within current tag."));
+		}
+		if (attributeNames.size() > limits.getMaxAttributes()) {
+			exceed(Limits.Limit.ATTRIBUTES, "Tag has more than " + limits.getMaxAttributes() + " attributes.");
+		}
+		if (schema != null) {
+			checkSchema(schema.attribute(attributeName.getLexeme()));
 		}
 	}
 
@@ -427,13 +1387,16 @@ public class Parser {
 	 *             if a syntax error is encountered at any given point during
 	 *             parsing
 	 */
-	private void parse() throws ParserException {
+	void parse() throws ParserException {
 		if (states.isEmpty()) {
 			currentState = -1;
 		} else {
 			currentState = states.peek(); // state continually changes as the
 											// parser progresses
 		}
+		if (ParseStatistics.ENABLED) {
+			ParseStatistics.get().visit(currentState);
+		}
 		switch (currentState) {
 		case 0:
 			s0();
@@ -549,7 +1512,7 @@ public class Parser {
 
 	private void s0() {
 		if (isTerminal(TokenType.OPEN)) {
-			shift(lookahead.toString(), 4);
+			shift(lookahead.getType(), 4);
 		} else if (isNonterminal(START)) {
 			goToState(3);
 		} else if (isNonterminal(DOCUMENT)) {
@@ -563,7 +1526,7 @@ public class Parser {
 
 	private void s1() {
 		if (isTerminal(TokenType.EOF)) {
-			System.out.println("document ::= element");
+			derive(Rule.DOCUMENT);
 			reduce(DOCUMENT, 1);
 		} else {
 			isValid = false;
@@ -589,7 +1552,8 @@ public class Parser {
 	private void s4() {
 		if (isTerminal(TokenType.NAME)) {
 			cacheTagName(lookahead);
-			shift(lookahead.toString(), 6);
+			startElement(lookahead);
+			shift(lookahead.getType(), 6);
 		} else if (isNonterminal(PREFIX)) {
 			goToState(5);
 		} else {
@@ -599,7 +1563,7 @@ public class Parser {
 
 	private void s5() {
 		if (isTerminal(TokenType.EOF)) {
-			System.out.println("element ::= < elementPrefix");
+			derive(Rule.ELEMENT);
 			reduce(ELEMENT, 2);
 		} else {
 			isValid = false;
@@ -608,15 +1572,15 @@ public class Parser {
 
 	private void s6() {
 		if (isTerminal(TokenType.CLOSE)) {
-			System.out.println("attribute ::= EPSILON");
+			derive(Rule.ATTRIBUTE_EPSILON);
 			symbols.push(ATTR);
 			goToState(7);
 		} else if (isTerminal(TokenType.NAME)) {
-			System.out.println("attribute ::= EPSILON");
+			derive(Rule.ATTRIBUTE_EPSILON);
 			symbols.push(ATTR);
 			goToState(7);
 		} else if (isTerminal(TokenType.SLGT)) {
-			System.out.println("attribute ::= EPSILON");
+			derive(Rule.ATTRIBUTE_EPSILON);
 			symbols.push(ATTR);
 			goToState(7);
 		} else if (isNonterminal(ATTR)) {
@@ -630,14 +1594,19 @@ public class Parser {
 		if (isTerminal(TokenType.CLOSE)) {
 			if (!attributeNames.isEmpty())
 				attributeNames.clear();
-			shift(lookahead.toString(), 11);
+			endStartTag(false);
+			shift(lookahead.getType(), 11);
+			enterContent();
 		} else if (isTerminal(TokenType.NAME)) {
 			checkDuplicateNames(lookahead);
-			shift(lookahead.toString(), 10);
+			attributeName = lookahead.getLexeme();
+			shift(lookahead.getType(), 10);
 		} else if (isTerminal(TokenType.SLGT)) {
 			if (!attributeNames.isEmpty())
 				attributeNames.clear();
-			shift(lookahead.toString(), 9);
+			endStartTag(true);
+			endElement(tagNames.peek());
+			shift(lookahead.getType(), 9);
 		} else if (isNonterminal(SUFFIX)) {
 			goToState(8);
 		} else {
@@ -647,7 +1616,7 @@ public class Parser {
 
 	private void s8() {
 		if (isTerminal(TokenType.EOF)) {
-			System.out.println("elementPrefix ::= NAME attribute elementSuffix");
+			derive(Rule.ELEMENT_PREFIX);
 			reduce(PREFIX, 3);
 		} else {
 			isValid = false;
@@ -658,7 +1627,7 @@ public class Parser {
 		if (isTerminal(TokenType.EOF)) {
 			if (!tagNames.isEmpty())
 				tagNames.pop();
-			System.out.println("elementSuffix ::= />");
+			derive(Rule.EMPTY_ELEMENT_SUFFIX);
 			reduce(SUFFIX, 1);
 		} else {
 			isValid = false;
@@ -667,7 +1636,7 @@ public class Parser {
 
 	private void s10() {
 		if (isTerminal(TokenType.ASSIGN)) {
-			shift(lookahead.toString(), 13);
+			shift(lookahead.getType(), 13);
 		} else {
 			isValid = false;
 		}
@@ -675,15 +1644,15 @@ public class Parser {
 
 	private void s11() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("elementOrData ::= EPSILON");
+			derive(Rule.ELEMENT_OR_DATA_EPSILON);
 			symbols.push(EOD);
 			goToState(12);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("elementOrData ::= EPSILON");
+			derive(Rule.ELEMENT_OR_DATA_EPSILON);
 			symbols.push(EOD);
 			goToState(12);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("elementOrData ::= EPSILON");
+			derive(Rule.ELEMENT_OR_DATA_EPSILON);
 			symbols.push(EOD);
 			goToState(12);
 		} else if (isNonterminal(EOD)) {
@@ -695,11 +1664,12 @@ public class Parser {
 
 	private void s12() {
 		if (isTerminal(TokenType.LTSL)) {
-			shift(lookahead.toString(), 19);
+			shift(lookahead.getType(), 19);
 		} else if (isTerminal(TokenType.DATA)) {
-			shift(lookahead.toString(), 18);
+			data(lookahead);
+			shift(lookahead.getType(), 18);
 		} else if (isTerminal(TokenType.OPEN)) {
-			shift(lookahead.toString(), 17);
+			shift(lookahead.getType(), 17);
 		} else if (isNonterminal(ELEMENT)) {
 			goToState(16);
 		} else if (isNonterminal(ET)) {
@@ -711,7 +1681,8 @@ public class Parser {
 
 	private void s13() {
 		if (isTerminal(TokenType.STRING)) {
-			shift(lookahead.toString(), 14);
+			attribute(lookahead);
+			shift(lookahead.getType(), 14);
 		} else {
 			isValid = false;
 		}
@@ -719,13 +1690,13 @@ public class Parser {
 
 	private void s14() {
 		if (isTerminal(TokenType.CLOSE)) {
-			System.out.println("attribute ::= attribute NAME = STRING");
+			derive(Rule.ATTRIBUTE);
 			reduce(ATTR, 4);
 		} else if (isTerminal(TokenType.NAME)) {
-			System.out.println("attribute ::= attribute NAME = STRING");
+			derive(Rule.ATTRIBUTE);
 			reduce(ATTR, 4);
 		} else if (isTerminal(TokenType.SLGT)) {
-			System.out.println("attribute ::= attribute NAME = STRING");
+			derive(Rule.ATTRIBUTE);
 			reduce(ATTR, 4);
 		} else {
 			isValid = false;
@@ -734,7 +1705,7 @@ public class Parser {
 
 	private void s15() {
 		if (isTerminal(TokenType.EOF)) {
-			System.out.println("elementSuffix ::= > elementOrData endTag");
+			derive(Rule.ELEMENT_SUFFIX);
 			reduce(SUFFIX, 3);
 		} else {
 			isValid = false;
@@ -743,13 +1714,13 @@ public class Parser {
 
 	private void s16() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("elementOrData ::= elementOrData element");
+			derive(Rule.ELEMENT_OR_DATA_ELEMENT);
 			reduce(EOD, 2);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("elementOrData ::= elementOrData element");
+			derive(Rule.ELEMENT_OR_DATA_ELEMENT);
 			reduce(EOD, 2);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("elementOrData ::= elementOrData element");
+			derive(Rule.ELEMENT_OR_DATA_ELEMENT);
 			reduce(EOD, 2);
 		} else {
 			isValid = false;
@@ -759,7 +1730,8 @@ public class Parser {
 	private void s17() {
 		if (isTerminal(TokenType.NAME)) {
 			cacheTagName(lookahead);
-			shift(lookahead.toString(), 22);
+			startElement(lookahead);
+			shift(lookahead.getType(), 22);
 		} else if (isNonterminal(PREFIX)) {
 			goToState(21);
 		} else {
@@ -769,13 +1741,13 @@ public class Parser {
 
 	private void s18() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("elementOrData ::= elementOrData DATA");
+			derive(Rule.ELEMENT_OR_DATA_DATA);
 			reduce(EOD, 2);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("elementOrData ::= elementOrData DATA");
+			derive(Rule.ELEMENT_OR_DATA_DATA);
 			reduce(EOD, 2);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("elementOrData ::= elementOrData DATA");
+			derive(Rule.ELEMENT_OR_DATA_DATA);
 			reduce(EOD, 2);
 		} else {
 			isValid = false;
@@ -785,7 +1757,8 @@ public class Parser {
 	private void s19() {
 		if (isTerminal(TokenType.NAME)) {
 			matchTagName(lookahead);
-			shift(lookahead.toString(), 20);
+			endElement(lookahead.getLexeme());
+			shift(lookahead.getType(), 20);
 		} else {
 			isValid = false;
 		}
@@ -793,7 +1766,7 @@ public class Parser {
 
 	private void s20() {
 		if (isTerminal(TokenType.CLOSE)) {
-			shift(lookahead.toString(), 24);
+			shift(lookahead.getType(), 24);
 		} else {
 			isValid = false;
 		}
@@ -801,13 +1774,13 @@ public class Parser {
 
 	private void s21() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("element ::= < elementPrefix");
+			derive(Rule.ELEMENT);
 			reduce(ELEMENT, 2);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("element ::= < elementPrefix");
+			derive(Rule.ELEMENT);
 			reduce(ELEMENT, 2);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("element ::= < elementPrefix");
+			derive(Rule.ELEMENT);
 			reduce(ELEMENT, 2);
 		} else {
 			isValid = false;
@@ -816,15 +1789,15 @@ public class Parser {
 
 	private void s22() {
 		if (isTerminal(TokenType.CLOSE)) {
-			System.out.println("attribute ::= EPSILON");
+			derive(Rule.ATTRIBUTE_EPSILON);
 			symbols.push(ATTR);
 			goToState(23);
 		} else if (isTerminal(TokenType.NAME)) {
-			System.out.println("attribute ::= EPSILON");
+			derive(Rule.ATTRIBUTE_EPSILON);
 			symbols.push(ATTR);
 			goToState(23);
 		} else if (isTerminal(TokenType.SLGT)) {
-			System.out.println("attribute ::= EPSILON");
+			derive(Rule.ATTRIBUTE_EPSILON);
 			symbols.push(ATTR);
 			goToState(23);
 		} else if (isNonterminal(ATTR)) {
@@ -838,14 +1811,19 @@ public class Parser {
 		if (isTerminal(TokenType.CLOSE)) {
 			if (!attributeNames.isEmpty())
 				attributeNames.clear();
-			shift(lookahead.toString(), 27);
+			endStartTag(false);
+			shift(lookahead.getType(), 27);
+			enterContent();
 		} else if (isTerminal(TokenType.NAME)) {
 			checkDuplicateNames(lookahead);
-			shift(lookahead.toString(), 10);
+			attributeName = lookahead.getLexeme();
+			shift(lookahead.getType(), 10);
 		} else if (isTerminal(TokenType.SLGT)) {
 			if (!attributeNames.isEmpty())
 				attributeNames.clear();
-			shift(lookahead.toString(), 26);
+			endStartTag(true);
+			endElement(tagNames.peek());
+			shift(lookahead.getType(), 26);
 		} else if (isNonterminal(SUFFIX)) {
 			goToState(25);
 		} else {
@@ -855,7 +1833,7 @@ public class Parser {
 
 	private void s24() {
 		if (isTerminal(TokenType.EOF)) {
-			System.out.println("endTag ::= </ NAME >");
+			derive(Rule.END_TAG);
 			reduce(ET, 3);
 		} else {
 			isValid = false;
@@ -864,13 +1842,13 @@ public class Parser {
 
 	private void s25() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("elementPrefix ::= NAME attribute elementSuffix");
+			derive(Rule.ELEMENT_PREFIX);
 			reduce(PREFIX, 3);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("elementPrefix ::= NAME attribute elementSuffix");
+			derive(Rule.ELEMENT_PREFIX);
 			reduce(PREFIX, 3);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("elementPrefix ::= NAME attribute elementSuffix");
+			derive(Rule.ELEMENT_PREFIX);
 			reduce(PREFIX, 3);
 		} else {
 			isValid = false;
@@ -881,17 +1859,17 @@ public class Parser {
 		if (isTerminal(TokenType.LTSL)) {
 			if (!tagNames.isEmpty())
 				tagNames.pop();
-			System.out.println("elementSuffix ::= />");
+			derive(Rule.EMPTY_ELEMENT_SUFFIX);
 			reduce(SUFFIX, 1);
 		} else if (isTerminal(TokenType.DATA)) {
 			if (!tagNames.isEmpty())
 				tagNames.pop();
-			System.out.println("elementSuffix ::= />");
+			derive(Rule.EMPTY_ELEMENT_SUFFIX);
 			reduce(SUFFIX, 1);
 		} else if (isTerminal(TokenType.OPEN)) {
 			if (!tagNames.isEmpty())
 				tagNames.pop();
-			System.out.println("elementSuffix ::= />");
+			derive(Rule.EMPTY_ELEMENT_SUFFIX);
 			reduce(SUFFIX, 1);
 		} else {
 			isValid = false;
@@ -900,15 +1878,15 @@ public class Parser {
 
 	private void s27() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("elementOrData ::= EPSILON");
+			derive(Rule.ELEMENT_OR_DATA_EPSILON);
 			symbols.push(EOD);
 			goToState(28);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("elementOrData ::= EPSILON");
+			derive(Rule.ELEMENT_OR_DATA_EPSILON);
 			symbols.push(EOD);
 			goToState(28);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("elementOrData ::= EPSILON");
+			derive(Rule.ELEMENT_OR_DATA_EPSILON);
 			symbols.push(EOD);
 			goToState(28);
 		} else if (isNonterminal(EOD)) {
@@ -920,11 +1898,12 @@ public class Parser {
 
 	private void s28() {
 		if (isTerminal(TokenType.LTSL)) {
-			shift(lookahead.toString(), 30);
+			shift(lookahead.getType(), 30);
 		} else if (isTerminal(TokenType.DATA)) {
-			shift(lookahead.toString(), 18);
+			data(lookahead);
+			shift(lookahead.getType(), 18);
 		} else if (isTerminal(TokenType.OPEN)) {
-			shift(lookahead.toString(), 17);
+			shift(lookahead.getType(), 17);
 		} else if (isNonterminal(ELEMENT)) {
 			goToState(16);
 		} else if (isNonterminal(ET)) {
@@ -936,13 +1915,13 @@ public class Parser {
 
 	private void s29() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("elementSuffix ::= > elementOrData endTag");
+			derive(Rule.ELEMENT_SUFFIX);
 			reduce(SUFFIX, 3);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("elementSuffix ::= > elementOrData endTag");
+			derive(Rule.ELEMENT_SUFFIX);
 			reduce(SUFFIX, 3);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("elementSuffix ::= > elementOrData endTag");
+			derive(Rule.ELEMENT_SUFFIX);
 			reduce(SUFFIX, 3);
 		} else {
 			isValid = false;
@@ -952,7 +1931,8 @@ public class Parser {
 	private void s30() {
 		if (isTerminal(TokenType.NAME)) {
 			matchTagName(lookahead);
-			shift(lookahead.toString(), 31);
+			endElement(lookahead.getLexeme());
+			shift(lookahead.getType(), 31);
 		} else {
 			isValid = false;
 		}
@@ -960,7 +1940,7 @@ public class Parser {
 
 	private void s31() {
 		if (isTerminal(TokenType.CLOSE)) {
-			shift(lookahead.toString(), 32);
+			shift(lookahead.getType(), 32);
 		} else {
 			isValid = false;
 		}
@@ -968,13 +1948,13 @@ public class Parser {
 
 	private void s32() {
 		if (isTerminal(TokenType.LTSL)) {
-			System.out.println("endTag ::= </ NAME >");
+			derive(Rule.END_TAG);
 			reduce(ET, 3);
 		} else if (isTerminal(TokenType.DATA)) {
-			System.out.println("endTag ::= </ NAME >");
+			derive(Rule.END_TAG);
 			reduce(ET, 3);
 		} else if (isTerminal(TokenType.OPEN)) {
-			System.out.println("endTag ::= </ NAME >");
+			derive(Rule.END_TAG);
 			reduce(ET, 3);
 		} else {
 			isValid = false;
@@ -0,0 +1,32 @@
+/*
+ * CS 575: Project #2
+ * File: ParserAbortedException.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.Budget.Reason;
+
+/**
+ * This class represents the exception thrown by the parser when it abandons a document because its budget ran out. 
+ * The document was not found to be invalid; it was not parsed to the end.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu) 
+ */
+@SuppressWarnings("serial")
+public class ParserAbortedException extends ParserException {
+	private final Reason reason;
+
+	public ParserAbortedException(Reason reason, String msg) {
+		super(msg);
+		this.reason = reason;
+	}
+
+	/**
+	 * Returns why the document was abandoned.
+	 * 
+	 * @return the reason
+	 */
+	public Reason getReason() {
+		return this.reason;
+	}
+}
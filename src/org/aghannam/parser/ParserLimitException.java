@@ -0,0 +1,31 @@
+/*
+ * CS 575: Project #2
+ * File: ParserLimitException.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.Limits.Limit;
+
+/**
+ * This class represents the exception thrown by the parser when a document exceeds one of its limits. 
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu) 
+ */
+@SuppressWarnings("serial")
+public class ParserLimitException extends ParserException {
+	private final Limit limit;
+
+	public ParserLimitException(Limit limit, String msg) {
+		super(msg);
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns the limit that was exceeded.
+	 * 
+	 * @return the exceeded limit
+	 */
+	public Limit getLimit() {
+		return this.limit;
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * CS 575: Project #2
+ * File: PartialInput.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.Lexer.TokenType;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.lex.Token;
+import org.aghannam.lex.TokenSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * This class supplies the parser with the tokens of a document that may still
+ * be growing, holding back those after the last complete tag.
+ * <p>
+ * The input may end anywhere, even in the middle of a token, so only the
+ * tokens up to the last <code>&gt;</code> or <code>/&gt;</code> are handed
+ * out; the rest are scanned again once more input has been appended. For the
+ * same reason, a scanning error after the last <code>&gt;</code> in the input
+ * is taken for the input ending early, and not reported; a <code>&gt;</code>
+ * inside a comment does not count, as the comment may still be unterminated.
+ * The input is counted in characters and UTF-8 bytes along the way, so that
+ * the end of the last complete tag can be given in both.
+ * <p>
+ * When the input is known to be the whole rest of the document, every token
+ * is handed out as it is scanned.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+class PartialInput implements TokenSource {
+	private final CountingReader in;
+	private final StreamingLexer lexer;
+	private final boolean partial;
+
+	/* Tokens scanned but not handed out, of which the first safe ones may be. */
+	private final ArrayDeque<Token> held = new ArrayDeque<Token>();
+	private int safe;
+	private boolean exhausted;
+	private LexerException error;
+
+	/* Where the last complete tag ends, and what the lexer has just seen there. */
+	private long end;
+	private long endBytes;
+	private String context;
+
+	PartialInput(Reader in, Checkpoint from, boolean partial, Limits limits, Budget budget) {
+		long offset = from == null ? 0 : from.offset;
+		long bytes = from == null ? 0 : from.byteOffset;
+		this.context = from == null ? "" : from.context;
+		this.partial = partial;
+		this.in = new CountingReader(in, offset, bytes);
+		this.lexer = from == null ? new StreamingLexer(this.in, limits, budget)
+				: new StreamingLexer(this.in, limits, budget, offset, from.tokens, context);
+		this.end = offset;
+		this.endBytes = bytes;
+	}
+
+	@Override
+	public Token nextToken() throws LexerException {
+		if (!partial) {
+			return lexer.nextToken();
+		}
+		while (safe == 0 && !exhausted) {
+			Token token;
+			try {
+				token = lexer.nextToken();
+			} catch (LexerException e) {
+				if (!endsEarly(e)) {
+					// Hand out what was scanned before the error, as a full parse would.
+					error = e;
+					safe = held.size();
+				}
+				token = null;
+			}
+			if (token == null) {
+				exhausted = true;
+			} else {
+				held.add(token);
+				TokenType type = token.getType();
+				if (type == TokenType.CLOSE || type == TokenType.SLGT) {
+					safe = held.size();
+					end = token.getOffset() + token.getLexeme().length();
+					endBytes = in.bytesAfter(end - 1);
+					context = Checkpoint.AFTER_TAG;
+				}
+			}
+		}
+		if (safe > 0) {
+			safe--;
+			return held.poll();
+		} else if (error != null) {
+			LexerException e = error;
+			error = null;
+			throw e;
+		}
+		return null;
+	}
+
+	@Override
+	public String locate(long offset) {
+		return lexer.locate(offset);
+	}
+
+	/**
+	 * Returns the offset, in characters, just after the last complete tag.
+	 */
+	long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns the offset, in UTF-8 bytes, just after the last complete tag.
+	 */
+	long getEndBytes() {
+		return endBytes;
+	}
+
+	/**
+	 * Returns the characters just before the end of the last complete tag
+	 * that the lexer needs to see when it resumes there.
+	 */
+	String getContext() {
+		return context;
+	}
+
+	/**
+	 * Returns whether a scanning error may only be due to the input ending
+	 * early, which is the case when no <code>&gt;</code> outside a comment
+	 * follows it, or when there is no input yet at all.
+	 */
+	private boolean endsEarly(LexerException e) throws LexerException {
+		if (in.isEmpty()) {
+			return true;
+		} else if (e.getOffset() < 0) {
+			return false;
+		}
+		try {
+			in.drain();
+		} catch (IOException io) {
+			throw new LexerException("Failed to read the XML-- document: " + io.getMessage());
+		}
+		return in.lastGreaterThan() < e.getOffset();
+	}
+
+	/**
+	 * Counts the characters and UTF-8 bytes read, and remembers where the
+	 * recent <code>&gt;</code>s outside comments are in both.
+	 */
+	private static class CountingReader extends Reader {
+		private static final String COMMENT_START = "<!--";
+
+		private final Reader in;
+		private final long start;
+		private long chars;
+		private long bytes;
+
+		/* The offsets of the recent '>'s, and the byte offsets just after them. */
+		private long[] at = new long[64];
+		private long[] after = new long[64];
+		private int first;
+		private int count;
+
+		/* How much of "<!--" has just been read, whether a comment is open, and the '-'s just read in it. */
+		private int opening;
+		private boolean comment;
+		private int dashes;
+
+		CountingReader(Reader in, long chars, long bytes) {
+			this.in = in;
+			this.start = chars;
+			this.chars = chars;
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int read = in.read(buffer, offset, length);
+			for (int i = offset; i < offset + read; i++) {
+				char c = buffer[i];
+				bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+				if (comment) {
+					if (c == '>' && dashes >= 2) {
+						comment = false;
+						remember(chars, bytes);
+					}
+					dashes = c == '-' ? dashes + 1 : 0;
+				} else {
+					if (c == '>') {
+						remember(chars, bytes);
+					}
+					opening = c == COMMENT_START.charAt(opening) ? opening + 1 : c == '<' ? 1 : 0;
+					if (opening == COMMENT_START.length()) {
+						comment = true;
+						opening = 0;
+						dashes = 0;
+					}
+				}
+				chars++;
+			}
+			return read;
+		}
+
+		private void remember(long offset, long byteOffset) {
+			if (first + count == at.length) {
+				if (first <= at.length / 2) {
+					at = Arrays.copyOf(at, at.length * 2);
+					after = Arrays.copyOf(after, after.length * 2);
+				}
+				System.arraycopy(at, first, at, 0, count);
+				System.arraycopy(after, first, after, 0, count);
+				first = 0;
+			}
+			at[first + count] = offset;
+			after[first + count] = byteOffset;
+			count++;
+		}
+
+		/**
+		 * Returns the byte offset just after the <code>&gt;</code> at the
+		 * given offset, and forgets those before it.
+		 */
+		long bytesAfter(long offset) {
+			while (count > 0 && at[first] < offset) {
+				first++;
+				count--;
+			}
+			if (count == 0 || at[first] != offset) {
+				throw new IllegalStateException("No '>' was read at offset " + offset + ".");
+			}
+			return after[first];
+		}
+
+		boolean isEmpty() {
+			return chars == start;
+		}
+
+		long lastGreaterThan() {
+			return count == 0 ? -1 : at[first + count - 1];
+		}
+
+		void drain() throws IOException {
+			char[] buffer = new char[8192];
+			while (read(buffer, 0, buffer.length) >= 0) {
+				// counted as it is read
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
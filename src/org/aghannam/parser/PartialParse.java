@@ -0,0 +1,102 @@
+/*
+ * CS 575: Project #2
+ * File: PartialParse.java
+ */
+package org.aghannam.parser;
+
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.LexerException;
+
+import java.io.Reader;
+import java.util.Stack;
+
+/**
+ * This class parses a growing document a part at a time, resuming each part
+ * from the {@link Checkpoint} the last one ended at (see
+ * {@link Parser#parseAvailable(Reader, Checkpoint)} and
+ * {@link Parser#finish(Reader, Checkpoint)}).
+ * <p>
+ * The parser's stacks are restored from the checkpoint, and its input is a
+ * {@link PartialInput}, which only lets complete tags through until the whole
+ * document is available; when the input runs out first, the parser pauses
+ * rather than fails, and its stacks are saved in a new checkpoint.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+final class PartialParse {
+	private final Parser parser;
+
+	/**
+	 * Constructs the parse of a part of a document.
+	 *
+	 * @param parser
+	 *            the parser to run, which has no listener or schema
+	 * @throws IllegalStateException
+	 *             if the parser has a listener or schema
+	 */
+	PartialParse(Parser parser) {
+		if (parser.listener != null || parser.schema != null) {
+			throw new IllegalStateException("Checkpoints cannot be used with a listener or schema.");
+		}
+		this.parser = parser;
+	}
+
+	/**
+	 * Parses the input up to the end of its last complete tag.
+	 *
+	 * @return the checkpoint there
+	 */
+	Checkpoint parseAvailable(Reader in, Checkpoint from) throws LexerException, ParserException {
+		PartialInput input = new PartialInput(in, from, true, parser.limits, Budget.UNLIMITED);
+		run(input, from, true);
+		return new Checkpoint(input.getEnd(), input.getEndBytes(), parser.position, parser.maxDepth,
+				toArray(parser.states), parser.symbols.toArray(new String[0]), parser.tagNames.toArray(new String[0]),
+				input.getContext());
+	}
+
+	/**
+	 * Parses the input to the end of the document.
+	 */
+	void finish(Reader in, Checkpoint from) throws LexerException, ParserException {
+		run(new PartialInput(in, from, false, parser.limits, Budget.UNLIMITED), from, false);
+	}
+
+	private void run(PartialInput input, Checkpoint from, boolean partial) throws LexerException, ParserException {
+		parser.begin(input, Budget.UNLIMITED, partial);
+		if (from == null) {
+			parser.states.push(0); // initial state on stack
+			if (!partial) {
+				parser.recoverErrors(); // the whole document is there, as for Parser.parse()
+			}
+		} else {
+			restore(from);
+		}
+		parser.run();
+	}
+
+	/**
+	 * Restores the stacks and counts saved in a checkpoint.
+	 */
+	private void restore(Checkpoint from) {
+		for (int state : from.states) {
+			parser.states.push(state);
+		}
+		for (String symbol : from.symbols) {
+			parser.symbols.push(symbol);
+		}
+		for (String name : from.tagNames) {
+			parser.tagNames.push(name);
+		}
+		parser.position = (int) from.tokens;
+		parser.tokensRead = from.tokens;
+		parser.maxDepth = from.maxDepth;
+	}
+
+	private static int[] toArray(Stack<Integer> stack) {
+		int[] array = new int[stack.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = stack.get(i);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,18 @@
+/*
+ * CS 575: Project #2
+ * File: SchemaException.java
+ */
+package org.aghannam.parser;
+
+/**
+ * This class represents the exception thrown by the parser when a well-formed document does not conform to the 
+ * schema it is being validated against. 
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu) 
+ */
+@SuppressWarnings("serial")
+public class SchemaException extends ParserException {
+	public SchemaException(String msg) {
+		super(msg);
+	}
+}
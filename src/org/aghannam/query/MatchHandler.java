@@ -0,0 +1,25 @@
+/*
+ * CS 575: Project #2
+ * File: MatchHandler.java
+ */
+package org.aghannam.query;
+
+/**
+ * This interface receives the values selected by a {@link QueryEngine}, in
+ * document order, as soon as each one is complete.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public interface MatchHandler {
+
+	/**
+	 * Called for every value selected by a query.
+	 *
+	 * @param query
+	 *            the query that selected the value
+	 * @param value
+	 *            the attribute's value, the element's text, or a run of it
+	 *            selected by <code>text()</code>
+	 */
+	void match(PathQuery query, String value);
+}
@@ -0,0 +1,222 @@
+/*
+ * CS 575: Project #2
+ * File: PathQuery.java
+ */
+package org.aghannam.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a compiled path expression that selects values from
+ * XML-- documents as they are parsed.
+ * <p>
+ * A path is a sequence of element names (or <code>*</code> for any element),
+ * each preceded by <code>/</code> to select a child or by <code>//</code> to
+ * select a descendant at any depth, optionally followed by
+ * <code>/@name</code> to select an attribute or by <code>/text()</code>. For
+ * example, <code>/html/body/p/@id</code> selects the <code>id</code> of every
+ * <code>p</code> in the body, and <code>//title</code> the text of every
+ * <code>title</code>. The text of an element is its DATA, not that of its
+ * descendants, joined by single spaces. With <code>/text()</code>, each run of
+ * DATA between the element's tags is selected on its own instead, as the text
+ * nodes of XPath are, and an element without DATA selects nothing: for
+ * <code>&lt;p&gt;a b &lt;i&gt;c&lt;/i&gt; d&lt;/p&gt;</code>, <code>//p</code>
+ * selects <code>a b d</code> and <code>//p/text()</code> selects
+ * <code>a b</code> and <code>d</code>.
+ * <p>
+ * A path compiles into a small automaton whose state <i>k</i> means that the
+ * first <i>k</i> steps have matched: on every start tag, each state either
+ * advances, if the element's name matches the next step, or stays, if that
+ * step selects descendants. Paths may not have more than
+ * {@link #MAXIMUM_STEPS} steps, so that a set of states fits in a
+ * <code>long</code>.
+ * <p>
+ * Instances are immutable. See {@link QueryEngine} for how to run them.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class PathQuery {
+	/**
+	 * The maximum number of element steps in a path.
+	 */
+	public static final int MAXIMUM_STEPS = 63;
+
+	private final String expression;
+
+	/* The name tested by each step, or null for any name. */
+	final String[] names;
+
+	/* Whether each step selects descendants rather than children. */
+	final boolean[] descendant;
+
+	/* The attribute selected, or null to select the element's text. */
+	final String attribute;
+
+	/* Whether each run of the element's text is selected on its own. */
+	final boolean text;
+
+	private final boolean first;
+
+	private PathQuery(String expression, String[] names, boolean[] descendant, String attribute, boolean text,
+			boolean first) {
+		this.expression = expression;
+		this.names = names;
+		this.descendant = descendant;
+		this.attribute = attribute;
+		this.text = text;
+		this.first = first;
+	}
+
+	/**
+	 * Compiles a path expression.
+	 *
+	 * @param expression
+	 *            the path, e.g. <code>/html/body/p/@id</code>
+	 * @return the compiled query
+	 * @throws IllegalArgumentException
+	 *             if the expression is malformed
+	 */
+	public static PathQuery compile(String expression) {
+		List<String> names = new ArrayList<String>();
+		List<Boolean> descendant = new ArrayList<Boolean>();
+		String attribute = null;
+		boolean text = false;
+
+		int i = 0;
+		int length = expression.length();
+		if (length == 0 || expression.charAt(0) != '/') {
+			throw malformed(expression, "it must start with '/'");
+		}
+		while (i < length) {
+			if (attribute != null || text) {
+				throw malformed(expression, "nothing may follow an attribute or text()");
+			}
+			boolean anyDepth = expression.startsWith("//", i);
+			i += anyDepth ? 2 : 1;
+			int end = i;
+			while (end < length && expression.charAt(end) != '/') {
+				end++;
+			}
+			String step = expression.substring(i, end);
+			if (step.isEmpty()) {
+				throw malformed(expression, "a step is empty");
+			} else if (step.equals("text()")) {
+				if (anyDepth || names.isEmpty()) {
+					throw malformed(expression, "text() must follow an element step");
+				}
+				text = true;
+			} else if (step.startsWith("@")) {
+				if (anyDepth || names.isEmpty() || !isName(step.substring(1))) {
+					throw malformed(expression, "'" + step + "' is not a valid attribute step");
+				}
+				attribute = step.substring(1);
+			} else if (step.equals("*") || isName(step)) {
+				names.add(step.equals("*") ? null : step);
+				descendant.add(anyDepth);
+			} else {
+				throw malformed(expression, "'" + step + "' is not a valid element name");
+			}
+			i = end;
+		}
+		if (names.size() > MAXIMUM_STEPS) {
+			throw malformed(expression, "it has more than " + MAXIMUM_STEPS + " steps");
+		}
+
+		boolean[] anyDepth = new boolean[descendant.size()];
+		for (int k = 0; k < anyDepth.length; k++) {
+			anyDepth[k] = descendant.get(k);
+		}
+		return new PathQuery(expression, names.toArray(new String[0]), anyDepth, attribute, text, false);
+	}
+
+	/**
+	 * Returns a copy of this query that is satisfied by its first match.
+	 * <p>
+	 * Once every query run together is satisfied, the rest of the document is
+	 * neither read nor validated.
+	 *
+	 * @return the single-result query
+	 */
+	public PathQuery first() {
+		return new PathQuery(expression, names, descendant, attribute, text, true);
+	}
+
+	/**
+	 * Returns whether this query is satisfied by its first match.
+	 */
+	public boolean isFirstOnly() {
+		return first;
+	}
+
+	/**
+	 * Returns the expression this query was compiled from.
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * Returns the states reached from the given states on a start tag with
+	 * the given name.
+	 *
+	 * @param states
+	 *            the states of the parent element, one bit per state
+	 * @param name
+	 *            the element's name
+	 * @return the states of the element
+	 */
+	long advance(long states, String name) {
+		long next = 0;
+		int steps = names.length;
+		for (int k = 0; k < steps; k++) {
+			if ((states & (1L << k)) != 0) {
+				if (names[k] == null || names[k].equals(name)) {
+					next |= 1L << (k + 1);
+				}
+				if (descendant[k]) {
+					next |= 1L << k;
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Returns whether the given states include the final one, i.e. whether the
+	 * element is selected.
+	 */
+	boolean isMatch(long states) {
+		return (states & (1L << names.length)) != 0;
+	}
+
+	/**
+	 * Returns whether, from the given states, a descendant could still be
+	 * selected.
+	 */
+	boolean isPending(long states) {
+		return (states & ((1L << names.length) - 1)) != 0;
+	}
+
+	private static boolean isName(String s) {
+		if (s.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.' && c != ':') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static IllegalArgumentException malformed(String expression, String why) {
+		return new IllegalArgumentException("Malformed path '" + expression + "': " + why + ".");
+	}
+
+	@Override
+	public String toString() {
+		return first ? expression + " (first)" : expression;
+	}
+}
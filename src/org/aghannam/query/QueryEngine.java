@@ -0,0 +1,270 @@
+/*
+ * CS 575: Project #2
+ * File: QueryEngine.java
+ */
+package org.aghannam.query;
+
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.TokenSource;
+import org.aghannam.parser.ParseListener;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class evaluates a set of {@link PathQuery}s over a document while it is
+ * being parsed.
+ * <p>
+ * The engine listens to the parser and keeps, for every open element and
+ * every query, the set of states the query's automaton is in. Selected values
+ * are handed to a {@link MatchHandler} as soon as they are complete: an
+ * attribute when it is shifted, an element's text at its end tag, and a run
+ * of its text selected by <code>text()</code> at the tag that ends the run.
+ * <p>
+ * Two things keep the work proportional to what the queries need rather than
+ * to the size of the document. When no query could select anything inside an
+ * element, the parser is told to skip its content, which it does by counting
+ * the nesting depth of the tokens instead of running them through the LR
+ * automaton. And once every query is satisfied (see
+ * {@link PathQuery#first()}), the parser stops without reading the rest of
+ * the document. In both cases the parts that were not parsed are not
+ * validated either; the parts that were are, and syntax errors in them are
+ * reported as usual.
+ * <p>
+ * An engine may be reused for any number of documents, but not concurrently.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class QueryEngine implements ParseListener {
+	private final PathQuery[] queries;
+	private final MatchHandler handler;
+	private final Parser parser;
+
+	/**
+	 * The states of every query, one row of <code>queries.length</code> per
+	 * open element; row 0 is the document itself.
+	 */
+	private long[] states;
+	private int depth;
+
+	/* Whether each single-result query has been satisfied. */
+	private final boolean[] satisfied;
+	private int unsatisfied;
+	private final boolean allFirst;
+
+	/**
+	 * Elements selected for their text and not yet ended.
+	 */
+	private final List<Capture> captures = new ArrayList<Capture>();
+
+	/**
+	 * Constructs an engine that runs the given queries without any limits.
+	 *
+	 * @param handler
+	 *            receives the selected values
+	 * @param queries
+	 *            the queries to run
+	 */
+	public QueryEngine(MatchHandler handler, PathQuery... queries) {
+		this(handler, Limits.NONE, queries);
+	}
+
+	/**
+	 * Constructs an engine that runs the given queries, enforcing the given
+	 * limits on every document.
+	 *
+	 * @param handler
+	 *            receives the selected values
+	 * @param limits
+	 *            the limits to enforce
+	 * @param queries
+	 *            the queries to run
+	 */
+	public QueryEngine(MatchHandler handler, Limits limits, PathQuery... queries) {
+		if (queries.length == 0) {
+			throw new IllegalArgumentException("At least one query is required.");
+		}
+		this.queries = queries.clone();
+		this.handler = handler;
+		this.satisfied = new boolean[queries.length];
+		this.states = new long[queries.length * 16];
+		boolean first = true;
+		for (PathQuery query : queries) {
+			first &= query.isFirstOnly();
+		}
+		this.allFirst = first;
+		this.parser = new Parser(limits);
+		parser.setOutput(null);
+		parser.setListener(this);
+	}
+
+	/**
+	 * Sets whether the tag names in skipped content are still matched; see
+	 * {@link Parser#setVerifySkippedTags(boolean)}.
+	 *
+	 * @param verify
+	 *            whether to match skipped tag names
+	 */
+	public void setVerifySkippedTags(boolean verify) {
+		parser.setVerifySkippedTags(verify);
+	}
+
+	/**
+	 * Runs the queries over a document.
+	 *
+	 * @param source
+	 *            the document's tokens, e.g. a
+	 *            {@link org.aghannam.lex.StreamingLexer}
+	 * @throws LexerException
+	 *             if the source fails to scan the document
+	 * @throws ParserException
+	 *             if a syntax error is found in the parts of the document
+	 *             that were parsed
+	 */
+	public void evaluate(TokenSource source) throws LexerException, ParserException {
+		evaluate(source, Budget.UNLIMITED);
+	}
+
+	/**
+	 * Runs the queries over a document within the given budget.
+	 *
+	 * @param source
+	 *            the document's tokens
+	 * @param budget
+	 *            the deadline, step budget and cancellation token to honor
+	 * @throws LexerException
+	 *             if the source fails to scan the document
+	 * @throws ParserException
+	 *             if a syntax error is found in the parts of the document
+	 *             that were parsed
+	 */
+	public void evaluate(TokenSource source, Budget budget) throws LexerException, ParserException {
+		depth = 0;
+		Arrays.fill(states, 0);
+		for (int q = 0; q < queries.length; q++) {
+			states[q] = 1L; // every query starts in state 0 at the document
+		}
+		Arrays.fill(satisfied, false);
+		unsatisfied = queries.length;
+		captures.clear();
+		parser.parse(source, budget);
+	}
+
+	@Override
+	public void startElement(String name) {
+		flushRuns();
+		int n = queries.length;
+		depth++;
+		if ((depth + 1) * n > states.length) {
+			states = Arrays.copyOf(states, states.length * 2);
+		}
+		int parent = (depth - 1) * n;
+		int row = depth * n;
+		for (int q = 0; q < n; q++) {
+			long next = satisfied[q] ? 0 : queries[q].advance(states[parent + q], name);
+			states[row + q] = next;
+			if (queries[q].attribute == null && queries[q].isMatch(next)) {
+				captures.add(new Capture(q, depth));
+			}
+		}
+	}
+
+	@Override
+	public void attribute(String name, String value) {
+		int row = depth * queries.length;
+		for (int q = 0; q < queries.length; q++) {
+			PathQuery query = queries[q];
+			if (name.equals(query.attribute) && !satisfied[q] && query.isMatch(states[row + q])) {
+				report(q, value);
+			}
+		}
+	}
+
+	@Override
+	public boolean enterContent() {
+		int row = depth * queries.length;
+		for (int q = 0; q < queries.length; q++) {
+			if (!satisfied[q] && queries[q].isPending(states[row + q])) {
+				return true;
+			}
+		}
+		for (int i = captures.size() - 1; i >= 0 && captures.get(i).depth == depth; i--) {
+			if (!satisfied[captures.get(i).query]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void data(String data) {
+		for (int i = captures.size() - 1; i >= 0 && captures.get(i).depth == depth; i--) {
+			StringBuilder text = captures.get(i).text;
+			if (text.length() > 0) {
+				text.append(' ');
+			}
+			text.append(data);
+		}
+	}
+
+	@Override
+	public void endElement(String name) {
+		flushRuns();
+		int last = captures.size() - 1;
+		while (last >= 0 && captures.get(last).depth == depth) {
+			Capture capture = captures.remove(last--);
+			if (!satisfied[capture.query] && !queries[capture.query].text) {
+				report(capture.query, capture.text.toString());
+			}
+		}
+		depth--;
+	}
+
+	/**
+	 * Reports the run of text that a tag ends in the current element, for
+	 * each query selecting its runs with <code>text()</code>.
+	 */
+	private void flushRuns() {
+		for (int i = captures.size() - 1; i >= 0 && captures.get(i).depth == depth; i--) {
+			Capture capture = captures.get(i);
+			if (queries[capture.query].text && capture.text.length() > 0) {
+				if (!satisfied[capture.query]) {
+					report(capture.query, capture.text.toString());
+				}
+				capture.text.setLength(0);
+			}
+		}
+	}
+
+	@Override
+	public boolean isDone() {
+		return allFirst && unsatisfied == 0;
+	}
+
+	private void report(int q, String value) {
+		handler.match(queries[q], value);
+		if (queries[q].isFirstOnly()) {
+			satisfied[q] = true;
+			unsatisfied--;
+		}
+	}
+
+	/**
+	 * The text collected so far for an element selected by a query.
+	 */
+	private static class Capture {
+		final int query;
+		final int depth;
+		final StringBuilder text = new StringBuilder();
+
+		Capture(int query, int depth) {
+			this.query = query;
+			this.depth = depth;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * CS 575: Project #2
+ * File: Schema.java
+ */
+package org.aghannam.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class holds a structural schema for XML-- documents, compiled into
+ * int-indexed tables that the parser checks as it goes.
+ * <p>
+ * For every element name, a schema declares which elements may appear as its
+ * children, which attributes it must and may have, and how many times it may
+ * appear within a single parent. Optionally, it also restricts which elements
+ * may be the root. An element may only appear where it has been declared; an
+ * element declared without children may only contain DATA, and one declared
+ * without attributes may not have any.
+ * <p>
+ * A schema is put together with a {@link Builder}:
+ *
+ * <pre>
+ * Schema schema = new Schema.Builder()
+ * 		.element("recipe").children("title", "ingredient").required("name")
+ * 		.element("title").maxOccurs(1)
+ * 		.element("ingredient").required("amount").attributes("unit")
+ * 		.root("recipe").build();
+ * </pre>
+ * <p>
+ * Element and attribute names are numbered when the schema is built, and the
+ * declarations are stored as bit sets indexed by those numbers, so checking
+ * an element costs one hash lookup for its name and a few array accesses.
+ * Instances are immutable and may be shared between threads; the per-document
+ * state lives in a {@link SchemaValidator}.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Schema {
+	/* Numbers of the element and attribute names. */
+	private final Map<String, Integer> elementIds;
+	private final Map<String, Integer> attributeIds;
+	final String[] elementNames;
+	final String[] attributeNames;
+
+	/* Bit sets, one row of words per element. */
+	final int elementWords;
+	final int attributeWords;
+	final long[] allowedChildren;
+	final long[] allowedAttributes;
+	final long[] requiredAttributes;
+	final long[] roots;
+
+	/* The maximum occurrences of each element, and its counter (or -1 if unbounded). */
+	final int[] maxOccurs;
+	final int[] counter;
+	final int counters;
+
+	private Schema(Builder builder) {
+		Map<String, Declaration> declarations = builder.declarations;
+		elementIds = new HashMap<String, Integer>();
+		elementNames = declarations.keySet().toArray(new String[0]);
+		for (int i = 0; i < elementNames.length; i++) {
+			elementIds.put(elementNames[i], i);
+		}
+		Set<String> allAttributes = new LinkedHashSet<String>();
+		for (Declaration declaration : declarations.values()) {
+			allAttributes.addAll(declaration.required);
+			allAttributes.addAll(declaration.attributes);
+		}
+		attributeIds = new HashMap<String, Integer>();
+		attributeNames = allAttributes.toArray(new String[0]);
+		for (int i = 0; i < attributeNames.length; i++) {
+			attributeIds.put(attributeNames[i], i);
+		}
+
+		int n = elementNames.length;
+		elementWords = words(n);
+		attributeWords = words(attributeNames.length);
+		allowedChildren = new long[n * elementWords];
+		allowedAttributes = new long[n * attributeWords];
+		requiredAttributes = new long[n * attributeWords];
+		roots = new long[elementWords];
+		maxOccurs = new int[n];
+		counter = new int[n];
+
+		int bounded = 0;
+		for (int e = 0; e < n; e++) {
+			Declaration declaration = declarations.get(elementNames[e]);
+			for (String child : declaration.children) {
+				Integer id = elementIds.get(child);
+				if (id == null) {
+					throw new IllegalArgumentException(
+							"Element '" + elementNames[e] + "' allows undeclared child '" + child + "'.");
+				}
+				set(allowedChildren, e * elementWords, id);
+			}
+			for (String attribute : declaration.attributes) {
+				set(allowedAttributes, e * attributeWords, attributeIds.get(attribute));
+			}
+			for (String attribute : declaration.required) {
+				set(allowedAttributes, e * attributeWords, attributeIds.get(attribute));
+				set(requiredAttributes, e * attributeWords, attributeIds.get(attribute));
+			}
+			maxOccurs[e] = declaration.maxOccurs;
+			counter[e] = declaration.maxOccurs == Integer.MAX_VALUE ? -1 : bounded++;
+		}
+		counters = bounded;
+
+		if (builder.roots.isEmpty()) {
+			for (int e = 0; e < n; e++) {
+				set(roots, 0, e);
+			}
+		} else {
+			for (String root : builder.roots) {
+				Integer id = elementIds.get(root);
+				if (id == null) {
+					throw new IllegalArgumentException("Root '" + root + "' is not a declared element.");
+				}
+				set(roots, 0, id);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of an element name, or -1 if it is not declared.
+	 */
+	int elementId(String name) {
+		Integer id = elementIds.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the number of an attribute name, or -1 if no element declares
+	 * it.
+	 */
+	int attributeId(String name) {
+		Integer id = attributeIds.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns a new validator for checking one document at a time against
+	 * this schema.
+	 *
+	 * @return a new validator
+	 */
+	public SchemaValidator newValidator() {
+		return new SchemaValidator(this);
+	}
+
+	static boolean get(long[] bits, int row, int i) {
+		return (bits[row + (i >>> 6)] & (1L << i)) != 0;
+	}
+
+	private static void set(long[] bits, int row, int i) {
+		bits[row + (i >>> 6)] |= 1L << i;
+	}
+
+	private static int words(int bits) {
+		return Math.max(1, (bits + 63) >>> 6);
+	}
+
+	@Override
+	public String toString() {
+		return "Schema" + Arrays.toString(elementNames);
+	}
+
+	/**
+	 * The declaration of a single element, as it is being built.
+	 */
+	private static class Declaration {
+		final Set<String> children = new LinkedHashSet<String>();
+		final Set<String> required = new LinkedHashSet<String>();
+		final Set<String> attributes = new LinkedHashSet<String>();
+		int maxOccurs = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * This class builds a {@link Schema} one element at a time. Every method
+	 * but {@link #element(String)}, {@link #root(String...)} and
+	 * {@link #build()} applies to the element declared last.
+	 */
+	public static class Builder {
+		private final Map<String, Declaration> declarations = new LinkedHashMap<String, Declaration>();
+		private final List<String> roots = new ArrayList<String>();
+		private Declaration current;
+
+		/**
+		 * Declares an element, or resumes the declaration of one declared
+		 * earlier.
+		 */
+		public Builder element(String name) {
+			current = declarations.computeIfAbsent(name, n -> new Declaration());
+			return this;
+		}
+
+		/**
+		 * Allows the given elements as children of the current element.
+		 */
+		public Builder children(String... names) {
+			current().children.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * Requires the current element to have the given attributes.
+		 */
+		public Builder required(String... names) {
+			current().required.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * Allows, without requiring, the given attributes on the current
+		 * element.
+		 */
+		public Builder attributes(String... names) {
+			current().attributes.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * Limits how many times the current element may appear within a
+		 * single parent.
+		 */
+		public Builder maxOccurs(int max) {
+			if (max <= 0) {
+				throw new IllegalArgumentException("Maximum occurrences must be positive, got " + max + ".");
+			}
+			current().maxOccurs = max;
+			return this;
+		}
+
+		/**
+		 * Allows only the given elements as the root. By default any declared
+		 * element may be the root.
+		 */
+		public Builder root(String... names) {
+			roots.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * Compiles the declarations into a schema.
+		 *
+		 * @return the schema
+		 * @throws IllegalArgumentException
+		 *             if an element allows a child, or a root is named, that
+		 *             has not been declared
+		 */
+		public Schema build() {
+			return new Schema(this);
+		}
+
+		private Declaration current() {
+			if (current == null) {
+				throw new IllegalStateException("Declare an element first.");
+			}
+			return current;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * CS 575: Project #2
+ * File: SchemaValidator.java
+ */
+package org.aghannam.schema;
+
+import java.util.Arrays;
+
+/**
+ * This class checks the structure of one document at a time against a
+ * {@link Schema}, as the parser reports it.
+ * <p>
+ * The parser calls {@link #startElement(String)} when it caches a start tag's
+ * name, {@link #attribute(String)} for every attribute name,
+ * {@link #endStartTag()} when the start tag is closed and
+ * {@link #endElement()} when the element ends. Each check returns an error
+ * message, or <code>null</code> if the document conforms so far. The only
+ * state kept is a stack of element numbers, a row of occurrence counters per
+ * open element and a bit set of the attributes in the current start tag; no
+ * tree is built.
+ * <p>
+ * Validators are not thread-safe; the parser keeps one per schema.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class SchemaValidator {
+	private final Schema schema;
+
+	/* The numbers of the open elements, the root first. */
+	private int[] open = new int[16];
+	private int depth;
+
+	/* The occurrence counters, one row per open element plus the document. */
+	private int[] occurrences;
+
+	/* The attributes seen in the current start tag. */
+	private final long[] seen;
+
+	SchemaValidator(Schema schema) {
+		this.schema = schema;
+		this.occurrences = new int[16 * Math.max(1, schema.counters)];
+		this.seen = new long[schema.attributeWords];
+	}
+
+	/**
+	 * Returns the schema this validator checks against.
+	 */
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Prepares to check a new document.
+	 */
+	public void reset() {
+		depth = 0;
+		Arrays.fill(occurrences, 0, schema.counters, 0);
+	}
+
+	/**
+	 * Checks that an element may appear where it does.
+	 *
+	 * @param name
+	 *            the element's name
+	 * @return an error message, or <code>null</code>
+	 */
+	public String startElement(String name) {
+		int e = schema.elementId(name);
+		int parent = depth == 0 ? -1 : open[depth - 1];
+		push(e);
+		Arrays.fill(seen, 0);
+		if (e < 0) {
+			return "Schema error: Element '" + name + "' is not declared.";
+		} else if (parent == -1 && !Schema.get(schema.roots, 0, e)) {
+			return "Schema error: Element '" + name + "' may not be the root.";
+		} else if (parent >= 0 && !Schema.get(schema.allowedChildren, parent * schema.elementWords, e)) {
+			return "Schema error: Element '" + name + "' is not allowed in '" + schema.elementNames[parent] + "'.";
+		}
+		int c = schema.counter[e];
+		if (c >= 0 && ++occurrences[(depth - 1) * schema.counters + c] > schema.maxOccurs[e]) {
+			return "Schema error: Element '" + name + "' appears more than " + schema.maxOccurs[e] + " times in "
+					+ (parent == -1 ? "the document." : "'" + schema.elementNames[parent] + "'.");
+		}
+		return null;
+	}
+
+	/**
+	 * Checks that the current element may have an attribute.
+	 *
+	 * @param name
+	 *            the attribute's name
+	 * @return an error message, or <code>null</code>
+	 */
+	public String attribute(String name) {
+		int e = open[depth - 1];
+		int a = schema.attributeId(name);
+		if (e < 0) {
+			return null; // already reported
+		} else if (a < 0 || !Schema.get(schema.allowedAttributes, e * schema.attributeWords, a)) {
+			return "Schema error: Attribute '" + name + "' is not allowed on '" + schema.elementNames[e] + "'.";
+		}
+		seen[a >>> 6] |= 1L << a;
+		return null;
+	}
+
+	/**
+	 * Checks that the current element has all its required attributes, once
+	 * its start tag is closed.
+	 *
+	 * @return an error message, or <code>null</code>
+	 */
+	public String endStartTag() {
+		int e = open[depth - 1];
+		if (e < 0) {
+			return null;
+		}
+		int row = e * schema.attributeWords;
+		for (int w = 0; w < seen.length; w++) {
+			long missing = schema.requiredAttributes[row + w] & ~seen[w];
+			if (missing != 0) {
+				String attribute = schema.attributeNames[w * 64 + Long.numberOfTrailingZeros(missing)];
+				return "Schema error: Element '" + schema.elementNames[e] + "' is missing required attribute '"
+						+ attribute + "'.";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records that the current element has ended.
+	 */
+	public void endElement() {
+		if (depth > 0) {
+			depth--;
+		}
+	}
+
+	private void push(int e) {
+		if (depth == open.length) {
+			open = Arrays.copyOf(open, depth * 2);
+		}
+		open[depth++] = e;
+		int row = depth * schema.counters;
+		if (row + schema.counters > occurrences.length) {
+			occurrences = Arrays.copyOf(occurrences, occurrences.length * 2);
+		}
+		Arrays.fill(occurrences, row, row + schema.counters, 0);
+	}
+}
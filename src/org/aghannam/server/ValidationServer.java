@@ -0,0 +1,276 @@
+/*
+ * CS 575: Project #2
+ * File: ValidationServer.java
+ */
+package org.aghannam.server;
+
+import org.aghannam.lex.Budget;
+import org.aghannam.lex.InflatingReader;
+import org.aghannam.lex.LexerAbortedException;
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.Limits;
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserAbortedException;
+import org.aghannam.parser.ParserException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class implements a small HTTP service that validates XML-- documents
+ * without paying for a JVM start per document.
+ * <p>
+ * The server only listens on the loopback interface. A document is validated
+ * by POSTing it to <code>/validate</code>; the request body is lexed by a
+ * {@link StreamingLexer} and parsed while it is still being received, so it
+ * is never buffered in full. A gzip- or zlib-compressed body is recognized
+ * by its first bytes and decompressed as it is lexed (see
+ * {@link InflatingReader}). The response is <code>200 VALID</code>,
+ * <code>422 INVALID: </code> followed by the error message, or
+ * <code>503 ABORTED: </code> if the document could not be validated within
+ * the server's timeout. Adding <code>?derivation=true</code> to the URI also
+ * returns the rightmost derivation printed by the parser.
+ * <p>
+ * Each request is handled on its own virtual thread when the running JVM
+ * supports them, and on a cached pool of platform threads otherwise.
+ * <p>
+ * Small responses are only sent promptly with the system property
+ * <code>sun.net.httpserver.nodelay</code> set to <code>true</code>, as
+ * {@link #main(String[])} does. An application that embeds the server
+ * should set it itself, before the first server is created.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class ValidationServer {
+	/**
+	 * The port the server listens on when none is given.
+	 */
+	public static final int DEFAULT_PORT = 8575;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Limits limits;
+	private final Duration timeout;
+
+	/**
+	 * Constructs a server listening on the given local port.
+	 *
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @param limits
+	 *            the limits enforced on every document
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public ValidationServer(int port, Limits limits) throws IOException {
+		this(port, limits, null);
+	}
+
+	/**
+	 * Constructs a server listening on the given local port that abandons any
+	 * document it cannot validate within the given time.
+	 *
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @param limits
+	 *            the limits enforced on every document
+	 * @param timeout
+	 *            the time allowed per request, or <code>null</code> for no
+	 *            deadline
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public ValidationServer(int port, Limits limits, Duration timeout) throws IOException {
+		this.limits = limits;
+		this.timeout = timeout;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = executor();
+		server.createContext("/validate", this::handle);
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests and waits up to a second for the ones in
+	 * progress to complete.
+	 */
+	public void stop() {
+		server.stop(1);
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 *
+	 * @return the bound port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Formats a location for appending to an error message, if there is one.
+	 */
+	private static String where(String location) {
+		return location == null ? "" : " (" + location + ")";
+	}
+
+	/**
+	 * Returns whether a query string has a parameter with the given name and
+	 * value, such as <code>derivation=true</code> but not
+	 * <code>noderivation=true</code> or <code>derivation=trueish</code>.
+	 */
+	static boolean hasParameter(String rawQuery, String name, String value) {
+		if (rawQuery == null) {
+			return false;
+		}
+		for (String parameter : rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals >= 0 && decode(parameter.substring(0, equals)).equals(name)
+					&& decode(parameter.substring(equals + 1)).equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Decodes a part of a query string, leaving it as it is if it is
+	 * malformed.
+	 */
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			return s;
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				respond(exchange, 405, "Only POST is supported.\n");
+				return;
+			}
+			boolean derivation = hasParameter(exchange.getRequestURI().getRawQuery(), "derivation", "true");
+
+			ByteArrayOutputStream trace = derivation ? new ByteArrayOutputStream() : null;
+			Parser parser = new Parser(limits);
+			parser.setOutput(derivation ? new PrintStream(trace, false, StandardCharsets.UTF_8) : null);
+
+			Budget budget = timeout == null ? Budget.UNLIMITED : Budget.UNLIMITED.withTimeout(timeout);
+			String result;
+			int status;
+			Reader body;
+			try {
+				body = InflatingReader.open(exchange.getRequestBody(), limits);
+			} catch (IOException e) {
+				respond(exchange, 422, "INVALID: Failed to read the XML-- document: " + e.getMessage() + "\n");
+				return;
+			}
+			StreamingLexer lexer = new StreamingLexer(body, limits, budget);
+			try {
+				parser.parse(lexer, budget);
+				status = 200;
+				result = "VALID\n";
+			} catch (LexerAbortedException | ParserAbortedException e) {
+				status = 503;
+				result = "ABORTED: " + e.getMessage() + "\n";
+			} catch (LexerException e) {
+				status = 422;
+				result = "INVALID: " + e.getMessage() + where(lexer.locate(e.getOffset())) + "\n";
+			} catch (ParserException e) {
+				status = 422;
+				result = "INVALID: " + e.getMessage() + where(lexer.locate(e.getOffset())) + "\n";
+			} finally {
+				body.close();
+			}
+			if (derivation) {
+				result += trace.toString(StandardCharsets.UTF_8);
+			}
+			respond(exchange, status, result);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Returns a virtual-thread-per-task executor if the running JVM provides
+	 * it, or a cached pool of platform threads otherwise.
+	 */
+	private static ExecutorService executor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Runs the server until the JVM is stopped.
+	 *
+	 * @param args
+	 *            an optional port, <code>--limits</code> to enforce the
+	 *            default limits, and <code>--timeout</code> followed by the
+	 *            milliseconds allowed per request
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		Limits limits = Limits.NONE;
+		Duration timeout = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--limits")) {
+				limits = Limits.DEFAULT;
+			} else if (args[i].equals("--timeout") && i + 1 < args.length) {
+				timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+			} else {
+				port = Integer.parseInt(args[i]);
+			}
+		}
+		/*
+		 * The JDK server writes the response headers and body separately, so
+		 * with Nagle's algorithm on every small response waits on a delayed
+		 * ACK. The property is JVM-wide, which is only ours to set when the
+		 * server is the application, and must be set before the first server
+		 * is created.
+		 */
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		ValidationServer server = new ValidationServer(port, limits, timeout);
+		server.start();
+		System.out.println("Validating XML-- documents at http://localhost:" + server.getPort() + "/validate");
+	}
+}
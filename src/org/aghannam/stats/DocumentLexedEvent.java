@@ -0,0 +1,34 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentLexedEvent.java
+ */
+package org.aghannam.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * This class represents the Flight Recorder event emitted when the lexer has
+ * tokenized a document.
+ * <p>
+ * Only documents that take longer than the threshold (20 ms unless overridden
+ * in the recording settings) are recorded.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@Name("org.aghannam.DocumentLexed")
+@Label("Document Lexed")
+@Category("XML--")
+@Description("An XML-- document was tokenized")
+@Threshold("20 ms")
+public class DocumentLexedEvent extends jdk.jfr.Event {
+	@Label("Document Size")
+	@Description("Length of the document, in characters")
+	public long documentSize;
+
+	@Label("Token Count")
+	public int tokenCount;
+}
@@ -0,0 +1,39 @@
+/*
+ * CS 575: Project #2
+ * File: DocumentParsedEvent.java
+ */
+package org.aghannam.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * This class represents the Flight Recorder event emitted when the parser has
+ * accepted a document.
+ * <p>
+ * Only documents that take longer than the threshold (20 ms unless overridden
+ * in the recording settings) are recorded.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@Name("org.aghannam.DocumentParsed")
+@Label("Document Parsed")
+@Category("XML--")
+@Description("An XML-- document was parsed successfully")
+@Threshold("20 ms")
+public class DocumentParsedEvent extends jdk.jfr.Event {
+	@Label("Document Size")
+	@Description("Length of the document, in characters, up to the end of the last token read")
+	public long documentSize;
+
+	@Label("Token Count")
+	@Description("Number of tokens read, up to and including the last one")
+	public long tokenCount;
+
+	@Label("Maximum Depth")
+	@Description("Deepest nesting of elements in the document")
+	public int maxDepth;
+}
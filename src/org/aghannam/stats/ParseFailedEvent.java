@@ -0,0 +1,41 @@
+/*
+ * CS 575: Project #2
+ * File: ParseFailedEvent.java
+ */
+package org.aghannam.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class represents the Flight Recorder event emitted when the parser has
+ * rejected a document. Every failure is recorded, however quick.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+@Name("org.aghannam.ParseFailed")
+@Label("Parse Failed")
+@Category("XML--")
+@Description("An XML-- document was rejected by the parser")
+public class ParseFailedEvent extends jdk.jfr.Event {
+	@Label("Document Size")
+	@Description("Length of the document, in characters, up to the end of the last token read")
+	public long documentSize;
+
+	@Label("Token Count")
+	@Description("Number of tokens read, up to and including the last one")
+	public long tokenCount;
+
+	@Label("Maximum Depth")
+	@Description("Deepest nesting of elements reached before the error")
+	public int maxDepth;
+
+	@Label("Error Offset")
+	@Description("Offset in the document of the token at which the error was detected, or -1 if not known")
+	public long errorOffset;
+
+	@Label("Message")
+	public String message;
+}
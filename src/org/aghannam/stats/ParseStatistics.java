@@ -0,0 +1,223 @@
+/*
+ * CS 575: Project #2
+ * File: ParseStatistics.java
+ */
+package org.aghannam.stats;
+
+import org.aghannam.lex.Lexer.TokenType;
+import org.aghannam.parser.Parser.Rule;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class collects counters describing the work done by the lexer and the
+ * parser, across all threads.
+ * <p>
+ * Collection is opt-in: it is switched on by starting the JVM with
+ * <code>-Dorg.aghannam.stats=true</code>, in which case the counters are also
+ * published as the JMX MBean <code>org.aghannam:type=ParseStatistics</code>.
+ * Because {@link #ENABLED} is a compile-time constant as far as the JIT is
+ * concerned, every <code>if (ParseStatistics.ENABLED)</code> guard in the hot
+ * paths folds away entirely when collection is off.
+ * <p>
+ * Counters are <code>LongAdder</code>s, so many threads lexing and parsing at
+ * once update separate cells instead of contending on a single value. Maximum
+ * depths are kept with <code>LongAccumulator</code>s for the same reason.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class ParseStatistics implements ParseStatisticsMXBean {
+	/**
+	 * Whether statistics are being collected in this JVM.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("org.aghannam.stats");
+
+	/**
+	 * The name under which the statistics are published.
+	 */
+	public static final String OBJECT_NAME = "org.aghannam:type=ParseStatistics";
+
+	/* Number of states in the LR(1) automaton. */
+	private static final int STATE_COUNT = 33;
+
+	private static final ParseStatistics INSTANCE = new ParseStatistics();
+
+	static {
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				System.err.println("Could not publish parse statistics: " + e.getMessage());
+			}
+		}
+	}
+
+	private final LongAdder documentsLexed = new LongAdder();
+	private final LongAdder documentsParsed = new LongAdder();
+	private final LongAdder lexNanos = new LongAdder();
+	private final LongAdder parseNanos = new LongAdder();
+	private final LongAdder shifts = new LongAdder();
+	private final LongAdder[] tokens = adders(TokenType.values().length);
+	private final LongAdder[] reductions = adders(Rule.values().length);
+	private final LongAdder[] stateVisits = adders(STATE_COUNT);
+	private final LongAccumulator maxParseStackDepth = new LongAccumulator(Math::max, 0);
+	private final LongAccumulator maxTagNameDepth = new LongAccumulator(Math::max, 0);
+
+	private ParseStatistics() {
+	}
+
+	/**
+	 * Returns the statistics shared by every lexer and parser in this JVM.
+	 * 
+	 * @return the shared statistics
+	 */
+	public static ParseStatistics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Records a completed run of the lexer.
+	 * 
+	 * @param nanos
+	 *            how long the run took
+	 */
+	public void lexed(long nanos) {
+		documentsLexed.increment();
+		lexNanos.add(nanos);
+	}
+
+	/**
+	 * Records a completed run of the parser.
+	 * 
+	 * @param nanos
+	 *            how long the run took, less the time spent waiting on the
+	 *            token source
+	 */
+	public void parsed(long nanos) {
+		documentsParsed.increment();
+		parseNanos.add(nanos);
+	}
+
+	public void token(TokenType type) {
+		tokens[type.ordinal()].increment();
+	}
+
+	public void shift() {
+		shifts.increment();
+	}
+
+	public void reduction(Rule rule) {
+		reductions[rule.ordinal()].increment();
+	}
+
+	public void visit(int state) {
+		if (state >= 0 && state < STATE_COUNT) {
+			stateVisits[state].increment();
+		}
+	}
+
+	public void parseStackDepth(int depth) {
+		maxParseStackDepth.accumulate(depth);
+	}
+
+	public void tagNameDepth(int depth) {
+		maxTagNameDepth.accumulate(depth);
+	}
+
+	@Override
+	public long getDocumentsLexed() {
+		return documentsLexed.sum();
+	}
+
+	@Override
+	public long getDocumentsParsed() {
+		return documentsParsed.sum();
+	}
+
+	@Override
+	public long getLexNanos() {
+		return lexNanos.sum();
+	}
+
+	@Override
+	public long getParseNanos() {
+		return parseNanos.sum();
+	}
+
+	@Override
+	public long getShifts() {
+		return shifts.sum();
+	}
+
+	@Override
+	public long getMaxParseStackDepth() {
+		return maxParseStackDepth.get();
+	}
+
+	@Override
+	public long getMaxTagNameDepth() {
+		return maxTagNameDepth.get();
+	}
+
+	@Override
+	public Map<String, Long> getTokenCounts() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (TokenType type : TokenType.values()) {
+			counts.put(type.name(), tokens[type.ordinal()].sum());
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getReductionCounts() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (Rule rule : Rule.values()) {
+			counts.put(rule.production, reductions[rule.ordinal()].sum());
+		}
+		return counts;
+	}
+
+	@Override
+	public long[] getStateVisits() {
+		long[] visits = new long[STATE_COUNT];
+		for (int i = 0; i < STATE_COUNT; i++) {
+			visits[i] = stateVisits[i].sum();
+		}
+		return visits;
+	}
+
+	@Override
+	public void reset() {
+		documentsLexed.reset();
+		documentsParsed.reset();
+		lexNanos.reset();
+		parseNanos.reset();
+		shifts.reset();
+		reset(tokens);
+		reset(reductions);
+		reset(stateVisits);
+		maxParseStackDepth.reset();
+		maxTagNameDepth.reset();
+	}
+
+	private static LongAdder[] adders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	private static void reset(LongAdder[] adders) {
+		for (LongAdder adder : adders) {
+			adder.reset();
+		}
+	}
+}
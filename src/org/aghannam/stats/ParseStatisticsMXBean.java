@@ -0,0 +1,63 @@
+/*
+ * CS 575: Project #2
+ * File: ParseStatisticsMXBean.java
+ */
+package org.aghannam.stats;
+
+import java.util.Map;
+
+/**
+ * This interface defines the management view of {@link ParseStatistics}, as
+ * published through JMX.
+ * <p>
+ * All counts are cumulative since the JVM started or since the last call to
+ * {@link #reset()}, whichever is later.
+ * 
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public interface ParseStatisticsMXBean {
+	long getDocumentsLexed();
+
+	long getDocumentsParsed();
+
+	/**
+	 * Returns the time spent scanning, in nanoseconds, reading the input
+	 * included.
+	 */
+	long getLexNanos();
+
+	/**
+	 * Returns the time spent parsing, in nanoseconds. The time the parser
+	 * waits on its token source is left out, so that a document lexed as it
+	 * is parsed has its scanning counted in {@link #getLexNanos()} only.
+	 */
+	long getParseNanos();
+
+	long getShifts();
+
+	long getMaxParseStackDepth();
+
+	long getMaxTagNameDepth();
+
+	/**
+	 * Returns the number of tokens recognized, keyed by token type.
+	 */
+	Map<String, Long> getTokenCounts();
+
+	/**
+	 * Returns the number of times each grammar rule was applied, keyed by the
+	 * rule as it appears in the derivation.
+	 */
+	Map<String, Long> getReductionCounts();
+
+	/**
+	 * Returns the number of times the parser entered each LR state, indexed by
+	 * state number.
+	 */
+	long[] getStateVisits();
+
+	/**
+	 * Sets every counter back to zero.
+	 */
+	void reset();
+}
@@ -0,0 +1,92 @@
+/*
+ * CS 575: Project #2
+ * File: Change.java
+ */
+package org.aghannam.tree;
+
+/**
+ * This class describes one difference between two versions of a document,
+ * as found by {@link TreeDiff}.
+ * <p>
+ * A change is located by a path from the root, e.g.
+ * <code>/catalog/product[12]/@sku</code>, in which each step is an element
+ * name followed by its position among the siblings of the same name,
+ * counting from 1, in the version that has it.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Change {
+
+	/**
+	 * The kinds of change.
+	 */
+	public enum Kind {
+		/** An element is only in the new version. */
+		ELEMENT_ADDED,
+		/** An element is only in the old version. */
+		ELEMENT_REMOVED,
+		/** An attribute is only in the new version. */
+		ATTRIBUTE_ADDED,
+		/** An attribute is only in the old version. */
+		ATTRIBUTE_REMOVED,
+		/** An attribute has a different value. */
+		ATTRIBUTE_CHANGED,
+		/** The DATA directly within an element is different. */
+		TEXT_CHANGED
+	}
+
+	private final Kind kind;
+	private final String path;
+	private final String oldValue;
+	private final String newValue;
+
+	Change(Kind kind, String path, String oldValue, String newValue) {
+		this.kind = kind;
+		this.path = path;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	/**
+	 * Returns the kind of this change.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the path of the element or attribute that changed.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the old value (an attribute value, the text, or the element),
+	 * or <code>null</code> if there was none.
+	 */
+	public String getOldValue() {
+		return oldValue;
+	}
+
+	/**
+	 * Returns the new value, or <code>null</code> if there is none.
+	 */
+	public String getNewValue() {
+		return newValue;
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case ELEMENT_ADDED:
+		case ATTRIBUTE_ADDED:
+			return "+ " + path + ": " + newValue;
+		case ELEMENT_REMOVED:
+		case ATTRIBUTE_REMOVED:
+			return "- " + path + ": " + oldValue;
+		default:
+			return "~ " + path + ": " + oldValue + " -> " + newValue;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * CS 575: Project #2
+ * File: Element.java
+ */
+package org.aghannam.tree;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an element of a parsed XML-- document: its name, its
+ * attributes in document order, and its content, a sequence of child elements
+ * and DATA words.
+ * <p>
+ * Elements are immutable. Two elements are equal if they have the same name,
+ * attributes and content; the hash code is computed once, when the element
+ * is built, from those of its parts. Elements built with an
+ * {@link InternTable} are shared: every element in the table is the only one
+ * of its kind, so two of them are equal exactly when they are the same
+ * object, and a subtree repeated throughout a document is kept in memory once.
+ * <p>
+ * Each element also carries a 64-bit digest of its whole subtree, a Merkle
+ * hash combining the digests of its name, attributes and content, where a
+ * child element contributes its own digest. Since it is computed as the
+ * element is built, at the end of the element, it costs one pass over the
+ * element's own parts. Elements with different digests differ; elements with
+ * the same digest are taken to be equal by {@link TreeDiff}, which is how it
+ * skips unchanged subtrees.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public final class Element {
+	private final String name;
+
+	/* Attribute names and values, alternating. */
+	private final String[] attributes;
+
+	/* Child elements and DATA words (Strings), in document order. */
+	private final Object[] content;
+
+	private final int hash;
+	private final long digest;
+
+	Element(String name, String[] attributes, Object[] content) {
+		this.name = name;
+		this.attributes = attributes;
+		this.content = content;
+		this.hash = 31 * (31 * name.hashCode() + Arrays.hashCode(attributes)) + Arrays.hashCode(content);
+
+		long h = digest(name);
+		for (String attribute : attributes) {
+			h = combine(h, digest(attribute));
+		}
+		h = combine(h, attributes.length);
+		for (Object child : content) {
+			h = combine(h, child instanceof Element ? ((Element) child).digest : ~digest((String) child));
+		}
+		this.digest = combine(h, content.length);
+	}
+
+	/**
+	 * Returns the digest of a DATA word or name (FNV-1a).
+	 */
+	static long digest(String s) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h = (h ^ s.charAt(i)) * 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Folds a part's digest into an element's, depending on the order of the
+	 * parts (the mixing steps of SplitMix64).
+	 */
+	private static long combine(long h, long part) {
+		long z = h * 0x9e3779b97f4a7c15L + part;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns the name of this element.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of attributes of this element.
+	 */
+	public int getAttributeCount() {
+		return attributes.length / 2;
+	}
+
+	/**
+	 * Returns the name of the attribute at the given index, in document
+	 * order.
+	 */
+	public String getAttributeName(int i) {
+		return attributes[2 * i];
+	}
+
+	/**
+	 * Returns the value of the attribute at the given index, without quotes
+	 * and with its references decoded.
+	 */
+	public String getAttributeValue(int i) {
+		return attributes[2 * i + 1];
+	}
+
+	/**
+	 * Returns the value of the named attribute.
+	 *
+	 * @param name
+	 *            the attribute's name
+	 * @return its value, or <code>null</code> if this element has no such
+	 *         attribute
+	 */
+	public String getAttribute(String name) {
+		for (int i = 0; i < attributes.length; i += 2) {
+			if (attributes[i].equals(name)) {
+				return attributes[i + 1];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of child elements and DATA words of this element.
+	 */
+	public int getContentSize() {
+		return content.length;
+	}
+
+	/**
+	 * Returns the child element or DATA word at the given index.
+	 *
+	 * @return an <code>Element</code> or a <code>String</code>
+	 */
+	public Object getContent(int i) {
+		return content[i];
+	}
+
+	/**
+	 * Returns the DATA words directly within this element, joined by single
+	 * spaces.
+	 */
+	public String getText() {
+		StringBuilder text = new StringBuilder();
+		for (Object child : content) {
+			if (child instanceof String) {
+				if (text.length() > 0) {
+					text.append(' ');
+				}
+				text.append((String) child);
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the digest of this element's subtree.
+	 */
+	public long getDigest() {
+		return digest;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		} else if (!(o instanceof Element)) {
+			return false;
+		}
+		Element other = (Element) o;
+		return digest == other.digest && name.equals(other.name) && Arrays.equals(attributes, other.attributes)
+				&& Arrays.equals(content, other.content);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append('<').append(name);
+		for (int i = 0; i < attributes.length; i += 2) {
+			sb.append(' ').append(attributes[i]).append("=\"").append(attributes[i + 1]).append('"');
+		}
+		if (content.length == 0) {
+			return sb.append("/>").toString();
+		}
+		sb.append('>');
+		for (int i = 0; i < content.length; i++) {
+			if (i > 0 && content[i] instanceof String && content[i - 1] instanceof String) {
+				sb.append(' ');
+			}
+			sb.append(content[i]);
+		}
+		return sb.append("</").append(name).append('>').toString();
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * CS 575: Project #2
+ * File: InternTable.java
+ */
+package org.aghannam.tree;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps a single copy of each distinct element, name and DATA word
+ * built by the {@link TreeBuilder}s that share it.
+ * <p>
+ * Elements are interned bottom-up, as each one ends: its children have
+ * already been replaced by their shared copies, so looking an element up only
+ * hashes and compares its own name, attributes and the references to its
+ * children. A subtree that appears a thousand times in a catalog is thus
+ * kept once, and checking whether two interned subtrees are equal is a
+ * comparison of references.
+ * <p>
+ * A table may be shared by builders on any number of threads. It holds on to
+ * everything interned in it until {@link #clear()} is called.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class InternTable {
+	private final ConcurrentHashMap<Object, Object> table = new ConcurrentHashMap<Object, Object>();
+
+	/**
+	 * Returns the shared copy of the given element, which becomes the shared
+	 * copy if there is none yet.
+	 *
+	 * @param element
+	 *            an element whose children have been interned
+	 * @return the shared copy
+	 */
+	public Element intern(Element element) {
+		Object shared = table.putIfAbsent(element, element);
+		return shared == null ? element : (Element) shared;
+	}
+
+	/**
+	 * Returns the shared copy of the given name, value or DATA word.
+	 *
+	 * @param s
+	 *            the string
+	 * @return the shared copy
+	 */
+	public String intern(String s) {
+		Object shared = table.putIfAbsent(s, s);
+		return shared == null ? s : (String) shared;
+	}
+
+	/**
+	 * Returns the number of distinct elements and strings in this table.
+	 */
+	public int size() {
+		return table.size();
+	}
+
+	/**
+	 * Forgets everything interned so far. Elements already built are not
+	 * affected, but are no longer shared with those built afterwards.
+	 */
+	public void clear() {
+		table.clear();
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * CS 575: Project #2
+ * File: TreeBuilder.java
+ */
+package org.aghannam.tree;
+
+import org.aghannam.lex.LexerException;
+import org.aghannam.lex.TokenSource;
+import org.aghannam.parser.ParseListener;
+import org.aghannam.parser.Parser;
+import org.aghannam.parser.ParserException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class builds a tree of {@link Element}s from the structure the parser
+ * reports, for consumers that need the whole document in memory.
+ * <p>
+ * Each element is built when it ends, from its name, attributes and the
+ * already built children. With an {@link InternTable}, it is then replaced by
+ * its shared copy, so that identical subtrees, which repetitive documents
+ * have in the thousands, take the memory of one:
+ *
+ * <pre>
+ * Element root = new TreeBuilder(table).build(parser, new StreamingLexer(reader));
+ * </pre>
+ * <p>
+ * A builder may be reused for any number of documents, but not concurrently;
+ * builders on different threads may share a table.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class TreeBuilder implements ParseListener {
+	private static final String[] NO_ATTRIBUTES = new String[0];
+	private static final Object[] NO_CONTENT = new Object[0];
+
+	private final InternTable table;
+
+	/* The open elements, the root first. */
+	private final List<Open> open = new ArrayList<Open>();
+	private int depth;
+	private Element root;
+
+	/**
+	 * Constructs a builder that builds a separate tree for each document.
+	 */
+	public TreeBuilder() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a builder that shares identical subtrees through the given
+	 * table.
+	 *
+	 * @param table
+	 *            the table to intern elements in, or <code>null</code> not to
+	 *            share them
+	 */
+	public TreeBuilder(InternTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Parses a document with the given parser and returns its tree. The
+	 * parser's listener is replaced by this builder.
+	 *
+	 * @param parser
+	 *            the parser to use
+	 * @param source
+	 *            the document's tokens
+	 * @return the root element
+	 * @throws LexerException
+	 *             if the source fails to scan the document
+	 * @throws ParserException
+	 *             if any syntax errors are encountered
+	 */
+	public Element build(Parser parser, TokenSource source) throws LexerException, ParserException {
+		reset();
+		parser.setListener(this);
+		parser.parse(source);
+		return getRoot();
+	}
+
+	/**
+	 * Discards the elements of a document whose parse has not completed, so
+	 * that the next document starts afresh.
+	 */
+	public void reset() {
+		depth = 0;
+		root = null;
+	}
+
+	/**
+	 * Returns the root of the last document parsed, or <code>null</code> if
+	 * it has not been completed.
+	 */
+	public Element getRoot() {
+		return depth == 0 ? root : null;
+	}
+
+	@Override
+	public void startElement(String name) {
+		if (depth == 0) {
+			root = null;
+		}
+		if (depth == open.size()) {
+			open.add(new Open());
+		}
+		Open element = open.get(depth++);
+		element.name = intern(name);
+		element.attributes.clear();
+		element.content.clear();
+	}
+
+	@Override
+	public void attribute(String name, String value) {
+		List<String> attributes = open.get(depth - 1).attributes;
+		attributes.add(intern(name));
+		attributes.add(intern(value));
+	}
+
+	@Override
+	public boolean enterContent() {
+		return true;
+	}
+
+	@Override
+	public void data(String data) {
+		open.get(depth - 1).content.add(intern(data));
+	}
+
+	@Override
+	public void endElement(String name) {
+		Open element = open.get(--depth);
+		String[] attributes = element.attributes.isEmpty() ? NO_ATTRIBUTES
+				: element.attributes.toArray(new String[0]);
+		Object[] content = element.content.isEmpty() ? NO_CONTENT : element.content.toArray();
+		Element built = new Element(element.name, attributes, content);
+		if (table != null) {
+			built = table.intern(built);
+		}
+		if (depth == 0) {
+			root = built;
+		} else {
+			open.get(depth - 1).content.add(built);
+		}
+	}
+
+	@Override
+	public boolean isDone() {
+		return false;
+	}
+
+	private String intern(String s) {
+		return table == null ? s : table.intern(s);
+	}
+
+	/**
+	 * An element whose end has not been reached yet; reused for the next
+	 * element at the same depth.
+	 */
+	private static class Open {
+		String name;
+		final List<String> attributes = new ArrayList<String>();
+		final List<Object> content = new ArrayList<Object>();
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * CS 575: Project #2
+ * File: TreeDiff.java
+ */
+package org.aghannam.tree;
+
+import org.aghannam.lex.StreamingLexer;
+import org.aghannam.parser.Parser;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class finds the differences between two versions of a document.
+ * <p>
+ * The trees are compared from the root down. Two subtrees with the same
+ * digest (see {@link Element#getDigest()}) are taken to be equal without
+ * looking inside them, so only the elements on the way to a change are
+ * visited, and two versions of a large document that differ in a few places
+ * are compared in time proportional to those places and the width of the
+ * elements around them.
+ * <p>
+ * Within an element whose digest has changed, the attributes are compared by
+ * name and the content is aligned as follows: the longest common prefix and
+ * suffix are set aside, then each child element left in the old version is
+ * matched to an identical one left in the new version if there is one. Of
+ * the children still unmatched, each is paired with the next one of the same
+ * name that resembles it, sharing an attribute or a child element or, for
+ * elements with no child elements, just the name, and the two are compared in
+ * turn; the rest have been removed or added. Changes to the
+ * DATA directly within an element are reported once for the element.
+ * <p>
+ * Changes are listed in document order: an element's attributes and text
+ * first, then its children in the order of the new version, each removed
+ * child after the sibling that came before it in the old version.
+ *
+ * @author Ahmed Ghannam (amalghannam@crimson.ua.edu)
+ */
+public class TreeDiff {
+	/* How much of an added or removed element to show. */
+	private static final int PREVIEW_LENGTH = 120;
+
+	/* How many unmatched elements of the same name to try pairing each with. */
+	private static final int LOOKAHEAD = 8;
+
+	private final List<Change> changes = new ArrayList<Change>();
+
+	private TreeDiff() {
+	}
+
+	/**
+	 * Compares two versions of a document.
+	 *
+	 * @param before
+	 *            the root of the old version
+	 * @param after
+	 *            the root of the new version
+	 * @return the changes, in document order of the elements they concern in
+	 *         the new version; a removed element's come where it was, after
+	 *         those of the element before it
+	 */
+	public static List<Change> diff(Element before, Element after) {
+		TreeDiff diff = new TreeDiff();
+		if (before.getName().equals(after.getName())) {
+			diff.element(before, after, "/" + after.getName());
+		} else {
+			diff.changes.add(new Change(Change.Kind.ELEMENT_REMOVED, "/" + before.getName(), preview(before), null));
+			diff.changes.add(new Change(Change.Kind.ELEMENT_ADDED, "/" + after.getName(), null, preview(after)));
+		}
+		return diff.changes;
+	}
+
+	private void element(Element a, Element b, String path) {
+		if (a.getDigest() == b.getDigest()) {
+			return;
+		}
+		attributes(a, b, path);
+		content(a, b, path);
+	}
+
+	private void attributes(Element a, Element b, String path) {
+		for (int i = 0; i < a.getAttributeCount(); i++) {
+			String name = a.getAttributeName(i);
+			String value = b.getAttribute(name);
+			if (value == null) {
+				changes.add(new Change(Change.Kind.ATTRIBUTE_REMOVED, path + "/@" + name, a.getAttributeValue(i), null));
+			} else if (!value.equals(a.getAttributeValue(i))) {
+				changes.add(new Change(Change.Kind.ATTRIBUTE_CHANGED, path + "/@" + name, a.getAttributeValue(i),
+						value));
+			}
+		}
+		for (int i = 0; i < b.getAttributeCount(); i++) {
+			String name = b.getAttributeName(i);
+			if (a.getAttribute(name) == null) {
+				changes.add(new Change(Change.Kind.ATTRIBUTE_ADDED, path + "/@" + name, null, b.getAttributeValue(i)));
+			}
+		}
+	}
+
+	private void content(Element a, Element b, String path) {
+		int n = a.getContentSize();
+		int m = b.getContentSize();
+		int prefix = 0;
+		while (prefix < n && prefix < m && same(a.getContent(prefix), b.getContent(prefix))) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < n - prefix && suffix < m - prefix
+				&& same(a.getContent(n - 1 - suffix), b.getContent(m - 1 - suffix))) {
+			suffix++;
+		}
+		if (prefix + suffix == n && prefix + suffix == m) {
+			return;
+		}
+
+		// Match the children left in the old version to identical ones in the new.
+		boolean text = false;
+		Map<Long, ArrayDeque<Integer>> identical = new HashMap<Long, ArrayDeque<Integer>>();
+		for (int j = prefix; j < m - suffix; j++) {
+			Object child = b.getContent(j);
+			if (child instanceof Element) {
+				identical.computeIfAbsent(((Element) child).getDigest(), d -> new ArrayDeque<Integer>()).add(j);
+			} else {
+				text = true;
+			}
+		}
+		boolean[] matched = new boolean[m];
+		int[] partners = new int[n]; // where each old child is in the new version, or -1
+		Arrays.fill(partners, -1);
+		List<Integer> unmatched = new ArrayList<Integer>();
+		for (int i = prefix; i < n - suffix; i++) {
+			Object child = a.getContent(i);
+			if (child instanceof Element) {
+				ArrayDeque<Integer> candidates = identical.get(((Element) child).getDigest());
+				if (candidates != null && !candidates.isEmpty()) {
+					partners[i] = candidates.poll();
+					matched[partners[i]] = true;
+				} else {
+					unmatched.add(i);
+				}
+			} else {
+				text = true;
+			}
+		}
+		if (text && !a.getText().equals(b.getText())) {
+			changes.add(new Change(Change.Kind.TEXT_CHANGED, path, a.getText(), b.getText()));
+		}
+
+		// Pair what is left by name, in order.
+		Map<String, ArrayDeque<Integer>> byName = new HashMap<String, ArrayDeque<Integer>>();
+		for (int j = prefix; j < m - suffix; j++) {
+			if (!matched[j] && b.getContent(j) instanceof Element) {
+				byName.computeIfAbsent(((Element) b.getContent(j)).getName(), name -> new ArrayDeque<Integer>())
+						.add(j);
+			}
+		}
+		if (unmatched.isEmpty() && byName.isEmpty()) {
+			return;
+		}
+		for (int i : unmatched) {
+			Element old = (Element) a.getContent(i);
+			partners[i] = pair(old, b, byName.get(old.getName()));
+			if (partners[i] >= 0) {
+				matched[partners[i]] = true;
+			}
+		}
+
+		// Report each child where it is in the new version, and a removed one
+		// after the sibling before it.
+		int[] oldPositions = positions(a);
+		int[] newPositions = positions(b);
+		List<Section> sections = new ArrayList<Section>();
+		int anchor = prefix - 1;
+		int next = 0;
+		for (int i = prefix; i < n - suffix; i++) {
+			if (partners[i] >= 0) {
+				anchor = partners[i];
+			}
+			if (next < unmatched.size() && unmatched.get(next) == i) {
+				next++;
+				Element old = (Element) a.getContent(i);
+				int from = changes.size();
+				if (partners[i] >= 0) {
+					int j = partners[i];
+					element(old, (Element) b.getContent(j), step(path, old, newPositions[j]));
+					sections.add(new Section(2L * j + 1, take(from)));
+				} else {
+					changes.add(new Change(Change.Kind.ELEMENT_REMOVED, step(path, old, oldPositions[i]),
+							preview(old), null));
+					sections.add(new Section(2L * anchor + 2, take(from)));
+				}
+			}
+		}
+		for (int j = prefix; j < m - suffix; j++) {
+			if (!matched[j] && b.getContent(j) instanceof Element) {
+				Element added = (Element) b.getContent(j);
+				sections.add(new Section(2L * j + 1, List.of(new Change(Change.Kind.ELEMENT_ADDED,
+						step(path, added, newPositions[j]), null, preview(added)))));
+			}
+		}
+		sections.sort((x, y) -> Long.compare(x.key, y.key)); // stable
+		for (Section section : sections) {
+			changes.addAll(section.changes);
+		}
+	}
+
+	/**
+	 * Removes the changes found since the given count and returns them.
+	 */
+	private List<Change> take(int from) {
+		List<Change> found = changes.subList(from, changes.size());
+		List<Change> taken = new ArrayList<Change>(found);
+		found.clear();
+		return taken;
+	}
+
+	/**
+	 * The changes concerning one child, and where they go among those of its
+	 * siblings: twice the child's index in the new version plus one, or for a
+	 * removed child, twice the index of the sibling before it plus two.
+	 */
+	private static class Section {
+		final long key;
+		final List<Change> changes;
+
+		Section(long key, List<Change> changes) {
+			this.key = key;
+			this.changes = changes;
+		}
+	}
+
+	/**
+	 * Takes from the candidates, the indexes of unmatched elements of the same
+	 * name in the new version, the first that resembles the old element.
+	 *
+	 * @return its index, or -1 if none does
+	 */
+	private static int pair(Element old, Element parent, ArrayDeque<Integer> candidates) {
+		if (candidates == null) {
+			return -1;
+		}
+		Iterator<Integer> it = candidates.iterator();
+		for (int tried = 0; tried < LOOKAHEAD && it.hasNext(); tried++) {
+			int j = it.next();
+			if (resembles(old, (Element) parent.getContent(j))) {
+				it.remove();
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean resembles(Element a, Element b) {
+		for (int i = 0; i < a.getAttributeCount(); i++) {
+			if (a.getAttributeValue(i).equals(b.getAttribute(a.getAttributeName(i)))) {
+				return true;
+			}
+		}
+		boolean leaves = true;
+		Set<Long> children = new HashSet<Long>();
+		for (int i = 0; i < a.getContentSize(); i++) {
+			if (a.getContent(i) instanceof Element) {
+				children.add(((Element) a.getContent(i)).getDigest());
+				leaves = false;
+			}
+		}
+		for (int j = 0; j < b.getContentSize(); j++) {
+			if (b.getContent(j) instanceof Element) {
+				if (children.contains(((Element) b.getContent(j)).getDigest())) {
+					return true;
+				}
+				leaves = false;
+			}
+		}
+		return leaves;
+	}
+
+	/**
+	 * Returns the position of each child element among its siblings of the
+	 * same name, counting from 1.
+	 */
+	private static int[] positions(Element parent) {
+		int[] positions = new int[parent.getContentSize()];
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < positions.length; i++) {
+			if (parent.getContent(i) instanceof Element) {
+				positions[i] = counts.merge(((Element) parent.getContent(i)).getName(), 1, Integer::sum);
+			}
+		}
+		return positions;
+	}
+
+	private static String step(String path, Element child, int position) {
+		return path + "/" + child.getName() + "[" + position + "]";
+	}
+
+	private static boolean same(Object a, Object b) {
+		if (a == b) {
+			return true;
+		} else if (a instanceof Element && b instanceof Element) {
+			return ((Element) a).getDigest() == ((Element) b).getDigest();
+		}
+		return a.equals(b);
+	}
+
+	private static String preview(Element element) {
+		String s = element.toString();
+		return s.length() <= PREVIEW_LENGTH ? s : s.substring(0, PREVIEW_LENGTH) + "...";
+	}
+
+	/**
+	 * Prints the differences between two XML-- files, one per line, and exits
+	 * with status 1 if there are any.
+	 *
+	 * @param args
+	 *            the old file and the new file
+	 * @throws Exception
+	 *             if either file cannot be read or parsed
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: TreeDiff <old.xml> <new.xml>");
+			System.exit(2);
+		}
+		InternTable table = new InternTable();
+		Parser parser = new Parser();
+		parser.setOutput(null);
+		Element[] roots = new Element[2];
+		for (int i = 0; i < 2; i++) {
+			try (Reader in = Files.newBufferedReader(Paths.get(args[i]), StandardCharsets.UTF_8)) {
+				roots[i] = new TreeBuilder(table).build(parser, new StreamingLexer(in));
+			}
+		}
+		List<Change> changes = diff(roots[0], roots[1]);
+		for (Change change : changes) {
+			System.out.println(change);
+		}
+		System.exit(changes.isEmpty() ? 0 : 1);
+	}
+}